@@ -0,0 +1,27 @@
+-- Storage footprint of machine_event (PostgreSQL). Sizes are summed over all partitions.
+--   psql -d buyogo_event_db -f scripts/storage_report.sql
+-- Run ANALYZE machine_event first so row counts are current.
+
+SELECT count(*)                          AS live_rows,
+       avg(pg_column_size(t.*))::int     AS avg_row_bytes
+FROM machine_event t;
+
+SELECT sum(pg_relation_size(i.inhrelid))                        AS heap_bytes,
+       pg_size_pretty(sum(pg_relation_size(i.inhrelid)))        AS heap
+FROM pg_inherits i
+WHERE i.inhparent = 'machine_event'::regclass;
+
+SELECT p.relname                                                AS index_name,
+       sum(pg_relation_size(c.inhrelid))                        AS index_bytes,
+       pg_size_pretty(sum(pg_relation_size(c.inhrelid)))        AS index_size
+FROM pg_class p
+JOIN pg_inherits c ON c.inhparent = p.oid
+WHERE p.relkind = 'I'
+  AND p.oid IN (SELECT indexrelid FROM pg_index WHERE indrelid = 'machine_event'::regclass)
+GROUP BY p.relname
+ORDER BY p.relname;
+
+SELECT kind, count(*) AS entries
+FROM identifier_dictionary
+GROUP BY kind
+ORDER BY kind;
@@ -0,0 +1,66 @@
+package com.aditya.buyogo.config;
+
+import net.ttddyy.dsproxy.support.ProxyDataSourceBuilder;
+import org.h2.jdbcx.JdbcDataSource;
+import org.openjdk.jmh.annotations.*;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.TimeUnit;
+
+// A 10,000-row scan on in-memory H2 through the SqlBudgetConfig proxy: none, statements only (the
+// default), and statements plus rows read (buyogo.sql-budget.count-rows-read).
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SqlProxyBenchmark {
+    private static final int ROWS = 10_000;
+
+    @Param({"none", "statements", "rows"})
+    private String proxy;
+
+    private Connection connection;
+
+    @Setup
+    public void setUp() throws SQLException {
+        JdbcDataSource h2 = new JdbcDataSource();
+        h2.setURL("jdbc:h2:mem:sqlproxy;DB_CLOSE_DELAY=-1");
+        DataSource dataSource = switch (proxy) {
+            case "none" -> h2;
+            case "statements" -> ProxyDataSourceBuilder.create(h2).listener(new SqlStatementListener()).build();
+            default -> ProxyDataSourceBuilder.create(h2).listener(new SqlStatementListener()).proxyResultSet().build();
+        };
+        connection = dataSource.getConnection();
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("CREATE TABLE IF NOT EXISTS scan (id BIGINT PRIMARY KEY, defect_count INT)");
+            statement.execute("DELETE FROM scan");
+            statement.execute("INSERT INTO scan SELECT x, MOD(x, 7) FROM SYSTEM_RANGE(1, " + ROWS + ")");
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws SQLException {
+        connection.close();
+    }
+
+    @Benchmark
+    public long scan() throws SQLException {
+        SqlRequestStats.start();
+        try (Statement statement = connection.createStatement();
+             ResultSet rows = statement.executeQuery("SELECT id, defect_count FROM scan")) {
+            long sum = 0;
+            while (rows.next()) {
+                sum += rows.getInt(2);
+            }
+            return sum;
+        } finally {
+            SqlRequestStats.stop();
+        }
+    }
+}
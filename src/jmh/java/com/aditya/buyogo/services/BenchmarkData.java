@@ -0,0 +1,45 @@
+package com.aditya.buyogo.services;
+
+import com.aditya.buyogo.dto.EventDTO;
+import com.aditya.buyogo.models.MachineEvent;
+import com.aditya.buyogo.utils.PayloadHashUtil;
+
+import java.time.Instant;
+
+// Deterministic events with production-like id shapes: 20 factories, 12 lines each, 400 machines.
+final class BenchmarkData {
+    static final Instant BASE = Instant.parse("2026-01-05T08:00:00Z");
+
+    private BenchmarkData() {
+    }
+
+    static EventDTO event(int i) {
+        EventDTO event = new EventDTO();
+        event.setEventId(String.format("EVT-%08d", i));
+        event.setFactoryId(String.format("FAC-%03d", i % 20));
+        event.setLineId(String.format("FAC-%03d-LINE-%02d", i % 20, i % 12));
+        event.setMachineId(String.format("M-FAC%03d-MACH%04d", i % 20, i % 400));
+        event.setEventTime(BASE.plusSeconds(i));
+        event.setReceivedTime(BASE.plusSeconds(3600 + i));
+        event.setDurationMs(1000 + (i * 37L) % 60_000);
+        event.setDefectCount(i % 7 == 0 ? -1 : i % 5);
+        return event;
+    }
+
+    static MachineEvent stored(EventDTO event) {
+        MachineEvent stored = new MachineEvent();
+        stored.setId((long) event.getEventId().hashCode());
+        stored.setEventId(event.getEventId());
+        stored.setFactoryId(event.getFactoryId());
+        stored.setLineId(event.getLineId());
+        stored.setMachineId(event.getMachineId());
+        stored.setEventTime(event.getEventTime());
+        stored.setReceivedTime(event.getReceivedTime());
+        stored.setDurationMs(event.getDurationMs());
+        stored.setDefectCount(event.getDefectCount());
+        stored.setPayloadHash(PayloadHashUtil.generatePayloadHash(event));
+        stored.setCreatedAt(event.getReceivedTime());
+        stored.setUpdatedAt(event.getReceivedTime());
+        return stored;
+    }
+}
@@ -0,0 +1,99 @@
+package com.aditya.buyogo.services;
+
+import com.aditya.buyogo.dto.BatchResponseDTO;
+import com.aditya.buyogo.dto.EventDTO;
+import com.aditya.buyogo.models.MachineEvent;
+import com.aditya.buyogo.repo.IdentifierDictionary;
+import com.aditya.buyogo.repo.IdentifierDictionary.Kind;
+import com.aditya.buyogo.repo.MachineEventRepository;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+// Classification loop of processEvents against InMemoryMachineEventRepository, so the numbers are
+// CPU and allocation cost only. Each batch is 70% new, 10% exact duplicates, 10% newer updates,
+// 5% invalid duration and 5% too far in the future.
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EventServiceBenchmark {
+
+    // Every id is already registered in steady state, so registration is a cache hit; stubbed out here
+    private static final IdentifierDictionary CACHED_DICTIONARY = new IdentifierDictionary() {
+        @Override
+        public int register(Kind kind, String value) {
+            return 0;
+        }
+
+        @Override
+        public void registerAll(MachineEvent event) {
+        }
+
+        @Override
+        public void registerAll(EventDTO event) {
+        }
+    };
+
+    @State(Scope.Benchmark)
+    public static class Batch {
+        @Param({"1000"})
+        int batchSize;
+
+        MachineEventRepository repo;
+        List<EventDTO> events;
+        EventService service;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            Map<String, MachineEvent> stored = new HashMap<>();
+            events = new ArrayList<>(batchSize);
+            for (int i = 0; i < batchSize; i++) {
+                EventDTO event = BenchmarkData.event(i);
+                int bucket = i % 20;
+                if (bucket == 14 || bucket == 15) {
+                    stored.put(event.getEventId(), BenchmarkData.stored(event));
+                } else if (bucket == 16 || bucket == 17) {
+                    MachineEvent older = BenchmarkData.stored(event);
+                    older.setReceivedTime(older.getReceivedTime().minusSeconds(600));
+                    older.setDefectCount(older.getDefectCount() + 1);
+                    older.setPayloadHash("0".repeat(64));
+                    stored.put(event.getEventId(), older);
+                } else if (bucket == 18) {
+                    event.setDurationMs(-1);
+                } else if (bucket == 19) {
+                    event.setEventTime(Instant.now().plusSeconds(3600));
+                }
+                events.add(event);
+            }
+            repo = InMemoryMachineEventRepository.create(stored, List.of(), List.of());
+            service = new EventService();
+            ReflectionTestUtils.setField(service, "repo", repo);
+            ReflectionTestUtils.setField(service, "dictionary", CACHED_DICTIONARY);
+        }
+    }
+
+    // The row-to-entity step processEvents runs for every row it writes
+    @State(Scope.Benchmark)
+    public static class Single {
+        EventColumns columns = EventColumns.of(List.of(BenchmarkData.event(42)), new long[1]);
+    }
+
+    @Benchmark
+    public BatchResponseDTO processEvents(Batch batch) {
+        return batch.service.processEvents(batch.events);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public MachineEvent toEntity(Single single) {
+        return single.columns.toEntity(0, new MachineEvent());
+    }
+}
@@ -0,0 +1,86 @@
+package com.aditya.buyogo.services;
+
+import com.aditya.buyogo.models.MachineEvent;
+import com.aditya.buyogo.repo.MachineEventRepository;
+import com.aditya.buyogo.repo.TopDefectLineProjection;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+
+// MachineEventRepository stand-in for benchmarks. Lookups return fresh copies from a HashMap, the
+// way Hibernate materialises a new entity per query. Saves are counted and discarded, so every
+// invocation classifies against the same stored state.
+final class InMemoryMachineEventRepository implements InvocationHandler {
+    private final Map<String, MachineEvent> byEventId;
+    private final List<MachineEvent> machineEvents;
+    private final List<TopDefectLineProjection> topDefectLines;
+    long saved;
+
+    private InMemoryMachineEventRepository(Map<String, MachineEvent> byEventId, List<MachineEvent> machineEvents,
+                                           List<TopDefectLineProjection> topDefectLines) {
+        this.byEventId = byEventId;
+        this.machineEvents = machineEvents;
+        this.topDefectLines = topDefectLines;
+    }
+
+    static MachineEventRepository create(Map<String, MachineEvent> byEventId, List<MachineEvent> machineEvents,
+                                         List<TopDefectLineProjection> topDefectLines) {
+        return (MachineEventRepository) Proxy.newProxyInstance(
+                MachineEventRepository.class.getClassLoader(),
+                new Class<?>[]{MachineEventRepository.class},
+                new InMemoryMachineEventRepository(byEventId, machineEvents, topDefectLines));
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        if (method.getDeclaringClass() == Object.class) {
+            return method.invoke(this, args);
+        }
+        return switch (method.getName()) {
+            case "findByEventId" -> Optional.ofNullable(byEventId.get((String) args[0])).map(this::copy);
+            case "findByEventIdIn" -> ((Collection<?>) args[0]).stream()
+                    .map(byEventId::get)
+                    .filter(Objects::nonNull)
+                    .map(this::copy)
+                    .toList();
+            case "findByMachineIdAndEventTimeBetween" -> machineEvents;
+            case "findTopDefectLines" -> topDefectLines;
+            case "saveAll" -> {
+                for (Object ignored : (Iterable<?>) args[0]) {
+                    saved++;
+                }
+                yield args[0];
+            }
+            // Nothing is refused: the benchmark's new ids are never stored
+            case "insertNew" -> {
+                saved += ((List<?>) args[0]).size();
+                yield List.of();
+            }
+            case "flush" -> null;
+            default -> throw new UnsupportedOperationException(method.getName());
+        };
+    }
+
+    private MachineEvent copy(MachineEvent stored) {
+        MachineEvent copy = new MachineEvent();
+        copy.setId(stored.getId());
+        copy.setEventId(stored.getEventId());
+        copy.setMachineId(stored.getMachineId());
+        copy.setFactoryId(stored.getFactoryId());
+        copy.setLineId(stored.getLineId());
+        copy.setEventTime(stored.getEventTime());
+        copy.setReceivedTime(stored.getReceivedTime());
+        copy.setDurationMs(stored.getDurationMs());
+        copy.setDefectCount(stored.getDefectCount());
+        copy.setPayloadHash(stored.getPayloadHash());
+        copy.setCreatedAt(stored.getCreatedAt());
+        copy.setUpdatedAt(stored.getUpdatedAt());
+        return copy;
+    }
+}
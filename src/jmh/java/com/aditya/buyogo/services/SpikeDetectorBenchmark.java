@@ -0,0 +1,67 @@
+package com.aditya.buyogo.services;
+
+import com.aditya.buyogo.config.SpikeProperties;
+import com.aditya.buyogo.models.MachineEvent;
+import com.aditya.buyogo.repo.IdentifierDictionary;
+import com.aditya.buyogo.repo.IdentifierDictionary.Kind;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// afterCommit for 1000-event batches spread over 100,000 tracked machines, each batch a second of
+// event time after the previous one
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SpikeDetectorBenchmark {
+    private static final int MACHINES = 100_000;
+    private static final int BATCH = 1000;
+
+    // Machine ids are "M<key>", so the key is parsed rather than looked up
+    private static final IdentifierDictionary DICTIONARY = new IdentifierDictionary() {
+        @Override
+        public Integer cachedKeyOf(Kind kind, String value) {
+            return Integer.parseInt(value, 1, value.length(), 10);
+        }
+    };
+
+    private SpikeDetector detector;
+    private List<List<EventChange>> batches;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        detector = new SpikeDetector(DICTIONARY, new SpikeProperties(), new SimpleMeterRegistry());
+        Instant start = Instant.now().minusSeconds(3600);
+        batches = new ArrayList<>();
+        for (int b = 0; b < MACHINES / BATCH * 4; b++) {
+            List<EventChange> changes = new ArrayList<>(BATCH);
+            for (int i = 0; i < BATCH; i++) {
+                int machine = (b * BATCH + i) % MACHINES;
+                MachineEvent event = new MachineEvent();
+                event.setEventId("E-" + b + "-" + i);
+                event.setMachineId("M" + machine);
+                event.setEventTime(start.plusSeconds(b));
+                event.setDefectCount(i % 7 == 0 ? 3 : 0);
+                changes.add(new EventChange(null, event));
+            }
+            batches.add(changes);
+        }
+        // Every machine is tracked before measuring
+        batches.forEach(detector::afterCommit);
+    }
+
+    @Benchmark
+    public int afterCommit() {
+        detector.afterCommit(batches.get(next));
+        next = (next + 1) % batches.size();
+        return detector.trackedMachines();
+    }
+}
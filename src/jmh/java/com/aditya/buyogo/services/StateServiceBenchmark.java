@@ -0,0 +1,72 @@
+package com.aditya.buyogo.services;
+
+import com.aditya.buyogo.dto.StatesResponseDTO;
+import com.aditya.buyogo.dto.TopDefectLineDTO;
+import com.aditya.buyogo.models.MachineEvent;
+import com.aditya.buyogo.repo.TopDefectLineProjection;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+// In-process aggregation in StateService over rows the repository stand-in has already "fetched".
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class StateServiceBenchmark {
+
+    @Param({"100", "10000"})
+    int rows;
+
+    private StateService service;
+    private final Instant start = BenchmarkData.BASE;
+    private final Instant end = BenchmarkData.BASE.plusSeconds(24 * 3600);
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        List<MachineEvent> machineEvents = new ArrayList<>(rows);
+        for (int i = 0; i < rows; i++) {
+            machineEvents.add(BenchmarkData.stored(BenchmarkData.event(i)));
+        }
+        List<TopDefectLineProjection> lines = new ArrayList<>();
+        for (int line = 0; line < 12; line++) {
+            lines.add(projection(String.format("FAC-001-LINE-%02d", line), rows / 12L * (12 - line), rows / 12L));
+        }
+        service = new StateService();
+        ReflectionTestUtils.setField(service, "machineEventRepository",
+                InMemoryMachineEventRepository.create(Map.of(), machineEvents, lines));
+    }
+
+    @Benchmark
+    public StatesResponseDTO machineStates() {
+        return service.getEventByMachineIdAndDateBetween("M-FAC001-MACH0001", start, end);
+    }
+
+    @Benchmark
+    public List<TopDefectLineDTO> topDefectLines() {
+        return service.getTopDefectLines("FAC-001", start, end, 5);
+    }
+
+    private static TopDefectLineProjection projection(String lineId, long totalDefects, long eventCount) {
+        return new TopDefectLineProjection() {
+            public String getLineId() {
+                return lineId;
+            }
+
+            public long getTotalDefects() {
+                return totalDefects;
+            }
+
+            public long getEventCount() {
+                return eventCount;
+            }
+        };
+    }
+}
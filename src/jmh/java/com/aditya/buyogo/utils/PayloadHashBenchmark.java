@@ -0,0 +1,36 @@
+package com.aditya.buyogo.utils;
+
+import com.aditya.buyogo.dto.EventDTO;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PayloadHashBenchmark {
+
+    private EventDTO event;
+
+    @Setup
+    public void setUp() {
+        event = new EventDTO();
+        event.setEventId("EVT-00004242");
+        event.setFactoryId("FAC-002");
+        event.setLineId("FAC-002-LINE-06");
+        event.setMachineId("M-FAC002-MACH0042");
+        event.setEventTime(Instant.parse("2026-01-05T08:00:42Z"));
+        event.setReceivedTime(Instant.parse("2026-01-05T09:00:42Z"));
+        event.setDurationMs(2554);
+        event.setDefectCount(2);
+    }
+
+    @Benchmark
+    public String generatePayloadHash() {
+        return PayloadHashUtil.generatePayloadHash(event);
+    }
+}
@@ -0,0 +1,56 @@
+package com.aditya.buyogo.loadgen;
+
+import java.util.Random;
+
+// fixed:N, uniform:MIN-MAX or exponential:MEAN[:MAX] (clamped to 1..MAX, default MAX 10 x MEAN)
+final class BatchSizeDistribution {
+    private enum Kind { FIXED, UNIFORM, EXPONENTIAL }
+
+    private final Kind kind;
+    private final int a;
+    private final int b;
+    private final String spec;
+
+    private BatchSizeDistribution(Kind kind, int a, int b, String spec) {
+        this.kind = kind;
+        this.a = a;
+        this.b = b;
+        this.spec = spec;
+    }
+
+    static BatchSizeDistribution parse(String spec) {
+        String[] parts = spec.split(":");
+        try {
+            switch (parts[0]) {
+                case "fixed":
+                    return new BatchSizeDistribution(Kind.FIXED, Integer.parseInt(parts[1]), 0, spec);
+                case "uniform":
+                    String[] range = parts[1].split("-");
+                    return new BatchSizeDistribution(Kind.UNIFORM,
+                            Integer.parseInt(range[0]), Integer.parseInt(range[1]), spec);
+                case "exponential":
+                    int mean = Integer.parseInt(parts[1]);
+                    int max = parts.length > 2 ? Integer.parseInt(parts[2]) : mean * 10;
+                    return new BatchSizeDistribution(Kind.EXPONENTIAL, mean, max, spec);
+                default:
+                    break;
+            }
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Bad batch size distribution " + spec, e);
+        }
+        throw new IllegalArgumentException("Bad batch size distribution " + spec);
+    }
+
+    int next(Random random) {
+        return switch (kind) {
+            case FIXED -> a;
+            case UNIFORM -> a + random.nextInt(b - a + 1);
+            case EXPONENTIAL -> (int) Math.max(1, Math.min(b, Math.round(-a * Math.log(1 - random.nextDouble()))));
+        };
+    }
+
+    @Override
+    public String toString() {
+        return spec;
+    }
+}
@@ -0,0 +1,74 @@
+package com.aditya.buyogo.loadgen;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+// Latency (microseconds, measured from the intended start time) and outcome counters for one endpoint.
+final class EndpointStats {
+    final String name;
+    final Histogram latency = new ConcurrentHistogram(3);
+    final LongAdder requests = new LongAdder();
+    // Non-2xx responses
+    final LongAdder errors = new LongAdder();
+    // Timeouts and connection failures
+    final LongAdder failures = new LongAdder();
+    final LongAdder events = new LongAdder();
+    final LongAdder accepted = new LongAdder();
+    final LongAdder deduped = new LongAdder();
+    final LongAdder updated = new LongAdder();
+    final LongAdder rejected = new LongAdder();
+
+    EndpointStats(String name) {
+        this.name = name;
+    }
+
+    double throughput(double seconds) {
+        return requests.sum() / seconds;
+    }
+
+    double percentileMillis(double percentile) {
+        return latency.getValueAtPercentile(percentile) / 1000.0;
+    }
+
+    Map<String, Object> describe(double seconds) {
+        Map<String, Object> latencyMs = new LinkedHashMap<>();
+        latencyMs.put("mean", latency.getMean() / 1000.0);
+        latencyMs.put("p50", percentileMillis(50));
+        latencyMs.put("p90", percentileMillis(90));
+        latencyMs.put("p99", percentileMillis(99));
+        latencyMs.put("p99.9", percentileMillis(99.9));
+        latencyMs.put("max", latency.getMaxValue() / 1000.0);
+
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("endpoint", name);
+        stats.put("requests", requests.sum());
+        stats.put("errors", errors.sum());
+        stats.put("failures", failures.sum());
+        stats.put("requestsPerSecond", throughput(seconds));
+        if (events.sum() > 0) {
+            stats.put("eventsPerSecond", events.sum() / seconds);
+            stats.put("accepted", accepted.sum());
+            stats.put("deduped", deduped.sum());
+            stats.put("updated", updated.sum());
+            stats.put("rejected", rejected.sum());
+        }
+        stats.put("latencyMs", latencyMs);
+        return stats;
+    }
+
+    void writePercentiles(Path directory) throws IOException {
+        Path file = directory.resolve(name.replace('/', '_').replaceAll("^_", "") + ".hgrm");
+        try (PrintStream out = new PrintStream(Files.newOutputStream(file))) {
+            // Scaled to milliseconds, loadable in the HdrHistogram plotter
+            latency.outputPercentileDistribution(out, 1000.0);
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package com.aditya.buyogo.loadgen;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+// Produces /events/batch payloads with the configured id cardinality and traffic mix. Duplicates
+// and updates are drawn from a ring of recently sent events, the way client retries would be.
+final class EventStream {
+    private static final int RECENT = 100_000;
+
+    record Event(String eventId, Instant eventTime, Instant receivedTime, String machineId, String factoryId,
+                 String lineId, long durationMs, int defectCount) {
+    }
+
+    private final LoadGenConfig config;
+    private final Random random;
+    private final String runId;
+    private final Event[] recent = new Event[RECENT];
+    private long sent;
+
+    EventStream(LoadGenConfig config) {
+        this.config = config;
+        this.random = new Random(config.seed);
+        // Keeps event ids unique across runs against the same database
+        this.runId = Long.toString(System.currentTimeMillis(), 36);
+    }
+
+    synchronized List<Event> nextBatch() {
+        int size = config.batchSize.next(random);
+        List<Event> batch = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            batch.add(nextEvent());
+        }
+        return batch;
+    }
+
+    synchronized String randomMachine() {
+        return machineId(random.nextInt(config.machines));
+    }
+
+    synchronized String randomFactory() {
+        return String.format("F-%03d", random.nextInt(config.factories));
+    }
+
+    private Event nextEvent() {
+        Instant now = Instant.now();
+        double roll = random.nextDouble();
+        if (sent > 0 && roll < config.duplicateRate) {
+            return pickRecent();
+        }
+        if (sent > 0 && roll < config.duplicateRate + config.updateRate) {
+            Event original = pickRecent();
+            // Different payload and a later receivedTime, so the server should overwrite the stored row
+            Event update = new Event(original.eventId(), original.eventTime(), now, original.machineId(),
+                    original.factoryId(), original.lineId(), original.durationMs(), original.defectCount() + 1);
+            remember(update);
+            return update;
+        }
+
+        int machine = random.nextInt(config.machines);
+        int factory = machine % config.factories;
+        int line = (machine / config.factories) % config.linesPerFactory;
+        Instant eventTime = random.nextDouble() < config.outOfOrderRate
+                ? now.minusMillis((long) (random.nextDouble() * config.maxLateness.toMillis()))
+                : now.minusMillis(random.nextInt(2000));
+        Event event = new Event(
+                "LG-" + runId + "-" + sent,
+                eventTime,
+                now,
+                machineId(machine),
+                String.format("F-%03d", factory),
+                String.format("F-%03d-L-%02d", factory, line),
+                100 + random.nextInt(60_000),
+                random.nextInt(20) == 0 ? -1 : random.nextInt(6));
+        remember(event);
+        return event;
+    }
+
+    private Event pickRecent() {
+        long window = Math.min(sent, RECENT);
+        return recent[(int) ((sent - 1 - random.nextInt((int) window)) % RECENT)];
+    }
+
+    private void remember(Event event) {
+        recent[(int) (sent % RECENT)] = event;
+        sent++;
+    }
+
+    private String machineId(int machine) {
+        return String.format("M-%05d", machine);
+    }
+}
@@ -0,0 +1,115 @@
+package com.aditya.buyogo.loadgen;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// Command-line options of the form --name=value or name=value. Unknown names are rejected so a typo
+// does not silently run the default workload.
+final class LoadGenConfig {
+    String url = "http://localhost:8080";
+    // Requests started per second across all endpoints, independent of how fast responses come back
+    double rate = 20;
+    Duration warmup = Duration.ofSeconds(10);
+    Duration duration = Duration.ofSeconds(60);
+    double statesRatio = 0.2;
+    double topLinesRatio = 0.05;
+    int machines = 400;
+    int factories = 20;
+    int linesPerFactory = 12;
+    double duplicateRate = 0.05;
+    double updateRate = 0.05;
+    double outOfOrderRate = 0.1;
+    Duration maxLateness = Duration.ofMinutes(10);
+    BatchSizeDistribution batchSize = BatchSizeDistribution.parse("exponential:100:1000");
+    int clients = 8;
+    int maxInFlight = 256;
+    long seed = 42;
+    Path output = Path.of("target", "loadgen");
+
+    static LoadGenConfig parse(String[] args) {
+        LoadGenConfig config = new LoadGenConfig();
+        for (String arg : args) {
+            if (arg.isBlank()) {
+                continue;
+            }
+            String option = arg.startsWith("--") ? arg.substring(2) : arg;
+            int eq = option.indexOf('=');
+            if (eq < 0) {
+                throw new IllegalArgumentException("Expected --name=value, got " + arg);
+            }
+            config.set(option.substring(0, eq), option.substring(eq + 1));
+        }
+        if (config.statesRatio + config.topLinesRatio > 1.0) {
+            throw new IllegalArgumentException("states-ratio + top-lines-ratio must not exceed 1");
+        }
+        if (config.duplicateRate + config.updateRate > 1.0) {
+            throw new IllegalArgumentException("duplicate-rate + update-rate must not exceed 1");
+        }
+        return config;
+    }
+
+    private void set(String name, String value) {
+        switch (name) {
+            case "url" -> url = value.endsWith("/") ? value.substring(0, value.length() - 1) : value;
+            case "rate" -> rate = Double.parseDouble(value);
+            case "warmup" -> warmup = duration(value);
+            case "duration" -> duration = duration(value);
+            case "states-ratio" -> statesRatio = Double.parseDouble(value);
+            case "top-lines-ratio" -> topLinesRatio = Double.parseDouble(value);
+            case "machines" -> machines = Integer.parseInt(value);
+            case "factories" -> factories = Integer.parseInt(value);
+            case "lines-per-factory" -> linesPerFactory = Integer.parseInt(value);
+            case "duplicate-rate" -> duplicateRate = Double.parseDouble(value);
+            case "update-rate" -> updateRate = Double.parseDouble(value);
+            case "out-of-order-rate" -> outOfOrderRate = Double.parseDouble(value);
+            case "max-lateness" -> maxLateness = duration(value);
+            case "batch-size" -> batchSize = BatchSizeDistribution.parse(value);
+            case "clients" -> clients = Integer.parseInt(value);
+            case "max-in-flight" -> maxInFlight = Integer.parseInt(value);
+            case "seed" -> seed = Long.parseLong(value);
+            case "output" -> output = Path.of(value);
+            default -> throw new IllegalArgumentException("Unknown option --" + name);
+        }
+    }
+
+    // Accepts 500ms, 30s, 10m, 1h or an ISO-8601 duration
+    static Duration duration(String value) {
+        if (value.startsWith("P") || value.startsWith("p")) {
+            return Duration.parse(value);
+        }
+        if (value.endsWith("ms")) {
+            return Duration.ofMillis(Long.parseLong(value.substring(0, value.length() - 2)));
+        }
+        long amount = Long.parseLong(value.substring(0, value.length() - 1));
+        return switch (value.charAt(value.length() - 1)) {
+            case 's' -> Duration.ofSeconds(amount);
+            case 'm' -> Duration.ofMinutes(amount);
+            case 'h' -> Duration.ofHours(amount);
+            default -> throw new IllegalArgumentException("Bad duration " + value);
+        };
+    }
+
+    Map<String, Object> describe() {
+        Map<String, Object> options = new LinkedHashMap<>();
+        options.put("url", url);
+        options.put("rate", rate);
+        options.put("warmup", warmup.toString());
+        options.put("duration", duration.toString());
+        options.put("statesRatio", statesRatio);
+        options.put("topLinesRatio", topLinesRatio);
+        options.put("machines", machines);
+        options.put("factories", factories);
+        options.put("linesPerFactory", linesPerFactory);
+        options.put("duplicateRate", duplicateRate);
+        options.put("updateRate", updateRate);
+        options.put("outOfOrderRate", outOfOrderRate);
+        options.put("maxLateness", maxLateness.toString());
+        options.put("batchSize", batchSize.toString());
+        options.put("clients", clients);
+        options.put("maxInFlight", maxInFlight);
+        options.put("seed", seed);
+        return options;
+    }
+}
@@ -0,0 +1,213 @@
+package com.aditya.buyogo.loadgen;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+// Open-loop load generator for /events/batch and /states. Requests are started on a fixed schedule
+// whether or not earlier ones have completed, and latency is measured from the scheduled start, so
+// a slow server shows up as latency instead of as a quietly reduced request rate.
+//
+//   mvn -Ploadgen -DskipTests verify -Dloadgen.args="--rate=50 --duration=60s"
+public final class LoadGenerator {
+    private static final long LATE_START_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final LoadGenConfig config;
+    private final EventStream stream;
+    private final ObjectMapper mapper = new ObjectMapper()
+            .registerModule(new JavaTimeModule())
+            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+    private final HttpClient client = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofSeconds(5))
+            .build();
+    private final EndpointStats batchStats = new EndpointStats("/events/batch");
+    private final EndpointStats statesStats = new EndpointStats("/states");
+    private final EndpointStats topLinesStats = new EndpointStats("/states/top-defect-lines");
+    private long lateStarts;
+
+    private LoadGenerator(LoadGenConfig config) {
+        this.config = config;
+        this.stream = new EventStream(config);
+    }
+
+    public static void main(String[] args) throws Exception {
+        LoadGenConfig config = LoadGenConfig.parse(args);
+        new LoadGenerator(config).run();
+    }
+
+    private void run() throws Exception {
+        System.out.println("Load generator options: " + config.describe());
+        Semaphore inFlight = new Semaphore(config.maxInFlight);
+        Random mix = new Random(config.seed + 1);
+        long interval = (long) (TimeUnit.SECONDS.toNanos(1) / config.rate);
+        long start = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(100);
+        long measureFrom = start + config.warmup.toNanos();
+        long end = measureFrom + config.duration.toNanos();
+
+        for (long i = 0; ; i++) {
+            long intended = start + i * interval;
+            if (intended >= end) {
+                break;
+            }
+            long wait = intended - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            String clientId = "loadgen-" + (i % config.clients);
+            double roll = mix.nextDouble();
+            EndpointStats stats;
+            HttpRequest request;
+            int events = 0;
+            if (roll < config.statesRatio) {
+                stats = statesStats;
+                request = statesRequest(clientId);
+            } else if (roll < config.statesRatio + config.topLinesRatio) {
+                stats = topLinesStats;
+                request = topLinesRequest(clientId);
+            } else {
+                List<EventStream.Event> batch = stream.nextBatch();
+                events = batch.size();
+                stats = batchStats;
+                request = batchRequest(clientId, batch);
+            }
+
+            inFlight.acquire();
+            boolean measured = intended >= measureFrom;
+            if (measured && System.nanoTime() - intended > LATE_START_NANOS) {
+                lateStarts++;
+            }
+            int batchSize = events;
+            client.sendAsync(request, HttpResponse.BodyHandlers.ofString()).whenComplete((response, error) -> {
+                try {
+                    if (measured) {
+                        record(stats, intended, batchSize, response, error);
+                    }
+                } finally {
+                    inFlight.release();
+                }
+            });
+        }
+
+        if (!inFlight.tryAcquire(config.maxInFlight, 60, TimeUnit.SECONDS)) {
+            System.out.println("Gave up waiting for " + (config.maxInFlight - inFlight.availablePermits())
+                    + " in-flight requests");
+        }
+        report(config.duration.toNanos() / 1e9);
+    }
+
+    private void record(EndpointStats stats, long intended, int events, HttpResponse<String> response, Throwable error) {
+        stats.latency.recordValue(Math.max(0, (System.nanoTime() - intended) / 1000));
+        stats.requests.increment();
+        if (error != null) {
+            stats.failures.increment();
+            return;
+        }
+        if (response.statusCode() / 100 != 2) {
+            stats.errors.increment();
+            return;
+        }
+        if (events > 0) {
+            stats.events.add(events);
+            try {
+                JsonNode data = mapper.readTree(response.body()).path("data");
+                stats.accepted.add(data.path("accepted").asLong());
+                stats.deduped.add(data.path("deduped").asLong());
+                stats.updated.add(data.path("updated").asLong());
+                stats.rejected.add(data.path("rejected").asLong());
+            } catch (Exception e) {
+                stats.errors.increment();
+            }
+        }
+    }
+
+    private HttpRequest batchRequest(String clientId, List<EventStream.Event> batch) throws Exception {
+        return HttpRequest.newBuilder(URI.create(config.url + "/events/batch"))
+                .timeout(Duration.ofSeconds(30))
+                .header("Content-Type", "application/json")
+                .header("X-Client-Id", clientId)
+                .POST(HttpRequest.BodyPublishers.ofByteArray(mapper.writeValueAsBytes(batch)))
+                .build();
+    }
+
+    private HttpRequest statesRequest(String clientId) {
+        Instant now = Instant.now();
+        return get(clientId, "/states?machineId=" + encode(stream.randomMachine())
+                + "&start=" + now.minus(Duration.ofHours(1)) + "&end=" + now);
+    }
+
+    private HttpRequest topLinesRequest(String clientId) {
+        Instant now = Instant.now();
+        return get(clientId, "/states/top-defect-lines?factoryId=" + encode(stream.randomFactory())
+                + "&from=" + now.minus(Duration.ofDays(1)) + "&to=" + now + "&limit=5");
+    }
+
+    private HttpRequest get(String clientId, String pathAndQuery) {
+        return HttpRequest.newBuilder(URI.create(config.url + pathAndQuery))
+                .timeout(Duration.ofSeconds(30))
+                .header("X-Client-Id", clientId)
+                .GET()
+                .build();
+    }
+
+    private static String encode(String value) {
+        return URLEncoder.encode(value, StandardCharsets.UTF_8);
+    }
+
+    private void report(double seconds) throws Exception {
+        List<EndpointStats> all = List.of(batchStats, statesStats, topLinesStats);
+
+        System.out.println();
+        System.out.printf(Locale.ROOT, "Measured %.0f s at a target of %.1f req/s; %d requests started more than 1 ms late%n",
+                seconds, config.rate, lateStarts);
+        System.out.println();
+        System.out.println("| Endpoint | Requests | Errors | Req/s | Events/s | p50 ms | p90 ms | p99 ms | p99.9 ms | max ms |");
+        System.out.println("|----------|----------|--------|-------|----------|--------|--------|--------|----------|--------|");
+        for (EndpointStats stats : all) {
+            if (stats.requests.sum() == 0) {
+                continue;
+            }
+            System.out.printf(Locale.ROOT, "| `%s` | %d | %d | %.1f | %s | %.2f | %.2f | %.2f | %.2f | %.2f |%n",
+                    stats.name, stats.requests.sum(), stats.errors.sum() + stats.failures.sum(),
+                    stats.throughput(seconds),
+                    stats.events.sum() > 0 ? String.format(Locale.ROOT, "%.0f", stats.events.sum() / seconds) : "-",
+                    stats.percentileMillis(50), stats.percentileMillis(90), stats.percentileMillis(99),
+                    stats.percentileMillis(99.9), stats.latency.getMaxValue() / 1000.0);
+        }
+        System.out.printf("%nServer outcomes: accepted=%d deduped=%d updated=%d rejected=%d of %d events%n",
+                batchStats.accepted.sum(), batchStats.deduped.sum(), batchStats.updated.sum(),
+                batchStats.rejected.sum(), batchStats.events.sum());
+
+        Files.createDirectories(config.output);
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("finishedAt", Instant.now().toString());
+        report.put("options", config.describe());
+        report.put("measuredSeconds", seconds);
+        report.put("lateStarts", lateStarts);
+        report.put("endpoints", all.stream().map(s -> s.describe(seconds)).toList());
+        mapper.writerWithDefaultPrettyPrinter().writeValue(config.output.resolve("report.json").toFile(), report);
+        for (EndpointStats stats : all) {
+            stats.writePercentiles(config.output);
+        }
+        System.out.println("Report and .hgrm percentile files written to " + config.output.toAbsolutePath());
+    }
+}
@@ -0,0 +1,200 @@
+package com.aditya.buyogo.loadgen;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// Boots the application repeatedly in each deployment mode and measures the time from process start
+// to the first accepted POST /events/batch, plus the resident set size at that moment (Linux only).
+// Build both layouts first (mvn -Pfaststart package, which also leaves the executable jar), then:
+//
+//   mvn -Ploadgen -DskipTests verify -Dloadgen.main=com.aditya.buyogo.loadgen.StartupBenchmark \
+//       -Dloadgen.args="runs=5 modes=jar,aot,aot-cds"
+public final class StartupBenchmark {
+    private static final Pattern STARTED = Pattern.compile("Started \\w+ in ([0-9.]+) seconds");
+
+    private int runs = 3;
+    private List<String> modes = List.of("jar", "aot", "aot-cds");
+    private int port = 18080;
+    private Path jar = Path.of("target", "buyogo-0.0.1-SNAPSHOT.jar");
+    private Path faststart = Path.of("target", "faststart");
+    private Duration timeout = Duration.ofMinutes(2);
+    private Path output = Path.of("target", "startup");
+
+    private final HttpClient client = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofSeconds(1))
+            .build();
+
+    public static void main(String[] args) throws Exception {
+        StartupBenchmark benchmark = new StartupBenchmark();
+        for (String arg : args) {
+            if (!arg.isBlank()) {
+                benchmark.set(arg.startsWith("--") ? arg.substring(2) : arg);
+            }
+        }
+        benchmark.run();
+    }
+
+    private void set(String option) {
+        int eq = option.indexOf('=');
+        if (eq < 0) {
+            throw new IllegalArgumentException("Expected --name=value, got " + option);
+        }
+        String value = option.substring(eq + 1);
+        switch (option.substring(0, eq)) {
+            case "runs" -> runs = Integer.parseInt(value);
+            case "modes" -> modes = Arrays.asList(value.split(","));
+            case "port" -> port = Integer.parseInt(value);
+            case "jar" -> jar = Path.of(value);
+            case "faststart" -> faststart = Path.of(value);
+            case "timeout" -> timeout = LoadGenConfig.duration(value);
+            case "output" -> output = Path.of(value);
+            default -> throw new IllegalArgumentException("Unknown option --" + option.substring(0, eq));
+        }
+    }
+
+    // The fast-start modes run from inside the faststart directory, as deployed: a CDS archive is only
+    // accepted when the classpath matches the training run's exactly, relative paths included
+    private ProcessBuilder command(String mode) {
+        String app = jar.getFileName().toString().replace(".jar", "-app.jar");
+        List<String> command = new ArrayList<>(List.of("java"));
+        ProcessBuilder builder = new ProcessBuilder(command);
+        switch (mode) {
+            case "jar" -> command.addAll(List.of("-jar", jar.toString()));
+            case "aot" -> {
+                command.addAll(List.of("-Dspring.aot.enabled=true", "-jar", app));
+                builder.directory(faststart.toFile());
+            }
+            case "aot-cds" -> {
+                // -Xshare:on fails the start instead of silently running without the archive
+                command.addAll(List.of("-XX:SharedArchiveFile=buyogo.jsa", "-Xshare:on",
+                        "-Dspring.aot.enabled=true", "-jar", app));
+                builder.directory(faststart.toFile());
+            }
+            default -> throw new IllegalArgumentException("Unknown mode " + mode + " (jar, aot or aot-cds)");
+        }
+        command.addAll(List.of("--server.port=" + port, "--spring.jpa.show-sql=false"));
+        return builder;
+    }
+
+    private void run() throws Exception {
+        Files.createDirectories(output);
+        StringBuilder table = new StringBuilder()
+                .append("| Mode | Runs | First batch p50 ms | min ms | max ms | Boot-reported p50 s | RSS p50 MB |\n")
+                .append("|------|------|--------------------|--------|--------|---------------------|------------|\n");
+        for (String mode : modes) {
+            List<Double> firstBatch = new ArrayList<>();
+            List<Double> reported = new ArrayList<>();
+            List<Double> rss = new ArrayList<>();
+            for (int i = 0; i < runs; i++) {
+                Sample sample = boot(mode, i);
+                System.out.printf(Locale.ROOT, "%s run %d: first batch %.0f ms, started in %.3f s, RSS %.0f MB%n",
+                        mode, i + 1, sample.firstBatchMs, sample.reportedSeconds, sample.rssMb);
+                firstBatch.add(sample.firstBatchMs);
+                reported.add(sample.reportedSeconds);
+                rss.add(sample.rssMb);
+            }
+            table.append(String.format(Locale.ROOT, "| %s | %d | %.0f | %.0f | %.0f | %.3f | %.0f |%n",
+                    mode, runs, median(firstBatch), min(firstBatch), max(firstBatch), median(reported), median(rss)));
+        }
+        System.out.println();
+        System.out.print(table);
+        Files.writeString(output.resolve("report.md"), table);
+    }
+
+    private record Sample(double firstBatchMs, double reportedSeconds, double rssMb) {
+    }
+
+    private Sample boot(String mode, int run) throws Exception {
+        Path log = output.resolve(mode + "-" + (run + 1) + ".log").toAbsolutePath();
+        long start = System.nanoTime();
+        Process process = command(mode).redirectErrorStream(true).redirectOutput(log.toFile()).start();
+        try {
+            long deadline = start + timeout.toNanos();
+            while (!accepted(mode, run)) {
+                if (!process.isAlive()) {
+                    throw new IllegalStateException(mode + " exited with " + process.exitValue() + ", see " + log);
+                }
+                if (System.nanoTime() > deadline) {
+                    throw new IllegalStateException(mode + " did not accept a batch within " + timeout + ", see " + log);
+                }
+                Thread.sleep(10);
+            }
+            double firstBatchMs = (System.nanoTime() - start) / 1e6;
+            double rssMb = rssKb(process.pid()) / 1024.0;
+            Matcher started = STARTED.matcher(Files.readString(log));
+            double reported = started.find() ? Double.parseDouble(started.group(1)) : Double.NaN;
+            return new Sample(firstBatchMs, reported, rssMb);
+        } finally {
+            process.destroy();
+            if (!process.waitFor(30, TimeUnit.SECONDS)) {
+                process.destroyForcibly().waitFor();
+            }
+        }
+    }
+
+    // One fresh event per attempt; true once the app has stored it
+    private boolean accepted(String mode, int run) throws InterruptedException {
+        Instant now = Instant.now();
+        String body = "[{\"eventId\":\"startup-" + mode + "-" + (run + 1) + "-" + System.nanoTime()
+                + "\",\"eventTime\":\"" + now.minusSeconds(60) + "\",\"receivedTime\":\"" + now
+                + "\",\"machineId\":\"STARTUP-M\",\"factoryId\":\"STARTUP-F\",\"lineId\":\"STARTUP-L\""
+                + ",\"durationMs\":100,\"defectCount\":0}]";
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/events/batch"))
+                .timeout(Duration.ofSeconds(10))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build();
+        try {
+            HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+            return response.statusCode() / 100 == 2 && response.body().contains("\"accepted\":1");
+        } catch (ConnectException e) {
+            return false;
+        } catch (IOException e) {
+            // Port bound but the context still refreshing
+            return false;
+        }
+    }
+
+    private static double rssKb(long pid) throws IOException {
+        Path status = Path.of("/proc", Long.toString(pid), "status");
+        if (!Files.exists(status)) {
+            return Double.NaN;
+        }
+        for (String line : Files.readAllLines(status)) {
+            if (line.startsWith("VmRSS:")) {
+                return Double.parseDouble(line.replaceAll("[^0-9]", ""));
+            }
+        }
+        return Double.NaN;
+    }
+
+    private static double median(List<Double> values) {
+        List<Double> sorted = values.stream().sorted().toList();
+        int mid = sorted.size() / 2;
+        return sorted.size() % 2 == 1 ? sorted.get(mid) : (sorted.get(mid - 1) + sorted.get(mid)) / 2;
+    }
+
+    private static double min(List<Double> values) {
+        return values.stream().mapToDouble(Double::doubleValue).min().orElse(Double.NaN);
+    }
+
+    private static double max(List<Double> values) {
+        return values.stream().mapToDouble(Double::doubleValue).max().orElse(Double.NaN);
+    }
+}
@@ -0,0 +1,20 @@
+package com.aditya.buyogo.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.nio.file.Path;
+
+@Data
+@ConfigurationProperties(prefix = "buyogo.archive")
+public class ArchiveProperties {
+    // On: events older than afterDays move from machine_event to columnar files under directory.
+    private boolean enabled = false;
+    private Path directory = Path.of("data", "archive");
+    // Whole UTC days that ended at least this many days ago are archived; keep it below
+    // buyogo.partitioning.retention-days, or partitions are dropped before they are archived.
+    private int afterDays = 30;
+    // Each file is built in memory, so a busy day is split across several files of up to this many rows.
+    private int maxRowsPerFile = 500_000;
+    private String cron = "0 45 * * * *";
+}
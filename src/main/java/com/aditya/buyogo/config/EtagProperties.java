@@ -0,0 +1,14 @@
+package com.aditya.buyogo.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@Data
+@ConfigurationProperties(prefix = "buyogo.etags")
+public class EtagProperties {
+    // On: GET /states and /states/top-defect-lines carry an ETag and answer If-None-Match with 304
+    // while nothing has been written for the machine or factory (DataVersions). The versions only see
+    // this node's ingestion: only turn this on for a single node writing to a single database, without
+    // read replicas. Startup fails when it is combined with routing, sharding or lanes.
+    private boolean enabled = false;
+}
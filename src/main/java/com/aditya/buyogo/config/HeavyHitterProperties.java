@@ -0,0 +1,21 @@
+package com.aditya.buyogo.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Data
+@ConfigurationProperties(prefix = "buyogo.heavy-hitters")
+public class HeavyHitterProperties {
+    // On: HeavyHittersService keeps Space-Saving summaries of defects per machine and per line,
+    // globally and per factory, in event-time buckets (GET /states/heavy-hitters).
+    private boolean enabled = true;
+    private Duration bucket = Duration.ofHours(1);
+    // Windows reaching further back than this are answered exactly from the database.
+    private Duration retention = Duration.ofHours(24);
+    // Most counters per summary. While a bucket has no more distinct ids than this its counts are
+    // exact; past it, an id that is not listed has at most (defects in the bucket / capacity) there.
+    // Summaries grow as ids arrive, at about 60 bytes per counter.
+    private int capacity = 2048;
+}
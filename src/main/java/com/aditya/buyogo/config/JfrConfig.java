@@ -0,0 +1,34 @@
+package com.aditya.buyogo.config;
+
+import com.aditya.buyogo.services.BatchIngestEvent;
+import com.aditya.buyogo.services.DedupLookupEvent;
+import com.aditya.buyogo.services.PersistChunkEvent;
+import com.aditya.buyogo.services.StateQueryEvent;
+import jdk.jfr.Event;
+import jdk.jfr.FlightRecorder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.List;
+
+// The event types are @Registered(false): until registered here, begin/shouldCommit/commit do
+// nothing whatever recording is running. Registration is JVM-wide, so the last context to start wins.
+@Slf4j
+@Configuration
+public class JfrConfig {
+    static final List<Class<? extends Event>> EVENT_TYPES = List.of(
+            BatchIngestEvent.class, DedupLookupEvent.class, PersistChunkEvent.class, StateQueryEvent.class);
+
+    public JfrConfig(JfrProperties properties) {
+        for (Class<? extends Event> type : EVENT_TYPES) {
+            if (properties.isEnabled()) {
+                FlightRecorder.register(type);
+            } else {
+                FlightRecorder.unregister(type);
+            }
+        }
+        if (properties.isEnabled()) {
+            log.info("Registered JFR event types {}", EVENT_TYPES.stream().map(Class::getSimpleName).toList());
+        }
+    }
+}
@@ -0,0 +1,11 @@
+package com.aditya.buyogo.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@Data
+@ConfigurationProperties(prefix = "buyogo.jfr")
+public class JfrProperties {
+    // Registers the buyogo.* JFR event types so recordings capture them; unregistered, they cost a branch.
+    private boolean enabled = false;
+}
@@ -0,0 +1,21 @@
+package com.aditya.buyogo.config;
+
+// Execution lanes for buyogo.lanes: each has its own admission limits (Bulkheads) and Hikari pool (LaneDataSource)
+public enum Lane {
+    // POST /events/batch and the WAL drainer
+    INGEST("ingest"),
+    // GET /states, GET /states/cardinality and GET /events
+    POINT("point"),
+    // GET /states/top-defect-lines and database-backed GET /states/heavy-hitters
+    SCAN("scan");
+
+    private final String tag;
+
+    Lane(String tag) {
+        this.tag = tag;
+    }
+
+    public String tag() {
+        return tag;
+    }
+}
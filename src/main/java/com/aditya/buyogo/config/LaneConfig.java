@@ -0,0 +1,85 @@
+package com.aditya.buyogo.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.flyway.FlywayDataSource;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.context.annotation.Profile;
+
+import javax.sql.DataSource;
+import java.util.HashMap;
+import java.util.Map;
+
+// Replaces the auto-configured DataSource with a shared pool plus one pool per Lane behind LaneDataSource.
+// The shared pool is sized by spring.datasource.hikari.*, the lane pools by buyogo.lanes.<lane>.pool-size.
+// Not available in the reactive profile, whose routes never enter a lane.
+@Configuration
+@Profile("!reactive")
+@ConditionalOnProperty(prefix = "buyogo.lanes", name = "enabled", havingValue = "true")
+public class LaneConfig {
+
+    public LaneConfig(RoutingProperties routing) {
+        if (routing.isEnabled()) {
+            throw new IllegalStateException("buyogo.lanes and buyogo.datasource.routing cannot both be enabled");
+        }
+    }
+
+    @Bean
+    @FlywayDataSource
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource sharedDataSource(DataSourceProperties properties) {
+        HikariDataSource pool = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        pool.setPoolName("shared");
+        return pool;
+    }
+
+    @Bean
+    public HikariDataSource ingestDataSource(DataSourceProperties properties, LaneProperties lanes) {
+        return lanePool(properties, lanes, Lane.INGEST);
+    }
+
+    @Bean
+    public HikariDataSource pointDataSource(DataSourceProperties properties, LaneProperties lanes) {
+        return lanePool(properties, lanes, Lane.POINT);
+    }
+
+    @Bean
+    public HikariDataSource scanDataSource(DataSourceProperties properties, LaneProperties lanes) {
+        return lanePool(properties, lanes, Lane.SCAN);
+    }
+
+    @Bean
+    @Primary
+    public DataSource dataSource(@Qualifier("sharedDataSource") DataSource shared,
+                                 @Qualifier("ingestDataSource") DataSource ingest,
+                                 @Qualifier("pointDataSource") DataSource point,
+                                 @Qualifier("scanDataSource") DataSource scan) {
+        Map<Object, Object> targets = new HashMap<>();
+        targets.put(Lane.INGEST, ingest);
+        targets.put(Lane.POINT, point);
+        targets.put(Lane.SCAN, scan);
+        LaneDataSource routing = new LaneDataSource();
+        routing.setTargetDataSources(targets);
+        routing.setDefaultTargetDataSource(shared);
+        routing.afterPropertiesSet();
+        return routing;
+    }
+
+    private static HikariDataSource lanePool(DataSourceProperties properties, LaneProperties lanes, Lane lane) {
+        LaneProperties.Settings settings = lanes.get(lane);
+        HikariDataSource pool = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        pool.setPoolName(lane.tag());
+        pool.setMaximumPoolSize(settings.getPoolSize());
+        pool.setConnectionTimeout(settings.getTimeout().toMillis());
+        if (settings.getStatementTimeout() != null) {
+            // pgjdbc passes this to the server as a startup option on every connection in the pool
+            pool.addDataSourceProperty("options", "-c statement_timeout=" + settings.getStatementTimeout().toMillis());
+        }
+        return pool;
+    }
+}
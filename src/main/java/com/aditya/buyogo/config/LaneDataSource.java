@@ -0,0 +1,27 @@
+package com.aditya.buyogo.config;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+
+// Connections opened while a thread is inside a lane come from that lane's pool; everything else
+// (startup, scheduled jobs, the live-states poller) uses the shared spring.datasource pool. The lane is
+// entered before any transaction starts, so unlike RoutingDataSource no lazy proxy is needed.
+public class LaneDataSource extends AbstractRoutingDataSource {
+    private static final ThreadLocal<Lane> currentLane = new ThreadLocal<>();
+
+    public static void enter(Lane lane) {
+        currentLane.set(lane);
+    }
+
+    public static void exit() {
+        currentLane.remove();
+    }
+
+    public static Lane currentLane() {
+        return currentLane.get();
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        return currentLane.get();
+    }
+}
@@ -0,0 +1,47 @@
+package com.aditya.buyogo.config;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Data
+@ConfigurationProperties(prefix = "buyogo.lanes")
+public class LaneProperties {
+    // When enabled, ingestion, point queries and scans are admitted and pooled separately (see Lane).
+    private boolean enabled = false;
+    private Settings ingest = new Settings(8, 64, Duration.ofSeconds(10), 4);
+    private Settings point = new Settings(16, 256, Duration.ofSeconds(2), 4);
+    private Settings scan = new Settings(2, 16, Duration.ofSeconds(10), 2);
+
+    public Settings get(Lane lane) {
+        return switch (lane) {
+            case INGEST -> ingest;
+            case POINT -> point;
+            case SCAN -> scan;
+        };
+    }
+
+    @Data
+    @NoArgsConstructor
+    public static class Settings {
+        // Requests running in the lane at once.
+        private int concurrency;
+        // Requests allowed to wait for a running slot; any more are refused with 503 straight away.
+        private int queueCapacity;
+        // Longest wait for a running slot, and for a connection from the lane's pool.
+        private Duration timeout;
+        // Connections in the lane's own Hikari pool.
+        private int poolSize;
+        // Postgres statement_timeout on the lane's connections; unset keeps the server default.
+        private Duration statementTimeout;
+
+        Settings(int concurrency, int queueCapacity, Duration timeout, int poolSize) {
+            this.concurrency = concurrency;
+            this.queueCapacity = queueCapacity;
+            this.timeout = timeout;
+            this.poolSize = poolSize;
+        }
+    }
+}
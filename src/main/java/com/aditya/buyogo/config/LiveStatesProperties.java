@@ -0,0 +1,24 @@
+package com.aditya.buyogo.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Data
+@ConfigurationProperties(prefix = "buyogo.live")
+public class LiveStatesProperties {
+    // Changes are coalesced and pushed at most this often; subscribers may ask for a slower rate.
+    private Duration publishInterval = Duration.ofSeconds(1);
+    // Longest rolling window a subscriber may ask for; windows are kept at one-minute resolution.
+    private Duration maxWindow = Duration.ofHours(6);
+    // Comment line sent to every subscriber this often so dead connections are noticed.
+    private Duration heartbeat = Duration.ofSeconds(30);
+    // New subscriptions get 503 beyond this many open streams.
+    private int maxSubscribers = 50000;
+    // A subscriber whose write has not finished after this long (a client that stopped reading) is dropped.
+    private Duration writeTimeout = Duration.ofSeconds(5);
+    // Threads that write to subscribers. A client that stops reading holds one until Tomcat's own write
+    // timeout gives up on the socket; the others keep being served by the rest.
+    private int writerThreads = 16;
+}
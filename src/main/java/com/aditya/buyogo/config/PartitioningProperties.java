@@ -0,0 +1,18 @@
+package com.aditya.buyogo.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@Data
+@ConfigurationProperties(prefix = "buyogo.partitioning")
+public class PartitioningProperties {
+    public enum Interval { DAILY, WEEKLY }
+
+    private boolean enabled = false;
+    private Interval interval = Interval.DAILY;
+    // Number of future partitions kept ready beyond the current one.
+    private int premake = 7;
+    // Partitions whose whole range ends before now - retentionDays are dropped; 0 keeps everything.
+    private int retentionDays = 90;
+    private String cron = "0 15 * * * *";
+}
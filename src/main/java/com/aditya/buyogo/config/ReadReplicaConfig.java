@@ -0,0 +1,66 @@
+package com.aditya.buyogo.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.flyway.FlywayDataSource;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.util.Map;
+
+// Replaces the auto-configured DataSource with a primary and a replica pool behind RoutingDataSource.
+// The primary pool is sized by spring.datasource.hikari.*, the replica by buyogo.datasource.replica.hikari.*.
+@Configuration
+@ConditionalOnProperty(prefix = "buyogo.datasource.routing", name = "enabled", havingValue = "true")
+public class ReadReplicaConfig {
+
+    @Bean
+    @FlywayDataSource
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource primaryDataSource(DataSourceProperties properties) {
+        HikariDataSource pool = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        pool.setPoolName("primary");
+        return pool;
+    }
+
+    // Not injectable by type, so it cannot be mistaken for the spring.datasource properties
+    @Bean(autowireCandidate = false)
+    @ConfigurationProperties("buyogo.datasource.replica")
+    public DataSourceProperties replicaDataSourceProperties() {
+        return new DataSourceProperties();
+    }
+
+    @Bean
+    @ConfigurationProperties("buyogo.datasource.replica.hikari")
+    public HikariDataSource replicaDataSource() {
+        HikariDataSource pool = replicaDataSourceProperties().initializeDataSourceBuilder()
+                .type(HikariDataSource.class).build();
+        pool.setPoolName("replica");
+        pool.setReadOnly(true);
+        return pool;
+    }
+
+    @Bean
+    @Primary
+    public DataSource dataSource(@Qualifier("primaryDataSource") DataSource primary,
+                                 @Qualifier("replicaDataSource") DataSource replica) {
+        RoutingDataSource routing = new RoutingDataSource();
+        routing.setTargetDataSources(Map.of(
+                RoutingDataSource.Route.PRIMARY, primary,
+                RoutingDataSource.Route.REPLICA, replica));
+        routing.setDefaultTargetDataSource(primary);
+        routing.afterPropertiesSet();
+        return new LazyConnectionDataSourceProxy(routing);
+    }
+
+    @Bean
+    public ReadYourWritesFilter readYourWritesFilter(RoutingProperties properties) {
+        return new ReadYourWritesFilter(properties.getReadYourWritesWindow(), properties.getClientIdHeader());
+    }
+}
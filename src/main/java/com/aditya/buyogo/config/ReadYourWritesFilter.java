@@ -0,0 +1,89 @@
+package com.aditya.buyogo.config;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Keeps a client's reads on the primary for a short window after it writes, so it does not read
+// past its own writes while the replica catches up.
+public class ReadYourWritesFilter extends OncePerRequestFilter {
+    private static final int SWEEP_THRESHOLD = 10_000;
+
+    private final Duration window;
+    private final String clientIdHeader;
+    private final Map<String, Instant> lastWrites = new ConcurrentHashMap<>();
+
+    public ReadYourWritesFilter(Duration window, String clientIdHeader) {
+        this.window = window;
+        this.clientIdHeader = clientIdHeader;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return window.isZero() || window.isNegative();
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        String client = clientId(request);
+        if (!isRead(request)) {
+            try {
+                chain.doFilter(request, response);
+            } finally {
+                // Recorded after the write has committed, so the window covers the replica's lag from then.
+                recordWrite(client);
+            }
+            return;
+        }
+        if (!recentlyWrote(client)) {
+            chain.doFilter(request, response);
+            return;
+        }
+        RoutingDataSource.pinPrimary();
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            RoutingDataSource.unpin();
+        }
+    }
+
+    private String clientId(HttpServletRequest request) {
+        String header = request.getHeader(clientIdHeader);
+        return header != null && !header.isBlank() ? header : request.getRemoteAddr();
+    }
+
+    private boolean isRead(HttpServletRequest request) {
+        String method = request.getMethod();
+        return "GET".equals(method) || "HEAD".equals(method) || "OPTIONS".equals(method);
+    }
+
+    private void recordWrite(String client) {
+        Instant now = Instant.now();
+        lastWrites.put(client, now);
+        if (lastWrites.size() > SWEEP_THRESHOLD) {
+            Instant cutoff = now.minus(window);
+            lastWrites.values().removeIf(t -> t.isBefore(cutoff));
+        }
+    }
+
+    private boolean recentlyWrote(String client) {
+        Instant last = lastWrites.get(client);
+        if (last == null) {
+            return false;
+        }
+        if (last.plus(window).isAfter(Instant.now())) {
+            return true;
+        }
+        lastWrites.remove(client, last);
+        return false;
+    }
+}
@@ -0,0 +1,34 @@
+package com.aditya.buyogo.config;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+// Connections opened inside a read-only transaction go to the replica, everything else to the
+// primary. Must be wrapped in a LazyConnectionDataSourceProxy: the transaction's read-only flag is
+// only set after Hibernate has asked for its connection.
+public class RoutingDataSource extends AbstractRoutingDataSource {
+    public enum Route { PRIMARY, REPLICA }
+
+    private static final ThreadLocal<Boolean> primaryPinned = new ThreadLocal<>();
+
+    // Sends this thread's reads to the primary as well, until unpin().
+    public static void pinPrimary() {
+        primaryPinned.set(Boolean.TRUE);
+    }
+
+    public static void unpin() {
+        primaryPinned.remove();
+    }
+
+    public static Route currentRoute() {
+        if (primaryPinned.get() == null && TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            return Route.REPLICA;
+        }
+        return Route.PRIMARY;
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        return currentRoute();
+    }
+}
@@ -0,0 +1,17 @@
+package com.aditya.buyogo.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Data
+@ConfigurationProperties(prefix = "buyogo.datasource.routing")
+public class RoutingProperties {
+    // When enabled, read-only transactions use the pool configured under buyogo.datasource.replica.
+    private boolean enabled = false;
+    // Reads from a client stay on the primary for this long after its last write; zero turns it off.
+    private Duration readYourWritesWindow = Duration.ZERO;
+    // Identifies a client for read-your-writes; requests without it fall back to the remote address.
+    private String clientIdHeader = "X-Client-Id";
+}
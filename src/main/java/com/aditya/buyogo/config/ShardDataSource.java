@@ -0,0 +1,48 @@
+package com.aditya.buyogo.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+
+import javax.sql.DataSource;
+
+// Connections opened while a thread is bound to a shard (Shards.onShard) come from that shard's pool,
+// everything else from the home shard's. Wrapped in a LazyConnectionDataSourceProxy: a read-only
+// transaction begun before the shard is known (StateService's) must not hold a home connection meanwhile.
+public class ShardDataSource extends AbstractRoutingDataSource {
+    private static final ThreadLocal<String> currentShard = new ThreadLocal<>();
+
+    public static void enter(String shard) {
+        if (shard == null) {
+            currentShard.remove();
+        } else {
+            currentShard.set(shard);
+        }
+    }
+
+    public static String currentShard() {
+        return currentShard.get();
+    }
+
+    // The pool itself, for work that must not follow the thread's shard
+    public DataSource pool(String shard) {
+        DataSource pool = getResolvedDataSources().get(shard);
+        if (pool == null) {
+            throw new IllegalArgumentException("Unknown shard " + shard);
+        }
+        return pool;
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        return currentShard.get();
+    }
+
+    // The home pool is a bean of its own and closed by the context
+    public void close() {
+        for (DataSource pool : getResolvedDataSources().values()) {
+            if (pool != getResolvedDefaultDataSource() && pool instanceof HikariDataSource hikari) {
+                hikari.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package com.aditya.buyogo.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.flywaydb.core.Flyway;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.flyway.FlywayDataSource;
+import org.springframework.boot.autoconfigure.flyway.FlywayProperties;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.boot.jdbc.DatabaseDriver;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+// Replaces the auto-configured DataSource with the home shard's pool (spring.datasource.*) plus one pool
+// per buyogo.sharding.shards.<name> behind ShardDataSource. Flyway migrates home as usual; the other
+// shards are migrated here, with the same locations, before JPA validates the schema. Not available in
+// the reactive profile, whose store writes through R2DBC, nor together with read replicas, lanes or the
+// columnar archive, which each assume one machine_event table.
+@Configuration
+@Profile("!reactive")
+@ConditionalOnProperty(prefix = "buyogo.sharding", name = "enabled", havingValue = "true")
+public class ShardingConfig {
+    // Bits of a surrogate id below the shard's id range
+    static final int ID_RANGE_SHIFT = 48;
+
+    public ShardingConfig(ShardingProperties sharding, RoutingProperties routing, LaneProperties lanes, Environment environment) {
+        if (routing.isEnabled() || lanes.isEnabled()
+                || environment.getProperty("buyogo.archive.enabled", Boolean.class, false)) {
+            throw new IllegalStateException(
+                    "buyogo.sharding cannot be combined with buyogo.datasource.routing, buyogo.lanes or buyogo.archive");
+        }
+        Set<Integer> ranges = new HashSet<>();
+        sharding.getShards().forEach((name, shard) -> {
+            if (name.equals(sharding.getHome())) {
+                throw new IllegalStateException("Shard " + name + " is the home shard, configured by spring.datasource");
+            }
+            if (shard.getIdRange() < 1 || shard.getIdRange() >= 1 << (63 - ID_RANGE_SHIFT) || !ranges.add(shard.getIdRange())) {
+                throw new IllegalStateException("Shard " + name + " needs an id-range of its own between 1 and "
+                        + ((1 << (63 - ID_RANGE_SHIFT)) - 1));
+            }
+        });
+    }
+
+    @Bean
+    @FlywayDataSource
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource homeDataSource(DataSourceProperties properties, ShardingProperties sharding) {
+        HikariDataSource pool = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        pool.setPoolName(sharding.getHome());
+        return pool;
+    }
+
+    @Bean
+    public ShardDataSource shardDataSource(@Qualifier("homeDataSource") DataSource home, ShardingProperties sharding,
+                                           FlywayProperties flyway) {
+        Map<Object, Object> targets = new HashMap<>();
+        targets.put(sharding.getHome(), home);
+        sharding.getShards().forEach((name, shard) -> {
+            HikariDataSource pool = DataSourceBuilder.create().type(HikariDataSource.class)
+                    .url(shard.getUrl())
+                    .username(shard.getUsername())
+                    .password(shard.getPassword())
+                    .driverClassName(shard.getDriverClassName())
+                    .build();
+            pool.setPoolName("shard-" + name);
+            pool.setMaximumPoolSize(shard.getPoolSize());
+            migrate(pool, flyway);
+            reserveIdRange(pool, (long) shard.getIdRange() << ID_RANGE_SHIFT);
+            targets.put(name, pool);
+        });
+        ShardDataSource routing = new ShardDataSource();
+        routing.setTargetDataSources(targets);
+        routing.setDefaultTargetDataSource(home);
+        routing.afterPropertiesSet();
+        return routing;
+    }
+
+    @Bean
+    @Primary
+    public DataSource dataSource(ShardDataSource shards) {
+        return new LazyConnectionDataSourceProxy(shards);
+    }
+
+    private static void migrate(HikariDataSource pool, FlywayProperties flyway) {
+        String vendor = DatabaseDriver.fromJdbcUrl(pool.getJdbcUrl()).getId();
+        Flyway.configure()
+                .dataSource(pool)
+                .locations(flyway.getLocations().stream().map(location -> location.replace("{vendor}", vendor)).toArray(String[]::new))
+                .baselineOnMigrate(flyway.isBaselineOnMigrate())
+                .baselineVersion(flyway.getBaselineVersion())
+                .load()
+                .migrate();
+    }
+
+    // Ids then stay unique across shards, so a moved row keeps its id. Hibernate's pooled optimizer is
+    // shared by every shard and may spend a block fetched on one shard on another; with disjoint ranges
+    // that is harmless. The probe spends one block, which only leaves a gap.
+    private static void reserveIdRange(HikariDataSource pool, long start) {
+        JdbcTemplate jdbc = new JdbcTemplate(pool);
+        boolean postgres = DatabaseDriver.fromJdbcUrl(pool.getJdbcUrl()) == DatabaseDriver.POSTGRESQL;
+        Long next = jdbc.queryForObject(postgres ? "SELECT nextval('machine_event_seq')" : "SELECT NEXT VALUE FOR machine_event_seq", Long.class);
+        if (next != null && next < start) {
+            jdbc.execute("ALTER SEQUENCE machine_event_seq RESTART WITH " + start);
+        }
+    }
+}
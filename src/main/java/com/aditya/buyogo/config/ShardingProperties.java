@@ -0,0 +1,40 @@
+package com.aditya.buyogo.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+@Data
+@ConfigurationProperties(prefix = "buyogo.sharding")
+public class ShardingProperties {
+    // When enabled, machine_event is spread over spring.datasource (the home shard) and the shards below by factory.
+    private boolean enabled = false;
+    // Name of the spring.datasource shard. It also holds everything that is not per factory: the identifier
+    // dictionary, shard_assignment and cardinality_sketch. Factories no shard lists stay here.
+    private String home = "home";
+    private Map<String, Shard> shards = new LinkedHashMap<>();
+    // How often a node re-reads shard_assignment for moves made by other nodes.
+    private Duration assignmentRefresh = Duration.ofSeconds(30);
+    // Rows per read and per insert batch while a move copies a factory, and per delete when it clears the old shard.
+    private int moveBatchSize = 5000;
+    // A move copies again at cutover every row updated since it began copying, less this much for node clocks.
+    private Duration moveClockSkew = Duration.ofMinutes(1);
+
+    @Data
+    public static class Shard {
+        private String url;
+        private String username;
+        private String password;
+        private String driverClassName;
+        private int poolSize = 10;
+        // Surrogate ids on this shard start at idRange << 48. Distinct per shard, 1 or more (home is 0), never reused.
+        private int idRange;
+        // Factories whose events live on this shard, until a move assigns them elsewhere.
+        private List<String> factories = new ArrayList<>();
+    }
+}
@@ -0,0 +1,25 @@
+package com.aditya.buyogo.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Data
+@ConfigurationProperties(prefix = "buyogo.spikes")
+public class SpikeProperties {
+    // On: SpikeDetector follows every machine's defects as batches commit (GET /states/anomalies).
+    private boolean enabled = true;
+    // Half-lives, in event time, of a machine's recent and baseline defects-per-event averages.
+    private Duration fastHalfLife = Duration.ofMinutes(5);
+    private Duration slowHalfLife = Duration.ofHours(2);
+    // Flagged while the recent average is this many standard errors above the baseline, over at
+    // least minEvents recent (decayed) events averaging at least minDefectsPerEvent.
+    private double threshold = 4.0;
+    private double minEvents = 5;
+    private double minDefectsPerEvent = 1.0;
+    // The table is allocated up front at about 100 bytes per machine (19 MB at the default). When it
+    // is full, machines without an event for idleTimeout are dropped; if none are, new machines go untracked.
+    private int maxMachines = 200_000;
+    private Duration idleTimeout = Duration.ofHours(24);
+}
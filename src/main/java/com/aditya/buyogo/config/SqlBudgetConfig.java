@@ -0,0 +1,47 @@
+package com.aditya.buyogo.config;
+
+import net.ttddyy.dsproxy.support.ProxyDataSourceBuilder;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+
+import javax.sql.DataSource;
+
+// Puts a statement-counting proxy in front of the application DataSource (the single pool, or the
+// routing proxy from ReadReplicaConfig) and registers the per-request budget filter.
+@Configuration
+@ConditionalOnProperty(prefix = "buyogo.sql-budget", name = "enabled", havingValue = "true", matchIfMissing = true)
+public class SqlBudgetConfig {
+    static final String DATA_SOURCE_BEAN = "dataSource";
+
+    // Static so the post-processor is registered before the DataSource is created
+    @Bean
+    public static BeanPostProcessor sqlCountingDataSourcePostProcessor(Environment environment) {
+        // Bound by hand: the post-processor is created before configuration properties beans are
+        SqlBudgetProperties properties = Binder.get(environment)
+                .bind("buyogo.sql-budget", SqlBudgetProperties.class)
+                .orElseGet(SqlBudgetProperties::new);
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (DATA_SOURCE_BEAN.equals(beanName) && bean instanceof DataSource dataSource) {
+                    ProxyDataSourceBuilder builder = ProxyDataSourceBuilder.create(beanName, dataSource)
+                            .listener(new SqlStatementListener());
+                    if (properties.isCountRowsRead()) {
+                        builder.proxyResultSet();
+                    }
+                    return builder.build();
+                }
+                return bean;
+            }
+        };
+    }
+
+    @Bean
+    public SqlBudgetFilter sqlBudgetFilter(SqlBudgetProperties properties) {
+        return new SqlBudgetFilter(properties);
+    }
+}
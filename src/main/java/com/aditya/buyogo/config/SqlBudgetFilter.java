@@ -0,0 +1,54 @@
+package com.aditya.buyogo.config;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+// Collects SqlRequestStats for each request and logs the ones over the statement budget or the slow
+// threshold, with their query fingerprints, so an N+1 shows up as one fingerprint with a large count.
+@Slf4j
+public class SqlBudgetFilter extends OncePerRequestFilter {
+    private static final int LOGGED_FINGERPRINTS = 5;
+
+    private final SqlBudgetProperties properties;
+
+    public SqlBudgetFilter(SqlBudgetProperties properties) {
+        this.properties = properties;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        long start = System.nanoTime();
+        SqlRequestStats.start();
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            SqlRequestStats stats = SqlRequestStats.stop();
+            long elapsedNanos = System.nanoTime() - start;
+            boolean overBudget = stats.getStatements() > properties.getMaxStatements();
+            if (overBudget || elapsedNanos >= properties.getSlowThreshold().toNanos()) {
+                log.warn("{} {} {}: {} SQL statements (budget {}), {} rows, {} ms in JDBC, {} ms total; top statements: {}",
+                        request.getMethod(), request.getRequestURI(), overBudget ? "over SQL budget" : "slow",
+                        stats.getStatements(), properties.getMaxStatements(), stats.getRows(),
+                        stats.getJdbcTime().toMillis(), TimeUnit.NANOSECONDS.toMillis(elapsedNanos),
+                        topFingerprints(stats));
+            }
+        }
+    }
+
+    private static String topFingerprints(SqlRequestStats stats) {
+        return stats.getFingerprints().entrySet().stream()
+                .limit(LOGGED_FINGERPRINTS)
+                .map(e -> e.getValue() + "x [" + e.getKey() + "]")
+                .collect(Collectors.joining(", "));
+    }
+}
@@ -0,0 +1,20 @@
+package com.aditya.buyogo.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Data
+@ConfigurationProperties(prefix = "buyogo.sql-budget")
+public class SqlBudgetProperties {
+    // Counts every JDBC statement per HTTP request; off removes the DataSource proxy entirely.
+    private boolean enabled = true;
+    // Also counts rows read, one ResultSet.next() at a time. Every result set is then proxied, which
+    // costs about 0.5 us and 280 bytes per row read (BENCHMARK.md), so leave it off outside debugging.
+    private boolean countRowsRead = false;
+    // Requests executing more statements than this are logged with their query fingerprints.
+    private int maxStatements = 20;
+    // Requests slower than this are logged the same way, whatever their statement count.
+    private Duration slowThreshold = Duration.ofSeconds(1);
+}
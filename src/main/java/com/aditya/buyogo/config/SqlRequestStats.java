@@ -0,0 +1,91 @@
+package com.aditya.buyogo.config;
+
+import com.aditya.buyogo.utils.SqlFingerprint;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+
+// SQL executed on one thread between start() and stop(): statement round trips (a JDBC batch counts
+// once), rows written (and read, with count-rows-read), and time spent in JDBC. Threads that never called start() record nothing,
+// unless they run work wrapped by carry(), which records into the stats of the thread that wrapped it
+// (Shards runs a batch's shards in parallel). Jobs a request does not wait for, such as a summary
+// refresh it triggered, run outside any request's stats.
+public class SqlRequestStats {
+    private static final ThreadLocal<SqlRequestStats> CURRENT = new ThreadLocal<>();
+
+    // Guarded by this: carried work records from several threads at once
+    private int statements;
+    private long rows;
+    private long jdbcNanos;
+    // Keyed by the SQL as sent; Hibernate binds parameters, so this stays small and is fingerprinted only when read
+    private final Map<String, Integer> statementCounts = new LinkedHashMap<>();
+
+    public static SqlRequestStats start() {
+        SqlRequestStats stats = new SqlRequestStats();
+        CURRENT.set(stats);
+        return stats;
+    }
+
+    public static SqlRequestStats current() {
+        return CURRENT.get();
+    }
+
+    public static SqlRequestStats stop() {
+        SqlRequestStats stats = CURRENT.get();
+        CURRENT.remove();
+        return stats;
+    }
+
+    // Work to run on another thread, recording into the calling thread's stats (if any) while it runs
+    public static <T> Callable<T> carry(Callable<T> work) {
+        SqlRequestStats stats = CURRENT.get();
+        if (stats == null) {
+            return work;
+        }
+        return () -> {
+            SqlRequestStats outer = CURRENT.get();
+            CURRENT.set(stats);
+            try {
+                return work.call();
+            } finally {
+                CURRENT.set(outer);
+            }
+        };
+    }
+
+    synchronized void afterStatement(String sql, long rowCount, long elapsedNanos) {
+        jdbcNanos += elapsedNanos;
+        statements++;
+        rows += rowCount;
+        statementCounts.merge(sql, 1, Integer::sum);
+    }
+
+    synchronized void rowRead() {
+        rows++;
+    }
+
+    public synchronized int getStatements() {
+        return statements;
+    }
+
+    public synchronized long getRows() {
+        return rows;
+    }
+
+    public synchronized Duration getJdbcTime() {
+        return Duration.ofNanos(jdbcNanos);
+    }
+
+    // Statement count per fingerprint, most frequent first
+    public synchronized Map<String, Integer> getFingerprints() {
+        Map<String, Integer> byFingerprint = new LinkedHashMap<>();
+        statementCounts.forEach((sql, count) -> byFingerprint.merge(SqlFingerprint.of(sql), count, Integer::sum));
+        Map<String, Integer> sorted = new LinkedHashMap<>();
+        byFingerprint.entrySet().stream()
+                .sorted(Map.Entry.<String, Integer>comparingByValue().reversed())
+                .forEach(e -> sorted.put(e.getKey(), e.getValue()));
+        return sorted;
+    }
+}
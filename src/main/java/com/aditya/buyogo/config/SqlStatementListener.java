@@ -0,0 +1,55 @@
+package com.aditya.buyogo.config;
+
+import net.ttddyy.dsproxy.ExecutionInfo;
+import net.ttddyy.dsproxy.QueryInfo;
+import net.ttddyy.dsproxy.listener.MethodExecutionContext;
+import net.ttddyy.dsproxy.listener.lifecycle.JdbcLifecycleEventListenerAdapter;
+
+import java.util.List;
+
+// Feeds every statement run through the proxied DataSource into the calling thread's SqlRequestStats
+public class SqlStatementListener extends JdbcLifecycleEventListenerAdapter {
+    // Kept on the statement rather than the stats, which carried work shares across threads
+    private static final String STARTED = "buyogo.statementStart";
+
+    @Override
+    public void beforeQuery(ExecutionInfo execInfo, List<QueryInfo> queryInfoList) {
+        if (SqlRequestStats.current() != null) {
+            execInfo.addCustomValue(STARTED, System.nanoTime());
+        }
+    }
+
+    @Override
+    public void afterQuery(ExecutionInfo execInfo, List<QueryInfo> queryInfoList) {
+        SqlRequestStats stats = SqlRequestStats.current();
+        Long started = execInfo.getCustomValue(STARTED, Long.class);
+        if (stats != null && started != null && !queryInfoList.isEmpty()) {
+            stats.afterStatement(queryInfoList.get(0).getQuery(), rowsWritten(execInfo.getResult()),
+                    System.nanoTime() - started);
+        }
+    }
+
+    // Rows read are counted one ResultSet.next() at a time, with buyogo.sql-budget.count-rows-read only
+    @Override
+    public void afterNext(MethodExecutionContext executionContext) {
+        SqlRequestStats stats = SqlRequestStats.current();
+        if (stats != null && Boolean.TRUE.equals(executionContext.getResult())) {
+            stats.rowRead();
+        }
+    }
+
+    private static long rowsWritten(Object result) {
+        if (result instanceof Integer count) {
+            return count;
+        }
+        if (result instanceof int[] counts) {
+            long rows = 0;
+            for (int count : counts) {
+                // Rewritten batches report SUCCESS_NO_INFO per row
+                rows += count >= 0 ? count : 1;
+            }
+            return rows;
+        }
+        return 0;
+    }
+}
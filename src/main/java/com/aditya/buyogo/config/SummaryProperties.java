@@ -0,0 +1,17 @@
+package com.aditya.buyogo.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Data
+@ConfigurationProperties(prefix = "buyogo.summaries")
+public class SummaryProperties {
+    // On: GET /states/top-defect-lines reads whole hours from line_defects_hourly (DefectSummaryService),
+    // refreshed every refreshInterval and once refreshAfterEvents rows have been written since the last
+    // refresh (0: on the interval only).
+    private boolean enabled = false;
+    private Duration refreshInterval = Duration.ofMinutes(5);
+    private long refreshAfterEvents = 100_000;
+}
@@ -0,0 +1,33 @@
+package com.aditya.buyogo.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+@Data
+@ConfigurationProperties(prefix = "buyogo.wal")
+public class WalProperties {
+    public enum SyncPolicy { GROUP, INTERVAL, NONE }
+
+    // On: POST /events/batch is acknowledged once logged locally and applied to the database in the background.
+    private boolean enabled = false;
+    private Path directory = Path.of("data", "wal");
+    // Each segment is one memory-mapped file; a batch larger than this gets a segment of its own.
+    private DataSize segmentSize = DataSize.ofMegabytes(64);
+    // Appends fail with 503 once the undrained log would exceed this, e.g. during a long database outage.
+    private DataSize maxSize = DataSize.ofGigabytes(2);
+    // GROUP: acknowledge after an fsync that covers the batch; concurrent appends share one fsync.
+    // INTERVAL: acknowledge after the write and fsync every syncInterval. NONE: leave flushing to the OS.
+    private SyncPolicy sync = SyncPolicy.GROUP;
+    private Duration syncInterval = Duration.ofMillis(100);
+    // Read by @Scheduled, so ISO-8601 (PT0.2S) or plain milliseconds
+    private Duration drainInterval = Duration.ofMillis(200);
+    // Logged batches are merged into one processEvents call of up to this many events.
+    private int drainBatchSize = 5000;
+    // A record that fails this many times on its own while the database answers is moved to
+    // <directory>/dead-letter and skipped, so one bad record cannot hold back the rest of the log.
+    private int drainMaxAttempts = 5;
+}
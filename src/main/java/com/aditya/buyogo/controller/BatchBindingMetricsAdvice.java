@@ -0,0 +1,41 @@
+package com.aditya.buyogo.controller;
+
+import com.aditya.buyogo.services.ServiceMetrics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.MethodParameter;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.web.bind.annotation.ControllerAdvice;
+import org.springframework.web.servlet.mvc.method.annotation.RequestBodyAdviceAdapter;
+
+import java.lang.reflect.Type;
+
+// Times JSON binding of the POST /events/batch body, the one ingestion stage that runs before EventService
+@ControllerAdvice(assignableTypes = EventIngestionController.class)
+public class BatchBindingMetricsAdvice extends RequestBodyAdviceAdapter {
+    // One reusable slot per request thread; before/afterBodyRead always run on the same thread
+    private static final ThreadLocal<long[]> BIND_START = ThreadLocal.withInitial(() -> new long[1]);
+
+    @Autowired
+    private ServiceMetrics metrics;
+
+    @Override
+    public boolean supports(MethodParameter methodParameter, Type targetType,
+                            Class<? extends HttpMessageConverter<?>> converterType) {
+        return true;
+    }
+
+    @Override
+    public HttpInputMessage beforeBodyRead(HttpInputMessage inputMessage, MethodParameter parameter, Type targetType,
+                                           Class<? extends HttpMessageConverter<?>> converterType) {
+        BIND_START.get()[0] = System.nanoTime();
+        return inputMessage;
+    }
+
+    @Override
+    public Object afterBodyRead(Object body, HttpInputMessage inputMessage, MethodParameter parameter, Type targetType,
+                                Class<? extends HttpMessageConverter<?>> converterType) {
+        metrics.recordStage(ServiceMetrics.Stage.BIND, System.nanoTime() - BIND_START.get()[0]);
+        return body;
+    }
+}
@@ -0,0 +1,52 @@
+package com.aditya.buyogo.controller;
+
+import com.aditya.buyogo.config.Lane;
+import com.aditya.buyogo.dto.ApiResponse;
+import com.aditya.buyogo.dto.EventPageDTO;
+import com.aditya.buyogo.repo.EventFilter;
+import com.aditya.buyogo.services.Bulkheads;
+import com.aditya.buyogo.services.EventBrowseService;
+import com.aditya.buyogo.services.EventExportService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.time.Instant;
+
+@RestController
+@RequestMapping("/events")
+public class EventBrowseController {
+    @Autowired
+    private EventBrowseService eventBrowseService;
+    @Autowired
+    private EventExportService eventExportService;
+    @Autowired
+    private Bulkheads bulkheads;
+
+    @GetMapping
+    public ApiResponse getEvents(@RequestParam(value = "factoryId", required = false) String factoryId,
+                                 @RequestParam(value = "lineId", required = false) String lineId,
+                                 @RequestParam(value = "machineId", required = false) String machineId,
+                                 @RequestParam("from") Instant from,
+                                 @RequestParam("to") Instant to,
+                                 @RequestParam(value = "cursor", required = false) String cursor,
+                                 @RequestParam(value = "limit", required = false) Integer limit) {
+        EventFilter filter = new EventFilter();
+        filter.setFactoryId(factoryId);
+        filter.setLineId(lineId);
+        filter.setMachineId(machineId);
+        filter.setFrom(from);
+        filter.setTo(to);
+        // One keyset page per request, so a point query rather than a scan
+        EventPageDTO response = bulkheads.call(Lane.POINT, () -> eventBrowseService.getEvents(filter, cursor, limit));
+        return new ApiResponse(response);
+    }
+
+    // Newline-delimited JSON of every event in [from, to), archived ones included
+    @GetMapping(path = "/export", produces = "application/x-ndjson")
+    public StreamingResponseBody exportEvents(@RequestParam(value = "factoryId", required = false) String factoryId,
+                                              @RequestParam("from") Instant from,
+                                              @RequestParam("to") Instant to) {
+        return out -> eventExportService.export(factoryId, from, to, out);
+    }
+}
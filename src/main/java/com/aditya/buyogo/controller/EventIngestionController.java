@@ -1,9 +1,13 @@
 package com.aditya.buyogo.controller;
+import com.aditya.buyogo.config.Lane;
 import com.aditya.buyogo.dto.ApiResponse;
 import com.aditya.buyogo.dto.BatchResponseDTO;
 import com.aditya.buyogo.dto.EventDTO;
+import com.aditya.buyogo.services.Bulkheads;
 import com.aditya.buyogo.services.EventService;
+import com.aditya.buyogo.services.WalIngestionService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
@@ -15,9 +19,21 @@ import java.util.List;
 public class EventIngestionController {
     @Autowired
     private EventService eventService;
+    // Present when buyogo.wal.enabled=true
+    @Autowired(required = false)
+    private WalIngestionService walIngestionService;
+    @Autowired
+    private Bulkheads bulkheads;
     @PostMapping("/batch")
-    public ApiResponse storeEvents(@RequestBody List<EventDTO> eventsData){
-        BatchResponseDTO response = eventService.processEvents(eventsData);
-        return new ApiResponse(response);
+    public ResponseEntity<ApiResponse> storeEvents(@RequestBody List<EventDTO> eventsData){
+        return bulkheads.call(Lane.INGEST, () -> {
+            if (walIngestionService != null) {
+                // Durable in the local log, applied to the database shortly after
+                BatchResponseDTO response = walIngestionService.append(eventsData);
+                return ResponseEntity.status(HttpStatus.ACCEPTED).body(new ApiResponse(response));
+            }
+            BatchResponseDTO response = eventService.processEvents(eventsData);
+            return ResponseEntity.ok(new ApiResponse(response));
+        });
     }
-}
\ No newline at end of file
+}
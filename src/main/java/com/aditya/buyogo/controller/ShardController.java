@@ -0,0 +1,43 @@
+package com.aditya.buyogo.controller;
+
+import com.aditya.buyogo.dto.ApiResponse;
+import com.aditya.buyogo.dto.ShardMapDTO;
+import com.aditya.buyogo.dto.ShardMoveDTO;
+import com.aditya.buyogo.services.ShardMover;
+import com.aditya.buyogo.services.Shards;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+
+// Present when buyogo.sharding.enabled=true
+@RestController
+@RequestMapping("/shards")
+@ConditionalOnProperty(prefix = "buyogo.sharding", name = "enabled", havingValue = "true")
+public class ShardController {
+    @Autowired
+    private Shards shards;
+    @Autowired
+    private ShardMover shardMover;
+
+    @GetMapping
+    public ApiResponse getShardMap() {
+        ShardMapDTO response = new ShardMapDTO();
+        response.setHome(shards.home());
+        response.setShards(shards.names());
+        response.setFactories(shards.factories());
+        return new ApiResponse(response);
+    }
+
+    // Copy-and-cutover of one factory; answers once the factory is served by the target
+    @PostMapping("/moves")
+    public ApiResponse moveFactory(@RequestParam("factoryId") String factoryId, @RequestParam("to") String to) {
+        try {
+            ShardMoveDTO response = shardMover.move(factoryId, to);
+            return new ApiResponse(response);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage(), e);
+        }
+    }
+}
@@ -1,12 +1,27 @@
 package com.aditya.buyogo.controller;
 
 
+import com.aditya.buyogo.config.Lane;
+import com.aditya.buyogo.repo.IdentifierDictionary.Kind;
 import com.aditya.buyogo.dto.*;
+import com.aditya.buyogo.services.Bulkheads;
+import com.aditya.buyogo.services.CardinalityService;
+import com.aditya.buyogo.services.CardinalityService.Metric;
+import com.aditya.buyogo.services.DataVersions;
 import com.aditya.buyogo.services.EventService;
+import com.aditya.buyogo.services.HeavyHittersService;
+import com.aditya.buyogo.services.LiveStatesService;
+import com.aditya.buyogo.services.SpikeDetector;
 import com.aditya.buyogo.services.StateService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import java.time.Duration;
 import java.time.Instant;
 import java.util.List;
 
@@ -15,15 +30,120 @@ import java.util.List;
 public class StatesController {
     @Autowired
     private StateService stateService;
+    @Autowired
+    private LiveStatesService liveStatesService;
+    @Autowired
+    private Bulkheads bulkheads;
+    // Absent when buyogo.spikes.enabled=false
+    @Autowired(required = false)
+    private SpikeDetector spikeDetector;
+    // Absent when buyogo.heavy-hitters.enabled=false
+    @Autowired(required = false)
+    private HeavyHittersService heavyHitters;
+    // Absent when buyogo.cardinality.enabled=false
+    @Autowired(required = false)
+    private CardinalityService cardinalityService;
+    // Present when buyogo.etags.enabled=true
+    @Autowired(required = false)
+    private DataVersions dataVersions;
     @GetMapping
-    public ApiResponse getEventByMachineId(@RequestParam("machineId") String machineId, @RequestParam("start") Instant start, @RequestParam("end") Instant end){
-        StatesResponseDTO response = stateService.getEventByMachineIdAndDateBetween(machineId, start, end);
+    public ApiResponse getEventByMachineId(@RequestParam("machineId") String machineId, @RequestParam("start") Instant start, @RequestParam("end") Instant end, WebRequest request){
+        if (notModified(request, Kind.MACHINE, machineId, "states", start, end)) {
+            return null;
+        }
+        StatesResponseDTO response = bulkheads.call(Lane.POINT,
+                () -> stateService.getEventByMachineIdAndDateBetween(machineId, start, end));
         return new ApiResponse(response);
     }
 
     @GetMapping("/top-defect-lines")
-    public ApiResponse getTopDefectLines(@RequestParam("factoryId") String factoryId, @RequestParam("from") Instant from, @RequestParam("to") Instant to, @RequestParam("limit") Integer limit){
-        List<TopDefectLineDTO> response = stateService.getTopDefectLines(factoryId,from, to, limit);
+    public ApiResponse getTopDefectLines(@RequestParam("factoryId") String factoryId, @RequestParam("from") Instant from, @RequestParam("to") Instant to, @RequestParam("limit") Integer limit, WebRequest request){
+        if (notModified(request, Kind.FACTORY, factoryId, "top-defect-lines", from, to, limit)) {
+            return null;
+        }
+        StateService.TopDefectLines lines = bulkheads.call(Lane.SCAN,
+                () -> stateService.topDefectLines(factoryId,from, to, limit));
+        ApiResponse response = new ApiResponse(lines.lines());
+        response.setDataAsOf(lines.asOf());
+        return response;
+    }
+
+    // Machines whose defects per event currently spike above their own baseline, strongest first
+    @GetMapping("/anomalies")
+    public ApiResponse getAnomalies(@RequestParam(value = "limit", defaultValue = "50") Integer limit){
+        if (spikeDetector == null) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Spike detection is disabled");
+        }
+        List<DefectSpikeDTO> response = spikeDetector.currentSpikes(limit);
+        return new ApiResponse(response);
+    }
+
+    // Worst machines or lines by defects, across all factories or in one. Served from the in-memory
+    // summaries when they cover the window, otherwise (or with exact=true) by querying the database.
+    @GetMapping("/heavy-hitters")
+    public ApiResponse getHeavyHitters(@RequestParam(value = "dimension", defaultValue = "machine") String dimension,
+                                       @RequestParam(value = "factoryId", required = false) String factoryId,
+                                       @RequestParam("from") Instant from,
+                                       @RequestParam("to") Instant to,
+                                       @RequestParam(value = "limit", defaultValue = "10") Integer limit,
+                                       @RequestParam(value = "exact", defaultValue = "false") boolean exact){
+        if (heavyHitters == null) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Heavy hitters are disabled");
+        }
+        Kind kind = switch (dimension) {
+            case "machine" -> Kind.MACHINE;
+            case "line" -> Kind.LINE;
+            default -> throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "dimension must be machine or line");
+        };
+        if (limit <= 0) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "limit must be positive");
+        }
+        HeavyHittersDTO response = !exact && heavyHitters.covers(from, to)
+                ? heavyHitters.approximate(kind, factoryId, from, to, limit)
+                : bulkheads.call(Lane.SCAN, () -> heavyHitters.exact(kind, factoryId, from, to, limit));
         return new ApiResponse(response);
     }
+
+    // Approximate distinct counts: machines with events (optionally in one factory or line), or event ids received or stored
+    @GetMapping("/cardinality")
+    public ApiResponse getCardinality(@RequestParam(value = "metric", defaultValue = "machines") String metric,
+                                      @RequestParam(value = "factoryId", required = false) String factoryId,
+                                      @RequestParam(value = "lineId", required = false) String lineId,
+                                      @RequestParam("from") Instant from,
+                                      @RequestParam("to") Instant to){
+        if (cardinalityService == null) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Cardinality statistics are disabled");
+        }
+        Metric parsed = switch (metric) {
+            case "machines" -> Metric.MACHINES;
+            case "received" -> Metric.RECEIVED;
+            case "stored" -> Metric.STORED;
+            default -> throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "metric must be machines, received or stored");
+        };
+        if (factoryId != null && lineId != null) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Pass at most one of factoryId and lineId");
+        }
+        if (parsed != Metric.MACHINES && (factoryId != null || lineId != null)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Event ids are only counted over all factories");
+        }
+        CardinalityDTO response = bulkheads.call(Lane.POINT,
+                () -> cardinalityService.count(parsed, factoryId, lineId, from, to));
+        return new ApiResponse(response);
+    }
+
+    // Server-sent events: "states" with the machines whose rolling window changed, "status" with transitions
+    @GetMapping(path = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamStates(@RequestParam(value = "machineId", required = false) String machineId,
+                                   @RequestParam(value = "lineId", required = false) String lineId,
+                                   @RequestParam(value = "factoryId", required = false) String factoryId,
+                                   @RequestParam(value = "window", defaultValue = "PT1H") Duration window,
+                                   @RequestParam(value = "interval", defaultValue = "PT1S") Duration interval){
+        return liveStatesService.subscribe(machineId, lineId, factoryId, window, interval);
+    }
+
+    // True, with the 304 already set up, when the client's copy is current; otherwise the ETag goes on
+    // the response. Checked before the lane and the query, so an unchanged poll costs neither.
+    private boolean notModified(WebRequest request, Kind kind, String id, Object... query) {
+        return dataVersions != null && request.checkNotModified(dataVersions.etag(kind, id, query));
+    }
 }
@@ -1,14 +1,21 @@
 package com.aditya.buyogo.dto;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
+import java.time.Instant;
+
 @Data
 @NoArgsConstructor
 public class ApiResponse {
     private boolean success;
     private String message;
     private Object data;
+    // Set when part of data came from a periodically refreshed summary: writes committed before this
+    // are included, later ones may not be. Absent when the answer was read live.
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Instant dataAsOf;
     public ApiResponse(Object responseDTO){
         this.data = responseDTO;
         this.success = true;
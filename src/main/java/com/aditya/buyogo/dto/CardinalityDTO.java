@@ -0,0 +1,19 @@
+package com.aditya.buyogo.dto;
+
+import lombok.Data;
+
+import java.time.Instant;
+
+@Data
+public class CardinalityDTO {
+    // "machines", "received" or "stored"
+    private String metric;
+    private String factoryId;
+    private String lineId;
+    // The window counted, widened to whole buckets
+    private Instant from;
+    private Instant to;
+    private long estimate;
+    // One standard error, relative to the estimate; about 95% of answers fall within twice this
+    private double relativeStandardError;
+}
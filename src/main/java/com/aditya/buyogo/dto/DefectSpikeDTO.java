@@ -0,0 +1,18 @@
+package com.aditya.buyogo.dto;
+
+import lombok.Data;
+
+import java.time.Instant;
+
+@Data
+public class DefectSpikeDTO {
+    private String machineId;
+    // Event time of the event that raised the flag
+    private Instant since;
+    private Instant lastEventTime;
+    private double recentDefectsPerEvent;
+    private double baselineDefectsPerEvent;
+    // Decayed count of events behind the recent average
+    private double recentEvents;
+    private double score;
+}
@@ -0,0 +1,12 @@
+package com.aditya.buyogo.dto;
+
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+public class EventPageDTO {
+    private List<EventDTO> events;
+    private String nextCursor;
+    private boolean hasMore;
+}
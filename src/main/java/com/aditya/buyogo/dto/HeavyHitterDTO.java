@@ -0,0 +1,17 @@
+package com.aditya.buyogo.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class HeavyHitterDTO {
+    // A machine id or a line id
+    private String id;
+    // Upper bound on the defects in the window; exact when source is "exact"
+    private long totalDefects;
+    // Lower bound; totalDefects - minDefects is the possible overcount
+    private long minDefects;
+    // True when the bounds alone prove this id belongs in the top limit
+    private boolean guaranteed;
+}
@@ -0,0 +1,20 @@
+package com.aditya.buyogo.dto;
+
+import lombok.Data;
+
+import java.time.Instant;
+import java.util.List;
+
+@Data
+public class HeavyHittersDTO {
+    private String dimension;
+    private String factoryId;
+    // The window actually counted: widened to whole buckets when source is "sketch"
+    private Instant from;
+    private Instant to;
+    // "sketch" or "exact"
+    private String source;
+    // Most defects any id missing from the list could have
+    private long unlistedMaxDefects;
+    private List<HeavyHitterDTO> entries;
+}
@@ -0,0 +1,14 @@
+package com.aditya.buyogo.dto;
+
+import lombok.Data;
+
+import java.util.List;
+import java.util.Map;
+
+@Data
+public class ShardMapDTO {
+    private String home;
+    private List<String> shards;
+    // Factories not on home, by shard; every other factory is on home
+    private Map<String, String> factories;
+}
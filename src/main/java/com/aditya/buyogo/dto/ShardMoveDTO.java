@@ -0,0 +1,18 @@
+package com.aditya.buyogo.dto;
+
+import lombok.Data;
+
+@Data
+public class ShardMoveDTO {
+    private String factoryId;
+    private String from;
+    private String to;
+    // Rows copied while ingestion carried on
+    private long copiedRows;
+    // Rows updated meanwhile, copied again at cutover
+    private long recopiedRows;
+    // Rows removed from the old shard at cutover
+    private long deletedRows;
+    // How long ingestion on this node waited for the cutover
+    private long cutoverMillis;
+}
@@ -0,0 +1,16 @@
+package com.aditya.buyogo.dto;
+
+import com.aditya.buyogo.models.Status;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.time.Instant;
+
+@Data
+@AllArgsConstructor
+public class StatusTransitionDTO {
+    private String machineId;
+    private Status previous;
+    private Status status;
+    private Instant at;
+}
@@ -0,0 +1,64 @@
+package com.aditya.buyogo.models;
+
+import com.aditya.buyogo.repo.IdentifierDictionary;
+import com.aditya.buyogo.repo.IdentifierDictionary.Kind;
+import jakarta.persistence.AttributeConverter;
+import jakarta.persistence.Converter;
+import org.springframework.beans.factory.BeanFactory;
+import org.springframework.beans.factory.BeanFactoryAware;
+
+// Store machine/factory/line ids as dictionary keys while the entity, JPQL and the repository keep
+// working with the original strings. Hibernate builds these through Spring's bean factory, which hands
+// them the dictionary. They are not registered beans, so under AOT (mvn -Pfaststart) an @Autowired field
+// would stay null; BeanFactoryAware is honoured either way.
+public final class IdentifierConverters {
+
+    private IdentifierConverters() {
+    }
+
+    abstract static class DictionaryConverter implements AttributeConverter<String, Integer>, BeanFactoryAware {
+        private IdentifierDictionary dictionary;
+
+        private final Kind kind;
+
+        DictionaryConverter(Kind kind) {
+            this.kind = kind;
+        }
+
+        @Override
+        public void setBeanFactory(BeanFactory beanFactory) {
+            this.dictionary = beanFactory.getBean(IdentifierDictionary.class);
+        }
+
+        @Override
+        public Integer convertToDatabaseColumn(String value) {
+            return value == null ? null : dictionary.keyOf(kind, value);
+        }
+
+        @Override
+        public String convertToEntityAttribute(Integer key) {
+            return key == null ? null : dictionary.valueOf(key);
+        }
+    }
+
+    @Converter
+    public static class MachineId extends DictionaryConverter {
+        public MachineId() {
+            super(Kind.MACHINE);
+        }
+    }
+
+    @Converter
+    public static class FactoryId extends DictionaryConverter {
+        public FactoryId() {
+            super(Kind.FACTORY);
+        }
+    }
+
+    @Converter
+    public static class LineId extends DictionaryConverter {
+        public LineId() {
+            super(Kind.LINE);
+        }
+    }
+}
@@ -5,23 +5,34 @@ import lombok.Data;
 
 import java.time.Instant;
 @Entity
+// Schema and indexes are owned by the Flyway migrations in db/migration/{vendor}.
 @Table(
     name = "machine_event"
 )
+@EntityListeners(MachineEventDictionaryListener.class)
 @Data
 public class MachineEvent {
 
     @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "machine_event_seq")
+    @SequenceGenerator(name = "machine_event_seq", sequenceName = "machine_event_seq", allocationSize = 1000)
+    @Column(name = "id", nullable = false, updatable = false)
+    private Long id;
+
     @Column(name = "event_id", nullable = false, updatable = false)
     private String eventId;
 
-    @Column(name = "machine_id", nullable = false)
+    // Ids are stored as int keys into identifier_dictionary
+    @Convert(converter = IdentifierConverters.MachineId.class)
+    @Column(name = "machine_key", nullable = false)
     private String machineId;
 
-    @Column(name = "factory_id", nullable = false)
+    @Convert(converter = IdentifierConverters.FactoryId.class)
+    @Column(name = "factory_key", nullable = false)
     private String factoryId;
 
-    @Column(name = "line_id", nullable = false)
+    @Convert(converter = IdentifierConverters.LineId.class)
+    @Column(name = "line_key", nullable = false)
     private String lineId;
 
 
@@ -31,13 +42,15 @@ public class MachineEvent {
     @Column(name = "received_time", nullable = false)
     private Instant receivedTime;
 
+    // Durations are validated to at most one hour, so four bytes are enough
     @Column(name = "duration_ms", nullable = false)
-    private long durationMs;
+    private int durationMs;
 
     @Column(name = "defect_count", nullable = false)
     private int defectCount;
 
-    @Column(name = "payload_hash", nullable = false, length = 64)
+    @Convert(converter = PayloadHashConverter.class)
+    @Column(name = "payload_hash", nullable = false, length = 32)
     private String payloadHash;
 
     @Column(name = "created_at", nullable = false, updatable = false)
@@ -46,6 +59,14 @@ public class MachineEvent {
     @Column(name = "updated_at", nullable = false)
     private Instant updatedAt;
 
+    public long getDurationMs() {
+        return durationMs;
+    }
+
+    public void setDurationMs(long durationMs) {
+        this.durationMs = Math.toIntExact(durationMs);
+    }
+
     @PrePersist
     public void onCreate() {
         Instant now = Instant.now();
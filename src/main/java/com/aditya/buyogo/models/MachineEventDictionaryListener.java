@@ -0,0 +1,24 @@
+package com.aditya.buyogo.models;
+
+import com.aditya.buyogo.repo.IdentifierDictionary;
+import jakarta.persistence.PrePersist;
+import jakarta.persistence.PreUpdate;
+import org.springframework.beans.factory.BeanFactory;
+import org.springframework.beans.factory.BeanFactoryAware;
+
+// Writes are the only place new ids enter the dictionary; the converters themselves only look up.
+// Gets the dictionary the same way as IdentifierConverters, so it also works under AOT.
+public class MachineEventDictionaryListener implements BeanFactoryAware {
+    private IdentifierDictionary dictionary;
+
+    @Override
+    public void setBeanFactory(BeanFactory beanFactory) {
+        this.dictionary = beanFactory.getBean(IdentifierDictionary.class);
+    }
+
+    @PrePersist
+    @PreUpdate
+    public void register(MachineEvent event) {
+        dictionary.registerAll(event);
+    }
+}
@@ -0,0 +1,22 @@
+package com.aditya.buyogo.models;
+
+import jakarta.persistence.AttributeConverter;
+import jakarta.persistence.Converter;
+
+import java.util.HexFormat;
+
+// The SHA-256 payload hash is exposed as 64 hex chars but stored as its 32 raw bytes.
+@Converter
+public class PayloadHashConverter implements AttributeConverter<String, byte[]> {
+    private static final HexFormat HEX = HexFormat.of();
+
+    @Override
+    public byte[] convertToDatabaseColumn(String hash) {
+        return hash == null ? null : HEX.parseHex(hash);
+    }
+
+    @Override
+    public String convertToEntityAttribute(byte[] bytes) {
+        return bytes == null ? null : HEX.formatHex(bytes);
+    }
+}
@@ -0,0 +1,8 @@
+package com.aditya.buyogo.repo;
+
+// A machine_event row as kept in the columnar archive: dictionary keys instead of ids and timestamps
+// as epoch microseconds, the precision of timestamptz. The surrogate id is not kept.
+public record ArchivedEvent(String eventId, int machineKey, int factoryKey, int lineKey,
+                            long eventTime, long receivedTime, long createdAt, long updatedAt,
+                            int durationMs, int defectCount, byte[] payloadHash) {
+}
@@ -0,0 +1,306 @@
+package com.aditya.buyogo.repo;
+
+import com.aditya.buyogo.config.ArchiveProperties;
+import com.aditya.buyogo.repo.ColumnarFile.Column;
+import com.aditya.buyogo.repo.IdentifierDictionary.Kind;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+// The cold tier: every archive file under buyogo.archive.directory, mapped read-only. Scans skip
+// files by their event_time range and factory set before inflating any column, and within a file
+// binary-search the sorted event_time column for the requested range.
+//
+// A file is written as <name>.col.tmp and its name recorded in archive_file in the same transaction
+// that deletes its rows; it only becomes <name>.col after that commits. On startup a leftover .tmp is
+// promoted if its name was committed and deleted otherwise.
+@Slf4j
+@Component
+@ConditionalOnProperty(prefix = "buyogo.archive", name = "enabled", havingValue = "true")
+public class ColumnarArchive {
+    private static final String TEMP_SUFFIX = ".tmp";
+    private static final DateTimeFormatter DAY = DateTimeFormatter.BASIC_ISO_DATE;
+
+    @Autowired
+    private ArchiveProperties properties;
+
+    @Autowired
+    private IdentifierDictionary dictionary;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    // Ordered by minEventTime, so exports come out roughly in time order
+    private final List<ColumnarFile> files = new CopyOnWriteArrayList<>();
+
+    @PostConstruct
+    public void open() throws IOException {
+        Path directory = properties.getDirectory();
+        Files.createDirectories(directory);
+        Set<String> committed = new HashSet<>(jdbcTemplate.queryForList("SELECT name FROM archive_file", String.class));
+        List<ColumnarFile> opened = new ArrayList<>();
+        try (DirectoryStream<Path> entries = Files.newDirectoryStream(directory)) {
+            for (Path path : entries) {
+                String name = path.getFileName().toString();
+                if (name.endsWith(ColumnarFile.SUFFIX + TEMP_SUFFIX)) {
+                    String target = name.substring(0, name.length() - TEMP_SUFFIX.length());
+                    if (committed.contains(target)) {
+                        log.info("Promoting archive file {} committed before the last shutdown", target);
+                        opened.add(ColumnarFile.open(Files.move(path, directory.resolve(target), StandardCopyOption.ATOMIC_MOVE)));
+                    } else {
+                        log.info("Deleting uncommitted archive file {}", name);
+                        Files.delete(path);
+                    }
+                } else if (name.endsWith(ColumnarFile.SUFFIX)) {
+                    opened.add(ColumnarFile.open(path));
+                }
+            }
+        }
+        opened.sort(Comparator.comparingLong(file -> file.minEventTime));
+        files.clear();
+        files.addAll(opened);
+        log.info("Opened {} archive files in {}", files.size(), directory);
+    }
+
+    public int fileCount() {
+        return files.size();
+    }
+
+    // Just past the latest archived event time, or null while nothing is archived
+    public Instant archivedUntil() {
+        long until = Long.MIN_VALUE;
+        for (ColumnarFile file : files) {
+            until = Math.max(until, file.maxEventTime + 1);
+        }
+        return files.isEmpty() ? null : ColumnarFile.fromMicros(until);
+    }
+
+    // events-<day>-<n>.col, n counting the files already archived for that day
+    public String nextName(LocalDate day) {
+        String prefix = "events-" + day.format(DAY) + "-";
+        try (var entries = Files.list(properties.getDirectory())) {
+            long existing = entries.filter(path -> path.getFileName().toString().startsWith(prefix)).count();
+            return String.format("%s%04d%s", prefix, existing + 1, ColumnarFile.SUFFIX);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public void writeTemp(String name, List<ArchivedEvent> rows) {
+        ColumnarFile.write(properties.getDirectory().resolve(name + TEMP_SUFFIX), rows);
+    }
+
+    // Called once the transaction that recorded the name has committed
+    public void publish(String name) {
+        Path directory = properties.getDirectory();
+        try {
+            Path path = Files.move(directory.resolve(name + TEMP_SUFFIX), directory.resolve(name), StandardCopyOption.ATOMIC_MOVE);
+            ColumnarFile file = ColumnarFile.open(path);
+            int index = 0;
+            while (index < files.size() && files.get(index).minEventTime <= file.minEventTime) {
+                index++;
+            }
+            files.add(index, file);
+        } catch (IOException e) {
+            // The name is committed, so the next startup promotes the file
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public void discard(String name) {
+        try {
+            Files.deleteIfExists(properties.getDirectory().resolve(name + TEMP_SUFFIX));
+        } catch (IOException e) {
+            log.warn("Could not delete uncommitted archive file {}: {}", name, e.getMessage());
+        }
+    }
+
+    // {events, defects} for one machine over [start, end], counted the way StateService counts
+    // machine_event rows: every event, but only non-negative defect counts
+    public long[] machineTotals(String machineId, Instant start, Instant end) {
+        long[] totals = new long[2];
+        Integer machineKey = knownKey(Kind.MACHINE, machineId);
+        if (machineKey == null) {
+            return totals;
+        }
+        long from = ColumnarFile.toMicros(start);
+        long to = ColumnarFile.toMicros(end);
+        for (ColumnarFile file : files) {
+            if (!file.overlaps(from, to)) {
+                continue;
+            }
+            long[] times = file.eventTimes();
+            int first = lowerBound(times, from);
+            int last = lowerBound(times, to + 1);
+            if (first == last) {
+                continue;
+            }
+            int[] machines = file.ints(Column.MACHINE_KEY);
+            int[] defects = file.ints(Column.DEFECT_COUNT);
+            for (int i = first; i < last; i++) {
+                if (machines[i] == machineKey) {
+                    totals[0]++;
+                    if (defects[i] >= 0) {
+                        totals[1] += defects[i];
+                    }
+                }
+            }
+        }
+        return totals;
+    }
+
+    // lineId -> {defects, events} for one factory over [from, to), rows with a negative defect count excluded
+    public Map<String, long[]> lineTotals(String factoryId, Instant from, Instant to) {
+        Map<String, long[]> totals = new HashMap<>();
+        Integer factoryKey = knownKey(Kind.FACTORY, factoryId);
+        if (factoryKey == null) {
+            return totals;
+        }
+        long fromMicros = ColumnarFile.toMicros(from);
+        long toMicros = ColumnarFile.toMicros(to);
+        Map<Integer, long[]> byKey = new HashMap<>();
+        for (ColumnarFile file : files) {
+            if (!file.overlaps(fromMicros, toMicros - 1) || !file.containsFactory(factoryKey)) {
+                continue;
+            }
+            long[] times = file.eventTimes();
+            int first = lowerBound(times, fromMicros);
+            int last = lowerBound(times, toMicros);
+            if (first == last) {
+                continue;
+            }
+            int[] factories = file.ints(Column.FACTORY_KEY);
+            int[] lines = file.ints(Column.LINE_KEY);
+            int[] defects = file.ints(Column.DEFECT_COUNT);
+            for (int i = first; i < last; i++) {
+                if (factories[i] == factoryKey && defects[i] >= 0) {
+                    long[] line = byKey.computeIfAbsent(lines[i], key -> new long[2]);
+                    line[0] += defects[i];
+                    line[1]++;
+                }
+            }
+        }
+        byKey.forEach((key, line) -> totals.put(dictionary.valueOf(key), line));
+        return totals;
+    }
+
+    // id -> defects per machine or line over [from, to), optionally for one factory, rows with a
+    // negative defect count excluded
+    public Map<String, Long> defectTotals(Kind dimension, String factoryId, Instant from, Instant to) {
+        Map<String, Long> totals = new HashMap<>();
+        Integer factoryKey = null;
+        if (factoryId != null) {
+            factoryKey = knownKey(Kind.FACTORY, factoryId);
+            if (factoryKey == null) {
+                return totals;
+            }
+        }
+        Column idColumn = dimension == Kind.LINE ? Column.LINE_KEY : Column.MACHINE_KEY;
+        long fromMicros = ColumnarFile.toMicros(from);
+        long toMicros = ColumnarFile.toMicros(to);
+        Map<Integer, long[]> byKey = new HashMap<>();
+        for (ColumnarFile file : files) {
+            if (!file.overlaps(fromMicros, toMicros - 1) || (factoryKey != null && !file.containsFactory(factoryKey))) {
+                continue;
+            }
+            long[] times = file.eventTimes();
+            int first = lowerBound(times, fromMicros);
+            int last = lowerBound(times, toMicros);
+            if (first == last) {
+                continue;
+            }
+            int[] factories = file.ints(Column.FACTORY_KEY);
+            int[] ids = file.ints(idColumn);
+            int[] defects = file.ints(Column.DEFECT_COUNT);
+            for (int i = first; i < last; i++) {
+                if ((factoryKey == null || factories[i] == factoryKey) && defects[i] >= 0) {
+                    byKey.computeIfAbsent(ids[i], key -> new long[1])[0] += defects[i];
+                }
+            }
+        }
+        byKey.forEach((key, total) -> totals.put(dictionary.valueOf(key), total[0]));
+        return totals;
+    }
+
+    // Every archived row in [from, to), optionally for one factory
+    public void scan(Instant from, Instant to, String factoryId, Consumer<ArchivedEvent> sink) {
+        Integer factoryKey = null;
+        if (factoryId != null) {
+            factoryKey = knownKey(Kind.FACTORY, factoryId);
+            if (factoryKey == null) {
+                return;
+            }
+        }
+        long fromMicros = ColumnarFile.toMicros(from);
+        long toMicros = ColumnarFile.toMicros(to);
+        for (ColumnarFile file : files) {
+            if (!file.overlaps(fromMicros, toMicros - 1) || (factoryKey != null && !file.containsFactory(factoryKey))) {
+                continue;
+            }
+            long[] times = file.eventTimes();
+            int first = lowerBound(times, fromMicros);
+            int last = lowerBound(times, toMicros);
+            if (first == last) {
+                continue;
+            }
+            int[] factories = file.ints(Column.FACTORY_KEY);
+            long[] received = file.offsetTimes(Column.RECEIVED_TIME, times);
+            long[] created = file.offsetTimes(Column.CREATED_AT, received);
+            long[] updated = file.offsetTimes(Column.UPDATED_AT, created);
+            int[] machines = file.ints(Column.MACHINE_KEY);
+            int[] lines = file.ints(Column.LINE_KEY);
+            int[] durations = file.ints(Column.DURATION_MS);
+            int[] defects = file.ints(Column.DEFECT_COUNT);
+            String[] eventIds = file.eventIds();
+            byte[][] hashes = file.payloadHashes();
+            for (int i = first; i < last; i++) {
+                if (factoryKey == null || factories[i] == factoryKey) {
+                    sink.accept(new ArchivedEvent(eventIds[i], machines[i], factories[i], lines[i], times[i],
+                            received[i], created[i], updated[i], durations[i], defects[i], hashes[i]));
+                }
+            }
+        }
+    }
+
+    private Integer knownKey(Kind kind, String value) {
+        int key = dictionary.keyOf(kind, value);
+        return key == IdentifierDictionary.UNKNOWN_KEY ? null : key;
+    }
+
+    // First index whose time is >= micros
+    private static int lowerBound(long[] times, long micros) {
+        int low = 0;
+        int high = times.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (times[mid] < micros) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+}
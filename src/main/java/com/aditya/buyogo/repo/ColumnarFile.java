@@ -0,0 +1,385 @@
+package com.aditya.buyogo.repo;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.CRC32C;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+// One immutable archive file of machine_event rows sorted by event_time, stored column by column:
+// [header][column blocks]. The header holds the row count, the min/max event_time, the distinct
+// factory keys and, per column, the offset, deflated and raw length and a CRC32C of the deflated
+// bytes. Each column has its own encoding and is deflated on its own, so a scan maps the file and
+// inflates only the columns it reads.
+public final class ColumnarFile {
+    static final String SUFFIX = ".col";
+    private static final int MAGIC = 0x42594743; // "BYGC"
+    private static final byte VERSION = 1;
+    private static final int COLUMN_ENTRY = 1 + 8 + 4 + 4 + 4;
+
+    enum Column {
+        // First value, then deltas: rows are in time order, so most deltas fit in one or two bytes
+        EVENT_TIME,
+        // Offsets from the previous timestamp column of the same row
+        RECEIVED_TIME, CREATED_AT, UPDATED_AT,
+        MACHINE_KEY, LINE_KEY,
+        // (key, run length) pairs: a factory's machines report in bursts
+        FACTORY_KEY,
+        DURATION_MS, DEFECT_COUNT,
+        // Front coded: length shared with the previous id, then the rest
+        EVENT_ID,
+        PAYLOAD_HASH
+    }
+
+    final Path path;
+    final int rowCount;
+    final long minEventTime;
+    final long maxEventTime;
+    private final int[] factoryKeys;
+    private final MappedByteBuffer buffer;
+    private final long[] offsets = new long[Column.values().length];
+    private final int[] lengths = new int[Column.values().length];
+    private final int[] rawLengths = new int[Column.values().length];
+    private final int[] crcs = new int[Column.values().length];
+
+    private ColumnarFile(Path path, MappedByteBuffer buffer) {
+        this.path = path;
+        this.buffer = buffer;
+        ByteBuffer header = buffer.duplicate();
+        if (header.getInt() != MAGIC || header.get() != VERSION) {
+            throw new IllegalStateException(path + " is not a version " + VERSION + " archive file");
+        }
+        rowCount = header.getInt();
+        minEventTime = header.getLong();
+        maxEventTime = header.getLong();
+        factoryKeys = new int[header.getInt()];
+        for (int i = 0; i < factoryKeys.length; i++) {
+            factoryKeys[i] = header.getInt();
+        }
+        int columns = header.get();
+        for (int i = 0; i < columns; i++) {
+            int column = header.get();
+            offsets[column] = header.getLong();
+            lengths[column] = header.getInt();
+            rawLengths[column] = header.getInt();
+            crcs[column] = header.getInt();
+        }
+    }
+
+    public static long toMicros(Instant instant) {
+        return Math.addExact(Math.multiplyExact(instant.getEpochSecond(), 1_000_000L), instant.getNano() / 1_000);
+    }
+
+    public static Instant fromMicros(long micros) {
+        return Instant.ofEpochSecond(Math.floorDiv(micros, 1_000_000L), Math.floorMod(micros, 1_000_000L) * 1_000L);
+    }
+
+    static ColumnarFile open(Path path) {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            // The mapping outlives the channel
+            return new ColumnarFile(path, channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // Rows must already be sorted by eventTime. The file is forced before this returns.
+    static void write(Path path, List<ArchivedEvent> rows) {
+        byte[][] raw = new byte[Column.values().length][];
+        for (Column column : Column.values()) {
+            raw[column.ordinal()] = encode(column, rows);
+        }
+        int[] factories = rows.stream().mapToInt(ArchivedEvent::factoryKey).distinct().sorted().toArray();
+        int headerSize = 4 + 1 + 4 + 8 + 8 + 4 + 4 * factories.length + 1 + COLUMN_ENTRY * raw.length;
+        byte[][] deflated = new byte[raw.length][];
+        ByteBuffer header = ByteBuffer.allocate(headerSize);
+        header.putInt(MAGIC).put(VERSION).putInt(rows.size())
+                .putLong(rows.get(0).eventTime()).putLong(rows.get(rows.size() - 1).eventTime())
+                .putInt(factories.length);
+        for (int factory : factories) {
+            header.putInt(factory);
+        }
+        header.put((byte) raw.length);
+        long offset = headerSize;
+        for (int i = 0; i < raw.length; i++) {
+            deflated[i] = deflate(raw[i]);
+            CRC32C crc = new CRC32C();
+            crc.update(deflated[i]);
+            header.put((byte) i).putLong(offset).putInt(deflated[i].length).putInt(raw[i].length).putInt((int) crc.getValue());
+            offset += deflated[i].length;
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+            writeFully(channel, header.flip());
+            for (byte[] block : deflated) {
+                writeFully(channel, ByteBuffer.wrap(block));
+            }
+            channel.force(true);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    boolean overlaps(long fromMicros, long toMicrosInclusive) {
+        return minEventTime <= toMicrosInclusive && maxEventTime >= fromMicros;
+    }
+
+    boolean containsFactory(int factoryKey) {
+        return Arrays.binarySearch(factoryKeys, factoryKey) >= 0;
+    }
+
+    long[] eventTimes() {
+        Decoder in = inflate(Column.EVENT_TIME);
+        long[] times = new long[rowCount];
+        long previous = 0;
+        for (int i = 0; i < rowCount; i++) {
+            previous += in.zigZag();
+            times[i] = previous;
+        }
+        return times;
+    }
+
+    // RECEIVED_TIME, CREATED_AT or UPDATED_AT, given the column it is stored relative to
+    long[] offsetTimes(Column column, long[] base) {
+        Decoder in = inflate(column);
+        long[] times = new long[rowCount];
+        for (int i = 0; i < rowCount; i++) {
+            times[i] = base[i] + in.zigZag();
+        }
+        return times;
+    }
+
+    int[] ints(Column column) {
+        Decoder in = inflate(column);
+        int[] values = new int[rowCount];
+        switch (column) {
+            case FACTORY_KEY -> {
+                int i = 0;
+                while (i < rowCount) {
+                    int key = (int) in.varLong();
+                    int run = (int) in.varLong();
+                    Arrays.fill(values, i, i + run, key);
+                    i += run;
+                }
+            }
+            case MACHINE_KEY, LINE_KEY -> {
+                for (int i = 0; i < rowCount; i++) {
+                    values[i] = (int) in.varLong();
+                }
+            }
+            case DURATION_MS, DEFECT_COUNT -> {
+                for (int i = 0; i < rowCount; i++) {
+                    values[i] = (int) in.zigZag();
+                }
+            }
+            default -> throw new IllegalArgumentException(column + " is not an int column");
+        }
+        return values;
+    }
+
+    String[] eventIds() {
+        Decoder in = inflate(Column.EVENT_ID);
+        String[] ids = new String[rowCount];
+        byte[] previous = new byte[0];
+        for (int i = 0; i < rowCount; i++) {
+            int shared = (int) in.varLong();
+            int rest = (int) in.varLong();
+            byte[] id = Arrays.copyOf(previous, shared + rest);
+            in.bytes(id, shared, rest);
+            ids[i] = new String(id, StandardCharsets.UTF_8);
+            previous = id;
+        }
+        return ids;
+    }
+
+    byte[][] payloadHashes() {
+        Decoder in = inflate(Column.PAYLOAD_HASH);
+        byte[][] hashes = new byte[rowCount][];
+        for (int i = 0; i < rowCount; i++) {
+            hashes[i] = new byte[(int) in.varLong()];
+            in.bytes(hashes[i], 0, hashes[i].length);
+        }
+        return hashes;
+    }
+
+    private Decoder inflate(Column column) {
+        int c = column.ordinal();
+        ByteBuffer block = buffer.slice(Math.toIntExact(offsets[c]), lengths[c]);
+        CRC32C crc = new CRC32C();
+        crc.update(block.duplicate());
+        if ((int) crc.getValue() != crcs[c]) {
+            throw new IllegalStateException("Column " + column + " of " + path + " fails its checksum");
+        }
+        byte[] raw = new byte[rawLengths[c]];
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(block);
+            int read = 0;
+            while (read < raw.length && !inflater.finished()) {
+                read += inflater.inflate(raw, read, raw.length - read);
+            }
+        } catch (DataFormatException e) {
+            throw new IllegalStateException("Column " + column + " of " + path + " is corrupt", e);
+        } finally {
+            inflater.end();
+        }
+        return new Decoder(raw);
+    }
+
+    private static byte[] deflate(byte[] raw) {
+        Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+        try {
+            deflater.setInput(raw);
+            deflater.finish();
+            byte[] out = new byte[Math.max(64, raw.length / 2)];
+            int length = 0;
+            while (!deflater.finished()) {
+                if (length == out.length) {
+                    out = Arrays.copyOf(out, out.length * 2);
+                }
+                length += deflater.deflate(out, length, out.length - length);
+            }
+            return Arrays.copyOf(out, length);
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static byte[] encode(Column column, List<ArchivedEvent> rows) {
+        Encoder out = new Encoder(rows.size() * 2);
+        switch (column) {
+            case EVENT_TIME -> {
+                long previous = 0;
+                for (ArchivedEvent row : rows) {
+                    out.zigZag(row.eventTime() - previous);
+                    previous = row.eventTime();
+                }
+            }
+            case RECEIVED_TIME -> rows.forEach(row -> out.zigZag(row.receivedTime() - row.eventTime()));
+            case CREATED_AT -> rows.forEach(row -> out.zigZag(row.createdAt() - row.receivedTime()));
+            case UPDATED_AT -> rows.forEach(row -> out.zigZag(row.updatedAt() - row.createdAt()));
+            case MACHINE_KEY -> rows.forEach(row -> out.varLong(row.machineKey()));
+            case LINE_KEY -> rows.forEach(row -> out.varLong(row.lineKey()));
+            case FACTORY_KEY -> {
+                int i = 0;
+                while (i < rows.size()) {
+                    int key = rows.get(i).factoryKey();
+                    int run = 1;
+                    while (i + run < rows.size() && rows.get(i + run).factoryKey() == key) {
+                        run++;
+                    }
+                    out.varLong(key);
+                    out.varLong(run);
+                    i += run;
+                }
+            }
+            case DURATION_MS -> rows.forEach(row -> out.zigZag(row.durationMs()));
+            case DEFECT_COUNT -> rows.forEach(row -> out.zigZag(row.defectCount()));
+            case EVENT_ID -> {
+                byte[] previous = new byte[0];
+                for (ArchivedEvent row : rows) {
+                    byte[] id = row.eventId().getBytes(StandardCharsets.UTF_8);
+                    int shared = Arrays.mismatch(previous, id);
+                    if (shared < 0) {
+                        shared = id.length;
+                    }
+                    shared = Math.min(shared, Math.min(previous.length, id.length));
+                    out.varLong(shared);
+                    out.varLong(id.length - shared);
+                    out.bytes(id, shared, id.length - shared);
+                    previous = id;
+                }
+            }
+            case PAYLOAD_HASH -> rows.forEach(row -> {
+                out.varLong(row.payloadHash().length);
+                out.bytes(row.payloadHash(), 0, row.payloadHash().length);
+            });
+        }
+        return out.toByteArray();
+    }
+
+    // Unsigned LEB128 varints; signed values go through zigzag first so small negatives stay short
+    private static final class Encoder {
+        private byte[] bytes;
+        private int length;
+
+        Encoder(int capacity) {
+            bytes = new byte[Math.max(16, capacity)];
+        }
+
+        void zigZag(long value) {
+            varLong((value << 1) ^ (value >> 63));
+        }
+
+        void varLong(long value) {
+            ensure(10);
+            while ((value & ~0x7FL) != 0) {
+                bytes[length++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            bytes[length++] = (byte) value;
+        }
+
+        void bytes(byte[] source, int offset, int count) {
+            ensure(count);
+            System.arraycopy(source, offset, bytes, length, count);
+            length += count;
+        }
+
+        private void ensure(int extra) {
+            if (length + extra > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, length + extra));
+            }
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(bytes, length);
+        }
+    }
+
+    private static final class Decoder {
+        private final byte[] bytes;
+        private int position;
+
+        Decoder(byte[] bytes) {
+            this.bytes = bytes;
+        }
+
+        long zigZag() {
+            long value = varLong();
+            return (value >>> 1) ^ -(value & 1);
+        }
+
+        long varLong() {
+            long value = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = bytes[position++];
+                value |= (long) (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            return value;
+        }
+
+        void bytes(byte[] target, int offset, int count) {
+            System.arraycopy(bytes, position, target, offset, count);
+            position += count;
+        }
+    }
+}
@@ -0,0 +1,6 @@
+package com.aditya.buyogo.repo;
+
+public interface DefectTotalsProjection {
+    String getId();
+    Long getTotalDefects();
+}
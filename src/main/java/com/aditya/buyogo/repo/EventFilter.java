@@ -0,0 +1,16 @@
+package com.aditya.buyogo.repo;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+@Data
+@NoArgsConstructor
+public class EventFilter {
+    private String factoryId;
+    private String lineId;
+    private String machineId;
+    private Instant from;
+    private Instant to;
+}
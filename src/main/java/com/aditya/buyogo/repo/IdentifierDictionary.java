@@ -0,0 +1,205 @@
+package com.aditya.buyogo.repo;
+
+import com.aditya.buyogo.dto.EventDTO;
+import com.aditya.buyogo.models.MachineEvent;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.UncategorizedSQLException;
+import org.springframework.jdbc.datasource.DataSourceUtils;
+import org.springframework.jdbc.support.SQLStateSQLExceptionTranslator;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Maps machine/factory/line ids to the int keys stored in machine_event, with an in-process cache
+// in both directions. Keys come from one identity column, so a key alone identifies its value.
+// Lookups run on the caller's transactional connection when there is one: converters are called
+// while a query already holds a pooled connection, and taking a second one can starve the pool.
+// With buyogo.sharding the dictionary lives on the home shard alone, so keys mean the same on every
+// shard; lookups made while a query runs on another shard take a home connection of their own.
+@Component
+public class IdentifierDictionary {
+    public static final int UNKNOWN_KEY = -1;
+
+    // Stored as the ordinal in identifier_dictionary.kind; append only.
+    public enum Kind { MACHINE, FACTORY, LINE }
+
+    private static final String SELECT_KEY = "SELECT id FROM identifier_dictionary WHERE kind = ? AND external_id = ?";
+    private static final String SELECT_VALUE = "SELECT external_id FROM identifier_dictionary WHERE id = ?";
+    private static final String INSERT = "INSERT INTO identifier_dictionary (kind, external_id) VALUES (?, ?)";
+    private static final String SELECT_ALL = "SELECT id, kind, external_id FROM identifier_dictionary";
+
+    @Autowired
+    private DataSource dataSource;
+
+    // The home shard's pool, when buyogo.sharding is enabled
+    @Autowired(required = false)
+    @Qualifier("homeDataSource")
+    private DataSource homeDataSource;
+
+    private final Map<Kind, Map<String, Integer>> keys = new EnumMap<>(Kind.class);
+    private final Map<Integer, String> values = new ConcurrentHashMap<>();
+    private final SQLStateSQLExceptionTranslator translator = new SQLStateSQLExceptionTranslator();
+
+    public IdentifierDictionary() {
+        for (Kind kind : Kind.values()) {
+            keys.put(kind, new ConcurrentHashMap<>());
+        }
+    }
+
+    @PostConstruct
+    void init() {
+        if (homeDataSource != null) {
+            dataSource = homeDataSource;
+        }
+    }
+
+    // Lookup only: ids that were never written resolve to UNKNOWN_KEY, so reads cannot grow the table.
+    public int keyOf(Kind kind, String value) {
+        Integer cached = keys.get(kind).get(value);
+        if (cached != null) {
+            return cached;
+        }
+        Integer stored = selectKey(kind, value);
+        if (stored == null) {
+            return UNKNOWN_KEY;
+        }
+        cache(kind, value, stored);
+        return stored;
+    }
+
+    // Cache only, never touches the database; null when the value has not been seen by this node
+    public Integer cachedKeyOf(Kind kind, String value) {
+        return keys.get(kind).get(value);
+    }
+
+    public String cachedValueOf(int key) {
+        return values.get(key);
+    }
+
+    // Inserted and committed on its own connection, never inside the caller's transaction: a rolled-back
+    // batch must not leave a cached key that the database does not know. Call it before a transaction
+    // holds a pooled connection where possible (see registerAll), so this second connection is not
+    // taken while the first one is held.
+    public int register(Kind kind, String value) {
+        int key = keyOf(kind, value);
+        if (key != UNKNOWN_KEY) {
+            return key;
+        }
+        Integer stored;
+        try (Connection connection = dataSource.getConnection()) {
+            connection.setAutoCommit(true);
+            try (PreparedStatement insert = connection.prepareStatement(INSERT)) {
+                insert.setInt(1, kind.ordinal());
+                insert.setString(2, value);
+                insert.executeUpdate();
+            } catch (SQLException e) {
+                // Another node registered the same value first; its key is just as good.
+                if (e.getSQLState() == null || !e.getSQLState().startsWith("23")) {
+                    throw e;
+                }
+            }
+            stored = selectKey(connection, kind, value);
+        } catch (SQLException e) {
+            throw translate("register " + kind, INSERT, e);
+        }
+        if (stored == null) {
+            throw new IllegalStateException("Dictionary entry vanished after insert: " + kind + " " + value);
+        }
+        cache(kind, value, stored);
+        return stored;
+    }
+
+    public void registerAll(MachineEvent event) {
+        register(Kind.MACHINE, event.getMachineId());
+        register(Kind.FACTORY, event.getFactoryId());
+        register(Kind.LINE, event.getLineId());
+    }
+
+    public void registerAll(EventDTO event) {
+        register(Kind.MACHINE, event.getMachineId());
+        register(Kind.FACTORY, event.getFactoryId());
+        register(Kind.LINE, event.getLineId());
+    }
+
+    // The dictionary is small (one row per machine, factory and line), so load it all up front
+    // instead of paying a lookup per id on the first requests.
+    @EventListener(ApplicationReadyEvent.class)
+    public void preload() {
+        Kind[] kinds = Kind.values();
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement select = connection.prepareStatement(SELECT_ALL);
+             ResultSet rs = select.executeQuery()) {
+            while (rs.next()) {
+                cache(kinds[rs.getInt(2)], rs.getString(3), rs.getInt(1));
+            }
+        } catch (SQLException e) {
+            throw translate("preload", SELECT_ALL, e);
+        }
+    }
+
+    public String valueOf(int key) {
+        String cached = values.get(key);
+        if (cached != null) {
+            return cached;
+        }
+        Connection connection = DataSourceUtils.getConnection(dataSource);
+        try (PreparedStatement select = connection.prepareStatement(SELECT_VALUE)) {
+            select.setInt(1, key);
+            try (ResultSet rs = select.executeQuery()) {
+                if (!rs.next()) {
+                    throw new IllegalStateException("Unknown dictionary key " + key);
+                }
+                String value = rs.getString(1);
+                values.putIfAbsent(key, value);
+                return value;
+            }
+        } catch (SQLException e) {
+            throw translate("valueOf", SELECT_VALUE, e);
+        } finally {
+            DataSourceUtils.releaseConnection(connection, dataSource);
+        }
+    }
+
+    private Integer selectKey(Kind kind, String value) {
+        Connection connection = DataSourceUtils.getConnection(dataSource);
+        try {
+            return selectKey(connection, kind, value);
+        } catch (SQLException e) {
+            throw translate("keyOf " + kind, SELECT_KEY, e);
+        } finally {
+            DataSourceUtils.releaseConnection(connection, dataSource);
+        }
+    }
+
+    private Integer selectKey(Connection connection, Kind kind, String value) throws SQLException {
+        try (PreparedStatement select = connection.prepareStatement(SELECT_KEY)) {
+            select.setInt(1, kind.ordinal());
+            select.setString(2, value);
+            try (ResultSet rs = select.executeQuery()) {
+                return rs.next() ? rs.getInt(1) : null;
+            }
+        }
+    }
+
+    private void cache(Kind kind, String value, int key) {
+        keys.get(kind).putIfAbsent(value, key);
+        values.putIfAbsent(key, value);
+    }
+
+    private DataAccessException translate(String task, String sql, SQLException e) {
+        DataAccessException translated = translator.translate(task, sql, e);
+        return translated != null ? translated : new UncategorizedSQLException(task, sql, e);
+    }
+}
@@ -0,0 +1,13 @@
+package com.aditya.buyogo.repo;
+
+import com.aditya.buyogo.models.MachineEvent;
+
+// A row insertNew left out, with the SQLState the database refused it with. Rows whose event id was
+// stored by someone else after the dedup lookup come back as UNIQUE_VIOLATION.
+public record InsertFailure(MachineEvent row, String sqlState, String message) {
+    public static final String UNIQUE_VIOLATION = "23505";
+
+    public boolean conflict() {
+        return UNIQUE_VIOLATION.equals(sqlState);
+    }
+}
@@ -0,0 +1,11 @@
+package com.aditya.buyogo.repo;
+
+import java.time.Instant;
+
+public interface LiveEventProjection {
+    String getEventId();
+    String getMachineId();
+    String getFactoryId();
+    Instant getEventTime();
+    int getDefectCount();
+}
@@ -0,0 +1,49 @@
+package com.aditya.buyogo.repo;
+
+import com.aditya.buyogo.config.PartitioningProperties.Interval;
+
+import java.time.DayOfWeek;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.TemporalAdjusters;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// Naming and range arithmetic for machine_event partitions. Ranges are [start, next) in UTC.
+public final class MachineEventPartitions {
+    public static final String PARENT_TABLE = "machine_event";
+    public static final String DEFAULT_PARTITION = "machine_event_default";
+
+    private static final DateTimeFormatter SUFFIX = DateTimeFormatter.BASIC_ISO_DATE;
+    private static final Pattern NAME = Pattern.compile("^machine_event_p(\\d{8})$");
+
+    private MachineEventPartitions() {
+    }
+
+    public static LocalDate periodStart(Instant instant, Interval interval) {
+        LocalDate day = instant.atZone(ZoneOffset.UTC).toLocalDate();
+        return interval == Interval.WEEKLY
+                ? day.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY))
+                : day;
+    }
+
+    public static LocalDate nextPeriod(LocalDate start, Interval interval) {
+        return interval == Interval.WEEKLY ? start.plusWeeks(1) : start.plusDays(1);
+    }
+
+    public static String partitionName(LocalDate start) {
+        return "machine_event_p" + start.format(SUFFIX);
+    }
+
+    // Returns null for tables that do not follow the partition naming scheme (e.g. the default partition).
+    public static LocalDate parsePartitionStart(String tableName) {
+        Matcher matcher = NAME.matcher(tableName);
+        return matcher.matches() ? LocalDate.parse(matcher.group(1), SUFFIX) : null;
+    }
+
+    public static Instant toInstant(LocalDate date) {
+        return date.atStartOfDay(ZoneOffset.UTC).toInstant();
+    }
+}
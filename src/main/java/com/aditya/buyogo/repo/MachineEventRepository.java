@@ -6,19 +6,47 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
 import java.time.Instant;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 @Repository
-public interface MachineEventRepository extends JpaRepository<MachineEvent  , Long> {
+public interface MachineEventRepository extends JpaRepository<MachineEvent  , Long>, MachineEventRepositoryCustom {
 
     Optional<MachineEvent> findByEventId(String eventId);
 
+    List<MachineEvent> findByEventIdIn(Collection<String> eventIds);
+
     List<MachineEvent> findByMachineIdAndEventTimeBetween(
             String machineId,
             Instant start,
             Instant end
     );
 
+    // Seed rows for live /states/stream subscriptions: only the columns the rolling window needs
+    @Query("""
+        SELECT m.eventId as eventId, m.machineId as machineId, m.factoryId as factoryId,
+               m.eventTime as eventTime, m.defectCount as defectCount
+        FROM MachineEvent m
+        WHERE m.machineId = :machineId AND m.eventTime >= :from AND m.eventTime < :to
+    """)
+    List<LiveEventProjection> findLiveByMachineId(String machineId, Instant from, Instant to);
+
+    @Query("""
+        SELECT m.eventId as eventId, m.machineId as machineId, m.factoryId as factoryId,
+               m.eventTime as eventTime, m.defectCount as defectCount
+        FROM MachineEvent m
+        WHERE m.lineId = :lineId AND m.eventTime >= :from AND m.eventTime < :to
+    """)
+    List<LiveEventProjection> findLiveByLineId(String lineId, Instant from, Instant to);
+
+    @Query("""
+        SELECT m.eventId as eventId, m.machineId as machineId, m.factoryId as factoryId,
+               m.eventTime as eventTime, m.defectCount as defectCount
+        FROM MachineEvent m
+        WHERE m.factoryId = :factoryId AND m.eventTime >= :from AND m.eventTime < :to
+    """)
+    List<LiveEventProjection> findLiveByFactoryId(String factoryId, Instant from, Instant to);
+
     @Query("""
         SELECT 
             m.lineId as lineId,
@@ -38,4 +66,37 @@ public interface MachineEventRepository extends JpaRepository<MachineEvent  , Lo
             Instant to
     );
 
+    // Exact defect totals for /states/heavy-hitters, rows with a negative defect count excluded
+    @Query("""
+        SELECT m.machineId as id, SUM(m.defectCount) as totalDefects
+        FROM MachineEvent m
+        WHERE m.eventTime >= :from AND m.eventTime < :to AND m.defectCount >= 0
+        GROUP BY m.machineId
+    """)
+    List<DefectTotalsProjection> findMachineDefectTotals(Instant from, Instant to);
+
+    @Query("""
+        SELECT m.machineId as id, SUM(m.defectCount) as totalDefects
+        FROM MachineEvent m
+        WHERE m.factoryId = :factoryId AND m.eventTime >= :from AND m.eventTime < :to AND m.defectCount >= 0
+        GROUP BY m.machineId
+    """)
+    List<DefectTotalsProjection> findMachineDefectTotals(String factoryId, Instant from, Instant to);
+
+    @Query("""
+        SELECT m.lineId as id, SUM(m.defectCount) as totalDefects
+        FROM MachineEvent m
+        WHERE m.eventTime >= :from AND m.eventTime < :to AND m.defectCount >= 0
+        GROUP BY m.lineId
+    """)
+    List<DefectTotalsProjection> findLineDefectTotals(Instant from, Instant to);
+
+    @Query("""
+        SELECT m.lineId as id, SUM(m.defectCount) as totalDefects
+        FROM MachineEvent m
+        WHERE m.factoryId = :factoryId AND m.eventTime >= :from AND m.eventTime < :to AND m.defectCount >= 0
+        GROUP BY m.lineId
+    """)
+    List<DefectTotalsProjection> findLineDefectTotals(String factoryId, Instant from, Instant to);
+
 }
@@ -0,0 +1,17 @@
+package com.aditya.buyogo.repo;
+
+import com.aditya.buyogo.models.MachineEvent;
+import com.aditya.buyogo.utils.EventCursor;
+
+import java.util.List;
+
+public interface MachineEventRepositoryCustom {
+
+    // Keyset page ordered by (eventTime, eventId), starting strictly after the cursor.
+    List<MachineEvent> findPage(EventFilter filter, EventCursor after, int limit);
+
+    // Inserts new rows in the caller's transaction as one JDBC batch under one savepoint. A batch the
+    // database refuses is rolled back to its savepoint and only the rows it refused are left out; they
+    // come back as failures while the rest stays inserted.
+    List<InsertFailure> insertNew(List<MachineEvent> rows);
+}
@@ -0,0 +1,229 @@
+package com.aditya.buyogo.repo;
+
+import com.aditya.buyogo.models.MachineEvent;
+import com.aditya.buyogo.repo.IdentifierDictionary.Kind;
+import com.aditya.buyogo.utils.EventCursor;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Path;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.generator.BeforeExecutionGenerator;
+import org.hibernate.generator.EventType;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Set;
+
+public class MachineEventRepositoryImpl implements MachineEventRepositoryCustom {
+    // Column for column what Hibernate would insert for MachineEvent (see ReactiveEventStore)
+    private static final String INSERT = """
+            INSERT INTO machine_event (id, event_time, received_time, created_at, updated_at, machine_key,
+                                       factory_key, line_key, duration_ms, defect_count, event_id, payload_hash)
+            VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)""";
+    private static final HexFormat HEX = HexFormat.of();
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Autowired
+    private IdentifierDictionary dictionary;
+
+    @Override
+    public List<MachineEvent> findPage(EventFilter filter, EventCursor after, int limit) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<MachineEvent> query = cb.createQuery(MachineEvent.class);
+        Root<MachineEvent> m = query.from(MachineEvent.class);
+        Path<Instant> eventTime = m.get("eventTime");
+        Path<String> eventId = m.get("eventId");
+
+        // Only filters that were actually supplied become predicates, so each
+        // combination gets its own plan instead of a generic "? IS NULL OR" one.
+        List<Predicate> predicates = new ArrayList<>();
+        if (filter.getFactoryId() != null) {
+            predicates.add(cb.equal(m.get("factoryId"), filter.getFactoryId()));
+        }
+        if (filter.getLineId() != null) {
+            predicates.add(cb.equal(m.get("lineId"), filter.getLineId()));
+        }
+        if (filter.getMachineId() != null) {
+            predicates.add(cb.equal(m.get("machineId"), filter.getMachineId()));
+        }
+        if (filter.getFrom() != null) {
+            predicates.add(cb.greaterThanOrEqualTo(eventTime, filter.getFrom()));
+        }
+        if (filter.getTo() != null) {
+            predicates.add(cb.lessThan(eventTime, filter.getTo()));
+        }
+        if (after != null) {
+            // The redundant ">= time" bound gives the planner an index range start;
+            // the OR alone is not sargable on most databases.
+            predicates.add(cb.greaterThanOrEqualTo(eventTime, after.getEventTime()));
+            predicates.add(cb.or(
+                    cb.greaterThan(eventTime, after.getEventTime()),
+                    cb.and(
+                            cb.equal(eventTime, after.getEventTime()),
+                            cb.greaterThan(eventId, after.getEventId()))));
+        }
+
+        query.select(m)
+                .where(predicates.toArray(new Predicate[0]))
+                .orderBy(cb.asc(eventTime), cb.asc(eventId));
+
+        return entityManager.createQuery(query)
+                .setMaxResults(limit)
+                .getResultList();
+    }
+
+    // Plain JDBC rather than persist + flush: Hibernate marks the whole transaction rollback-only when a
+    // flush fails, so a savepoint could not save the rest of the batch. Ids still come from the entity's
+    // pooled generator, so they never collide with rows Hibernate inserts. Transactional like saveAll:
+    // joins the caller's transaction, or runs in its own when there is none.
+    @Override
+    @Transactional
+    public List<InsertFailure> insertNew(List<MachineEvent> rows) {
+        if (rows.isEmpty()) {
+            return List.of();
+        }
+        SharedSessionContractImplementor session = entityManager.unwrap(SharedSessionContractImplementor.class);
+        BeforeExecutionGenerator ids = (BeforeExecutionGenerator) session.getFactory().getMappingMetamodel()
+                .getEntityDescriptor(MachineEvent.class).getGenerator();
+        for (MachineEvent row : rows) {
+            // What MachineEventDictionaryListener and @PrePersist do for a persisted row
+            dictionary.registerAll(row);
+            row.setId((Long) ids.generate(session, row, null, EventType.INSERT));
+            row.onCreate();
+        }
+        List<InsertFailure> failures = new ArrayList<>();
+        session.doWork(connection -> insert(connection, rows, true, failures));
+        return failures;
+    }
+
+    // The happy path is one batch and one savepoint. A refused batch first drops the rows whose event id
+    // is stored by now (one query), then halves until each refused row stands alone: k bad rows cost
+    // O(k log n) statements, never one savepoint per row.
+    private void insert(Connection connection, List<MachineEvent> rows, boolean checkStored,
+                        List<InsertFailure> failures) throws SQLException {
+        // Released by the commit; RELEASE SAVEPOINT would be another round trip per batch
+        Savepoint savepoint = connection.setSavepoint();
+        SQLException refused;
+        try (PreparedStatement insert = connection.prepareStatement(INSERT)) {
+            for (MachineEvent row : rows) {
+                bind(insert, row);
+                insert.addBatch();
+            }
+            insert.executeBatch();
+            return;
+        } catch (SQLException e) {
+            refused = e;
+        }
+        connection.rollback(savepoint);
+        SQLException cause = rowLevelCause(refused);
+        // Chosen as a deadlock victim: whoever won holds some of these ids by now, so the batch goes the same
+        // way as a duplicate key. Callers insert in event id order, which leaves only deadlocks with updates.
+        boolean lostLock = cause == null && checkStored && transactionRollback(refused);
+        if (cause == null && !lostLock) {
+            // Not about any one row (connection lost, timeout): the whole batch fails as before
+            throw refused;
+        }
+        if (checkStored) {
+            Set<String> stored = storedEventIds(connection, rows);
+            if (!stored.isEmpty()) {
+                List<MachineEvent> rest = new ArrayList<>(rows.size());
+                for (MachineEvent row : rows) {
+                    if (stored.contains(row.getEventId())) {
+                        failures.add(new InsertFailure(row, InsertFailure.UNIQUE_VIOLATION, "Stored after the dedup lookup"));
+                    } else {
+                        rest.add(row);
+                    }
+                }
+                if (!rest.isEmpty()) {
+                    insert(connection, rest, false, failures);
+                }
+                return;
+            }
+            if (lostLock) {
+                insert(connection, rows, false, failures);
+                return;
+            }
+        }
+        if (rows.size() == 1) {
+            failures.add(new InsertFailure(rows.get(0), cause.getSQLState(), cause.getMessage()));
+            return;
+        }
+        int half = rows.size() / 2;
+        insert(connection, rows.subList(0, half), false, failures);
+        insert(connection, rows.subList(half, rows.size()), false, failures);
+    }
+
+    private void bind(PreparedStatement insert, MachineEvent row) throws SQLException {
+        insert.setLong(1, row.getId());
+        insert.setTimestamp(2, Timestamp.from(row.getEventTime()));
+        insert.setTimestamp(3, Timestamp.from(row.getReceivedTime()));
+        insert.setTimestamp(4, Timestamp.from(row.getCreatedAt()));
+        insert.setTimestamp(5, Timestamp.from(row.getUpdatedAt()));
+        insert.setInt(6, dictionary.keyOf(Kind.MACHINE, row.getMachineId()));
+        insert.setInt(7, dictionary.keyOf(Kind.FACTORY, row.getFactoryId()));
+        insert.setInt(8, dictionary.keyOf(Kind.LINE, row.getLineId()));
+        insert.setInt(9, (int) row.getDurationMs());
+        insert.setInt(10, row.getDefectCount());
+        insert.setString(11, row.getEventId());
+        insert.setBytes(12, HEX.parseHex(row.getPayloadHash()));
+    }
+
+    private Set<String> storedEventIds(Connection connection, List<MachineEvent> rows) throws SQLException {
+        String sql = "SELECT event_id FROM machine_event WHERE event_id IN ("
+                + String.join(", ", Collections.nCopies(rows.size(), "?")) + ")";
+        Set<String> stored = new HashSet<>();
+        try (PreparedStatement select = connection.prepareStatement(sql)) {
+            for (int i = 0; i < rows.size(); i++) {
+                select.setString(i + 1, rows.get(i).getEventId());
+            }
+            try (ResultSet rs = select.executeQuery()) {
+                while (rs.next()) {
+                    stored.add(rs.getString(1));
+                }
+            }
+        }
+        return stored;
+    }
+
+    // SQLState class 40: deadlock or serialization failure, which rolled back only the statement here
+    private static boolean transactionRollback(SQLException refused) {
+        for (SQLException e = refused; e != null; e = e.getNextException()) {
+            if (e.getSQLState() != null && e.getSQLState().startsWith("40")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // The error that names a row: SQLState class 22 (data exception) or 23 (integrity constraint).
+    // Drivers report batch failures as a BatchUpdateException with the real error chained behind it.
+    private static SQLException rowLevelCause(SQLException refused) {
+        for (SQLException e = refused; e != null; e = e.getNextException()) {
+            for (Throwable t = e; t != null; t = t.getCause()) {
+                if (t instanceof SQLException sql && sql.getSQLState() != null
+                        && (sql.getSQLState().startsWith("22") || sql.getSQLState().startsWith("23"))) {
+                    return sql;
+                }
+            }
+        }
+        return null;
+    }
+}
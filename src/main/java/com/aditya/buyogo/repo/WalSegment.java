@@ -0,0 +1,218 @@
+package com.aditya.buyogo.repo;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32C;
+
+// One memory-mapped log file, named after the LSN of its first record. Each frame is
+// [int payload length][int crc32c][long lsn][payload]; the CRC covers lsn and payload. The file is
+// preallocated, so a zero length (or a frame that fails its CRC) marks the end of the log.
+final class WalSegment {
+    static final int HEADER = 16;
+    private static final String SUFFIX = ".wal";
+    private static final byte[] ZEROS = new byte[64 * 1024];
+
+    final Path path;
+    final long baseLsn;
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    // End of the last complete frame; readers never look past it
+    private volatile int limit;
+    private volatile long lastLsn;
+    // Everything before this offset has been forced to disk; guarded by forceLock
+    private int forced;
+    // Not a monitor: a virtual thread would stay pinned to its carrier for the whole msync
+    private final ReentrantLock forceLock = new ReentrantLock();
+    // Set once the segment has been forced and a newer one took over; limit is final from then on
+    private volatile boolean sealed;
+
+    private WalSegment(Path path, long baseLsn, FileChannel channel, MappedByteBuffer buffer) {
+        this.path = path;
+        this.baseLsn = baseLsn;
+        this.channel = channel;
+        this.buffer = buffer;
+        this.lastLsn = baseLsn - 1;
+    }
+
+    // A leftover file of the same name is truncated, so none of its frames can be read back after ours
+    static WalSegment create(Path directory, long baseLsn, int capacity) {
+        return map(directory.resolve(String.format("%020d%s", baseLsn, SUFFIX)), baseLsn, capacity,
+                StandardOpenOption.TRUNCATE_EXISTING);
+    }
+
+    // Maps an existing file and scans it up to the first missing, torn or out-of-sequence frame
+    static WalSegment recover(Path path) {
+        String name = path.getFileName().toString();
+        long baseLsn = Long.parseLong(name.substring(0, name.length() - SUFFIX.length()));
+        try {
+            WalSegment segment = map(path, baseLsn, (int) Files.size(path));
+            segment.scan();
+            return segment;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    static boolean isSegment(Path path) {
+        return path.getFileName().toString().endsWith(SUFFIX);
+    }
+
+    private static WalSegment map(Path path, long baseLsn, int capacity, StandardOpenOption... extra) {
+        try {
+            Set<StandardOpenOption> options = EnumSet.of(
+                    StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            options.addAll(List.of(extra));
+            FileChannel channel = FileChannel.open(path, options);
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+            return new WalSegment(path, baseLsn, channel, buffer);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void scan() {
+        int position = 0;
+        long expected = baseLsn;
+        while (true) {
+            int length = payloadLength(position);
+            if (length <= 0 || frameLsn(position) != expected || !crcMatches(position, length)) {
+                break;
+            }
+            position += HEADER + length;
+            expected++;
+        }
+        limit = position;
+        forced = position;
+        lastLsn = expected - 1;
+    }
+
+    // Zeroes everything past the last intact frame, so a scan stops where the next append ends. Chunks
+    // that are zero already are only read, so a preallocated tail costs no writes.
+    void clearTail() {
+        int end = buffer.capacity();
+        boolean cleared = false;
+        for (int position = limit; position < end; position += ZEROS.length) {
+            int length = Math.min(ZEROS.length, end - position);
+            if (buffer.slice(position, length).mismatch(ByteBuffer.wrap(ZEROS, 0, length)) >= 0) {
+                buffer.put(position, ZEROS, 0, length);
+                cleared = true;
+            }
+        }
+        if (cleared) {
+            buffer.force(limit, end - limit);
+        }
+    }
+
+    boolean fits(int payloadLength) {
+        return (long) limit + HEADER + payloadLength <= buffer.capacity();
+    }
+
+    // Callers serialize appends; readers see the frame once limit moves past it
+    void append(long lsn, byte[] payload) {
+        int position = limit;
+        ByteBuffer frame = buffer.duplicate();
+        frame.position(position + 8);
+        frame.putLong(lsn);
+        frame.put(payload);
+        frame.putInt(position, payload.length);
+        frame.putInt(position + 4, crc(position, payload.length));
+        lastLsn = lsn;
+        limit = position + HEADER + payload.length;
+    }
+
+    WriteAheadLog.Entry read(int position) {
+        if (position >= limit) {
+            return null;
+        }
+        int length = payloadLength(position);
+        byte[] payload = new byte[length];
+        buffer.get(position + HEADER, payload);
+        return new WriteAheadLog.Entry(frameLsn(position), payload,
+                new WriteAheadLog.Position(this, position + HEADER + length));
+    }
+
+    private int payloadLength(int position) {
+        if (position + HEADER > buffer.capacity()) {
+            return 0;
+        }
+        int length = buffer.getInt(position);
+        return length > buffer.capacity() - position - HEADER ? 0 : length;
+    }
+
+    private long frameLsn(int position) {
+        return buffer.getLong(position + 8);
+    }
+
+    private boolean crcMatches(int position, int length) {
+        return buffer.getInt(position + 4) == crc(position, length);
+    }
+
+    private int crc(int position, int length) {
+        CRC32C crc = new CRC32C();
+        crc.update(buffer.slice(position + 8, 8 + length));
+        return (int) crc.getValue();
+    }
+
+    // Only the dirty tail: forcing the whole mapping costs a walk over every page of the segment
+    void force() {
+        forceLock.lock();
+        try {
+            int end = limit;
+            if (end > forced) {
+                buffer.force(forced, end - forced);
+                forced = end;
+            }
+        } finally {
+            forceLock.unlock();
+        }
+    }
+
+    void seal() {
+        force();
+        sealed = true;
+    }
+
+    boolean isSealed() {
+        return sealed;
+    }
+
+    int limit() {
+        return limit;
+    }
+
+    long lastLsn() {
+        return lastLsn;
+    }
+
+    int capacity() {
+        return buffer.capacity();
+    }
+
+    // The mapping itself is released when the buffer is collected
+    void close() {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    void delete() {
+        close();
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,295 @@
+package com.aditya.buyogo.repo;
+
+import com.aditya.buyogo.config.WalProperties;
+import com.aditya.buyogo.config.WalProperties.SyncPolicy;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+
+// Append-only local log of ingested batches, in memory-mapped segment files. Every record gets a
+// log sequence number (LSN); the drainer applies records in LSN order and checkpoints the last one
+// applied, after which fully applied segments are deleted. On startup the segments are scanned and
+// the log resumes after the last intact record.
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "buyogo.wal.enabled", havingValue = "true")
+public class WriteAheadLog {
+    private static final String CHECKPOINT = "checkpoint";
+    private static final String IGNORED_SUFFIX = ".ignored";
+    private static final String DEAD_LETTERS = "dead-letter";
+
+    public record Entry(long lsn, byte[] payload, Position next) {
+    }
+
+    // Read position: the frame at offset in segment. Opaque outside the log.
+    public static final class Position {
+        final WalSegment segment;
+        final int offset;
+
+        Position(WalSegment segment, int offset) {
+            this.segment = segment;
+            this.offset = offset;
+        }
+    }
+
+    private final Path directory;
+    private final int segmentSize;
+    private final long maxSize;
+    private final SyncPolicy sync;
+    private final ConcurrentSkipListMap<Long, WalSegment> segments = new ConcurrentSkipListMap<>();
+    // Locks rather than monitors: both are held across file I/O, and request threads may be virtual
+    // (spring.threads.virtual.enabled), which a monitor would pin to their carrier while they wait
+    private final ReentrantLock appendLock = new ReentrantLock();
+    private final ReentrantLock syncLock = new ReentrantLock();
+    private final ScheduledExecutorService syncer;
+    private WalSegment active;
+    private volatile long lastLsn;
+    private volatile long durableLsn;
+    private volatile long checkpointLsn;
+
+    public WriteAheadLog(WalProperties properties) {
+        this.directory = properties.getDirectory();
+        this.segmentSize = Math.toIntExact(properties.getSegmentSize().toBytes());
+        this.maxSize = properties.getMaxSize().toBytes();
+        this.sync = properties.getSync();
+        recover();
+        if (sync == SyncPolicy.INTERVAL) {
+            long interval = properties.getSyncInterval().toMillis();
+            syncer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "wal-sync");
+                thread.setDaemon(true);
+                return thread;
+            });
+            syncer.scheduleWithFixedDelay(this::sync, interval, interval, TimeUnit.MILLISECONDS);
+        } else {
+            syncer = null;
+        }
+    }
+
+    private void recover() {
+        try {
+            Files.createDirectories(directory);
+            checkpointLsn = readCheckpoint();
+            List<Path> files;
+            try (Stream<Path> listing = Files.list(directory)) {
+                files = listing.filter(WalSegment::isSegment).sorted().toList();
+            }
+            for (int i = 0; i < files.size(); i++) {
+                WalSegment segment = WalSegment.recover(files.get(i));
+                if (segment.lastLsn() < segment.baseLsn) {
+                    // Created but never written, or torn in its first frame
+                    segment.delete();
+                } else if (!segments.isEmpty() && segment.baseLsn != segments.lastEntry().getValue().lastLsn() + 1) {
+                    log.warn("WAL segment {} does not follow LSN {}; moving it and everything after aside",
+                            files.get(i), segments.lastEntry().getValue().lastLsn());
+                    segment.close();
+                    // Left in place, a later rotation would reuse the name and replay its old frames
+                    for (Path ignored : files.subList(i, files.size())) {
+                        Files.move(ignored, ignored.resolveSibling(ignored.getFileName() + IGNORED_SUFFIX),
+                                StandardCopyOption.REPLACE_EXISTING);
+                    }
+                    break;
+                } else {
+                    segments.put(segment.baseLsn, segment);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        lastLsn = segments.isEmpty() ? checkpointLsn : Math.max(checkpointLsn, segments.lastEntry().getValue().lastLsn());
+        durableLsn = lastLsn;
+        for (WalSegment segment : segments.values()) {
+            if (segment != segments.lastEntry().getValue()) {
+                segment.seal();
+            }
+        }
+        if (segments.isEmpty()) {
+            active = WalSegment.create(directory, lastLsn + 1, segmentSize);
+            segments.put(active.baseLsn, active);
+        } else {
+            active = segments.lastEntry().getValue();
+            // Appends resume at the torn point; frames that survived past it must not follow the new ones
+            active.clearTail();
+        }
+        deleteApplied();
+        log.info("Write-ahead log in {}: {} segment(s), LSN {} to {}, checkpoint {}",
+                directory, segments.size(), segments.firstKey(), lastLsn, checkpointLsn);
+    }
+
+    // Logs one record and returns its LSN once durable under the sync policy
+    public long append(byte[] payload) {
+        long lsn;
+        appendLock.lock();
+        try {
+            lsn = lastLsn + 1;
+            if (!active.fits(payload.length)) {
+                rotate(lsn, payload.length);
+            }
+            active.append(lsn, payload);
+            lastLsn = lsn;
+        } finally {
+            appendLock.unlock();
+        }
+        if (sync == SyncPolicy.GROUP) {
+            awaitDurable(lsn);
+        }
+        return lsn;
+    }
+
+    private void rotate(long baseLsn, int payloadLength) {
+        int capacity = Math.max(segmentSize, WalSegment.HEADER + payloadLength);
+        long size = segments.values().stream().mapToLong(WalSegment::capacity).sum();
+        if (size + capacity > maxSize) {
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE,
+                    "Write-ahead log is full (" + size + " bytes not yet applied)");
+        }
+        active.seal();
+        active = WalSegment.create(directory, baseLsn, capacity);
+        segments.put(baseLsn, active);
+    }
+
+    // Group commit: whoever gets the sync lock forces everything appended so far, so appends that
+    // arrive during one fsync all ride on the next one instead of queueing an fsync each
+    private void awaitDurable(long lsn) {
+        syncLock.lock();
+        try {
+            if (durableLsn >= lsn) {
+                return;
+            }
+            WalSegment segment;
+            long target;
+            appendLock.lock();
+            try {
+                segment = active;
+                target = lastLsn;
+            } finally {
+                appendLock.unlock();
+            }
+            // Earlier segments were forced when they were sealed
+            segment.force();
+            durableLsn = target;
+        } finally {
+            syncLock.unlock();
+        }
+    }
+
+    public void sync() {
+        awaitDurable(lastLsn);
+    }
+
+    // Position of the first record after the checkpoint
+    public Position start() {
+        Map.Entry<Long, WalSegment> floor = segments.floorEntry(checkpointLsn + 1);
+        WalSegment segment = floor != null ? floor.getValue() : segments.firstEntry().getValue();
+        Position position = new Position(segment, 0);
+        Entry entry;
+        while ((entry = read(position)) != null && entry.lsn() <= checkpointLsn) {
+            position = entry.next();
+        }
+        return position;
+    }
+
+    // The record at position, or null when the drainer has caught up with appends
+    public Entry read(Position position) {
+        Entry entry = position.segment.read(position.offset);
+        if (entry != null || !position.segment.isSealed()) {
+            return entry;
+        }
+        Map.Entry<Long, WalSegment> next = segments.higherEntry(position.segment.baseLsn);
+        return next == null ? null : read(new Position(next.getValue(), 0));
+    }
+
+    // Records up to lsn are in the database; drop the segments that hold nothing newer
+    public void checkpoint(long lsn) {
+        try {
+            Path temp = directory.resolve(CHECKPOINT + ".tmp");
+            ByteBuffer value = ByteBuffer.allocate(8).putLong(0, lsn);
+            try (var channel = Files.newByteChannel(temp, StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.DSYNC)) {
+                channel.write(value);
+            }
+            Files.move(temp, directory.resolve(CHECKPOINT), StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        checkpointLsn = lsn;
+        deleteApplied();
+    }
+
+    // Sets a record that cannot be applied aside as <lsn>.batch under dead-letter/, so the drainer can
+    // checkpoint past it; the file holds the payload as logged
+    public Path deadLetter(Entry entry) {
+        try {
+            Path directory = Files.createDirectories(this.directory.resolve(DEAD_LETTERS));
+            return Files.write(directory.resolve(String.format("%020d.batch", entry.lsn())), entry.payload(),
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING,
+                    StandardOpenOption.DSYNC);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private long readCheckpoint() throws IOException {
+        Path file = directory.resolve(CHECKPOINT);
+        if (!Files.exists(file)) {
+            return 0;
+        }
+        byte[] value = Files.readAllBytes(file);
+        return value.length == 8 ? ByteBuffer.wrap(value).getLong() : 0;
+    }
+
+    private void deleteApplied() {
+        List<WalSegment> applied = new ArrayList<>();
+        for (WalSegment segment : segments.values()) {
+            if (segment.isSealed() && segment.lastLsn() <= checkpointLsn) {
+                applied.add(segment);
+            }
+        }
+        for (WalSegment segment : applied) {
+            segments.remove(segment.baseLsn);
+            segment.delete();
+        }
+    }
+
+    public long lastLsn() {
+        return lastLsn;
+    }
+
+    public long checkpointLsn() {
+        return checkpointLsn;
+    }
+
+    @PreDestroy
+    public void close() {
+        if (syncer != null) {
+            syncer.shutdown();
+        }
+        appendLock.lock();
+        try {
+            active.force();
+            segments.values().forEach(WalSegment::close);
+        } finally {
+            appendLock.unlock();
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package com.aditya.buyogo.services;
+
+import com.aditya.buyogo.config.ArchiveProperties;
+import com.aditya.buyogo.repo.ArchivedEvent;
+import com.aditya.buyogo.repo.ColumnarArchive;
+import com.aditya.buyogo.repo.ColumnarFile;
+import com.aditya.buyogo.repo.MachineEventPartitions;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+// Moves whole UTC days older than buyogo.archive.after-days from machine_event into the columnar
+// archive, one transaction per file: lock and read up to maxRowsPerFile rows of the day in time order,
+// write them to a forced temporary file, record the file in archive_file, delete the rows, commit, and
+// only then publish the file. A crash at any point leaves each row either in the table or in a
+// committed file, never both and never neither.
+@Slf4j
+@Service
+@ConditionalOnProperty(prefix = "buyogo.archive", name = "enabled", havingValue = "true")
+public class ArchiveService {
+    private static final int DELETE_CHUNK = 1000;
+
+    private static final String SELECT_ROWS = """
+            SELECT id, event_id, machine_key, factory_key, line_key, event_time, received_time,
+                   created_at, updated_at, duration_ms, defect_count, payload_hash
+            FROM machine_event
+            WHERE event_time >= ? AND event_time < ?
+            ORDER BY event_time, id
+            LIMIT ?
+            FOR UPDATE
+            """;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ColumnarArchive archive;
+
+    @Autowired
+    private ArchiveProperties properties;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    // Present when buyogo.etags.enabled=true
+    @Autowired(required = false)
+    private DataVersions dataVersions;
+
+    @Scheduled(cron = "${buyogo.archive.cron:0 45 * * * *}")
+    public void archiveExpired() {
+        LocalDate cutoff = Instant.now().atZone(ZoneOffset.UTC).toLocalDate().minusDays(properties.getAfterDays());
+        long moved = archiveBefore(cutoff);
+        if (moved > 0) {
+            log.info("Archived {} events from before {}", moved, cutoff);
+        }
+    }
+
+    // Archives every event on a UTC day before cutoffDay; returns the number of rows moved
+    public long archiveBefore(LocalDate cutoffDay) {
+        Timestamp cutoff = Timestamp.from(MachineEventPartitions.toInstant(cutoffDay));
+        long moved = 0;
+        Timestamp oldest;
+        while ((oldest = jdbcTemplate.queryForObject(
+                "SELECT MIN(event_time) FROM machine_event WHERE event_time < ?", Timestamp.class, cutoff)) != null) {
+            moved += archiveChunk(oldest.toInstant().atZone(ZoneOffset.UTC).toLocalDate());
+        }
+        return moved;
+    }
+
+    private int archiveChunk(LocalDate day) {
+        Timestamp from = Timestamp.from(MachineEventPartitions.toInstant(day));
+        Timestamp to = Timestamp.from(MachineEventPartitions.toInstant(day.plusDays(1)));
+        Integer moved = new TransactionTemplate(transactionManager).execute(status -> {
+            List<Long> ids = new ArrayList<>();
+            List<ArchivedEvent> rows = new ArrayList<>();
+            jdbcTemplate.query(SELECT_ROWS, rs -> {
+                ids.add(rs.getLong("id"));
+                rows.add(new ArchivedEvent(rs.getString("event_id"), rs.getInt("machine_key"),
+                        rs.getInt("factory_key"), rs.getInt("line_key"),
+                        ColumnarFile.toMicros(rs.getTimestamp("event_time").toInstant()),
+                        ColumnarFile.toMicros(rs.getTimestamp("received_time").toInstant()),
+                        ColumnarFile.toMicros(rs.getTimestamp("created_at").toInstant()),
+                        ColumnarFile.toMicros(rs.getTimestamp("updated_at").toInstant()),
+                        rs.getInt("duration_ms"), rs.getInt("defect_count"), rs.getBytes("payload_hash")));
+            }, from, to, properties.getMaxRowsPerFile());
+            if (rows.isEmpty()) {
+                return 0;
+            }
+            String name = archive.nextName(day);
+            archive.writeTemp(name, rows);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int completion) {
+                    if (completion == STATUS_COMMITTED) {
+                        archive.publish(name);
+                        // Queries between the commit and the publish missed these rows; their ETags must not outlive it
+                        if (dataVersions != null) {
+                            dataVersions.invalidateAll();
+                        }
+                    } else {
+                        archive.discard(name);
+                    }
+                }
+            });
+            jdbcTemplate.update("""
+                    INSERT INTO archive_file (name, row_count, min_event_time, max_event_time, archived_at)
+                    VALUES (?, ?, ?, ?, ?)
+                    """, name, rows.size(),
+                    Timestamp.from(ColumnarFile.fromMicros(rows.get(0).eventTime())),
+                    Timestamp.from(ColumnarFile.fromMicros(rows.get(rows.size() - 1).eventTime())),
+                    Timestamp.from(Instant.now()));
+            for (int start = 0; start < ids.size(); start += DELETE_CHUNK) {
+                List<Long> chunk = ids.subList(start, Math.min(ids.size(), start + DELETE_CHUNK));
+                // The time bounds let Postgres prune to the day's partition
+                Object[] args = new Object[chunk.size() + 2];
+                args[0] = from;
+                args[1] = to;
+                for (int i = 0; i < chunk.size(); i++) {
+                    args[i + 2] = chunk.get(i);
+                }
+                jdbcTemplate.update("DELETE FROM machine_event WHERE event_time >= ? AND event_time < ? AND id IN ("
+                        + String.join(",", Collections.nCopies(chunk.size(), "?")) + ")", args);
+            }
+            log.info("Archived {} events from {} into {}", rows.size(), day, name);
+            return rows.size();
+        });
+        return moved == null ? 0 : moved;
+    }
+}
@@ -0,0 +1,52 @@
+package com.aditya.buyogo.services;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Registered;
+import jdk.jfr.Timespan;
+
+// One EventService.processEvents call. Not registered until JfrConfig sees buyogo.jfr.enabled=true.
+@Name("buyogo.BatchIngest")
+@Label("Batch Ingest")
+@Category({"Buyogo", "Ingestion"})
+@Description("One POST /events/batch processed by EventService, with per-stage time")
+@Registered(false)
+public class BatchIngestEvent extends Event {
+    @Label("Batch Size")
+    int batchSize;
+
+    @Label("Accepted")
+    int accepted;
+
+    @Label("Deduped")
+    int deduped;
+
+    @Label("Updated")
+    int updated;
+
+    @Label("Ignored")
+    @Description("Different payload with an older receivedTime")
+    int ignored;
+
+    @Label("Rejected")
+    int rejected;
+
+    @Label("Hash Time")
+    @Timespan(Timespan.NANOSECONDS)
+    long hashTime;
+
+    @Label("Register Time")
+    @Timespan(Timespan.NANOSECONDS)
+    long registerTime;
+
+    @Label("Lookup Time")
+    @Timespan(Timespan.NANOSECONDS)
+    long lookupTime;
+
+    @Label("Save Time")
+    @Timespan(Timespan.NANOSECONDS)
+    long saveTime;
+}
@@ -0,0 +1,125 @@
+package com.aditya.buyogo.services;
+
+import com.aditya.buyogo.config.Lane;
+import com.aditya.buyogo.config.LaneDataSource;
+import com.aditya.buyogo.config.LaneProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.Duration;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+// Admission control per Lane. Work runs on the calling request thread once the lane has a free slot, so
+// request-scoped state (SQL budget, read-your-writes pinning) carries over; a full queue or a slot wait
+// past the lane's timeout is refused with 503 instead of tying up threads the other lanes need.
+// With buyogo.lanes.enabled=false every call runs straight through.
+@Component
+public class Bulkheads {
+    private final boolean enabled;
+    private final Compartment[] compartments = new Compartment[Lane.values().length];
+
+    public Bulkheads(LaneProperties properties, MeterRegistry registry) {
+        this.enabled = properties.isEnabled();
+        if (enabled) {
+            for (Lane lane : Lane.values()) {
+                compartments[lane.ordinal()] = new Compartment(lane, properties.get(lane), registry);
+            }
+        }
+    }
+
+    public <T> T call(Lane lane, Supplier<T> work) {
+        // Already admitted (a lane calling into another): keep the outer slot and pool
+        if (!enabled || LaneDataSource.currentLane() != null) {
+            return work.get();
+        }
+        Compartment compartment = compartments[lane.ordinal()];
+        compartment.acquire();
+        LaneDataSource.enter(lane);
+        try {
+            return work.get();
+        } finally {
+            LaneDataSource.exit();
+            compartment.slots.release();
+        }
+    }
+
+    private static final class Compartment {
+        final Lane lane;
+        final int queueCapacity;
+        final long timeoutNanos;
+        final Semaphore slots;
+        final AtomicInteger waiting = new AtomicInteger();
+        final Timer wait;
+        final Counter queueFull;
+        final Counter timedOut;
+
+        Compartment(Lane lane, LaneProperties.Settings settings, MeterRegistry registry) {
+            this.lane = lane;
+            this.queueCapacity = settings.getQueueCapacity();
+            this.timeoutNanos = settings.getTimeout().toNanos();
+            // Fair, so queued requests are admitted in arrival order
+            this.slots = new Semaphore(settings.getConcurrency(), true);
+            int concurrency = settings.getConcurrency();
+            Gauge.builder("buyogo.lane.active", slots, s -> concurrency - s.availablePermits())
+                    .description("Requests running in the lane")
+                    .tag("lane", lane.tag())
+                    .register(registry);
+            Gauge.builder("buyogo.lane.queued", waiting, AtomicInteger::get)
+                    .description("Requests waiting for a slot in the lane")
+                    .tag("lane", lane.tag())
+                    .register(registry);
+            wait = Timer.builder("buyogo.lane.wait")
+                    .description("Time a request waited for a slot in the lane")
+                    .tag("lane", lane.tag())
+                    .publishPercentileHistogram()
+                    .minimumExpectedValue(Duration.ofMillis(1))
+                    .maximumExpectedValue(Duration.ofSeconds(30))
+                    .register(registry);
+            queueFull = rejected(registry, "queue-full");
+            timedOut = rejected(registry, "timeout");
+        }
+
+        private Counter rejected(MeterRegistry registry, String reason) {
+            return Counter.builder("buyogo.lane.rejected")
+                    .description("Requests refused by the lane, by reason")
+                    .tag("lane", lane.tag())
+                    .tag("reason", reason)
+                    .register(registry);
+        }
+
+        void acquire() {
+            if (slots.tryAcquire()) {
+                wait.record(0, TimeUnit.NANOSECONDS);
+                return;
+            }
+            if (waiting.incrementAndGet() > queueCapacity) {
+                waiting.decrementAndGet();
+                queueFull.increment();
+                throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "The " + lane.tag() + " lane is full");
+            }
+            long start = System.nanoTime();
+            boolean admitted = false;
+            try {
+                admitted = slots.tryAcquire(timeoutNanos, TimeUnit.NANOSECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                waiting.decrementAndGet();
+                wait.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            }
+            if (!admitted) {
+                timedOut.increment();
+                throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE,
+                        "Timed out waiting for the " + lane.tag() + " lane");
+            }
+        }
+    }
+}
@@ -0,0 +1,313 @@
+package com.aditya.buyogo.services;
+
+import com.aditya.buyogo.config.CardinalityProperties;
+import com.aditya.buyogo.dto.CardinalityDTO;
+import com.aditya.buyogo.dto.EventDTO;
+import com.aditya.buyogo.models.MachineEvent;
+import com.aditya.buyogo.repo.ColumnarFile;
+import com.aditya.buyogo.repo.IdentifierDictionary;
+import com.aditya.buyogo.repo.IdentifierDictionary.Kind;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Distinct counts without COUNT(DISTINCT): HyperLogLog sketches per bucket of
+//   MACHINES  machines with a stored event, by event time, for all factories, per factory and per line
+//   RECEIVED  event ids arriving in batches, rejected and duplicate ones included, by arrival time
+//   STORED    event ids inserted into machine_event, by arrival time
+// Sketches live in memory while their bucket is current and are flushed to cardinality_sketch every
+// flushInterval under this node's name. A query merges every node's rows for the window with what
+// this node has not flushed yet; union is idempotent, so counting a sketch twice changes nothing.
+@Slf4j
+@Service
+@ConditionalOnProperty(prefix = "buyogo.cardinality", name = "enabled", havingValue = "true", matchIfMissing = true)
+public class CardinalityService implements IngestionListener {
+    public enum Metric { MACHINES, RECEIVED, STORED }
+
+    // scope_key for counts over all factories; dictionary ids start at 1
+    private static final int ALL = 0;
+
+    @Autowired
+    private CardinalityProperties properties;
+
+    @Autowired
+    private IdentifierDictionary dictionary;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private long bucketMicros;
+    private String node;
+    // Bucket start (micros) -> sketches; only the buckets written since the last flush, and the current one
+    private final Map<Long, Bucket> buckets = new HashMap<>();
+
+    @PostConstruct
+    void init() {
+        bucketMicros = properties.getBucket().toNanos() / 1000;
+        node = properties.getNode();
+        if (node == null || node.isBlank()) {
+            try {
+                node = InetAddress.getLocalHost().getHostName();
+            } catch (UnknownHostException e) {
+                node = "local";
+            }
+        }
+        // Fail at startup rather than on the first event
+        new HyperLogLog(properties.getPrecision());
+    }
+
+    @Override
+    public synchronized void received(List<EventDTO> events) {
+        Sketch sketch = bucket(EventColumns.micros(Instant.now())).sketch(Metric.RECEIVED, ALL);
+        for (EventDTO event : events) {
+            if (event.getEventId() != null) {
+                sketch.add(HyperLogLog.hash(event.getEventId()));
+            }
+        }
+    }
+
+    @Override
+    public void afterCommit(List<EventChange> changes) {
+        // Keys are resolved before taking the monitor: a cache miss is a database read
+        int[] machines = new int[changes.size()];
+        Integer[] factories = new Integer[changes.size()];
+        Integer[] lines = new Integer[changes.size()];
+        for (int i = 0; i < changes.size(); i++) {
+            MachineEvent event = changes.get(i).current();
+            machines[i] = keyOf(Kind.MACHINE, event.getMachineId());
+            if (machines[i] != IdentifierDictionary.UNKNOWN_KEY) {
+                factories[i] = keyOf(Kind.FACTORY, event.getFactoryId());
+                lines[i] = keyOf(Kind.LINE, event.getLineId());
+            }
+        }
+        synchronized (this) {
+            Sketch stored = bucket(EventColumns.micros(Instant.now())).sketch(Metric.STORED, ALL);
+            Bucket bucket = null;
+            for (int i = 0; i < changes.size(); i++) {
+                EventChange change = changes.get(i);
+                MachineEvent event = change.current();
+                if (change.previous() == null) {
+                    stored.add(HyperLogLog.hash(event.getEventId()));
+                }
+                long time = EventColumns.micros(event.getEventTime());
+                if (bucket == null || time < bucket.start || time >= bucket.start + bucketMicros) {
+                    bucket = bucket(time);
+                }
+                if (machines[i] == IdentifierDictionary.UNKNOWN_KEY) {
+                    continue;
+                }
+                long hash = HyperLogLog.hash(machines[i]);
+                bucket.sketch(Metric.MACHINES, ALL).add(hash);
+                bucket.machines(factories[i]).add(hash);
+                bucket.machines(lines[i]).add(hash);
+            }
+        }
+    }
+
+    // Distinct machines (optionally in one factory or line) or event ids over [from, to), widened to whole buckets
+    public CardinalityDTO count(Metric metric, String factoryId, String lineId, Instant from, Instant to) {
+        long first = Math.floorDiv(EventColumns.micros(from), bucketMicros) * bucketMicros;
+        long end = Math.max(first, -Math.floorDiv(-EventColumns.micros(to), bucketMicros) * bucketMicros);
+        CardinalityDTO response = new CardinalityDTO();
+        response.setMetric(metric.name().toLowerCase());
+        response.setFactoryId(factoryId);
+        response.setLineId(lineId);
+        response.setFrom(ColumnarFile.fromMicros(first));
+        response.setTo(ColumnarFile.fromMicros(end));
+        response.setRelativeStandardError(HyperLogLog.standardError(properties.getPrecision()));
+
+        int scope = ALL;
+        if (lineId != null || factoryId != null) {
+            scope = lineId != null ? dictionary.keyOf(Kind.LINE, lineId) : dictionary.keyOf(Kind.FACTORY, factoryId);
+            if (scope == IdentifierDictionary.UNKNOWN_KEY) {
+                return response;
+            }
+        }
+        HyperLogLog union = new HyperLogLog(properties.getPrecision());
+        int scopeKey = scope;
+        jdbcTemplate.query("""
+                SELECT registers FROM cardinality_sketch
+                WHERE metric = ? AND scope_key = ? AND bucket_start >= ? AND bucket_start < ?""",
+                (RowCallbackHandler) rs -> union.merge(HyperLogLog.fromBytes(rs.getBytes(1))), metric.ordinal(), scopeKey,
+                Timestamp.from(ColumnarFile.fromMicros(first)), Timestamp.from(ColumnarFile.fromMicros(end)));
+        synchronized (this) {
+            for (Bucket bucket : buckets.values()) {
+                Sketch sketch = bucket.start >= first && bucket.start < end ? bucket.find(metric, scopeKey) : null;
+                if (sketch != null) {
+                    union.merge(sketch.registers);
+                }
+            }
+        }
+        response.setEstimate(union.estimate());
+        return response;
+    }
+
+    // Writes every sketch changed since the last flush, then forgets buckets that are no longer current
+    @Scheduled(fixedDelayString = "${buyogo.cardinality.flush-interval:PT30S}")
+    @PreDestroy
+    public void flush() {
+        List<Pending> pending = new ArrayList<>();
+        synchronized (this) {
+            for (Bucket bucket : buckets.values()) {
+                bucket.forEach((metric, scope, sketch) -> {
+                    if (sketch.dirty) {
+                        pending.add(new Pending(bucket.start, metric, scope, sketch, sketch.persisted ? sketch.registers.toBytes() : null));
+                        sketch.dirty = false;
+                    }
+                });
+            }
+        }
+        Instant now = Instant.now();
+        int failed = 0;
+        for (Pending write : pending) {
+            try {
+                write(write, now);
+            } catch (RuntimeException e) {
+                // Written again on the next flush
+                synchronized (this) {
+                    write.sketch.dirty = true;
+                }
+                if (failed++ == 0) {
+                    log.warn("Could not flush cardinality sketches: {}", e.getMessage());
+                }
+            }
+        }
+        synchronized (this) {
+            long current = Math.floorDiv(EventColumns.micros(now), bucketMicros) * bucketMicros;
+            buckets.values().removeIf(bucket -> bucket.start < current && !bucket.dirty());
+        }
+    }
+
+    private void write(Pending write, Instant now) {
+        Timestamp bucketStart = Timestamp.from(ColumnarFile.fromMicros(write.bucketStart));
+        byte[] registers = write.registers;
+        if (registers == null) {
+            // First write of this sketch since startup: fold in what this node stored before
+            List<byte[]> stored = jdbcTemplate.query("""
+                    SELECT registers FROM cardinality_sketch
+                    WHERE metric = ? AND scope_key = ? AND bucket_start = ? AND node = ?""",
+                    (rs, row) -> rs.getBytes(1), write.metric.ordinal(), write.scope, bucketStart, node);
+            synchronized (this) {
+                for (byte[] bytes : stored) {
+                    write.sketch.registers.merge(HyperLogLog.fromBytes(bytes));
+                }
+                write.sketch.persisted = true;
+                registers = write.sketch.registers.toBytes();
+            }
+        }
+        int updated = jdbcTemplate.update("""
+                UPDATE cardinality_sketch SET registers = ?, updated_at = ?
+                WHERE metric = ? AND scope_key = ? AND bucket_start = ? AND node = ?""",
+                registers, Timestamp.from(now), write.metric.ordinal(), write.scope, bucketStart, node);
+        if (updated == 0) {
+            // Only this node writes its rows, so nothing can insert between the UPDATE and here
+            jdbcTemplate.update("""
+                    INSERT INTO cardinality_sketch (metric, scope_key, bucket_start, node, registers, updated_at)
+                    VALUES (?, ?, ?, ?, ?, ?)""",
+                    write.metric.ordinal(), write.scope, bucketStart, node, registers, Timestamp.from(now));
+        }
+    }
+
+    private Bucket bucket(long micros) {
+        long start = Math.floorDiv(micros, bucketMicros) * bucketMicros;
+        return buckets.computeIfAbsent(start, Bucket::new);
+    }
+
+    // Boxed, but the dictionary's cache hands out the same Integer every time
+    private Integer keyOf(Kind kind, String value) {
+        Integer key = dictionary.cachedKeyOf(kind, value);
+        return key != null ? key : dictionary.keyOf(kind, value);
+    }
+
+    // registers is null when the sketch still has to be merged with this node's stored row
+    private record Pending(long bucketStart, Metric metric, int scope, Sketch sketch, byte[] registers) {
+    }
+
+    private interface SketchVisitor {
+        void visit(Metric metric, int scope, Sketch sketch);
+    }
+
+    private final class Sketch {
+        final HyperLogLog registers = new HyperLogLog(properties.getPrecision());
+        // Changed since the last flush
+        boolean dirty;
+        // Written (or merged with this node's row) since startup, so the row holds nothing it lacks
+        boolean persisted;
+
+        void add(long hash) {
+            if (registers.add(hash)) {
+                dirty = true;
+            }
+        }
+    }
+
+    private final class Bucket {
+        final long start;
+        // Per metric, over all factories
+        final Sketch[] all = new Sketch[Metric.values().length];
+        // Factory or line key -> its MACHINES sketch
+        final Map<Integer, Sketch> machines = new HashMap<>();
+
+        Bucket(long start) {
+            this.start = start;
+        }
+
+        Sketch sketch(Metric metric, int scope) {
+            if (scope != ALL) {
+                return machines(scope);
+            }
+            Sketch sketch = all[metric.ordinal()];
+            if (sketch == null) {
+                sketch = new Sketch();
+                all[metric.ordinal()] = sketch;
+            }
+            return sketch;
+        }
+
+        Sketch machines(Integer scope) {
+            Sketch sketch = machines.get(scope);
+            if (sketch == null) {
+                sketch = new Sketch();
+                machines.put(scope, sketch);
+            }
+            return sketch;
+        }
+
+        Sketch find(Metric metric, int scope) {
+            if (scope == ALL) {
+                return all[metric.ordinal()];
+            }
+            return metric == Metric.MACHINES ? machines.get(scope) : null;
+        }
+
+        boolean dirty() {
+            boolean[] dirty = {false};
+            forEach((metric, scope, sketch) -> dirty[0] |= sketch.dirty);
+            return dirty[0];
+        }
+
+        void forEach(SketchVisitor visitor) {
+            for (Metric metric : Metric.values()) {
+                if (all[metric.ordinal()] != null) {
+                    visitor.visit(metric, ALL, all[metric.ordinal()]);
+                }
+            }
+            machines.forEach((scope, sketch) -> visitor.visit(Metric.MACHINES, scope, sketch));
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package com.aditya.buyogo.services;
+
+import com.aditya.buyogo.config.LaneProperties;
+import com.aditya.buyogo.config.RoutingProperties;
+import com.aditya.buyogo.config.ShardingProperties;
+import com.aditya.buyogo.models.MachineEvent;
+import com.aditya.buyogo.repo.IdentifierDictionary.Kind;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Data versions per machine and per factory, for conditional GETs on /states. Each committed batch takes
+// the next tick of one clock and stamps it on every machine and factory it wrote, before and after the
+// change, so an event moved elsewhere changes both. A scope's version is its latest stamp, or its kind's
+// floor, whichever is later. invalidateAll() raises every floor when rows leave without a batch (dropped
+// partitions, archiving); invalidate(FACTORY) raises one when factory answers change without a write
+// (a summary refresh). Versions restart with the process, so every ETag carries a random per-process epoch.
+// A batch is stamped just after its commit: a request in between may still be answered 304, once.
+// The versions live in this JVM and only see the batches it commits, so they are refused alongside read
+// replicas (a lagging replica's body would get the current tag), shards and lanes, the multi-node setups.
+@Service
+@ConditionalOnProperty(prefix = "buyogo.etags", name = "enabled", havingValue = "true")
+public class DataVersions implements IngestionListener {
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private final long epoch = ThreadLocalRandom.current().nextLong();
+    private final AtomicLong clock = new AtomicLong();
+    private final Map<Kind, Long> floors = new ConcurrentHashMap<>();
+    private final Map<String, Long> machines = new ConcurrentHashMap<>();
+    private final Map<String, Long> factories = new ConcurrentHashMap<>();
+
+    public DataVersions(RoutingProperties routing, ShardingProperties sharding, LaneProperties lanes) {
+        if (routing.isEnabled() || sharding.isEnabled() || lanes.isEnabled()) {
+            throw new IllegalStateException(
+                    "buyogo.etags cannot be combined with buyogo.datasource.routing, buyogo.sharding or buyogo.lanes");
+        }
+    }
+
+    @Override
+    public void afterCommit(List<EventChange> changes) {
+        long stamp = clock.incrementAndGet();
+        for (EventChange change : changes) {
+            if (change.previous() != null) {
+                stamp(change.previous(), stamp);
+            }
+            stamp(change.current(), stamp);
+        }
+    }
+
+    // Every scope changes version, for writes that bypass ingestion
+    public void invalidateAll() {
+        long tick = clock.incrementAndGet();
+        floors.merge(Kind.MACHINE, tick, Math::max);
+        floors.merge(Kind.FACTORY, tick, Math::max);
+    }
+
+    public void invalidate(Kind kind) {
+        floors.merge(kind, clock.incrementAndGet(), Math::max);
+    }
+
+    public long version(Kind kind, String id) {
+        Long stamp = scopes(kind).get(id);
+        long floor = floors.getOrDefault(kind, 0L);
+        return stamp == null ? floor : Math.max(stamp, floor);
+    }
+
+    // Weak validator for one query over one scope. The query (endpoint and parameters) is hashed in, so
+    // a tag sent back for another window never matches. Read it before running the query: a batch that
+    // commits meanwhile then changes the next tag, even if this response already includes it.
+    public String etag(Kind kind, String id, Object... query) {
+        long hash = hash(FNV_OFFSET, id);
+        for (Object part : query) {
+            hash = hash(hash, String.valueOf(part));
+        }
+        return "W/\"" + Long.toHexString(epoch) + "-" + Long.toHexString(version(kind, id))
+                + "-" + Long.toHexString(hash) + "\"";
+    }
+
+    private void stamp(MachineEvent event, long stamp) {
+        if (event.getMachineId() != null) {
+            machines.merge(event.getMachineId(), stamp, Math::max);
+        }
+        if (event.getFactoryId() != null) {
+            factories.merge(event.getFactoryId(), stamp, Math::max);
+        }
+    }
+
+    private Map<String, Long> scopes(Kind kind) {
+        return switch (kind) {
+            case MACHINE -> machines;
+            case FACTORY -> factories;
+            default -> throw new IllegalArgumentException("No data versions for " + kind);
+        };
+    }
+
+    // FNV-1a over the characters, with a separator so ("ab", "c") and ("a", "bc") differ
+    private static long hash(long hash, String value) {
+        for (int i = 0; i < value.length(); i++) {
+            hash = (hash ^ value.charAt(i)) * FNV_PRIME;
+        }
+        return (hash ^ 0xffff) * FNV_PRIME;
+    }
+}
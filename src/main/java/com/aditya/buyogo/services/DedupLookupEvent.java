@@ -0,0 +1,22 @@
+package com.aditya.buyogo.services;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Registered;
+
+// One findByEventIdIn chunk of the dedup lookup.
+@Name("buyogo.DedupLookup")
+@Label("Dedup Lookup")
+@Category({"Buyogo", "Ingestion"})
+@Description("Bulk lookup of stored rows for a chunk of incoming event ids")
+@Registered(false)
+public class DedupLookupEvent extends Event {
+    @Label("Ids Requested")
+    int idsRequested;
+
+    @Label("Rows Found")
+    int rowsFound;
+}
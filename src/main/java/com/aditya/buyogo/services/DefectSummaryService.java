@@ -0,0 +1,182 @@
+package com.aditya.buyogo.services;
+
+import com.aditya.buyogo.config.SummaryProperties;
+import com.aditya.buyogo.repo.IdentifierDictionary;
+import com.aditya.buyogo.repo.IdentifierDictionary.Kind;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Defects and events per factory, line and UTC hour in line_defects_hourly (V8), so
+// /states/top-defect-lines does not group every row of a long window. On Postgres it is a materialized
+// view refreshed CONCURRENTLY, so readers keep the previous contents meanwhile; H2 rebuilds a table in
+// one transaction. Each refresh records in summary_refresh the time just before it read machine_event:
+// the summary holds every write committed before that as_of, and StateService only takes hours that
+// had ended by then from it. Refreshed every refreshInterval and, off the ingesting thread, once
+// refreshAfterEvents rows have been written since the last refresh. With buyogo.sharding every shard
+// has its own summary and all are refreshed in turn.
+@Slf4j
+@Service
+@ConditionalOnProperty(prefix = "buyogo.summaries", name = "enabled", havingValue = "true")
+public class DefectSummaryService implements IngestionListener {
+    static final String NAME = "line_defects_hourly";
+
+    // Hours counted from the epoch in UTC, whatever offset a value was stored with
+    private static final String H2_REBUILD = """
+            INSERT INTO line_defects_hourly (factory_key, line_key, bucket_start, total_defects, event_count)
+            SELECT factory_key, line_key, bucket_start, SUM(defect_count), COUNT(*)
+            FROM (SELECT factory_key, line_key, defect_count,
+                         DATEADD(HOUR, DATEDIFF(HOUR, TIMESTAMP WITH TIME ZONE '1970-01-01 00:00:00+00', event_time),
+                                 TIMESTAMP WITH TIME ZONE '1970-01-01 00:00:00+00') AS bucket_start
+                  FROM machine_event
+                  WHERE defect_count >= 0) hours
+            GROUP BY factory_key, line_key, bucket_start
+            """;
+
+    private static final String SELECT_LINES = """
+            SELECT line_key, SUM(total_defects), SUM(event_count)
+            FROM line_defects_hourly
+            WHERE factory_key = ? AND bucket_start >= ? AND bucket_start < ?
+            GROUP BY line_key
+            """;
+
+    @Autowired
+    private SummaryProperties properties;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private IdentifierDictionary dictionary;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private Shards shards;
+
+    // Present when buyogo.etags.enabled=true
+    @Autowired(required = false)
+    private DataVersions dataVersions;
+
+    private TransactionTemplate refreshes;
+    // Not a monitor: a refresh triggered by ingestion runs on a virtual thread and waits on JDBC
+    private final Lock refreshLock = new ReentrantLock();
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicBoolean queued = new AtomicBoolean();
+
+    @PostConstruct
+    void init() {
+        refreshes = new TransactionTemplate(transactionManager);
+        refreshes.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    @Override
+    public void afterCommit(List<EventChange> changes) {
+        long threshold = properties.getRefreshAfterEvents();
+        if (threshold > 0 && written.addAndGet(changes.size()) >= threshold && queued.compareAndSet(false, true)) {
+            Thread.ofVirtual().name("summary-refresh").start(() -> {
+                queued.set(false);
+                try {
+                    refresh();
+                } catch (RuntimeException e) {
+                    log.warn("Refreshing {} failed: {}", NAME, e.getMessage(), e);
+                }
+            });
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${buyogo.summaries.refresh-interval:PT5M}")
+    public void refresh() {
+        refreshLock.lock();
+        try {
+            written.set(0);
+            shards.forEach(this::refreshShard);
+            // Top-defect-lines answers may have changed without a write to their factory
+            if (dataVersions != null) {
+                dataVersions.invalidate(Kind.FACTORY);
+            }
+        } finally {
+            refreshLock.unlock();
+        }
+    }
+
+    // as_of of the summary on the current shard, or null before its first refresh
+    public Instant asOf() {
+        List<Timestamp> asOf = jdbcTemplate.queryForList("SELECT as_of FROM summary_refresh WHERE name = ?", Timestamp.class, NAME);
+        return asOf.isEmpty() ? null : asOf.get(0).toInstant();
+    }
+
+    // lineId -> {defects, events} for one factory over whole hours, from <= bucket_start < to
+    public Map<String, long[]> lineTotals(String factoryId, Instant from, Instant to) {
+        Map<String, long[]> totals = new HashMap<>();
+        int factoryKey = dictionary.keyOf(Kind.FACTORY, factoryId);
+        if (factoryKey == IdentifierDictionary.UNKNOWN_KEY) {
+            return totals;
+        }
+        jdbcTemplate.query(SELECT_LINES, (RowCallbackHandler) rs ->
+                totals.put(dictionary.valueOf(rs.getInt(1)), new long[]{rs.getLong(2), rs.getLong(3)}),
+                factoryKey, Timestamp.from(from), Timestamp.from(to));
+        return totals;
+    }
+
+    static Instant hourCeiling(Instant instant) {
+        Instant floor = hourFloor(instant);
+        return floor.equals(instant) ? floor : floor.plus(1, ChronoUnit.HOURS);
+    }
+
+    static Instant hourFloor(Instant instant) {
+        return instant.truncatedTo(ChronoUnit.HOURS);
+    }
+
+    private void refreshShard(String shard) {
+        long started = System.nanoTime();
+        Instant asOf = Instant.now();
+        refreshes.executeWithoutResult(status -> {
+            if (isPostgres()) {
+                Boolean populated = jdbcTemplate.queryForObject(
+                        "SELECT ispopulated FROM pg_matviews WHERE schemaname = current_schema() AND matviewname = ?",
+                        Boolean.class, NAME);
+                // CONCURRENTLY needs a populated view; the first refresh fills it under an exclusive lock
+                jdbcTemplate.execute(Boolean.TRUE.equals(populated)
+                        ? "REFRESH MATERIALIZED VIEW CONCURRENTLY " + NAME
+                        : "REFRESH MATERIALIZED VIEW " + NAME);
+            } else {
+                jdbcTemplate.update("DELETE FROM " + NAME);
+                jdbcTemplate.update(H2_REBUILD);
+            }
+            Timestamp now = Timestamp.from(Instant.now());
+            if (jdbcTemplate.update("UPDATE summary_refresh SET as_of = ?, refreshed_at = ? WHERE name = ?",
+                    Timestamp.from(asOf), now, NAME) == 0) {
+                jdbcTemplate.update("INSERT INTO summary_refresh (name, as_of, refreshed_at) VALUES (?, ?, ?)",
+                        NAME, Timestamp.from(asOf), now);
+            }
+        });
+        log.debug("Refreshed {} on shard {} in {} ms", NAME, shard, (System.nanoTime() - started) / 1_000_000);
+    }
+
+    private boolean isPostgres() {
+        return Boolean.TRUE.equals(jdbcTemplate.execute((ConnectionCallback<Boolean>) connection ->
+                "PostgreSQL".equals(connection.getMetaData().getDatabaseProductName())));
+    }
+}
@@ -0,0 +1,80 @@
+package com.aditya.buyogo.services;
+
+import com.aditya.buyogo.dto.EventDTO;
+import com.aditya.buyogo.dto.EventPageDTO;
+import com.aditya.buyogo.models.MachineEvent;
+import com.aditya.buyogo.repo.EventFilter;
+import com.aditya.buyogo.repo.MachineEventRepository;
+import com.aditya.buyogo.utils.EventCursor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.Comparator;
+import java.util.List;
+
+@Service
+@Transactional(readOnly = true)
+public class EventBrowseService {
+    static final int DEFAULT_LIMIT = 100;
+    static final int MAX_LIMIT = 1000;
+
+    @Autowired
+    private MachineEventRepository machineEventRepository;
+
+    @Autowired(required = false)
+    private Shards shards = Shards.single();
+
+    public EventPageDTO getEvents(EventFilter filter, String cursor, Integer limit) {
+        int pageSize = limit == null ? DEFAULT_LIMIT : Math.min(Math.max(limit, 1), MAX_LIMIT);
+        EventCursor after = null;
+        if (cursor != null && !cursor.isBlank()) {
+            try {
+                after = EventCursor.decode(cursor);
+            } catch (IllegalArgumentException e) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage(), e);
+            }
+        }
+
+        // One extra row tells us whether another page exists without a COUNT query.
+        List<MachineEvent> rows = page(filter, after, pageSize + 1);
+        boolean hasMore = rows.size() > pageSize;
+        List<MachineEvent> page = hasMore ? rows.subList(0, pageSize) : rows;
+
+        EventPageDTO response = new EventPageDTO();
+        response.setEvents(page.stream().map(this::toDTO).toList());
+        response.setHasMore(hasMore);
+        if (hasMore) {
+            MachineEvent last = page.get(page.size() - 1);
+            response.setNextCursor(new EventCursor(last.getEventTime(), last.getEventId()).encode());
+        }
+        return response;
+    }
+
+    // Without a factory, every shard's page is read and merged; the cursor order is the same on all shards
+    private List<MachineEvent> page(EventFilter filter, EventCursor after, int limit) {
+        if (!shards.isSharded() || filter.getFactoryId() != null) {
+            return shards.forFactory(filter.getFactoryId(), () -> machineEventRepository.findPage(filter, after, limit));
+        }
+        return shards.gather(() -> machineEventRepository.findPage(filter, after, limit)).stream()
+                .sorted(Comparator.comparing(MachineEvent::getEventTime).thenComparing(MachineEvent::getEventId))
+                .limit(limit)
+                .toList();
+    }
+
+    private EventDTO toDTO(MachineEvent entity) {
+        EventDTO dto = new EventDTO();
+        dto.setEventId(entity.getEventId());
+        dto.setEventTime(entity.getEventTime());
+        dto.setReceivedTime(entity.getReceivedTime());
+        dto.setMachineId(entity.getMachineId());
+        dto.setDurationMs(entity.getDurationMs());
+        dto.setDefectCount(entity.getDefectCount());
+        dto.setFactoryId(entity.getFactoryId());
+        dto.setLineId(entity.getLineId());
+        dto.setPayloadHash(entity.getPayloadHash());
+        return dto;
+    }
+}
@@ -0,0 +1,8 @@
+package com.aditya.buyogo.services;
+
+import com.aditya.buyogo.models.MachineEvent;
+
+// One stored row as committed by a batch. previous is a detached copy of the row before the
+// batch overwrote it, or null for a new event.
+public record EventChange(MachineEvent previous, MachineEvent current) {
+}
@@ -0,0 +1,166 @@
+package com.aditya.buyogo.services;
+
+import com.aditya.buyogo.dto.EventDTO;
+import com.aditya.buyogo.models.MachineEvent;
+import com.aditya.buyogo.utils.PayloadHasher;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+
+// One batch as parallel arrays, so validation, hashing and classification read primitives instead of
+// a DTO, a hash String and an entity per event. Times are epoch micros (what the columns store),
+// machine/factory/line ids are indexes into per-batch tables of distinct values, and the SHA-256
+// hashes sit back to back in one array. Entities are only built for rows that get written.
+final class EventColumns {
+    private static final HexFormat HEX = HexFormat.of();
+    // receivedTime was missing; never newer than a stored row
+    private static final long MISSING = Long.MIN_VALUE;
+
+    final int size;
+    final String[] eventIds;
+    final long[] eventTimes;
+    final long[] receivedTimes;
+    final long[] durations;
+    final int[] defects;
+    final int[] machines;
+    final int[] factories;
+    final int[] lines;
+    final byte[] hashes;
+    final Interned machineIds = new Interned();
+    final Interned factoryIds = new Interned();
+    final Interned lineIds = new Interned();
+    // The Instants the client sent, handed to entities as-is rather than rebuilt from micros
+    private final List<EventDTO> source;
+
+    private EventColumns(List<EventDTO> events) {
+        size = events.size();
+        source = events;
+        eventIds = new String[size];
+        eventTimes = new long[size];
+        receivedTimes = new long[size];
+        durations = new long[size];
+        defects = new int[size];
+        machines = new int[size];
+        factories = new int[size];
+        lines = new int[size];
+        hashes = new byte[size * PayloadHasher.HASH_LENGTH];
+    }
+
+    // Returns the batch with every hash filled in, and the nanos spent hashing in hashNanos[0]
+    static EventColumns of(List<EventDTO> events, long[] hashNanos) {
+        EventColumns columns = new EventColumns(events);
+        PayloadHasher hasher = new PayloadHasher();
+        for (int row = 0; row < columns.size; row++) {
+            EventDTO event = events.get(row);
+            long hashStart = System.nanoTime();
+            hasher.hash(event, columns.hashes, row * PayloadHasher.HASH_LENGTH);
+            hashNanos[0] += System.nanoTime() - hashStart;
+            columns.eventIds[row] = event.getEventId();
+            columns.eventTimes[row] = micros(event.getEventTime());
+            columns.receivedTimes[row] = event.getReceivedTime() == null ? MISSING : micros(event.getReceivedTime());
+            columns.durations[row] = event.getDurationMs();
+            columns.defects[row] = event.getDefectCount();
+            columns.machines[row] = columns.machineIds.indexOf(event.getMachineId());
+            columns.factories[row] = columns.factoryIds.indexOf(event.getFactoryId());
+            columns.lines[row] = columns.lineIds.indexOf(event.getLineId());
+        }
+        return columns;
+    }
+
+    // The validation rules for every ingestion path; null when the event may be stored. latestEventTime
+    // comes from latestEventTime(), read once per batch.
+    static String rejectionReason(long durationMs, long eventTime, long latestEventTime) {
+        if (durationMs < 0 || durationMs > 3600000) {
+            return EventService.INVALID_DURATION;
+        } else if (eventTime > latestEventTime) {
+            return EventService.INVALID_EVENT_TIME;
+        }
+        return null;
+    }
+
+    static String rejectionReason(EventDTO event, long latestEventTime) {
+        return rejectionReason(event.getDurationMs(), micros(event.getEventTime()), latestEventTime);
+    }
+
+    String rejectionReason(int row, long latestEventTime) {
+        return rejectionReason(durations[row], eventTimes[row], latestEventTime);
+    }
+
+    // Event times may run up to 15 minutes ahead of the clock
+    static long latestEventTime() {
+        return micros(Instant.now().plusSeconds(15 * 60));
+    }
+
+    boolean receivedAfter(int row, Instant stored) {
+        return receivedTimes[row] != MISSING && receivedTimes[row] > micros(stored);
+    }
+
+    // Compares against a stored hex hash without decoding it
+    boolean hashEquals(int row, String hex) {
+        int offset = row * PayloadHasher.HASH_LENGTH;
+        if (hex == null || hex.length() != PayloadHasher.HASH_LENGTH * 2) {
+            return false;
+        }
+        for (int i = 0; i < PayloadHasher.HASH_LENGTH; i++) {
+            int high = Character.digit(hex.charAt(2 * i), 16);
+            int low = Character.digit(hex.charAt(2 * i + 1), 16);
+            if (high < 0 || low < 0 || (byte) (high << 4 | low) != hashes[offset + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    MachineEvent toEntity(int row, MachineEvent entity) {
+        EventDTO event = source.get(row);
+        entity.setEventId(eventIds[row]);
+        entity.setEventTime(event.getEventTime());
+        entity.setReceivedTime(event.getReceivedTime());
+        entity.setMachineId(machineIds.get(machines[row]));
+        entity.setDurationMs(durations[row]);
+        entity.setDefectCount(defects[row]);
+        entity.setFactoryId(factoryIds.get(factories[row]));
+        entity.setPayloadHash(HEX.formatHex(hashes, row * PayloadHasher.HASH_LENGTH, (row + 1) * PayloadHasher.HASH_LENGTH));
+        entity.setLineId(lineIds.get(lines[row]));
+        return entity;
+    }
+
+    // Saturates instead of overflowing; anything that far out is rejected or compared, never stored as micros
+    static long micros(Instant instant) {
+        long seconds = instant.getEpochSecond();
+        if (seconds > Long.MAX_VALUE / 1_000_000 - 1) {
+            return Long.MAX_VALUE;
+        } else if (seconds < Long.MIN_VALUE / 1_000_000 + 1) {
+            return MISSING + 1;
+        }
+        return seconds * 1_000_000 + instant.getNano() / 1_000;
+    }
+
+    // Distinct values in first-seen order; a batch usually names a few dozen machines and lines
+    static final class Interned {
+        private final Map<String, Integer> indexes = new HashMap<>();
+        private final List<String> values = new ArrayList<>();
+
+        int indexOf(String value) {
+            Integer index = indexes.get(value);
+            if (index == null) {
+                index = values.size();
+                indexes.put(value, index);
+                values.add(value);
+            }
+            return index;
+        }
+
+        String get(int index) {
+            return values.get(index);
+        }
+
+        int size() {
+            return values.size();
+        }
+    }
+}
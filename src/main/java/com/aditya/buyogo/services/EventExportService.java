@@ -0,0 +1,129 @@
+package com.aditya.buyogo.services;
+
+import com.aditya.buyogo.dto.EventDTO;
+import com.aditya.buyogo.repo.ArchivedEvent;
+import com.aditya.buyogo.repo.ColumnarArchive;
+import com.aditya.buyogo.repo.ColumnarFile;
+import com.aditya.buyogo.repo.IdentifierDictionary;
+import com.aditya.buyogo.repo.IdentifierDictionary.Kind;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+
+// Streams every event in [from, to) as newline-delimited JSON: archived rows first, then machine_event.
+// The two tiers never hold the same row, so the output has no duplicates. With buyogo.sharding the table
+// is read one shard after another, so rows come in event-time order within each shard only.
+@Service
+public class EventExportService {
+    private static final HexFormat HEX = HexFormat.of();
+    private static final int FETCH_SIZE = 5000;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private IdentifierDictionary dictionary;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private Shards shards;
+
+    // Present when buyogo.archive.enabled=true
+    @Autowired(required = false)
+    private ColumnarArchive archive;
+
+    public void export(String factoryId, Instant from, Instant to, OutputStream out) {
+        if (archive != null) {
+            archive.scan(from, to, factoryId, event -> write(out, toDto(event)));
+        }
+        Integer factoryKey = null;
+        if (factoryId != null) {
+            factoryKey = dictionary.keyOf(Kind.FACTORY, factoryId);
+            if (factoryKey == IdentifierDictionary.UNKNOWN_KEY) {
+                return;
+            }
+        }
+        List<Object> args = new ArrayList<>(List.of(Timestamp.from(from), Timestamp.from(to)));
+        String sql = """
+                SELECT event_id, machine_key, factory_key, line_key, event_time, received_time,
+                       duration_ms, defect_count, payload_hash
+                FROM machine_event
+                WHERE event_time >= ? AND event_time < ?""";
+        if (factoryKey != null) {
+            sql += " AND factory_key = ?";
+            args.add(factoryKey);
+        }
+        String query = sql + " ORDER BY event_time";
+        if (factoryId != null) {
+            shards.onShard(shards.shardOf(factoryId), () -> {
+                stream(query, args, out);
+                return null;
+            });
+        } else {
+            shards.forEach(shard -> stream(query, args, out));
+        }
+    }
+
+    private void stream(String query, List<Object> args, OutputStream out) {
+        // Postgres only honours the fetch size inside a transaction; without it the whole range is buffered
+        TransactionTemplate readOnly = new TransactionTemplate(transactionManager);
+        readOnly.setReadOnly(true);
+        readOnly.executeWithoutResult(status -> {
+            JdbcTemplate streaming = new JdbcTemplate(jdbcTemplate.getDataSource());
+            streaming.setFetchSize(FETCH_SIZE);
+            streaming.query(query, rs -> {
+                EventDTO dto = new EventDTO();
+                dto.setEventId(rs.getString("event_id"));
+                dto.setMachineId(dictionary.valueOf(rs.getInt("machine_key")));
+                dto.setFactoryId(dictionary.valueOf(rs.getInt("factory_key")));
+                dto.setLineId(dictionary.valueOf(rs.getInt("line_key")));
+                dto.setEventTime(rs.getTimestamp("event_time").toInstant());
+                dto.setReceivedTime(rs.getTimestamp("received_time").toInstant());
+                dto.setDurationMs(rs.getInt("duration_ms"));
+                dto.setDefectCount(rs.getInt("defect_count"));
+                dto.setPayloadHash(HEX.formatHex(rs.getBytes("payload_hash")));
+                write(out, dto);
+            }, args.toArray());
+        });
+    }
+
+    private EventDTO toDto(ArchivedEvent event) {
+        EventDTO dto = new EventDTO();
+        dto.setEventId(event.eventId());
+        dto.setMachineId(dictionary.valueOf(event.machineKey()));
+        dto.setFactoryId(dictionary.valueOf(event.factoryKey()));
+        dto.setLineId(dictionary.valueOf(event.lineKey()));
+        dto.setEventTime(ColumnarFile.fromMicros(event.eventTime()));
+        dto.setReceivedTime(ColumnarFile.fromMicros(event.receivedTime()));
+        dto.setDurationMs(event.durationMs());
+        dto.setDefectCount(event.defectCount());
+        dto.setPayloadHash(HEX.formatHex(event.payloadHash()));
+        return dto;
+    }
+
+    private void write(OutputStream out, EventDTO dto) {
+        try {
+            out.write(objectMapper.writeValueAsBytes(dto));
+            out.write('\n');
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
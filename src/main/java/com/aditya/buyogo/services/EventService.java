@@ -1,99 +1,375 @@
 package com.aditya.buyogo.services;
 
-import com.aditya.buyogo.dto.ApiResponse;
 import com.aditya.buyogo.dto.BatchResponseDTO;
 import com.aditya.buyogo.dto.EventDTO;
 import com.aditya.buyogo.dto.RejectionDTO;
 import com.aditya.buyogo.models.MachineEvent;
+import com.aditya.buyogo.repo.IdentifierDictionary;
+import com.aditya.buyogo.repo.IdentifierDictionary.Kind;
+import com.aditya.buyogo.repo.InsertFailure;
 import com.aditya.buyogo.repo.MachineEventRepository;
-import com.aditya.buyogo.utils.PayloadHashUtil;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
-import org.springframework.util.DigestUtils;
+import org.springframework.transaction.support.TransactionOperations;
 
-import java.security.MessageDigest;
-import java.time.Instant;
-import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
-import java.util.Optional;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.Map;
+import java.util.Set;
 
+@Slf4j
 @Service
 public class EventService {
+    static final String INVALID_DURATION = "INVALID_DURATION";
+    static final String INVALID_EVENT_TIME = "INVALID_EVENT_TIME";
+    // Refused by the database at insert time: a value it cannot store, another constraint, or an event id
+    // that kept being stored and removed by other writers through every attempt
+    static final String INVALID_VALUE = "INVALID_VALUE";
+    static final String CONSTRAINT_VIOLATION = "CONSTRAINT_VIOLATION";
+    static final String CONFLICT = "CONFLICT";
+    private static final int MAX_INSERT_ATTEMPTS = 3;
+    // Rows per lookup query and per saveAll + flush; matches hibernate.jdbc.batch_size
+    private static final int CHUNK_SIZE = 1000;
+
     @Autowired
     private MachineEventRepository repo;
 
-    AtomicInteger accepted = new AtomicInteger();
-    AtomicInteger deduped = new AtomicInteger();
-    AtomicInteger updated = new AtomicInteger();
-    AtomicInteger rejected = new AtomicInteger();
+    @Autowired
+    private IdentifierDictionary dictionary;
+
+    @Autowired
+    private ServiceMetrics metrics = ServiceMetrics.noop();
+
+    @Autowired
+    private TransactionOperations transactions = TransactionOperations.withoutTransaction();
+
+    @Autowired(required = false)
+    private List<IngestionListener> listeners = List.of();
 
-    List<MachineEvent> toSave = new ArrayList<>();
-    List<RejectionDTO> rejections = new ArrayList<>();
+    @Autowired(required = false)
+    private Shards shards = Shards.single();
 
     public BatchResponseDTO processEvents(List<EventDTO> events) {
+        if (!shards.isSharded() || events.isEmpty()) {
+            return process(events);
+        }
+        // Each shard's events are a batch of their own, deduplicated and committed on that shard, in parallel
+        return merge(shards.write(events, EventDTO::getFactoryId, this::process));
+    }
+
+    private BatchResponseDTO process(List<EventDTO> events) {
+        // Per-batch state: the service is a shared singleton, so none of this may live in fields
+        Batch batch = new Batch();
+        List<MachineEvent> toSave = new ArrayList<>();
+        // Stored rows as they were before this batch updated them; only kept when someone listens
+        Map<String, MachineEvent> previousById = new HashMap<>();
+        BatchIngestEvent jfrEvent = new BatchIngestEvent();
+        jfrEvent.begin();
         try {
-            for (EventDTO event : events) {
-                String payloadHash = PayloadHashUtil.generatePayloadHash(event);
-                event.setPayloadHash(payloadHash);
-                if (event.getDurationMs() < 0 || event.getDurationMs() > 3600000) {
-                    rejected.incrementAndGet();
-                    rejections.add(new RejectionDTO(event.getEventId(), "INVALID_DURATION"));
-                    continue;
-                } else if(event.getEventTime().isAfter(Instant.now().plusSeconds(15 * 60))){
-                    rejected.incrementAndGet();
-                    rejections.add(new RejectionDTO(event.getEventId(), "INVALID_EVENT_TIME"));
+            notifyReceived(events);
+            long[] hashNanos = new long[1];
+            EventColumns columns = EventColumns.of(events, hashNanos);
+            metrics.recordStage(ServiceMetrics.Stage.HASH, hashNanos[0]);
+            jfrEvent.hashTime = hashNanos[0];
+            long latestEventTime = EventColumns.latestEventTime();
+            int[] valid = new int[columns.size];
+            int validCount = 0;
+            for (int row = 0; row < columns.size; row++) {
+                String reason = columns.rejectionReason(row, latestEventTime);
+                if (reason != null) {
+                    batch.reject(columns.eventIds[row], reason);
                     continue;
                 }
-                Optional<MachineEvent> existing = repo.findByEventId(event.getEventId());
-                if (existing.isPresent()) {
-                    MachineEvent existingEvent = existing.get();
-                    if (existingEvent.getPayloadHash().equals(event.getPayloadHash())) {
-                        deduped.incrementAndGet();
-                        continue;
-                    } else if (event.getReceivedTime().isAfter(existingEvent.getReceivedTime())) {
-                        updated.incrementAndGet();
-                        toSave.add(map(event));
-                    } else {
-                        // Older event, ignore
-                        continue;
-                    }
-                } else {
-                    accepted.incrementAndGet();
-                    toSave.add(map(event));
-                }
+                valid[validCount++] = row;
             }
-            if (!toSave.isEmpty()) {
-                repo.saveAll(toSave);
+            int validRows = validCount;
+            if (validRows > 0) {
+                // Register new ids before the transaction holds a connection; insertNew and the entity listener then hit the cache
+                long registerStart = System.nanoTime();
+                registerIds(columns, valid, validRows);
+                jfrEvent.registerTime = System.nanoTime() - registerStart;
+                metrics.recordStage(ServiceMetrics.Stage.REGISTER, jfrEvent.registerTime);
+
+                // One lookup for the whole batch, and stored rows stay managed so updates flush without a merge SELECT
+                transactions.executeWithoutResult(status -> {
+                    long lookupStart = System.nanoTime();
+                    Set<String> eventIds = new LinkedHashSet<>();
+                    for (int i = 0; i < validRows; i++) {
+                        eventIds.add(columns.eventIds[valid[i]]);
+                    }
+                    Map<String, MachineEvent> stored = findStored(eventIds);
+                    jfrEvent.lookupTime = System.nanoTime() - lookupStart;
+                    metrics.recordStage(ServiceMetrics.Stage.LOOKUP, jfrEvent.lookupTime);
+                    // Rows already queued by this batch; later copies of the same id dedupe or update against them
+                    Map<String, MachineEvent> queuedById = new HashMap<>();
+                    for (int i = 0; i < validRows; i++) {
+                        int row = valid[i];
+                        String eventId = columns.eventIds[row];
+                        MachineEvent existingEvent = queuedById.get(eventId);
+                        boolean queued = existingEvent != null;
+                        if (!queued) {
+                            existingEvent = stored.get(eventId);
+                        }
+                        if (existingEvent != null) {
+                            if (columns.hashEquals(row, existingEvent.getPayloadHash())) {
+                                batch.deduped++;
+                            } else if (columns.receivedAfter(row, existingEvent.getReceivedTime())) {
+                                batch.updated++;
+                                if (!queued && !listeners.isEmpty()) {
+                                    previousById.put(eventId, copy(existingEvent, new MachineEvent()));
+                                }
+                                // Overwrite the stored row in place; it keeps its surrogate id
+                                columns.toEntity(row, existingEvent);
+                                if (!queued) {
+                                    toSave.add(existingEvent);
+                                    queuedById.put(eventId, existingEvent);
+                                }
+                            } else {
+                                // Older event, ignore
+                                batch.ignored++;
+                            }
+                        } else {
+                            batch.accepted++;
+                            MachineEvent entity = columns.toEntity(row, new MachineEvent());
+                            toSave.add(entity);
+                            queuedById.put(eventId, entity);
+                        }
+                    }
+                    if (!toSave.isEmpty()) {
+                        long saveStart = System.nanoTime();
+                        List<MachineEvent> inserts = new ArrayList<>();
+                        List<MachineEvent> updates = new ArrayList<>();
+                        for (MachineEvent row : toSave) {
+                            (stored.get(row.getEventId()) == row ? updates : inserts).add(row);
+                        }
+                        // In event id order across the whole batch, so two batches carrying some of the same ids
+                        // take their index locks in the same order: the later one waits and then conflicts
+                        // instead of deadlocking
+                        inserts.sort(Comparator.comparing(MachineEvent::getEventId));
+                        List<InsertFailure> failures = new ArrayList<>();
+                        int rows = Math.max(inserts.size(), updates.size());
+                        for (int from = 0; from < rows; from += CHUNK_SIZE) {
+                            List<MachineEvent> insertChunk = inserts.subList(Math.min(inserts.size(), from), Math.min(inserts.size(), from + CHUNK_SIZE));
+                            List<MachineEvent> updateChunk = updates.subList(Math.min(updates.size(), from), Math.min(updates.size(), from + CHUNK_SIZE));
+                            PersistChunkEvent chunkEvent = new PersistChunkEvent();
+                            chunkEvent.begin();
+                            // A refused row is left out of the insert batch instead of failing the whole batch
+                            List<InsertFailure> refused = repo.insertNew(insertChunk);
+                            repo.saveAll(updateChunk);
+                            repo.flush();
+                            failures.addAll(refused);
+                            if (chunkEvent.shouldCommit()) {
+                                chunkEvent.chunk = from / CHUNK_SIZE;
+                                chunkEvent.inserts = insertChunk.size();
+                                chunkEvent.updates = updateChunk.size();
+                                chunkEvent.isolated = refused.size();
+                                chunkEvent.commit();
+                            }
+                        }
+                        if (!failures.isEmpty()) {
+                            resolveFailures(failures, toSave, previousById, batch);
+                        }
+                        jfrEvent.saveTime = System.nanoTime() - saveStart;
+                        metrics.recordStage(ServiceMetrics.Stage.SAVE, jfrEvent.saveTime);
+                    }
+                });
+                notifyListeners(toSave, previousById);
             }
+            metrics.recordBatch(events.size(), batch.accepted, batch.deduped, batch.updated, batch.ignored, batch.rejections);
             BatchResponseDTO response = new BatchResponseDTO();
-            response.setAccepted(accepted.get());
-            response.setRejected(rejected.get());
-            response.setUpdated(updated.get());
-            response.setDeduped(deduped.get());
-            response.setRejections(rejections);
+            response.setAccepted(batch.accepted);
+            response.setRejected(batch.rejections.size());
+            response.setUpdated(batch.updated);
+            response.setDeduped(batch.deduped);
+            response.setRejections(batch.rejections);
             return response;
         } catch (Exception e) {
-            System.out.println("Error processing events: " + e.getMessage());
-            e.printStackTrace();
+            log.error("Error processing events", e);
             throw new RuntimeException("Failed to process events", e);
+        } finally {
+            if (jfrEvent.shouldCommit()) {
+                jfrEvent.batchSize = events.size();
+                jfrEvent.accepted = batch.accepted;
+                jfrEvent.deduped = batch.deduped;
+                jfrEvent.updated = batch.updated;
+                jfrEvent.ignored = batch.ignored;
+                jfrEvent.rejected = batch.rejections.size();
+                jfrEvent.commit();
+            }
         }
     }
 
-    private MachineEvent map(EventDTO event) {
-
-        MachineEvent entity = new MachineEvent();
-        entity.setEventId(event.getEventId());
-        entity.setEventTime(event.getEventTime());
-        entity.setReceivedTime(event.getReceivedTime());
-        entity.setMachineId(event.getMachineId());
-        entity.setDurationMs(event.getDurationMs());
-        entity.setDefectCount(event.getDefectCount());
-        entity.setFactoryId(event.getFactoryId());
-        entity.setPayloadHash(event.getPayloadHash());
-        entity.setLineId(event.getLineId());
-        return entity;
+    // Inserts the database refused were counted as accepted. A row whose event id another writer stored
+    // after our lookup is decided again against that row with the usual dedup rules; if the row is gone
+    // again by the time we look, it is inserted again. Any other refused row is rejected on its own.
+    private void resolveFailures(List<InsertFailure> failures, List<MachineEvent> toSave,
+                                 Map<String, MachineEvent> previousById, Batch batch) {
+        Set<MachineEvent> dropped = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (int attempt = 1; !failures.isEmpty(); attempt++) {
+            List<MachineEvent> conflicts = new ArrayList<>();
+            for (InsertFailure failure : failures) {
+                MachineEvent row = failure.row();
+                dropped.add(row);
+                batch.accepted--;
+                if (!failure.conflict()) {
+                    log.warn("Event {} refused by the database: {}", row.getEventId(), failure.message());
+                    batch.reject(row.getEventId(), failure.sqlState().startsWith("22") ? INVALID_VALUE : CONSTRAINT_VIOLATION);
+                } else if (attempt == MAX_INSERT_ATTEMPTS) {
+                    batch.reject(row.getEventId(), CONFLICT);
+                } else {
+                    conflicts.add(row);
+                }
+            }
+            if (conflicts.isEmpty()) {
+                break;
+            }
+            Set<String> eventIds = new LinkedHashSet<>();
+            conflicts.forEach(row -> eventIds.add(row.getEventId()));
+            Map<String, MachineEvent> stored = findStored(eventIds);
+            List<MachineEvent> retry = new ArrayList<>();
+            List<MachineEvent> updates = new ArrayList<>();
+            for (MachineEvent row : conflicts) {
+                MachineEvent existingEvent = stored.get(row.getEventId());
+                if (existingEvent == null) {
+                    retry.add(row);
+                } else if (row.getPayloadHash().equals(existingEvent.getPayloadHash())) {
+                    batch.deduped++;
+                } else if (EventColumns.micros(row.getReceivedTime()) > EventColumns.micros(existingEvent.getReceivedTime())) {
+                    batch.updated++;
+                    if (!listeners.isEmpty()) {
+                        previousById.put(row.getEventId(), copy(existingEvent, new MachineEvent()));
+                    }
+                    updates.add(copy(row, existingEvent));
+                } else {
+                    // Older event, ignore
+                    batch.ignored++;
+                }
+            }
+            repo.saveAll(updates);
+            repo.flush();
+            toSave.addAll(updates);
+            batch.accepted += retry.size();
+            retry.forEach(dropped::remove);
+            failures = repo.insertNew(retry);
+        }
+        toSave.removeIf(dropped::contains);
     }
 
+    private static BatchResponseDTO merge(List<BatchResponseDTO> parts) {
+        BatchResponseDTO merged = new BatchResponseDTO();
+        merged.setAccepted(0);
+        merged.setRejected(0);
+        merged.setUpdated(0);
+        merged.setDeduped(0);
+        merged.setRejections(new ArrayList<>());
+        for (BatchResponseDTO part : parts) {
+            merged.setAccepted(merged.getAccepted() + part.getAccepted());
+            merged.setRejected(merged.getRejected() + part.getRejected());
+            merged.setUpdated(merged.getUpdated() + part.getUpdated());
+            merged.setDeduped(merged.getDeduped() + part.getDeduped());
+            merged.getRejections().addAll(part.getRejections());
+        }
+        return merged;
+    }
+
+    // Up to CHUNK_SIZE events cost one query
+    private Map<String, MachineEvent> findStored(Set<String> eventIds) {
+        List<String> ids = new ArrayList<>(eventIds);
+        Map<String, MachineEvent> stored = new HashMap<>();
+        for (int from = 0; from < ids.size(); from += CHUNK_SIZE) {
+            List<String> chunk = ids.subList(from, Math.min(ids.size(), from + CHUNK_SIZE));
+            DedupLookupEvent lookupEvent = new DedupLookupEvent();
+            lookupEvent.begin();
+            List<MachineEvent> found = repo.findByEventIdIn(chunk);
+            for (MachineEvent event : found) {
+                stored.put(event.getEventId(), event);
+            }
+            if (lookupEvent.shouldCommit()) {
+                lookupEvent.idsRequested = chunk.size();
+                lookupEvent.rowsFound = found.size();
+                lookupEvent.commit();
+            }
+        }
+        return stored;
+    }
+
+    // Once per distinct id among the rows that will be written, not once per event
+    private void registerIds(EventColumns columns, int[] rows, int count) {
+        boolean[] machines = new boolean[columns.machineIds.size()];
+        boolean[] factories = new boolean[columns.factoryIds.size()];
+        boolean[] lines = new boolean[columns.lineIds.size()];
+        for (int i = 0; i < count; i++) {
+            int row = rows[i];
+            register(Kind.MACHINE, columns.machineIds, columns.machines[row], machines);
+            register(Kind.FACTORY, columns.factoryIds, columns.factories[row], factories);
+            register(Kind.LINE, columns.lineIds, columns.lines[row], lines);
+        }
+    }
+
+    private void register(Kind kind, EventColumns.Interned values, int index, boolean[] done) {
+        if (!done[index]) {
+            dictionary.register(kind, values.get(index));
+            done[index] = true;
+        }
+    }
+
+    private void notifyReceived(List<EventDTO> events) {
+        for (IngestionListener listener : listeners) {
+            try {
+                listener.received(events);
+            } catch (RuntimeException e) {
+                log.warn("Ingestion listener {} failed: {}", listener.getClass().getSimpleName(), e.getMessage(), e);
+            }
+        }
+    }
+
+    private void notifyListeners(List<MachineEvent> saved, Map<String, MachineEvent> previousById) {
+        if (listeners.isEmpty() || saved.isEmpty()) {
+            return;
+        }
+        List<EventChange> changes = new ArrayList<>(saved.size());
+        for (MachineEvent row : saved) {
+            changes.add(new EventChange(previousById.get(row.getEventId()), row));
+        }
+        for (IngestionListener listener : listeners) {
+            try {
+                listener.afterCommit(changes);
+            } catch (RuntimeException e) {
+                log.warn("Ingestion listener {} failed: {}", listener.getClass().getSimpleName(), e.getMessage(), e);
+            }
+        }
+    }
+
+    // Everything but the surrogate id and the audit timestamps
+    private static MachineEvent copy(MachineEvent from, MachineEvent into) {
+        into.setEventId(from.getEventId());
+        into.setEventTime(from.getEventTime());
+        into.setReceivedTime(from.getReceivedTime());
+        into.setMachineId(from.getMachineId());
+        into.setFactoryId(from.getFactoryId());
+        into.setLineId(from.getLineId());
+        into.setDurationMs(from.getDurationMs());
+        into.setDefectCount(from.getDefectCount());
+        into.setPayloadHash(from.getPayloadHash());
+        return into;
+    }
+
+    // Counts and rejections of one processEvents call
+    private static final class Batch {
+        int accepted;
+        int deduped;
+        int updated;
+        int ignored;
+        final List<RejectionDTO> rejections = new ArrayList<>();
+
+        void reject(String eventId, String reason) {
+            rejections.add(new RejectionDTO(eventId, reason));
+        }
+    }
 }
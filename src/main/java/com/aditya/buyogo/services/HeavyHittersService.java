@@ -0,0 +1,403 @@
+package com.aditya.buyogo.services;
+
+import com.aditya.buyogo.config.HeavyHitterProperties;
+import com.aditya.buyogo.dto.HeavyHitterDTO;
+import com.aditya.buyogo.dto.HeavyHittersDTO;
+import com.aditya.buyogo.models.MachineEvent;
+import com.aditya.buyogo.repo.ColumnarArchive;
+import com.aditya.buyogo.repo.ColumnarFile;
+import com.aditya.buyogo.repo.DefectTotalsProjection;
+import com.aditya.buyogo.repo.IdentifierDictionary;
+import com.aditya.buyogo.repo.IdentifierDictionary.Kind;
+import com.aditya.buyogo.repo.MachineEventRepository;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// Worst machines and lines by defects, globally or for one factory, without a GROUP BY over the
+// window. Every event-time bucket keeps Space-Saving summaries (global and per factory, for machines
+// and for lines) that each committed batch updates; a query merges the buckets it spans. Answers
+// carry their error bounds, and windows the buckets don't cover, or exact=true, go to the database.
+//
+// On startup the retained buckets are seeded from machine_event in one REPEATABLE READ transaction
+// per shard, one shard after another. Batches committed on a shard not seeded yet are parked by event
+// id; at the end of the shard's scan, still inside its snapshot, their rows are read again and taken
+// back out, and their current versions applied instead.
+//
+// Dictionary lookups and queries run outside the monitor, which only guards the buckets and the
+// parked changes.
+@Slf4j
+@Service
+@ConditionalOnProperty(prefix = "buyogo.heavy-hitters", name = "enabled", havingValue = "true", matchIfMissing = true)
+public class HeavyHittersService implements IngestionListener {
+    private static final int FETCH_SIZE = 5000;
+    private static final int PARKED_CHUNK = 1000;
+
+    @Autowired
+    private HeavyHitterProperties properties;
+
+    @Autowired
+    private IdentifierDictionary dictionary;
+
+    @Autowired
+    private MachineEventRepository repository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private Shards shards;
+
+    // Present when buyogo.archive.enabled=true
+    @Autowired(required = false)
+    private ColumnarArchive archive;
+
+    private long bucketMicros;
+    private int retainedBuckets;
+    // retainedBuckets up to the current one, plus one ahead for events stamped slightly in the future
+    private Bucket[] ring;
+    // Latest change per event id, by shard, for shards not seeded yet; empty once the buckets are live
+    private final Map<String, Map<String, Row>> parked = new HashMap<>();
+    // First bucket the seed covered
+    private long seededFrom = Long.MAX_VALUE;
+
+    @PostConstruct
+    void init() {
+        bucketMicros = properties.getBucket().toNanos() / 1000;
+        retainedBuckets = (int) Math.max(1, properties.getRetention().toNanos() / 1000 / bucketMicros);
+        ring = new Bucket[retainedBuckets + 1];
+        shards.names().forEach(shard -> parked.put(shard, new LinkedHashMap<>()));
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onStartup() {
+        Thread.ofVirtual().name("heavy-hitters-seed").start(this::seed);
+    }
+
+    @Override
+    public void afterCommit(List<EventChange> changes) {
+        Row[] previous = new Row[changes.size()];
+        Row[] current = new Row[changes.size()];
+        for (int i = 0; i < changes.size(); i++) {
+            EventChange change = changes.get(i);
+            previous[i] = change.previous() == null ? null : row(change.previous());
+            current[i] = row(change.current());
+        }
+        synchronized (this) {
+            for (int i = 0; i < changes.size(); i++) {
+                MachineEvent event = changes.get(i).current();
+                Map<String, Row> shardParked = parked.isEmpty() ? null : parked.get(shards.shardOf(event.getFactoryId()));
+                if (shardParked != null) {
+                    shardParked.put(event.getEventId(), current[i]);
+                    continue;
+                }
+                if (previous[i] != null) {
+                    apply(previous[i], -1);
+                }
+                apply(current[i], 1);
+            }
+        }
+    }
+
+    public synchronized boolean isSeeded() {
+        return seededFrom != Long.MAX_VALUE;
+    }
+
+    // True when the summaries can answer [from, to): seeded, and no part of it older than retention
+    public synchronized boolean covers(Instant from, Instant to) {
+        long first = Math.floorDiv(EventColumns.micros(from), bucketMicros);
+        return first >= Math.max(seededFrom, oldestRetained()) && !to.isBefore(from);
+    }
+
+    // Top limit from the summaries; the window widens to whole buckets
+    public HeavyHittersDTO approximate(Kind dimension, String factoryId, Instant from, Instant to, int limit) {
+        long first = Math.floorDiv(EventColumns.micros(from), bucketMicros);
+        long end = Math.min(-Math.floorDiv(-EventColumns.micros(to), bucketMicros), currentBucket() + 2);
+        Integer factoryKey = factoryId == null ? null : keyOf(Kind.FACTORY, factoryId);
+        long unlisted = 0;
+        List<long[]> bounds = new ArrayList<>();
+        synchronized (this) {
+            List<SpaceSaving> summaries = new ArrayList<>();
+            if (factoryKey == null || factoryKey != IdentifierDictionary.UNKNOWN_KEY) {
+                for (long number = first; number < end; number++) {
+                    Bucket bucket = ring[(int) Math.floorMod(number, ring.length)];
+                    if (bucket != null && bucket.number == number) {
+                        SpaceSaving summary = bucket.summary(dimension, factoryKey);
+                        if (summary != null) {
+                            summaries.add(summary);
+                        }
+                    }
+                }
+            }
+
+            // Any id absent from a summary had at most that summary's bound there
+            Set<Integer> candidates = new HashSet<>();
+            for (SpaceSaving summary : summaries) {
+                unlisted += summary.unmonitoredBound();
+                for (int slot = 0; slot < summary.size(); slot++) {
+                    candidates.add(summary.key(slot));
+                }
+            }
+            for (int key : candidates) {
+                // {key, upper, lower}
+                long[] bound = {key, 0, 0};
+                for (SpaceSaving summary : summaries) {
+                    int slot = summary.slotOf(key);
+                    if (slot >= 0) {
+                        bound[1] += summary.count(slot);
+                        bound[2] += summary.count(slot) - summary.error(slot);
+                    } else {
+                        bound[1] += summary.unmonitoredBound();
+                    }
+                }
+                bounds.add(bound);
+            }
+        }
+        // Ties by id, as the exact path orders them
+        bounds.sort(Comparator.comparingLong((long[] bound) -> bound[1]).reversed()
+                .thenComparing(bound -> dictionary.valueOf((int) bound[0])));
+
+        // In the true top limit for certain when every id outside it stays below this one's lower bound
+        long threshold = Math.max(unlisted, bounds.size() > limit ? bounds.get(limit)[1] : 0);
+        List<HeavyHitterDTO> entries = new ArrayList<>();
+        for (long[] bound : bounds.subList(0, Math.min(limit, bounds.size()))) {
+            entries.add(new HeavyHitterDTO(dictionary.valueOf((int) bound[0]), bound[1], bound[2], bound[2] > threshold));
+        }
+        HeavyHittersDTO response = response(dimension, factoryId, "sketch", entries);
+        response.setFrom(ColumnarFile.fromMicros(first * bucketMicros));
+        response.setTo(ColumnarFile.fromMicros(Math.max(first, end) * bucketMicros));
+        response.setUnlistedMaxDefects(unlisted);
+        return response;
+    }
+
+    // Top limit over [from, to) from machine_event and the archive
+    public HeavyHittersDTO exact(Kind dimension, String factoryId, Instant from, Instant to, int limit) {
+        List<DefectTotalsProjection> rows;
+        if (dimension == Kind.LINE) {
+            rows = factoryId == null ? shards.gather(() -> repository.findLineDefectTotals(from, to))
+                    : shards.forFactory(factoryId, () -> repository.findLineDefectTotals(factoryId, from, to));
+        } else {
+            rows = factoryId == null ? shards.gather(() -> repository.findMachineDefectTotals(from, to))
+                    : shards.forFactory(factoryId, () -> repository.findMachineDefectTotals(factoryId, from, to));
+        }
+        Map<String, Long> totals = archive != null ? archive.defectTotals(dimension, factoryId, from, to) : new HashMap<>();
+        for (DefectTotalsProjection row : rows) {
+            totals.merge(row.getId(), row.getTotalDefects(), Long::sum);
+        }
+        List<HeavyHitterDTO> entries = totals.entrySet().stream()
+                .sorted(Map.Entry.<String, Long>comparingByValue().reversed().thenComparing(Map.Entry.comparingByKey()))
+                .limit(limit)
+                .map(total -> new HeavyHitterDTO(total.getKey(), total.getValue(), total.getValue(), true))
+                .toList();
+        HeavyHittersDTO response = response(dimension, factoryId, "exact", entries);
+        response.setFrom(from);
+        response.setTo(to);
+        return response;
+    }
+
+    void seed() {
+        long start;
+        synchronized (this) {
+            start = oldestRetained();
+        }
+        Timestamp since = Timestamp.from(ColumnarFile.fromMicros(start * bucketMicros));
+        TransactionTemplate snapshot = new TransactionTemplate(transactionManager);
+        snapshot.setReadOnly(true);
+        snapshot.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+        try {
+            long began = System.nanoTime();
+            long[] rows = new long[1];
+            shards.forEach(shard -> snapshot.executeWithoutResult(status -> {
+                JdbcTemplate streaming = new JdbcTemplate(jdbcTemplate.getDataSource());
+                streaming.setFetchSize(FETCH_SIZE);
+                streaming.query("""
+                        SELECT event_time, machine_key, factory_key, line_key, defect_count
+                        FROM machine_event
+                        WHERE event_time >= ? AND defect_count >= 0""", rs -> {
+                    long time = EventColumns.micros(rs.getTimestamp(1).toInstant());
+                    synchronized (this) {
+                        apply(time, rs.getInt(2), rs.getInt(3), rs.getInt(4), rs.getInt(5), 1);
+                    }
+                    rows[0]++;
+                }, since);
+                unpark(streaming, since, shard);
+            }));
+            synchronized (this) {
+                seededFrom = start;
+            }
+            log.info("Seeded heavy-hitter summaries from {} rows in {} ms", rows[0], (System.nanoTime() - began) / 1_000_000);
+        } catch (RuntimeException e) {
+            // Queries keep going to the database; ingestion carries on into the buckets
+            log.warn("Could not seed heavy-hitter summaries: {}", e.getMessage());
+            for (String shard : shards.names()) {
+                unpark(null, since, shard);
+            }
+        }
+    }
+
+    // With a reader, the rows the scan saw for the shard's parked ids are taken back out and the parked
+    // versions applied; without one the seed failed and only the parked versions are kept. Rows are read
+    // outside the monitor, so ids parked meanwhile are read in another round; the shard goes live in the
+    // same locked section that finds nothing new, so no change lands in between.
+    private void unpark(JdbcTemplate reader, Timestamp since, String shard) {
+        Set<String> read = new HashSet<>();
+        List<Row> seen = new ArrayList<>();
+        while (true) {
+            List<String> ids = new ArrayList<>();
+            synchronized (this) {
+                Map<String, Row> shardParked = parked.get(shard);
+                if (shardParked == null) {
+                    return;
+                }
+                if (reader != null) {
+                    shardParked.keySet().stream().filter(id -> !read.contains(id)).forEach(ids::add);
+                }
+                if (ids.isEmpty()) {
+                    seen.forEach(row -> apply(row, -1));
+                    shardParked.values().forEach(row -> apply(row, 1));
+                    parked.remove(shard);
+                    return;
+                }
+            }
+            for (int from = 0; from < ids.size(); from += PARKED_CHUNK) {
+                List<String> chunk = ids.subList(from, Math.min(ids.size(), from + PARKED_CHUNK));
+                String placeholders = String.join(",", Collections.nCopies(chunk.size(), "?"));
+                List<Object> args = new ArrayList<>(chunk);
+                args.add(since);
+                reader.query("SELECT event_time, machine_key, factory_key, line_key, defect_count FROM machine_event"
+                                + " WHERE event_id IN (" + placeholders + ") AND event_time >= ? AND defect_count >= 0",
+                        (RowCallbackHandler) rs -> seen.add(new Row(EventColumns.micros(rs.getTimestamp(1).toInstant()),
+                                rs.getInt(2), rs.getInt(3), rs.getInt(4), rs.getInt(5))), args.toArray());
+            }
+            read.addAll(ids);
+        }
+    }
+
+    private void apply(Row row, int sign) {
+        apply(row.time(), row.machineKey(), row.factoryKey(), row.lineKey(), row.defects(), sign);
+    }
+
+    // Adds (sign 1) or removes (sign -1) one event's defects
+    private void apply(long time, int machineKey, int factoryKey, int lineKey, int defects, int sign) {
+        if (defects <= 0 || machineKey == IdentifierDictionary.UNKNOWN_KEY) {
+            return;
+        }
+        long number = Math.floorDiv(time, bucketMicros);
+        int index = (int) Math.floorMod(number, ring.length);
+        Bucket bucket = ring[index];
+        if (bucket == null || bucket.number < number) {
+            // A removal from a bucket already dropped has nothing to take back
+            if (sign < 0) {
+                return;
+            }
+            bucket = new Bucket(number);
+            ring[index] = bucket;
+        } else if (bucket.number > number) {
+            // Older than anything the ring still holds
+            return;
+        }
+        FactorySummaries factory = bucket.factories.get(factoryKey);
+        if (factory == null && sign > 0) {
+            factory = new FactorySummaries(properties.getCapacity());
+            bucket.factories.put(factoryKey, factory);
+        }
+        if (sign > 0) {
+            bucket.machines.add(machineKey, defects);
+            bucket.lines.add(lineKey, defects);
+            factory.machines.add(machineKey, defects);
+            factory.lines.add(lineKey, defects);
+        } else {
+            bucket.machines.remove(machineKey, defects);
+            bucket.lines.remove(lineKey, defects);
+            if (factory != null) {
+                factory.machines.remove(machineKey, defects);
+                factory.lines.remove(lineKey, defects);
+            }
+        }
+    }
+
+    private Row row(MachineEvent event) {
+        return new Row(EventColumns.micros(event.getEventTime()), keyOf(Kind.MACHINE, event.getMachineId()),
+                keyOf(Kind.FACTORY, event.getFactoryId()), keyOf(Kind.LINE, event.getLineId()), event.getDefectCount());
+    }
+
+    private int keyOf(Kind kind, String value) {
+        Integer key = dictionary.cachedKeyOf(kind, value);
+        return key != null ? key : dictionary.keyOf(kind, value);
+    }
+
+    private long currentBucket() {
+        return Math.floorDiv(EventColumns.micros(Instant.now()), bucketMicros);
+    }
+
+    private long oldestRetained() {
+        return currentBucket() - retainedBuckets + 1;
+    }
+
+    private static HeavyHittersDTO response(Kind dimension, String factoryId, String source, List<HeavyHitterDTO> entries) {
+        HeavyHittersDTO response = new HeavyHittersDTO();
+        response.setDimension(dimension.name().toLowerCase());
+        response.setFactoryId(factoryId);
+        response.setSource(source);
+        response.setEntries(entries);
+        return response;
+    }
+
+    // One event's contribution, its identifiers already resolved to keys
+    private record Row(long time, int machineKey, int factoryKey, int lineKey, int defects) {
+    }
+
+    private final class Bucket {
+        final long number;
+        final SpaceSaving machines = new SpaceSaving(properties.getCapacity());
+        final SpaceSaving lines = new SpaceSaving(properties.getCapacity());
+        // Few factories per bucket, so a boxed map is fine here
+        final Map<Integer, FactorySummaries> factories = new HashMap<>();
+
+        Bucket(long number) {
+            this.number = number;
+        }
+
+        SpaceSaving summary(Kind dimension, Integer factoryKey) {
+            if (factoryKey == null) {
+                return dimension == Kind.LINE ? lines : machines;
+            }
+            FactorySummaries factory = factories.get(factoryKey);
+            return factory == null ? null : dimension == Kind.LINE ? factory.lines : factory.machines;
+        }
+    }
+
+    private static final class FactorySummaries {
+        final SpaceSaving machines;
+        final SpaceSaving lines;
+
+        FactorySummaries(int capacity) {
+            machines = new SpaceSaving(capacity);
+            lines = new SpaceSaving(capacity);
+        }
+    }
+}
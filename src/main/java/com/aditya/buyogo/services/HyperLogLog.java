@@ -0,0 +1,217 @@
+package com.aditya.buyogo.services;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+// HyperLogLog distinct counter with 2^precision registers over 64-bit hashes. Starts sparse (a sorted
+// int per non-zero register, index << 8 | rank) and turns dense, a byte per register, once that would
+// be smaller. Estimates use Ertl's improved estimator ("New cardinality estimation algorithms for
+// HyperLogLog sketches", 2017), which needs no bias tables and holds its ~1.04 / sqrt(2^precision)
+// standard error from the smallest counts up. Union is a register-wise max, so sketches merge across
+// buckets and nodes in any order. Not thread-safe.
+final class HyperLogLog {
+    static final int MIN_PRECISION = 4;
+    static final int MAX_PRECISION = 16;
+    private static final byte SPARSE = 0;
+    private static final byte DENSE = 1;
+
+    private final int precision;
+    private final int registerCount;
+    // Bits left for the rank once the index is taken
+    private final int rankBits;
+    private int[] sparse = new int[4];
+    private int sparseSize;
+    private byte[] dense;
+
+    HyperLogLog(int precision) {
+        if (precision < MIN_PRECISION || precision > MAX_PRECISION) {
+            throw new IllegalArgumentException("precision must be between " + MIN_PRECISION + " and " + MAX_PRECISION);
+        }
+        this.precision = precision;
+        this.registerCount = 1 << precision;
+        this.rankBits = 64 - precision;
+    }
+
+    int precision() {
+        return precision;
+    }
+
+    // Relative standard error of estimate()
+    static double standardError(int precision) {
+        return 1.04 / Math.sqrt(1 << precision);
+    }
+
+    // Adds a value already hashed to 64 well-mixed bits (hash(int) or hash(String)); true if a register rose
+    boolean add(long hash) {
+        int index = (int) (hash >>> rankBits);
+        long rest = hash << precision;
+        int rank = rest == 0 ? rankBits + 1 : Long.numberOfLeadingZeros(rest) + 1;
+        return raise(index, rank);
+    }
+
+    void merge(HyperLogLog other) {
+        if (other.precision != precision) {
+            throw new IllegalArgumentException("Cannot merge precision " + other.precision + " into " + precision);
+        }
+        if (other.dense != null) {
+            for (int index = 0; index < registerCount; index++) {
+                if (other.dense[index] != 0) {
+                    raise(index, other.dense[index]);
+                }
+            }
+        } else {
+            for (int i = 0; i < other.sparseSize; i++) {
+                raise(other.sparse[i] >>> 8, other.sparse[i] & 0xFF);
+            }
+        }
+    }
+
+    long estimate() {
+        // histogram[k]: registers holding rank k
+        int[] histogram = new int[rankBits + 2];
+        if (dense != null) {
+            for (byte rank : dense) {
+                histogram[rank]++;
+            }
+        } else {
+            histogram[0] = registerCount - sparseSize;
+            for (int i = 0; i < sparseSize; i++) {
+                histogram[sparse[i] & 0xFF]++;
+            }
+        }
+        double m = registerCount;
+        double z = m * tau(1 - histogram[rankBits + 1] / m);
+        for (int k = rankBits; k >= 1; k--) {
+            z = 0.5 * (z + histogram[k]);
+        }
+        z += m * sigma(histogram[0] / m);
+        return Math.round(m * m / (2 * Math.log(2)) / z);
+    }
+
+    // precision, then SPARSE with a register count and (u16 index, u8 rank) per register, or DENSE
+    // with a byte per register
+    byte[] toBytes() {
+        ByteBuffer out;
+        if (dense != null) {
+            out = ByteBuffer.allocate(2 + registerCount).put((byte) precision).put(DENSE).put(dense);
+        } else {
+            out = ByteBuffer.allocate(4 + 3 * sparseSize).put((byte) precision).put(SPARSE).putShort((short) sparseSize);
+            for (int i = 0; i < sparseSize; i++) {
+                out.putShort((short) (sparse[i] >>> 8)).put((byte) sparse[i]);
+            }
+        }
+        return out.array();
+    }
+
+    static HyperLogLog fromBytes(byte[] bytes) {
+        ByteBuffer in = ByteBuffer.wrap(bytes);
+        HyperLogLog sketch = new HyperLogLog(in.get());
+        if (in.get() == DENSE) {
+            sketch.dense = new byte[sketch.registerCount];
+            in.get(sketch.dense);
+        } else {
+            int count = Short.toUnsignedInt(in.getShort());
+            for (int i = 0; i < count; i++) {
+                sketch.raise(Short.toUnsignedInt(in.getShort()), in.get());
+            }
+        }
+        return sketch;
+    }
+
+    static long hash(int value) {
+        return mix(value * 0x9E3779B97F4A7C15L);
+    }
+
+    // FNV-1a over the chars, then a full avalanche so the index and rank bits are independent
+    static long hash(String value) {
+        long hash = 0xCBF29CE484222325L;
+        for (int i = 0; i < value.length(); i++) {
+            hash = (hash ^ value.charAt(i)) * 0x100000001B3L;
+        }
+        return mix(hash);
+    }
+
+    // MurmurHash3's 64-bit finalizer
+    private static long mix(long hash) {
+        hash ^= hash >>> 33;
+        hash *= 0xFF51AFD7ED558CCDL;
+        hash ^= hash >>> 33;
+        hash *= 0xC4CEB9FE1A85EC53L;
+        return hash ^ (hash >>> 33);
+    }
+
+    private boolean raise(int index, int rank) {
+        if (dense != null) {
+            if (dense[index] >= rank) {
+                return false;
+            }
+            dense[index] = (byte) rank;
+            return true;
+        }
+        int at = Arrays.binarySearch(sparse, 0, sparseSize, index << 8);
+        // Entries sort by index first, so the search lands on (or just before) this index's entry
+        if (at < 0) {
+            at = -at - 1;
+        }
+        if (at < sparseSize && sparse[at] >>> 8 == index) {
+            if ((sparse[at] & 0xFF) >= rank) {
+                return false;
+            }
+            sparse[at] = index << 8 | rank;
+            return true;
+        }
+        // Sparse stops paying once it would take more than the dense bytes
+        if (sparseSize >= registerCount / 4) {
+            toDense();
+            return raise(index, rank);
+        }
+        if (sparseSize == sparse.length) {
+            sparse = Arrays.copyOf(sparse, Math.min(registerCount / 4, sparseSize * 2));
+        }
+        System.arraycopy(sparse, at, sparse, at + 1, sparseSize - at);
+        sparse[at] = index << 8 | rank;
+        sparseSize++;
+        return true;
+    }
+
+    private void toDense() {
+        dense = new byte[registerCount];
+        for (int i = 0; i < sparseSize; i++) {
+            dense[sparse[i] >>> 8] = (byte) (sparse[i] & 0xFF);
+        }
+        sparse = null;
+        sparseSize = 0;
+    }
+
+    private static double sigma(double x) {
+        if (x == 1) {
+            return Double.POSITIVE_INFINITY;
+        }
+        double y = 1;
+        double z = x;
+        double previous;
+        do {
+            x *= x;
+            previous = z;
+            z += x * y;
+            y += y;
+        } while (z != previous);
+        return z;
+    }
+
+    private static double tau(double x) {
+        if (x == 0 || x == 1) {
+            return 0;
+        }
+        double y = 1;
+        double z = 1 - x;
+        double previous;
+        do {
+            x = Math.sqrt(x);
+            previous = z;
+            y *= 0.5;
+            z -= Math.pow(1 - x, 2) * y;
+        } while (z != previous);
+        return z / 3;
+    }
+}
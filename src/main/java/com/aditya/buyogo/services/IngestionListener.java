@@ -0,0 +1,15 @@
+package com.aditya.buyogo.services;
+
+import com.aditya.buyogo.dto.EventDTO;
+
+import java.util.List;
+
+// Beans implementing this see every inserted or updated row once its batch has committed. Called
+// on the ingesting thread, so implementations must not block; failures are logged and swallowed.
+public interface IngestionListener {
+    void afterCommit(List<EventChange> changes);
+
+    // Every event of a batch as it arrives, before validation or dedup, rejected ones included
+    default void received(List<EventDTO> events) {
+    }
+}
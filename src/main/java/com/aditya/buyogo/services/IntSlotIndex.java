@@ -0,0 +1,79 @@
+package com.aditya.buyogo.services;
+
+import java.util.Arrays;
+
+// int key -> slot map for the primitive tables in this package: linear probing with backward-shift
+// deletion, sized once for at most maxEntries keys, so lookups never box and entries are not objects.
+// Not thread-safe.
+final class IntSlotIndex {
+    private final int[] keys;
+    // Slot + 1 per position, 0 when empty
+    private final int[] slots;
+    private final int mask;
+    private final int shift;
+
+    IntSlotIndex(int maxEntries) {
+        int length = Integer.highestOneBit(Math.max(2, maxEntries) * 2 - 1) * 2;
+        keys = new int[length];
+        slots = new int[length];
+        mask = length - 1;
+        shift = Integer.numberOfLeadingZeros(mask);
+    }
+
+    // Slot of key, or -1
+    int get(int key) {
+        int position = position(key);
+        return position < 0 ? -1 : slots[position] - 1;
+    }
+
+    void put(int key, int slot) {
+        int position = home(key);
+        while (slots[position] != 0 && keys[position] != key) {
+            position = (position + 1) & mask;
+        }
+        keys[position] = key;
+        slots[position] = slot + 1;
+    }
+
+    void remove(int key) {
+        int hole = position(key);
+        if (hole < 0) {
+            return;
+        }
+        // Entries after the hole move up unless they already sit at or past their home
+        int next = hole;
+        while (true) {
+            next = (next + 1) & mask;
+            if (slots[next] == 0) {
+                slots[hole] = 0;
+                return;
+            }
+            int home = home(keys[next]);
+            boolean movable = hole <= next ? home <= hole || home > next : home <= hole && home > next;
+            if (movable) {
+                keys[hole] = keys[next];
+                slots[hole] = slots[next];
+                hole = next;
+            }
+        }
+    }
+
+    void clear() {
+        Arrays.fill(slots, 0);
+    }
+
+    private int position(int key) {
+        int position = home(key);
+        while (slots[position] != 0) {
+            if (keys[position] == key) {
+                return position;
+            }
+            position = (position + 1) & mask;
+        }
+        return -1;
+    }
+
+    private int home(int key) {
+        return (key * 0x9E3779B9) >>> shift;
+    }
+}
@@ -0,0 +1,351 @@
+package com.aditya.buyogo.services;
+
+import com.aditya.buyogo.config.LiveStatesProperties;
+import com.aditya.buyogo.dto.StatesResponseDTO;
+import com.aditya.buyogo.dto.StatusTransitionDTO;
+import com.aditya.buyogo.models.MachineEvent;
+import com.aditya.buyogo.models.Status;
+import com.aditya.buyogo.repo.LiveEventProjection;
+import com.aditya.buyogo.repo.MachineEventRepository;
+import com.aditya.buyogo.services.LiveTopic.Scope;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Pushes rolling-window machine states over SSE (GET /states/stream) instead of clients polling
+// /states. Ingested rows are folded into per-scope topics as their batch commits; one publisher
+// thread works out what each subscriber needs, at most once per publish interval, and hands the
+// blocking servlet writes to a small writer pool, one write in flight per subscriber.
+@Slf4j
+@Service
+public class LiveStatesService implements IngestionListener {
+    @Autowired
+    private MachineEventRepository repo;
+
+    @Autowired
+    private Shards shards;
+
+    @Autowired
+    private LiveStatesProperties properties;
+
+    @Autowired
+    private MeterRegistry registry;
+
+    // One map per scope, keyed by the machine, line or factory id, so ingestion looks topics up without building keys
+    private final Map<Scope, ConcurrentHashMap<String, LiveTopic>> topics = new EnumMap<>(Scope.class);
+    private final AtomicInteger subscriberCount = new AtomicInteger();
+    private ScheduledExecutorService publisher;
+    // Platform threads: SseEmitter.send is synchronized, so a virtual thread blocked in it would pin its carrier
+    private ExecutorService writers;
+    private Counter dropped;
+    private long lastMinute;
+
+    @PostConstruct
+    void start() {
+        for (Scope scope : Scope.values()) {
+            topics.put(scope, new ConcurrentHashMap<>());
+        }
+        publisher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "live-states");
+            thread.setDaemon(true);
+            return thread;
+        });
+        AtomicInteger writerNumber = new AtomicInteger();
+        writers = Executors.newFixedThreadPool(properties.getWriterThreads(), runnable -> {
+            Thread thread = new Thread(runnable, "live-states-writer-" + writerNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        long interval = properties.getPublishInterval().toMillis();
+        publisher.scheduleWithFixedDelay(this::publishSafely, interval, interval, TimeUnit.MILLISECONDS);
+        Gauge.builder("buyogo.live.subscribers", subscriberCount, AtomicInteger::get)
+                .description("Open /states/stream connections")
+                .register(registry);
+        dropped = Counter.builder("buyogo.live.dropped")
+                .description("Subscribers dropped because a write did not finish within buyogo.live.write-timeout")
+                .register(registry);
+    }
+
+    @PreDestroy
+    void stop() {
+        publisher.shutdownNow();
+        writers.shutdownNow();
+        topics.values().forEach(byId -> byId.values().forEach(
+                topic -> topic.subscribers.forEach(subscriber -> subscriber.emitter.complete())));
+    }
+
+    public SseEmitter subscribe(String machineId, String lineId, String factoryId, Duration window, Duration interval) {
+        int scopes = (machineId != null ? 1 : 0) + (lineId != null ? 1 : 0) + (factoryId != null ? 1 : 0);
+        if (scopes != 1) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Exactly one of machineId, lineId or factoryId is required");
+        }
+        if (window.toMinutes() < 1 || window.compareTo(properties.getMaxWindow()) > 0) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "window must be between 1 minute and " + properties.getMaxWindow());
+        }
+        if (subscriberCount.incrementAndGet() > properties.getMaxSubscribers()) {
+            subscriberCount.decrementAndGet();
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Too many live subscribers");
+        }
+        Scope scope = machineId != null ? Scope.MACHINE : lineId != null ? Scope.LINE : Scope.FACTORY;
+        String id = machineId != null ? machineId : lineId != null ? lineId : factoryId;
+        long intervalNanos = Math.max(interval.toNanos(), properties.getPublishInterval().toNanos());
+
+        // No timeout: an idle stream costs a socket and a subscriber entry, not a thread
+        SseEmitter emitter = new SseEmitter(0L);
+        LiveSubscriber subscriber = new LiveSubscriber(emitter, scope, id, (int) window.toMinutes(), intervalNanos, System.nanoTime());
+        boolean[] created = new boolean[1];
+        LiveTopic topic = topics.get(scope).compute(id, (k, existing) -> {
+            LiveTopic target = existing;
+            if (target == null) {
+                target = new LiveTopic(scope, id, (int) properties.getMaxWindow().toMinutes());
+                created[0] = true;
+            }
+            target.subscribers.add(subscriber);
+            return target;
+        });
+        emitter.onCompletion(() -> unsubscribe(subscriber));
+        emitter.onTimeout(() -> unsubscribe(subscriber));
+        emitter.onError(e -> unsubscribe(subscriber));
+        if (created[0]) {
+            try {
+                seed(topic);
+            } catch (RuntimeException e) {
+                // Nobody may wait on a topic that will never be seeded
+                topics.get(scope).remove(id, topic);
+                for (LiveSubscriber waiting : topic.subscribers) {
+                    subscriberCount.decrementAndGet();
+                    if (waiting != subscriber) {
+                        waiting.emitter.completeWithError(e);
+                    }
+                }
+                throw e;
+            }
+        }
+        return emitter;
+    }
+
+    // Loads the scope's rows for the longest window once; later subscribers share the topic
+    private void seed(LiveTopic topic) {
+        Instant now = Instant.now();
+        Instant from = now.minus(properties.getMaxWindow());
+        Instant to = now.plus(Duration.ofMinutes(16));
+        List<LiveEventProjection> rows = switch (topic.scope) {
+            case MACHINE -> shards.gather(() -> repo.findLiveByMachineId(topic.id, from, to));
+            case LINE -> shards.gather(() -> repo.findLiveByLineId(topic.id, from, to));
+            case FACTORY -> shards.forFactory(topic.id, () -> repo.findLiveByFactoryId(topic.id, from, to));
+        };
+        topic.seed(rows, LiveTopic.minute(Instant.now()));
+    }
+
+    private void unsubscribe(LiveSubscriber subscriber) {
+        LiveTopic[] removedFrom = new LiveTopic[1];
+        topics.get(subscriber.scope).computeIfPresent(subscriber.topicId, (id, topic) -> {
+            if (topic.subscribers.remove(subscriber)) {
+                removedFrom[0] = topic;
+            }
+            return topic.subscribers.isEmpty() ? null : topic;
+        });
+        if (removedFrom[0] != null) {
+            subscriberCount.decrementAndGet();
+        }
+    }
+
+    @Override
+    public void afterCommit(List<EventChange> changes) {
+        if (topics.values().stream().allMatch(Map::isEmpty)) {
+            return;
+        }
+        long nowMinute = LiveTopic.minute(Instant.now());
+        Set<LiveTopic> touched = new LinkedHashSet<>();
+        for (EventChange change : changes) {
+            touched.clear();
+            collect(change.previous(), touched);
+            collect(change.current(), touched);
+            for (LiveTopic topic : touched) {
+                topic.apply(change, nowMinute);
+            }
+        }
+    }
+
+    private void collect(MachineEvent event, Set<LiveTopic> touched) {
+        if (event == null) {
+            return;
+        }
+        addIfPresent(Scope.MACHINE, event.getMachineId(), touched);
+        addIfPresent(Scope.LINE, event.getLineId(), touched);
+        addIfPresent(Scope.FACTORY, event.getFactoryId(), touched);
+    }
+
+    private void addIfPresent(Scope scope, String id, Set<LiveTopic> touched) {
+        LiveTopic topic = topics.get(scope).get(id);
+        if (topic != null) {
+            touched.add(topic);
+        }
+    }
+
+    private void publishSafely() {
+        try {
+            publish();
+        } catch (RuntimeException e) {
+            log.warn("Live state publish failed: {}", e.getMessage(), e);
+        }
+    }
+
+    // Runs on the publisher thread; package-private so tests can drive it
+    void publish() {
+        Instant now = Instant.now();
+        long nowMinute = LiveTopic.minute(now);
+        long nowNanos = System.nanoTime();
+        // Buckets slide out of the window on the minute, so every machine is re-evaluated then
+        boolean rolled = nowMinute != lastMinute;
+        lastMinute = nowMinute;
+        long heartbeatNanos = properties.getHeartbeat().toNanos();
+        long writeTimeoutNanos = properties.getWriteTimeout().toNanos();
+        for (LiveTopic topic : allTopics()) {
+            if (!topic.isSeeded()) {
+                continue;
+            }
+            Set<String> changed = topic.drainDirty(rolled);
+            for (LiveSubscriber subscriber : topic.subscribers) {
+                if (subscriber.needsSnapshot) {
+                    subscriber.pending.addAll(topic.machineIds());
+                    subscriber.needsSnapshot = false;
+                } else {
+                    subscriber.pending.addAll(changed);
+                }
+                if (subscriber.writing.get()) {
+                    // Changes keep collecting in pending and go out with the next write
+                    long started = subscriber.writeStartedNanos;
+                    if (started != 0 && nowNanos - started >= writeTimeoutNanos) {
+                        drop(subscriber);
+                    }
+                } else if (!subscriber.pending.isEmpty() && nowNanos - subscriber.nextSendNanos >= 0) {
+                    send(topic, subscriber, now, nowMinute, nowNanos);
+                } else if (nowNanos - subscriber.lastWriteNanos >= heartbeatNanos) {
+                    write(subscriber, nowNanos, SseEmitter.event().comment("keepalive"));
+                }
+            }
+        }
+    }
+
+    private List<LiveTopic> allTopics() {
+        List<LiveTopic> all = new ArrayList<>();
+        topics.values().forEach(byId -> all.addAll(byId.values()));
+        return all;
+    }
+
+    private void send(LiveTopic topic, LiveSubscriber subscriber, Instant now, long nowMinute, long nowNanos) {
+        Duration window = Duration.ofMinutes(subscriber.windowMinutes);
+        List<StatesResponseDTO> states = new ArrayList<>(subscriber.pending.size());
+        List<StatusTransitionDTO> transitions = new ArrayList<>();
+        for (String machineId : subscriber.pending) {
+            long[] totals = topic.totals(machineId, subscriber.windowMinutes, nowMinute);
+            if (totals == null) {
+                continue;
+            }
+            double avgDefectRate = StateService.defectRate(totals[1], window);
+            Status status = StateService.statusFor(avgDefectRate);
+            StatesResponseDTO state = new StatesResponseDTO();
+            state.setMachineId(machineId);
+            state.setFactoryId(topic.factoryId(machineId));
+            state.setStart(now.minus(window));
+            state.setEnd(now);
+            state.setEventsCount(totals[0]);
+            state.setDefectsCount(totals[1]);
+            state.setAvgDefectRate(avgDefectRate);
+            state.setStatus(status);
+            states.add(state);
+            Status previous = subscriber.lastStatus.put(machineId, status);
+            if (previous != null && previous != status) {
+                transitions.add(new StatusTransitionDTO(machineId, previous, status, now));
+            }
+        }
+        subscriber.pending.clear();
+        subscriber.nextSendNanos = nowNanos + subscriber.intervalNanos;
+        if (states.isEmpty()) {
+            return;
+        }
+        SseEmitter.SseEventBuilder statesEvent = SseEmitter.event().name("states").data(states, MediaType.APPLICATION_JSON);
+        if (transitions.isEmpty()) {
+            write(subscriber, nowNanos, statesEvent);
+        } else {
+            write(subscriber, nowNanos, statesEvent,
+                    SseEmitter.event().name("status").data(transitions, MediaType.APPLICATION_JSON));
+        }
+    }
+
+    // Hands the events to a writer thread; the publisher never blocks on a client's socket
+    private void write(LiveSubscriber subscriber, long nowNanos, SseEmitter.SseEventBuilder... events) {
+        subscriber.writing.set(true);
+        subscriber.writeStartedNanos = 0;
+        subscriber.lastWriteNanos = nowNanos;
+        try {
+            writers.execute(() -> {
+                subscriber.writeStartedNanos = System.nanoTime();
+                try {
+                    for (SseEmitter.SseEventBuilder event : events) {
+                        subscriber.emitter.send(event);
+                    }
+                } catch (IOException | IllegalStateException e) {
+                    // Client went away; the emitter callbacks may not fire for a connection that is already gone
+                    unsubscribe(subscriber);
+                } finally {
+                    subscriber.writing.set(false);
+                    if (subscriber.dropped) {
+                        close(subscriber);
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // Shutting down
+            subscriber.writing.set(false);
+        }
+    }
+
+    // The writer is still blocked on this client's socket, so closing is left to it unless it has just returned
+    private void drop(LiveSubscriber subscriber) {
+        log.debug("Dropping live subscriber for {} {}: write blocked for over {}",
+                subscriber.scope, subscriber.topicId, properties.getWriteTimeout());
+        subscriber.dropped = true;
+        unsubscribe(subscriber);
+        dropped.increment();
+        if (!subscriber.writing.get()) {
+            close(subscriber);
+        }
+    }
+
+    private static void close(LiveSubscriber subscriber) {
+        try {
+            subscriber.emitter.complete();
+        } catch (RuntimeException e) {
+            // Already completed by the other side of the race, or the connection is gone
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package com.aditya.buyogo.services;
+
+import com.aditya.buyogo.models.Status;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// One open /states/stream connection. Everything but the emitter and the write state is touched only
+// by the publisher thread, so an idle subscriber is a handful of small objects and no thread.
+final class LiveSubscriber {
+    final SseEmitter emitter;
+    final LiveTopic.Scope scope;
+    final String topicId;
+    final int windowMinutes;
+    final long intervalNanos;
+    // Machines changed since this subscriber was last sent an update
+    final Set<String> pending = new HashSet<>();
+    final Map<String, Status> lastStatus = new HashMap<>();
+    boolean needsSnapshot = true;
+    long nextSendNanos;
+    long lastWriteNanos;
+    // Set by the publisher when it hands a write to a writer thread, cleared by the writer when it is done
+    final AtomicBoolean writing = new AtomicBoolean();
+    // When the writer started its current write, or 0 while it is still queued
+    volatile long writeStartedNanos;
+    // Dropped for a write that did not finish in time; the writer closes the emitter once the write returns
+    volatile boolean dropped;
+
+    LiveSubscriber(SseEmitter emitter, LiveTopic.Scope scope, String topicId, int windowMinutes, long intervalNanos, long now) {
+        this.emitter = emitter;
+        this.scope = scope;
+        this.topicId = topicId;
+        this.windowMinutes = windowMinutes;
+        this.intervalNanos = intervalNanos;
+        this.nextSendNanos = now;
+        this.lastWriteNanos = now;
+    }
+}
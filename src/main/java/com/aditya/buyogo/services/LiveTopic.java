@@ -0,0 +1,172 @@
+package com.aditya.buyogo.services;
+
+import com.aditya.buyogo.models.MachineEvent;
+import com.aditya.buyogo.repo.LiveEventProjection;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Stored events of one subscription scope (a machine, a line or a factory), kept per machine in
+// one-minute buckets that cover the longest window a subscriber may ask for. Shared by every
+// subscriber of the scope and dropped with the last of them.
+final class LiveTopic {
+    enum Scope { MACHINE, LINE, FACTORY }
+
+    // Event times may run up to 15 minutes ahead of now (see EventColumns.rejectionReason)
+    private static final int FUTURE_MINUTES = 16;
+
+    final Scope scope;
+    final String id;
+    final Set<LiveSubscriber> subscribers = ConcurrentHashMap.newKeySet();
+    private final int maxWindowMinutes;
+    private final Map<String, MachineWindow> machines = new HashMap<>();
+    private final Set<String> dirty = new LinkedHashSet<>();
+    // Changes committed while the seed query runs; null once seeded
+    private List<EventChange> pending = new ArrayList<>();
+
+    LiveTopic(Scope scope, String id, int maxWindowMinutes) {
+        this.scope = scope;
+        this.id = id;
+        this.maxWindowMinutes = maxWindowMinutes;
+    }
+
+    static long minute(Instant instant) {
+        return Math.floorDiv(instant.getEpochSecond(), 60);
+    }
+
+    boolean matches(MachineEvent event) {
+        return event != null && id.equals(switch (scope) {
+            case MACHINE -> event.getMachineId();
+            case LINE -> event.getLineId();
+            case FACTORY -> event.getFactoryId();
+        });
+    }
+
+    // A change seen before the seed finished is replayed after it; the seed skips the rows it
+    // touched, so each event is counted once whichever side of the seed query it committed on
+    synchronized void seed(List<LiveEventProjection> rows, long nowMinute) {
+        Set<String> changedIds = new HashSet<>();
+        pending.forEach(change -> changedIds.add(change.current().getEventId()));
+        for (LiveEventProjection row : rows) {
+            if (!changedIds.contains(row.getEventId())) {
+                window(row.getMachineId(), row.getFactoryId())
+                        .add(minute(row.getEventTime()), row.getDefectCount(), 1, nowMinute);
+            }
+        }
+        for (EventChange change : pending) {
+            if (matches(change.current())) {
+                add(change.current(), 1, nowMinute);
+            }
+        }
+        pending = null;
+        dirty.addAll(machines.keySet());
+    }
+
+    synchronized void apply(EventChange change, long nowMinute) {
+        if (pending != null) {
+            pending.add(change);
+            return;
+        }
+        if (matches(change.previous())) {
+            add(change.previous(), -1, nowMinute);
+        }
+        if (matches(change.current())) {
+            add(change.current(), 1, nowMinute);
+        }
+    }
+
+    private void add(MachineEvent event, int sign, long nowMinute) {
+        window(event.getMachineId(), event.getFactoryId())
+                .add(minute(event.getEventTime()), event.getDefectCount(), sign, nowMinute);
+        dirty.add(event.getMachineId());
+    }
+
+    private MachineWindow window(String machineId, String factoryId) {
+        return machines.computeIfAbsent(machineId,
+                machine -> new MachineWindow(factoryId, maxWindowMinutes + FUTURE_MINUTES));
+    }
+
+    synchronized boolean isSeeded() {
+        return pending == null;
+    }
+
+    // Machines changed since the last call, or all of them
+    synchronized Set<String> drainDirty(boolean all) {
+        Set<String> changed = new HashSet<>(all ? machines.keySet() : dirty);
+        dirty.clear();
+        return changed;
+    }
+
+    synchronized Set<String> machineIds() {
+        return new HashSet<>(machines.keySet());
+    }
+
+    // {events, defects} in the windowMinutes minutes ending at nowMinute, or null for an unknown machine
+    synchronized long[] totals(String machineId, int windowMinutes, long nowMinute) {
+        MachineWindow window = machines.get(machineId);
+        return window == null ? null : window.totals(windowMinutes, nowMinute);
+    }
+
+    synchronized String factoryId(String machineId) {
+        MachineWindow window = machines.get(machineId);
+        return window == null ? null : window.factoryId;
+    }
+
+    // Ring of per-minute counters; a slot belongs to the minute stored next to it, so stale slots
+    // are recognised and reset instead of being cleared on a timer
+    private static final class MachineWindow {
+        final String factoryId;
+        final long[] slotMinute;
+        final int[] events;
+        final long[] defects;
+
+        MachineWindow(String factoryId, int slots) {
+            this.factoryId = factoryId;
+            this.slotMinute = new long[slots];
+            this.events = new int[slots];
+            this.defects = new long[slots];
+            Arrays.fill(slotMinute, Long.MIN_VALUE);
+        }
+
+        void add(long minute, int defectCount, int sign, long nowMinute) {
+            if (minute <= nowMinute - (slotMinute.length - FUTURE_MINUTES) || minute >= nowMinute + FUTURE_MINUTES) {
+                return;
+            }
+            int slot = (int) Math.floorMod(minute, (long) slotMinute.length);
+            if (slotMinute[slot] != minute) {
+                if (sign < 0) {
+                    return;
+                }
+                slotMinute[slot] = minute;
+                events[slot] = 0;
+                defects[slot] = 0;
+            }
+            events[slot] += sign;
+            // Same rule as StateService: negative defect counts mean unknown and are not summed
+            if (defectCount >= 0) {
+                defects[slot] += (long) sign * defectCount;
+            }
+        }
+
+        long[] totals(int windowMinutes, long nowMinute) {
+            long eventCount = 0;
+            long defectCount = 0;
+            for (long minute = nowMinute - windowMinutes + 1; minute <= nowMinute; minute++) {
+                int slot = (int) Math.floorMod(minute, (long) slotMinute.length);
+                if (slotMinute[slot] == minute) {
+                    eventCount += events[slot];
+                    defectCount += defects[slot];
+                }
+            }
+            return new long[]{eventCount, defectCount};
+        }
+    }
+}
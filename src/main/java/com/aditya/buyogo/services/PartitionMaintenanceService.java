@@ -0,0 +1,117 @@
+package com.aditya.buyogo.services;
+
+import com.aditya.buyogo.config.PartitioningProperties;
+import com.aditya.buyogo.config.PartitioningProperties.Interval;
+import com.aditya.buyogo.repo.MachineEventPartitions;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.List;
+
+@Slf4j
+@Service
+@ConditionalOnProperty(name = "buyogo.partitioning.enabled", havingValue = "true")
+public class PartitionMaintenanceService {
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PartitioningProperties properties;
+
+    @Autowired
+    private Shards shards;
+
+    // Present when buyogo.etags.enabled=true
+    @Autowired(required = false)
+    private DataVersions dataVersions;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onStartup() {
+        maintainPartitions();
+    }
+
+    // On every shard with buyogo.sharding; each has its own machine_event
+    @Scheduled(cron = "${buyogo.partitioning.cron:0 15 * * * *}")
+    public void maintainPartitions() {
+        shards.forEach(shard -> {
+            if (!isPartitioned()) {
+                log.warn("{} is not a partitioned table on shard {}; skipping partition maintenance",
+                        MachineEventPartitions.PARENT_TABLE, shard);
+                return;
+            }
+            Instant now = Instant.now();
+            createAhead(now);
+            if (properties.getRetentionDays() > 0) {
+                dropExpired(now);
+            }
+        });
+    }
+
+    void createAhead(Instant now) {
+        Interval interval = properties.getInterval();
+        LocalDate start = MachineEventPartitions.periodStart(now, interval);
+        for (int i = 0; i <= properties.getPremake(); i++) {
+            LocalDate next = MachineEventPartitions.nextPeriod(start, interval);
+            String name = MachineEventPartitions.partitionName(start);
+            try {
+                jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS " + name
+                        + " PARTITION OF " + MachineEventPartitions.PARENT_TABLE
+                        + " FOR VALUES FROM ('" + MachineEventPartitions.toInstant(start)
+                        + "') TO ('" + MachineEventPartitions.toInstant(next) + "')");
+            } catch (DataAccessException e) {
+                // Typically the default partition already holds rows for this range.
+                log.warn("Could not create partition {}: {}", name, e.getMessage());
+            }
+            start = next;
+        }
+    }
+
+    void dropExpired(Instant now) {
+        Interval interval = properties.getInterval();
+        LocalDate cutoff = now.atZone(ZoneOffset.UTC).toLocalDate().minusDays(properties.getRetentionDays());
+        for (String name : listPartitions()) {
+            LocalDate start = MachineEventPartitions.parsePartitionStart(name);
+            // Only drop partitions whose entire range is older than the cutoff.
+            if (start == null || MachineEventPartitions.nextPeriod(start, interval).isAfter(cutoff)) {
+                continue;
+            }
+            log.info("Dropping expired partition {}", name);
+            jdbcTemplate.execute("ALTER TABLE " + MachineEventPartitions.PARENT_TABLE + " DETACH PARTITION " + name);
+            // Dropping fires no row triggers, so the ids' machine_event_key rows (V1) go first
+            jdbcTemplate.update("DELETE FROM machine_event_key k USING " + name + " p WHERE k.event_id = p.event_id");
+            jdbcTemplate.execute("DROP TABLE " + name);
+            // The rows are gone without a batch to stamp them
+            if (dataVersions != null) {
+                dataVersions.invalidateAll();
+            }
+        }
+    }
+
+    private boolean isPartitioned() {
+        Integer count = jdbcTemplate.queryForObject("""
+                SELECT COUNT(*) FROM pg_partitioned_table p
+                JOIN pg_class c ON c.oid = p.partrelid
+                WHERE c.relname = ? AND pg_table_is_visible(c.oid)
+                """, Integer.class, MachineEventPartitions.PARENT_TABLE);
+        return count != null && count > 0;
+    }
+
+    private List<String> listPartitions() {
+        return jdbcTemplate.queryForList("""
+                SELECT child.relname FROM pg_inherits i
+                JOIN pg_class parent ON parent.oid = i.inhparent
+                JOIN pg_class child ON child.oid = i.inhrelid
+                WHERE parent.relname = ? AND pg_table_is_visible(parent.oid)
+                """, String.class, MachineEventPartitions.PARENT_TABLE);
+    }
+}
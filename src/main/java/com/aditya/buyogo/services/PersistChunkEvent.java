@@ -0,0 +1,29 @@
+package com.aditya.buyogo.services;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Registered;
+
+// One chunk of the save stage: an insert batch (insertNew) and an update batch (saveAll + flush).
+// Isolated rows are inserts the database refused and that were left out of the chunk.
+@Name("buyogo.PersistChunk")
+@Label("Persist Chunk")
+@Category({"Buyogo", "Ingestion"})
+@Description("Insert and update batches of one chunk of new and updated rows")
+@Registered(false)
+public class PersistChunkEvent extends Event {
+    @Label("Chunk")
+    int chunk;
+
+    @Label("Inserts")
+    int inserts;
+
+    @Label("Updates")
+    int updates;
+
+    @Label("Isolated Rows")
+    int isolated;
+}
@@ -0,0 +1,120 @@
+package com.aditya.buyogo.services;
+
+import com.aditya.buyogo.dto.RejectionDTO;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.composite.CompositeMeterRegistry;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+// Ingestion and query meters, exported at /actuator/prometheus. Every meter is registered up front and
+// looked up by enum ordinal, so the hot path never builds tags or allocates.
+@Component
+public class ServiceMetrics {
+
+    public enum Stage {
+        BIND("bind"), HASH("hash"), LOOKUP("lookup"), REGISTER("register"), SAVE("save");
+
+        private final String tag;
+
+        Stage(String tag) {
+            this.tag = tag;
+        }
+    }
+
+    public enum Query {
+        MACHINE_STATES("machine-states"), TOP_DEFECT_LINES("top-defect-lines");
+
+        final String tag;
+
+        Query(String tag) {
+            this.tag = tag;
+        }
+    }
+
+    private final MeterRegistry registry;
+    private final Timer[] stages = new Timer[Stage.values().length];
+    private final Timer[] queries = new Timer[Query.values().length];
+    private final DistributionSummary batchSize;
+    private final Counter accepted;
+    private final Counter deduped;
+    private final Counter updated;
+    private final Counter ignored;
+    private final Map<String, Counter> rejected = new ConcurrentHashMap<>();
+
+    public ServiceMetrics(MeterRegistry registry) {
+        this.registry = registry;
+        for (Stage stage : Stage.values()) {
+            // Stage timers hold the whole batch's time in that stage, not per-event samples
+            stages[stage.ordinal()] = Timer.builder("buyogo.ingest.stage")
+                    .description("Time a batch spends in each stage of POST /events/batch")
+                    .tag("stage", stage.tag)
+                    .publishPercentileHistogram()
+                    .minimumExpectedValue(Duration.ofMillis(1))
+                    .maximumExpectedValue(Duration.ofSeconds(30))
+                    .register(registry);
+        }
+        for (Query query : Query.values()) {
+            queries[query.ordinal()] = Timer.builder("buyogo.state.query")
+                    .description("StateService query latency by endpoint")
+                    .tag("endpoint", query.tag)
+                    .publishPercentileHistogram()
+                    .minimumExpectedValue(Duration.ofMillis(1))
+                    .maximumExpectedValue(Duration.ofSeconds(30))
+                    .register(registry);
+        }
+        batchSize = DistributionSummary.builder("buyogo.ingest.batch.size")
+                .description("Events per POST /events/batch")
+                .baseUnit("events")
+                .serviceLevelObjectives(1, 10, 50, 100, 250, 500, 1000, 2500, 5000, 10000)
+                .register(registry);
+        accepted = outcome("accepted", "none");
+        deduped = outcome("deduped", "none");
+        updated = outcome("updated", "none");
+        // Same event id with a different payload but an older receivedTime: dropped without a rejection
+        ignored = outcome("ignored", "none");
+        for (String reason : List.of(EventService.INVALID_DURATION, EventService.INVALID_EVENT_TIME)) {
+            rejected.put(reason, outcome("rejected", reason));
+        }
+    }
+
+    // Unregistered stand-in for services built by hand in tests and benchmarks
+    static ServiceMetrics noop() {
+        return new ServiceMetrics(new CompositeMeterRegistry());
+    }
+
+    private Counter outcome(String outcome, String reason) {
+        return Counter.builder("buyogo.ingest.events")
+                .description("Events by ingestion outcome and rejection reason")
+                .tag("outcome", outcome)
+                .tag("reason", reason)
+                .register(registry);
+    }
+
+    public void recordStage(Stage stage, long nanos) {
+        stages[stage.ordinal()].record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordQuery(Query query, long nanos) {
+        queries[query.ordinal()].record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordBatch(int size, int acceptedCount, int dedupedCount, int updatedCount, int ignoredCount,
+                            List<RejectionDTO> rejections) {
+        batchSize.record(size);
+        accepted.increment(acceptedCount);
+        deduped.increment(dedupedCount);
+        updated.increment(updatedCount);
+        ignored.increment(ignoredCount);
+        for (RejectionDTO rejection : rejections) {
+            rejected.computeIfAbsent(rejection.getReason(), reason -> outcome("rejected", reason)).increment();
+        }
+    }
+}
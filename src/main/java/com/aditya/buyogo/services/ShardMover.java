@@ -0,0 +1,223 @@
+package com.aditya.buyogo.services;
+
+import com.aditya.buyogo.config.ShardDataSource;
+import com.aditya.buyogo.config.ShardingProperties;
+import com.aditya.buyogo.dto.ShardMoveDTO;
+import com.aditya.buyogo.repo.IdentifierDictionary;
+import com.aditya.buyogo.repo.IdentifierDictionary.Kind;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.UncategorizedSQLException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.SQLStateSQLExceptionTranslator;
+import org.springframework.stereotype.Service;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Moves one factory's events to another shard while ingestion and queries carry on:
+//   copy     every row of the factory into the target, in batches, inside one target transaction that
+//            stays open, so no query sees the copies early; the source stays authoritative meanwhile
+//   cutover  with ingestion on this node held at the fence: copy again the rows updated since the copy
+//            began (less moveClockSkew), commit the target, record the assignment
+//   cleanup  with ingestion running again, now routed to the target: delete the source rows in batches
+// Rows keep their surrogate ids, which are unique across shards (see ShardingConfig). Other nodes route by
+// the new assignment after their next refresh; a batch one of them writes to the old shard in between
+// stays there, so move a factory while a single node ingests it, or pause its senders for that long.
+// From the target commit until cleanup ends, reads across factories (Shards.gather) find the factory's
+// rows on both shards and count them twice; factory-scoped reads follow the assignment and are exact.
+@Slf4j
+@Service
+@ConditionalOnProperty(prefix = "buyogo.sharding", name = "enabled", havingValue = "true")
+public class ShardMover {
+    private static final String COLUMNS = "id, event_id, machine_key, factory_key, line_key, event_time, received_time,"
+            + " created_at, updated_at, duration_ms, defect_count, payload_hash";
+    private static final String SELECT_ALL = "SELECT " + COLUMNS
+            + " FROM machine_event WHERE factory_key = ? AND id > ? ORDER BY id LIMIT ?";
+    private static final String SELECT_UPDATED = "SELECT " + COLUMNS
+            + " FROM machine_event WHERE factory_key = ? AND updated_at >= ? AND id > ? ORDER BY id LIMIT ?";
+    private static final String INSERT = "INSERT INTO machine_event (" + COLUMNS + ") VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+    private static final String DELETE_EVENT = "DELETE FROM machine_event WHERE event_id = ?";
+    private static final String DELETE_FACTORY = "DELETE FROM machine_event WHERE id IN"
+            + " (SELECT id FROM machine_event WHERE factory_key = ? ORDER BY id LIMIT ?)";
+
+    @Autowired
+    private Shards shards;
+
+    @Autowired
+    private ShardDataSource dataSource;
+
+    @Autowired
+    private IdentifierDictionary dictionary;
+
+    @Autowired
+    private ShardingProperties properties;
+
+    private final SQLStateSQLExceptionTranslator translator = new SQLStateSQLExceptionTranslator();
+    // One move at a time per node; a lock rather than the monitor, so a virtual thread waiting here is not pinned
+    private final Lock moves = new ReentrantLock();
+
+    public ShardMoveDTO move(String factoryId, String target) {
+        if (!shards.names().contains(target)) {
+            throw new IllegalArgumentException("Unknown shard " + target);
+        }
+        moves.lock();
+        try {
+            return moveLocked(factoryId, target);
+        } finally {
+            moves.unlock();
+        }
+    }
+
+    private ShardMoveDTO moveLocked(String factoryId, String target) {
+        String source = shards.shardOf(factoryId);
+        ShardMoveDTO result = new ShardMoveDTO();
+        result.setFactoryId(factoryId);
+        result.setFrom(source);
+        result.setTo(target);
+        if (source.equals(target)) {
+            return result;
+        }
+        // Unknown means nothing stored yet; the copy then finds no rows
+        int factoryKey = dictionary.keyOf(Kind.FACTORY, factoryId);
+        DataSource from = dataSource.pool(source);
+        Timestamp updatedSince = Timestamp.from(Instant.now().minus(properties.getMoveClockSkew()));
+        boolean committed = false;
+        try (Connection to = dataSource.pool(target).getConnection()) {
+            to.setAutoCommit(false);
+            try {
+                result.setCopiedRows(copy(from, to, factoryKey, null));
+                Lock fence = shards.cutoverFence();
+                long cutoverStart = System.nanoTime();
+                fence.lock();
+                try {
+                    result.setRecopiedRows(copy(from, to, factoryKey, updatedSince));
+                    to.commit();
+                    committed = true;
+                    assign(factoryId, target, factoryKey);
+                } finally {
+                    fence.unlock();
+                    result.setCutoverMillis((System.nanoTime() - cutoverStart) / 1_000_000);
+                }
+            } catch (SQLException | RuntimeException e) {
+                if (!committed) {
+                    to.rollback();
+                }
+                throw e;
+            }
+        } catch (SQLException e) {
+            throw translate("move " + factoryId, e);
+        }
+        // Outside the fence and with the target connection returned: ingestion already writes to the target
+        result.setDeletedRows(deleteFactory(from, factoryKey, source));
+        log.info("Moved factory {} from shard {} to {}: {} rows copied, {} again at cutover, {} ms with ingestion held, {} deleted",
+                factoryId, source, target, result.getCopiedRows(), result.getRecopiedRows(), result.getCutoverMillis(),
+                result.getDeletedRows());
+        return result;
+    }
+
+    // Copies the factory's rows, or only those updated since updatedSince, replacing any copy already made
+    private long copy(DataSource source, Connection target, int factoryKey, Timestamp updatedSince) throws SQLException {
+        int batchSize = properties.getMoveBatchSize();
+        long copied = 0;
+        long after = Long.MIN_VALUE;
+        try (Connection from = source.getConnection();
+             PreparedStatement select = from.prepareStatement(updatedSince == null ? SELECT_ALL : SELECT_UPDATED);
+             PreparedStatement delete = target.prepareStatement(DELETE_EVENT);
+             PreparedStatement insert = target.prepareStatement(INSERT)) {
+            int rows;
+            do {
+                int p = 1;
+                select.setInt(p++, factoryKey);
+                if (updatedSince != null) {
+                    select.setTimestamp(p++, updatedSince);
+                }
+                select.setLong(p++, after);
+                select.setInt(p, batchSize);
+                rows = 0;
+                try (ResultSet rs = select.executeQuery()) {
+                    while (rs.next()) {
+                        if (updatedSince != null) {
+                            delete.setString(1, rs.getString(2));
+                            delete.addBatch();
+                        }
+                        after = rs.getLong(1);
+                        insert.setLong(1, after);
+                        insert.setString(2, rs.getString(2));
+                        for (int column = 3; column <= 5; column++) {
+                            insert.setInt(column, rs.getInt(column));
+                        }
+                        for (int column = 6; column <= 9; column++) {
+                            insert.setTimestamp(column, rs.getTimestamp(column));
+                        }
+                        insert.setInt(10, rs.getInt(10));
+                        insert.setInt(11, rs.getInt(11));
+                        insert.setBytes(12, rs.getBytes(12));
+                        insert.addBatch();
+                        rows++;
+                    }
+                }
+                if (rows > 0) {
+                    if (updatedSince != null) {
+                        delete.executeBatch();
+                    }
+                    insert.executeBatch();
+                    copied += rows;
+                }
+            } while (rows == batchSize);
+        }
+        return copied;
+    }
+
+    // The copies are committed by now; without the assignment they would be counted twice, so take them back
+    private void assign(String factoryId, String target, int factoryKey) {
+        try {
+            shards.assign(factoryId, target);
+        } catch (RuntimeException e) {
+            try {
+                delete(dataSource.pool(target), factoryKey);
+            } catch (RuntimeException cleanup) {
+                e.addSuppressed(cleanup);
+                log.error("Factory {} stays on its shard, but its copies on {} could not be removed", factoryId, target);
+            }
+            throw e;
+        }
+    }
+
+    private long deleteFactory(DataSource source, int factoryKey, String shard) {
+        try {
+            return delete(source, factoryKey);
+        } catch (RuntimeException e) {
+            // The move itself is done; the old rows are only a duplicate now
+            log.error("Moved factory key {}, but its rows on shard {} could not be deleted; delete them by hand", factoryKey, shard);
+            throw e;
+        }
+    }
+
+    // Every row of the factory, moveBatchSize rows per statement and transaction
+    private long delete(DataSource pool, int factoryKey) {
+        JdbcTemplate jdbc = new JdbcTemplate(pool);
+        int batchSize = properties.getMoveBatchSize();
+        long deleted = 0;
+        int rows;
+        do {
+            rows = jdbc.update(DELETE_FACTORY, factoryKey, batchSize);
+            deleted += rows;
+        } while (rows == batchSize);
+        return deleted;
+    }
+
+    private DataAccessException translate(String task, SQLException e) {
+        DataAccessException translated = translator.translate(task, null, e);
+        return translated != null ? translated : new UncategorizedSQLException(task, null, e);
+    }
+}
@@ -0,0 +1,258 @@
+package com.aditya.buyogo.services;
+
+import com.aditya.buyogo.config.ShardDataSource;
+import com.aditya.buyogo.config.ShardingProperties;
+import com.aditya.buyogo.config.SqlRequestStats;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+// Which shard holds a factory's events, and running work there (buyogo.sharding, ShardDataSource). A
+// factory lives on the shard shard_assignment names (written by ShardMover), else the one listing it in
+// buyogo.sharding.shards.<name>.factories, else home. Factory-scoped reads go to that shard alone; reads
+// across factories run on every shard in parallel and the caller merges the parts.
+// With buyogo.sharding.enabled=false there is one shard and every call runs straight through, on the
+// caller's thread and in the caller's transaction.
+@Slf4j
+@Component
+public class Shards {
+    private final boolean enabled;
+    private final String home;
+    // Home first, then buyogo.sharding.shards in declaration order
+    private final List<String> names = new ArrayList<>();
+    private final Map<String, String> configured = new HashMap<>();
+    // Moved factories, reloaded from shard_assignment
+    private volatile Map<String, String> assigned = Map.of();
+    private final JdbcTemplate homeJdbc;
+    private final TransactionTemplate reads;
+    // Shared by ingestion on this node, exclusive for a move's cutover
+    private final ReadWriteLock fence = new ReentrantReadWriteLock();
+    private final ExecutorService workers = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("shard-", 0).factory());
+
+    @Autowired
+    public Shards(ShardingProperties properties, ObjectProvider<ShardDataSource> dataSource,
+                  ObjectProvider<PlatformTransactionManager> transactionManager) {
+        this(properties, dataSource.getIfAvailable(), transactionManager.getIfAvailable());
+    }
+
+    private Shards(ShardingProperties properties, ShardDataSource dataSource, PlatformTransactionManager transactionManager) {
+        this.enabled = properties.isEnabled() && dataSource != null;
+        this.home = properties.getHome();
+        names.add(home);
+        if (!enabled) {
+            homeJdbc = null;
+            reads = null;
+            return;
+        }
+        properties.getShards().forEach((name, shard) -> {
+            names.add(name);
+            shard.getFactories().forEach(factoryId -> configured.put(factoryId, name));
+        });
+        homeJdbc = new JdbcTemplate(dataSource.pool(home));
+        reads = new TransactionTemplate(transactionManager);
+        reads.setReadOnly(true);
+        // A transaction the caller holds belongs to whichever shard it began on
+        reads.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        refresh();
+    }
+
+    // For services built without Spring
+    static Shards single() {
+        return new Shards(new ShardingProperties(), (ShardDataSource) null, null);
+    }
+
+    public boolean isSharded() {
+        return enabled;
+    }
+
+    public String home() {
+        return home;
+    }
+
+    public List<String> names() {
+        return Collections.unmodifiableList(names);
+    }
+
+    public String shardOf(String factoryId) {
+        if (!enabled || factoryId == null) {
+            return home;
+        }
+        String shard = assigned.get(factoryId);
+        if (shard == null) {
+            shard = configured.get(factoryId);
+        }
+        return shard != null ? shard : home;
+    }
+
+    // Every factory not on home, by shard assignment over configuration
+    public Map<String, String> factories() {
+        Map<String, String> factories = new LinkedHashMap<>(configured);
+        factories.putAll(assigned);
+        return factories;
+    }
+
+    // Connections work opens come from the shard. A transaction the caller already holds stays where it is.
+    public <T> T onShard(String shard, Supplier<T> work) {
+        if (!enabled) {
+            return work.get();
+        }
+        String outer = ShardDataSource.currentShard();
+        ShardDataSource.enter(shard);
+        try {
+            return work.get();
+        } finally {
+            ShardDataSource.enter(outer);
+        }
+    }
+
+    // One shard at a time, on the caller's thread
+    public void forEach(Consumer<String> work) {
+        for (String shard : names) {
+            onShard(shard, () -> {
+                work.accept(shard);
+                return null;
+            });
+        }
+    }
+
+    // A read of one factory's rows, on its shard in a read-only transaction of its own
+    public <T> T forFactory(String factoryId, Supplier<T> work) {
+        if (!enabled) {
+            return work.get();
+        }
+        return read(shardOf(factoryId), work);
+    }
+
+    // The same read on every shard in parallel, concatenated in names() order
+    public <T> List<T> gather(Supplier<List<T>> work) {
+        if (!enabled) {
+            return work.get();
+        }
+        List<T> rows = new ArrayList<>();
+        parallel(names, shard -> read(shard, work)).forEach(rows::addAll);
+        return rows;
+    }
+
+    // Splits items by the shard of their factory, keeping their order, and writes each shard's part in
+    // parallel, bound to its shard; work opens its own transactions. Routed inside the fence, so a move
+    // cannot cut over between routing and writing. A failed part fails the call; the others stay committed.
+    public <E, T> List<T> write(List<E> items, Function<E, String> factoryOf, Function<List<E>, T> work) {
+        fence.readLock().lock();
+        try {
+            Map<String, List<E>> parts = new LinkedHashMap<>();
+            for (E item : items) {
+                parts.computeIfAbsent(shardOf(factoryOf.apply(item)), shard -> new ArrayList<>()).add(item);
+            }
+            return parallel(new ArrayList<>(parts.keySet()), shard -> onShard(shard, () -> work.apply(parts.get(shard))));
+        } finally {
+            fence.readLock().unlock();
+        }
+    }
+
+    // Held by a move's cutover: no write() on this node runs meanwhile
+    Lock cutoverFence() {
+        return fence.writeLock();
+    }
+
+    // Records a moved factory; other nodes follow on their next refresh
+    void assign(String factoryId, String shard) {
+        Timestamp now = Timestamp.from(Instant.now());
+        if (homeJdbc.update("UPDATE shard_assignment SET shard = ?, moved_at = ? WHERE factory_id = ?", shard, now, factoryId) == 0) {
+            homeJdbc.update("INSERT INTO shard_assignment (factory_id, shard, moved_at) VALUES (?, ?, ?)", factoryId, shard, now);
+        }
+        refresh();
+    }
+
+    @Scheduled(fixedDelayString = "${buyogo.sharding.assignment-refresh:PT30S}")
+    public void refresh() {
+        if (!enabled) {
+            return;
+        }
+        Map<String, String> loaded = new HashMap<>();
+        homeJdbc.query("SELECT factory_id, shard FROM shard_assignment", (RowCallbackHandler) rs -> {
+            if (names.contains(rs.getString(2))) {
+                loaded.put(rs.getString(1), rs.getString(2));
+            } else {
+                log.error("Factory {} is assigned to unknown shard {}; routing it by configuration", rs.getString(1), rs.getString(2));
+            }
+        });
+        assigned = loaded;
+    }
+
+    private <T> T read(String shard, Supplier<T> work) {
+        return onShard(shard, () -> reads.execute(status -> work.get()));
+    }
+
+    // The last shard runs on the caller's thread. Returns or throws only once every shard has finished,
+    // so nothing outlives the caller's hold on the fence; the first failure wins.
+    private <T> List<T> parallel(List<String> shards, Function<String, T> work) {
+        if (shards.isEmpty()) {
+            return List.of();
+        }
+        List<Future<T>> forked = new ArrayList<>();
+        for (String shard : shards.subList(0, shards.size() - 1)) {
+            // The caller is waiting on these, so their SQL counts against its budget
+            forked.add(workers.submit(SqlRequestStats.carry(() -> work.apply(shard))));
+        }
+        List<T> results = new ArrayList<>(shards.size());
+        Throwable failure = null;
+        T last = null;
+        try {
+            last = work.apply(shards.get(shards.size() - 1));
+        } catch (RuntimeException | Error e) {
+            failure = e;
+        }
+        boolean interrupted = false;
+        for (Future<T> future : forked) {
+            while (true) {
+                try {
+                    results.add(future.get());
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                } catch (ExecutionException e) {
+                    failure = failure != null ? failure : e.getCause();
+                    break;
+                }
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        if (failure instanceof RuntimeException runtime) {
+            throw runtime;
+        } else if (failure instanceof Error error) {
+            throw error;
+        } else if (failure != null) {
+            throw new IllegalStateException(failure);
+        }
+        results.add(last);
+        return results;
+    }
+}
@@ -0,0 +1,150 @@
+package com.aditya.buyogo.services;
+
+import java.util.Arrays;
+
+// Weighted Space-Saving summary over int keys (Metwally et al.): at most capacity counters, the
+// smallest found through an indexed min-heap. A monitored key's count overestimates its true
+// weight by at most its error; an unmonitored key's true weight is at most unmonitoredBound().
+// Taking weight back off a monitored key (an updated event) keeps both bounds. The arrays grow as
+// keys arrive, so a summary that never fills costs only what it holds. Not thread-safe.
+final class SpaceSaving {
+    private static final int INITIAL_LENGTH = 16;
+
+    private final int capacity;
+    private int[] keys;
+    private long[] counts;
+    private long[] errors;
+    // heap[i] is a slot; position[slot] is its place in heap
+    private int[] heap;
+    private int[] position;
+    private IntSlotIndex index;
+    private int size;
+    // Largest count ever evicted. Without removals this is just the minimum counter, but a removal
+    // can push the minimum below what an evicted key may still hold.
+    private long evicted;
+
+    SpaceSaving(int capacity) {
+        this.capacity = capacity;
+        resize(Math.min(capacity, INITIAL_LENGTH));
+    }
+
+    void add(int key, long weight) {
+        if (weight <= 0) {
+            return;
+        }
+        int slot = index.get(key);
+        if (slot >= 0) {
+            counts[slot] += weight;
+            siftDown(position[slot]);
+        } else if (size < capacity) {
+            if (size == keys.length) {
+                resize(Math.min(capacity, size * 2));
+            }
+            slot = size;
+            keys[slot] = key;
+            counts[slot] = weight;
+            errors[slot] = 0;
+            heap[size] = slot;
+            position[slot] = size;
+            index.put(key, slot);
+            siftUp(size++);
+        } else {
+            // Evict the smallest counter; the newcomer, unmonitored until now, may already have had up to evicted
+            slot = heap[0];
+            index.remove(keys[slot]);
+            evicted = Math.max(evicted, counts[slot]);
+            keys[slot] = key;
+            errors[slot] = evicted;
+            counts[slot] = evicted + weight;
+            index.put(key, slot);
+            siftDown(0);
+        }
+    }
+
+    // Unmonitored keys are left alone: their bound, unmonitoredBound(), still holds
+    void remove(int key, long weight) {
+        int slot = index.get(key);
+        if (slot < 0 || weight <= 0) {
+            return;
+        }
+        counts[slot] = Math.max(0, counts[slot] - weight);
+        errors[slot] = Math.min(errors[slot], counts[slot]);
+        siftUp(position[slot]);
+    }
+
+    // Upper bound on the weight of any key not monitored here
+    long unmonitoredBound() {
+        return evicted;
+    }
+
+    int size() {
+        return size;
+    }
+
+    int key(int slot) {
+        return keys[slot];
+    }
+
+    long count(int slot) {
+        return counts[slot];
+    }
+
+    long error(int slot) {
+        return errors[slot];
+    }
+
+    // Slot of key, or -1 when it is not monitored
+    int slotOf(int key) {
+        return index.get(key);
+    }
+
+    private void resize(int length) {
+        keys = keys == null ? new int[length] : Arrays.copyOf(keys, length);
+        counts = counts == null ? new long[length] : Arrays.copyOf(counts, length);
+        errors = errors == null ? new long[length] : Arrays.copyOf(errors, length);
+        heap = heap == null ? new int[length] : Arrays.copyOf(heap, length);
+        position = position == null ? new int[length] : Arrays.copyOf(position, length);
+        index = new IntSlotIndex(length);
+        for (int slot = 0; slot < size; slot++) {
+            index.put(keys[slot], slot);
+        }
+    }
+
+    private void siftUp(int i) {
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (counts[heap[parent]] <= counts[heap[i]]) {
+                return;
+            }
+            swap(i, parent);
+            i = parent;
+        }
+    }
+
+    private void siftDown(int i) {
+        while (true) {
+            int smallest = i;
+            int left = 2 * i + 1;
+            int right = left + 1;
+            if (left < size && counts[heap[left]] < counts[heap[smallest]]) {
+                smallest = left;
+            }
+            if (right < size && counts[heap[right]] < counts[heap[smallest]]) {
+                smallest = right;
+            }
+            if (smallest == i) {
+                return;
+            }
+            swap(i, smallest);
+            i = smallest;
+        }
+    }
+
+    private void swap(int i, int j) {
+        int slot = heap[i];
+        heap[i] = heap[j];
+        heap[j] = slot;
+        position[heap[i]] = i;
+        position[heap[j]] = j;
+    }
+}
@@ -0,0 +1,247 @@
+package com.aditya.buyogo.services;
+
+import com.aditya.buyogo.config.SpikeProperties;
+import com.aditya.buyogo.dto.DefectSpikeDTO;
+import com.aditya.buyogo.models.MachineEvent;
+import com.aditya.buyogo.repo.IdentifierDictionary;
+import com.aditya.buyogo.repo.IdentifierDictionary.Kind;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+// Flags machines whose defects per event jump above their own baseline, as batches commit rather
+// than when someone queries a window. Each machine keeps exponentially decayed sums over a fast and
+// a slow half-life in event time. Decay is anchored to event time, not arrival order, so a replaced
+// event is subtracted exactly and late events land where they belong. Events with a negative
+// defect count are left out, as in /states. State is rebuilt from ingestion after a restart.
+@Slf4j
+@Service
+@ConditionalOnProperty(prefix = "buyogo.spikes", name = "enabled", havingValue = "true", matchIfMissing = true)
+public class SpikeDetector implements IngestionListener {
+    // Sums are re-anchored once the newest event is this many fast time constants past the anchor,
+    // long before exp() could overflow
+    private static final double REBASE_AFTER = 32;
+
+    private final IdentifierDictionary dictionary;
+    private final SpikeProperties properties;
+    private final SpikeTable table;
+    // Time constants in micros: half-life / ln 2
+    private final double fastTau;
+    private final double slowTau;
+    private final Counter detected;
+    private final Counter untracked;
+    private int active;
+
+    public SpikeDetector(IdentifierDictionary dictionary, SpikeProperties properties, MeterRegistry registry) {
+        this.dictionary = dictionary;
+        this.properties = properties;
+        this.table = new SpikeTable(properties.getMaxMachines());
+        this.fastTau = properties.getFastHalfLife().toNanos() / 1000.0 / Math.log(2);
+        this.slowTau = properties.getSlowHalfLife().toNanos() / 1000.0 / Math.log(2);
+        this.detected = Counter.builder("buyogo.spikes.detected")
+                .description("Machines that started a defect spike")
+                .register(registry);
+        this.untracked = Counter.builder("buyogo.spikes.untracked")
+                .description("Events for machines left out because the spike table was full")
+                .register(registry);
+        Gauge.builder("buyogo.spikes.machines", this, SpikeDetector::trackedMachines)
+                .description("Machines the spike detector holds state for")
+                .register(registry);
+        Gauge.builder("buyogo.spikes.active", this, SpikeDetector::activeSpikes)
+                .description("Machines currently flagged with a defect spike")
+                .register(registry);
+    }
+
+    @Override
+    public void afterCommit(List<EventChange> changes) {
+        // Keys are resolved before taking the monitor: a cache miss is a database read
+        int[] previousKeys = new int[changes.size()];
+        int[] currentKeys = new int[changes.size()];
+        for (int i = 0; i < changes.size(); i++) {
+            EventChange change = changes.get(i);
+            previousKeys[i] = change.previous() == null ? IdentifierDictionary.UNKNOWN_KEY : machineKey(change.previous());
+            currentKeys[i] = machineKey(change.current());
+        }
+        synchronized (this) {
+            for (int i = 0; i < changes.size(); i++) {
+                EventChange change = changes.get(i);
+                int previousSlot = change.previous() == null ? -1 : apply(change.previous(), previousKeys[i], -1);
+                int slot = apply(change.current(), currentKeys[i], 1);
+                // Admitting a new machine may have swept idle ones and moved slots
+                if (previousSlot >= 0) {
+                    previousSlot = table.find(previousKeys[i]);
+                }
+                // An update may have moved the event to another machine
+                if (previousSlot >= 0 && previousSlot != slot) {
+                    evaluate(previousSlot, table.latest[previousSlot]);
+                }
+                if (slot >= 0) {
+                    evaluate(slot, table.latest[slot]);
+                }
+            }
+        }
+    }
+
+    // Machines flagged right now, strongest first. Each is re-checked against the clock, so a
+    // machine that went quiet drops out once its recent events have decayed.
+    public synchronized List<DefectSpikeDTO> currentSpikes(int limit) {
+        long now = EventColumns.micros(Instant.now());
+        List<DefectSpikeDTO> spikes = new ArrayList<>();
+        for (int slot = table.size() - 1; slot >= 0; slot--) {
+            if (table.flaggedSince[slot] == SpikeTable.NOT_FLAGGED) {
+                continue;
+            }
+            evaluate(slot, Math.max(now, table.latest[slot]));
+            if (table.flaggedSince[slot] != SpikeTable.NOT_FLAGGED) {
+                spikes.add(toDto(slot, Math.max(now, table.latest[slot])));
+            }
+        }
+        spikes.sort(Comparator.comparingDouble(DefectSpikeDTO::getScore).reversed());
+        return spikes.size() > limit ? new ArrayList<>(spikes.subList(0, limit)) : spikes;
+    }
+
+    int trackedMachines() {
+        return table.size();
+    }
+
+    int activeSpikes() {
+        return active;
+    }
+
+    private int machineKey(MachineEvent event) {
+        Integer key = dictionary.cachedKeyOf(Kind.MACHINE, event.getMachineId());
+        return key != null ? key : dictionary.keyOf(Kind.MACHINE, event.getMachineId());
+    }
+
+    // Adds (sign 1) or removes (sign -1) one event; returns its machine's slot, or -1 if untracked
+    private int apply(MachineEvent event, int key, int sign) {
+        if (key == IdentifierDictionary.UNKNOWN_KEY) {
+            return -1;
+        }
+        long time = EventColumns.micros(event.getEventTime());
+        int slot = table.find(key);
+        if (slot < 0) {
+            if (sign < 0 || event.getDefectCount() < 0) {
+                return -1;
+            }
+            slot = admit(key, time);
+            if (slot < 0) {
+                untracked.increment();
+                return -1;
+            }
+        }
+        if (event.getDefectCount() < 0) {
+            return slot;
+        }
+        if (time > table.latest[slot]) {
+            table.latest[slot] = time;
+            if (time - table.anchor[slot] > REBASE_AFTER * fastTau) {
+                rebase(slot, time);
+            }
+        }
+        double x = event.getDefectCount();
+        double fast = sign * Math.exp((time - table.anchor[slot]) / fastTau);
+        double slow = sign * Math.exp((time - table.anchor[slot]) / slowTau);
+        table.fastWeight[slot] += fast;
+        table.fastDefects[slot] += fast * x;
+        table.slowWeight[slot] += slow;
+        table.slowDefects[slot] += slow * x;
+        table.slowSquares[slot] += slow * x * x;
+        return slot;
+    }
+
+    private int admit(int key, long time) {
+        int slot = table.add(key, time);
+        if (slot < 0) {
+            long idleBefore = EventColumns.micros(Instant.now().minus(properties.getIdleTimeout()));
+            for (int candidate = table.size() - 1; candidate >= 0; candidate--) {
+                if (table.latest[candidate] < idleBefore) {
+                    if (table.flaggedSince[candidate] != SpikeTable.NOT_FLAGGED) {
+                        active--;
+                    }
+                    table.remove(candidate);
+                }
+            }
+            slot = table.add(key, time);
+        }
+        return slot;
+    }
+
+    private void rebase(int slot, long anchor) {
+        double elapsed = table.anchor[slot] - anchor;
+        double fast = Math.exp(elapsed / fastTau);
+        double slow = Math.exp(elapsed / slowTau);
+        table.fastWeight[slot] *= fast;
+        table.fastDefects[slot] *= fast;
+        table.slowWeight[slot] *= slow;
+        table.slowDefects[slot] *= slow;
+        table.slowSquares[slot] *= slow;
+        table.anchor[slot] = anchor;
+    }
+
+    private void evaluate(int slot, long at) {
+        double score = score(slot, at);
+        table.score[slot] = score;
+        boolean spiking = score >= properties.getThreshold();
+        boolean flagged = table.flaggedSince[slot] != SpikeTable.NOT_FLAGGED;
+        if (spiking && !flagged) {
+            table.flaggedSince[slot] = table.latest[slot];
+            active++;
+            detected.increment();
+            log.info("Defect spike on machine {}: score {}", dictionary.valueOf(table.keys[slot]), String.format("%.1f", score));
+        } else if (!spiking && flagged) {
+            table.flaggedSince[slot] = SpikeTable.NOT_FLAGGED;
+            active--;
+        }
+    }
+
+    // Standard errors by which the recent defects per event exceed the baseline, or 0 when the
+    // recent window is too thin or too clean to call. The baseline variance is floored at 1 so a
+    // single defect on a machine that never had one is not a spike by itself.
+    private double score(int slot, long at) {
+        double recentEvents = recentEvents(slot, at);
+        if (recentEvents < properties.getMinEvents() || table.slowWeight[slot] <= 0) {
+            return 0;
+        }
+        double recent = recentDefectsPerEvent(slot);
+        double baseline = baselineDefectsPerEvent(slot);
+        if (recent < properties.getMinDefectsPerEvent()) {
+            return 0;
+        }
+        double variance = Math.max(1.0, table.slowSquares[slot] / table.slowWeight[slot] - baseline * baseline);
+        return (recent - baseline) * Math.sqrt(recentEvents / variance);
+    }
+
+    private double recentEvents(int slot, long at) {
+        return Math.max(0, table.fastWeight[slot] * Math.exp((table.anchor[slot] - at) / fastTau));
+    }
+
+    private double recentDefectsPerEvent(int slot) {
+        return table.fastWeight[slot] > 0 ? Math.max(0, table.fastDefects[slot] / table.fastWeight[slot]) : 0;
+    }
+
+    private double baselineDefectsPerEvent(int slot) {
+        return table.slowWeight[slot] > 0 ? Math.max(0, table.slowDefects[slot] / table.slowWeight[slot]) : 0;
+    }
+
+    private DefectSpikeDTO toDto(int slot, long at) {
+        DefectSpikeDTO dto = new DefectSpikeDTO();
+        dto.setMachineId(dictionary.valueOf(table.keys[slot]));
+        dto.setSince(Instant.EPOCH.plus(table.flaggedSince[slot], ChronoUnit.MICROS));
+        dto.setLastEventTime(Instant.EPOCH.plus(table.latest[slot], ChronoUnit.MICROS));
+        dto.setRecentDefectsPerEvent(recentDefectsPerEvent(slot));
+        dto.setBaselineDefectsPerEvent(baselineDefectsPerEvent(slot));
+        dto.setRecentEvents(recentEvents(slot, at));
+        dto.setScore(table.score[slot]);
+        return dto;
+    }
+}
@@ -0,0 +1,89 @@
+package com.aditya.buyogo.services;
+
+// Per-machine spike state in dense primitive arrays, found through an IntSlotIndex on the machine's
+// dictionary key, so 100k machines cost a few megabytes and no per-machine objects.
+// Sums are scaled to anchor: an event at time t contributes weight exp((t - anchor) / tau).
+// Not thread-safe; SpikeDetector guards it.
+final class SpikeTable {
+    static final long NOT_FLAGGED = Long.MIN_VALUE;
+
+    private final IntSlotIndex index;
+    private int size;
+
+    final int[] keys;
+    final long[] anchor;
+    final long[] latest;
+    final double[] fastWeight;
+    final double[] fastDefects;
+    final double[] slowWeight;
+    final double[] slowDefects;
+    final double[] slowSquares;
+    final long[] flaggedSince;
+    final double[] score;
+
+    SpikeTable(int capacity) {
+        index = new IntSlotIndex(capacity);
+        keys = new int[capacity];
+        anchor = new long[capacity];
+        latest = new long[capacity];
+        fastWeight = new double[capacity];
+        fastDefects = new double[capacity];
+        slowWeight = new double[capacity];
+        slowDefects = new double[capacity];
+        slowSquares = new double[capacity];
+        flaggedSince = new long[capacity];
+        score = new double[capacity];
+    }
+
+    int size() {
+        return size;
+    }
+
+    int capacity() {
+        return keys.length;
+    }
+
+    // Slot of key, or -1
+    int find(int key) {
+        return index.get(key);
+    }
+
+    // Slot for a new key, or -1 when full; the caller has checked find first
+    int add(int key, long time) {
+        if (size == keys.length) {
+            return -1;
+        }
+        int slot = size++;
+        keys[slot] = key;
+        anchor[slot] = time;
+        latest[slot] = time;
+        fastWeight[slot] = 0;
+        fastDefects[slot] = 0;
+        slowWeight[slot] = 0;
+        slowDefects[slot] = 0;
+        slowSquares[slot] = 0;
+        flaggedSince[slot] = NOT_FLAGGED;
+        score[slot] = 0;
+        index.put(key, slot);
+        return slot;
+    }
+
+    // Moves the last slot into the freed one, so callers iterating slots must go downwards
+    void remove(int slot) {
+        index.remove(keys[slot]);
+        int last = --size;
+        if (slot != last) {
+            index.put(keys[last], slot);
+            keys[slot] = keys[last];
+            anchor[slot] = anchor[last];
+            latest[slot] = latest[last];
+            fastWeight[slot] = fastWeight[last];
+            fastDefects[slot] = fastDefects[last];
+            slowWeight[slot] = slowWeight[last];
+            slowDefects[slot] = slowDefects[last];
+            slowSquares[slot] = slowSquares[last];
+            flaggedSince[slot] = flaggedSince[last];
+            score[slot] = score[last];
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package com.aditya.buyogo.services;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Registered;
+import jdk.jfr.Timespan;
+
+// One StateService query, repository call plus in-process aggregation.
+@Name("buyogo.StateQuery")
+@Label("State Query")
+@Category({"Buyogo", "Query"})
+@Description("One /states or /states/top-defect-lines query served by StateService")
+@Registered(false)
+public class StateQueryEvent extends Event {
+    @Label("Endpoint")
+    String endpoint;
+
+    @Label("Machine Id")
+    String machineId;
+
+    @Label("Factory Id")
+    String factoryId;
+
+    @Label("Window")
+    @Timespan(Timespan.SECONDS)
+    long window;
+
+    @Label("Rows Scanned")
+    @Description("Rows returned by the repository and aggregated in process")
+    int rowsScanned;
+}
@@ -3,31 +3,69 @@ package com.aditya.buyogo.services;
 import com.aditya.buyogo.dto.*;
 import com.aditya.buyogo.models.MachineEvent;
 import com.aditya.buyogo.models.Status;
+import com.aditya.buyogo.repo.ColumnarArchive;
 import com.aditya.buyogo.repo.MachineEventRepository;
 import com.aditya.buyogo.repo.TopDefectLineProjection;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.stereotype.Repository;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.time.Duration;
 import java.time.Instant;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.Map;
 
+// Read-only transactions are served by the replica when buyogo.datasource.routing.enabled is set. With
+// buyogo.sharding, machine states gather from every shard and top defect lines read the factory's shard.
+// With buyogo.summaries, top defect lines read whole hours from the refreshed hourly summary.
 @Service
+@Transactional(readOnly = true)
 public class StateService {
     @Autowired
     private MachineEventRepository machineEventRepository;
+
+    @Autowired
+    private ServiceMetrics metrics = ServiceMetrics.noop();
+
+    @Autowired(required = false)
+    private Shards shards = Shards.single();
+
+    // Present when buyogo.archive.enabled=true; archived rows are no longer in machine_event, so its
+    // totals are added to the table's
+    @Autowired(required = false)
+    private ColumnarArchive archive;
+
+    // Present when buyogo.summaries.enabled=true
+    @Autowired(required = false)
+    private DefectSummaryService summaries;
+
+    // asOf is the summary's when part of the window was read from it: every write committed before then
+    // is counted. Null when every row was read from machine_event.
+    public record TopDefectLines(List<TopDefectLineDTO> lines, Instant asOf) {
+    }
+
+    private record LineRead(List<TopDefectLineProjection> lines, Instant asOf) {
+    }
+
     public StatesResponseDTO getEventByMachineIdAndDateBetween(String machineId, Instant start, Instant end){
-        List<MachineEvent> eventList = machineEventRepository.findByMachineIdAndEventTimeBetween(machineId, start, end);
+        StateQueryEvent jfrEvent = new StateQueryEvent();
+        jfrEvent.begin();
+        long queryStart = System.nanoTime();
+        List<MachineEvent> eventList = shards.gather(
+                () -> machineEventRepository.findByMachineIdAndEventTimeBetween(machineId, start, end));
+        metrics.recordQuery(ServiceMetrics.Query.MACHINE_STATES, System.nanoTime() - queryStart);
         long validEventCount = eventList.size();
         long defectCount = eventList.stream().filter(e->
                 e.getDefectCount() >= 0).mapToLong(MachineEvent::getDefectCount).sum();
-        double windowHours =
-                Duration.between(start, end).toSeconds() / 3600.0;
-        double avgDefectRate = windowHours > 0 ? defectCount / windowHours : 0.0;
-
-        Status status = avgDefectRate < 2.0 ? Status.HEALTH : Status.WARNING;
+        if (archive != null) {
+            long[] archived = archive.machineTotals(machineId, start, end);
+            validEventCount += archived[0];
+            defectCount += archived[1];
+        }
+        double avgDefectRate = defectRate(defectCount, Duration.between(start, end));
+        Status status = statusFor(avgDefectRate);
         StatesResponseDTO response = new StatesResponseDTO();
         response.setMachineId(machineId);
         response.setEnd(end);
@@ -36,18 +74,51 @@ public class StateService {
         response.setStatus(status);
         response.setDefectsCount(defectCount);
         response.setAvgDefectRate(avgDefectRate);
+        if (jfrEvent.shouldCommit()) {
+            jfrEvent.endpoint = ServiceMetrics.Query.MACHINE_STATES.tag;
+            jfrEvent.machineId = machineId;
+            jfrEvent.window = Duration.between(start, end).toSeconds();
+            jfrEvent.rowsScanned = eventList.size();
+            jfrEvent.commit();
+        }
         return response;
     }
 
 
+    // Defects per hour over the window; shared with the live /states/stream updates
+    static double defectRate(long defectCount, Duration window) {
+        double windowHours = window.toSeconds() / 3600.0;
+        return windowHours > 0 ? defectCount / windowHours : 0.0;
+    }
+
+    static Status statusFor(double avgDefectRate) {
+        return avgDefectRate < 2.0 ? Status.HEALTH : Status.WARNING;
+    }
+
     public List<TopDefectLineDTO> getTopDefectLines(
             String factoryId,
             Instant from,
             Instant to,
             Integer limit) {
+        return topDefectLines(factoryId, from, to, limit).lines();
+    }
 
-        return machineEventRepository
-                .findTopDefectLines(factoryId, from, to)
+    public TopDefectLines topDefectLines(
+            String factoryId,
+            Instant from,
+            Instant to,
+            Integer limit) {
+
+        StateQueryEvent jfrEvent = new StateQueryEvent();
+        jfrEvent.begin();
+        long queryStart = System.nanoTime();
+        LineRead read = shards.forFactory(factoryId, () -> readTopDefectLines(factoryId, from, to));
+        List<TopDefectLineProjection> lines = read.lines();
+        if (archive != null) {
+            lines = withTotals(lines, archive.lineTotals(factoryId, from, to));
+        }
+        metrics.recordQuery(ServiceMetrics.Query.TOP_DEFECT_LINES, System.nanoTime() - queryStart);
+        List<TopDefectLineDTO> result = lines
                 .stream()
                 .limit(limit)
                 .map(p -> {
@@ -68,6 +139,75 @@ public class StateService {
                     return dto;
                 })
                 .toList();
+        if (jfrEvent.shouldCommit()) {
+            jfrEvent.endpoint = ServiceMetrics.Query.TOP_DEFECT_LINES.tag;
+            jfrEvent.factoryId = factoryId;
+            jfrEvent.window = Duration.between(from, to).toSeconds();
+            jfrEvent.rowsScanned = lines.size();
+            jfrEvent.commit();
+        }
+        return new TopDefectLines(result, read.asOf());
+    }
+
+    // Whole hours that had ended by the summary's as_of come from it, the rest of the window from
+    // machine_event. Archived days are left to the archive: the summary counts them until its next refresh.
+    private LineRead readTopDefectLines(String factoryId, Instant from, Instant to) {
+        Instant asOf = summaries == null ? null : summaries.asOf();
+        if (asOf != null) {
+            Instant archivedUntil = archive == null ? null : archive.archivedUntil();
+            Instant start = DefectSummaryService.hourCeiling(
+                    archivedUntil != null && archivedUntil.isAfter(from) ? archivedUntil : from);
+            Instant end = DefectSummaryService.hourFloor(to.isBefore(asOf) ? to : asOf);
+            if (start.isBefore(end)) {
+                Map<String, long[]> totals = summaries.lineTotals(factoryId, start, end);
+                if (from.isBefore(start)) {
+                    addTo(totals, machineEventRepository.findTopDefectLines(factoryId, from, start));
+                }
+                if (end.isBefore(to)) {
+                    addTo(totals, machineEventRepository.findTopDefectLines(factoryId, end, to));
+                }
+                return new LineRead(withTotals(List.of(), totals), asOf);
+            }
+        }
+        return new LineRead(machineEventRepository.findTopDefectLines(factoryId, from, to), null);
     }
 
+    private record LineTotals(String lineId, long totalDefects, long eventCount) implements TopDefectLineProjection {
+        @Override
+        public String getLineId() {
+            return lineId;
+        }
+
+        @Override
+        public long getTotalDefects() {
+            return totalDefects;
+        }
+
+        @Override
+        public long getEventCount() {
+            return eventCount;
+        }
+    }
+
+    // Adds {defects, events} per line (archived or summarized) and re-sorts by total defects, as the
+    // repository query does
+    private static List<TopDefectLineProjection> withTotals(List<TopDefectLineProjection> lines, Map<String, long[]> added) {
+        if (added.isEmpty()) {
+            return lines;
+        }
+        Map<String, long[]> merged = new HashMap<>(added);
+        addTo(merged, lines);
+        return merged.entrySet().stream()
+                .<TopDefectLineProjection>map(e -> new LineTotals(e.getKey(), e.getValue()[0], e.getValue()[1]))
+                .sorted(Comparator.comparingLong(TopDefectLineProjection::getTotalDefects).reversed())
+                .toList();
+    }
+
+    private static void addTo(Map<String, long[]> totals, List<TopDefectLineProjection> lines) {
+        for (TopDefectLineProjection line : lines) {
+            long[] sums = totals.computeIfAbsent(line.getLineId(), id -> new long[2]);
+            sums[0] += line.getTotalDefects();
+            sums[1] += line.getEventCount();
+        }
+    }
 }
@@ -0,0 +1,187 @@
+package com.aditya.buyogo.services;
+
+import com.aditya.buyogo.config.Lane;
+import com.aditya.buyogo.config.LaneDataSource;
+import com.aditya.buyogo.config.WalProperties;
+import com.aditya.buyogo.dto.BatchResponseDTO;
+import com.aditya.buyogo.dto.EventDTO;
+import com.aditya.buyogo.dto.RejectionDTO;
+import com.aditya.buyogo.repo.WriteAheadLog;
+import com.aditya.buyogo.utils.EventBatchCodec;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+
+// POST /events/batch with the write-ahead log on: valid events are logged and acknowledged, and
+// the drainer applies the log through EventService in LSN order. Applying is idempotent (a replayed
+// event dedupes against its stored copy), so a crash between commit and checkpoint only repeats work.
+// When merged records fail, the head record is retried alone; once it has failed drainMaxAttempts times
+// with the database reachable it is dead-lettered, and the drain carries on behind it.
+@Slf4j
+@Service
+@ConditionalOnProperty(name = "buyogo.wal.enabled", havingValue = "true")
+public class WalIngestionService {
+    @Autowired
+    private WriteAheadLog wal;
+
+    @Autowired
+    private EventService eventService;
+
+    @Autowired
+    private WalProperties properties;
+
+    @Autowired
+    private MeterRegistry registry;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    // Next record to apply, and how the last attempt at it went; only touched under drainLock
+    private WriteAheadLog.Position position;
+    private boolean isolating;
+    private int attempts;
+    private Counter deadLetters;
+    // Held for a whole processEvents call, so not a monitor: the scheduler may run drain() on a virtual thread
+    private final ReentrantLock drainLock = new ReentrantLock();
+
+    @PostConstruct
+    void init() {
+        position = wal.start();
+        Gauge.builder("buyogo.wal.pending", wal, log -> log.lastLsn() - log.checkpointLsn())
+                .description("Logged batches not yet applied to the database")
+                .baseUnit("batches")
+                .register(registry);
+        deadLetters = Counter.builder("buyogo.wal.dead.letters")
+                .description("Logged batches set aside after failing drainMaxAttempts times")
+                .register(registry);
+    }
+
+    // Rejections are decided here so the client still gets them; dedup and update outcomes are
+    // decided when the batch is applied and only show up in the buyogo.ingest.events counters
+    public BatchResponseDTO append(List<EventDTO> events) {
+        List<EventDTO> valid = new ArrayList<>(events.size());
+        List<RejectionDTO> rejections = new ArrayList<>();
+        long latestEventTime = EventColumns.latestEventTime();
+        for (EventDTO event : events) {
+            String reason = EventColumns.rejectionReason(event, latestEventTime);
+            if (reason != null) {
+                rejections.add(new RejectionDTO(event.getEventId(), reason));
+            } else {
+                valid.add(event);
+            }
+        }
+        if (!valid.isEmpty()) {
+            wal.append(EventBatchCodec.encode(valid));
+        }
+        BatchResponseDTO response = new BatchResponseDTO();
+        response.setAccepted(valid.size());
+        response.setDeduped(0);
+        response.setUpdated(0);
+        response.setRejected(rejections.size());
+        response.setRejections(rejections);
+        return response;
+    }
+
+    // Replays whatever the previous run logged but did not apply
+    @EventListener(ApplicationReadyEvent.class)
+    public void onStartup() {
+        drain();
+    }
+
+    @Scheduled(fixedDelayString = "${buyogo.wal.drain-interval:PT0.2S}")
+    public void drain() {
+        drainLock.lock();
+        try {
+            while (applyNext() > 0) {
+                // keep going until caught up
+            }
+        } finally {
+            drainLock.unlock();
+        }
+    }
+
+    // Applies up to drainBatchSize events worth of records in one processEvents call; only the head
+    // record while isolating it after a failure
+    private int applyNext() {
+        List<EventDTO> events = new ArrayList<>();
+        WriteAheadLog.Position next = position;
+        long lsn = -1;
+        WriteAheadLog.Entry head = null;
+        WriteAheadLog.Entry entry;
+        while (events.size() < properties.getDrainBatchSize() && (head == null || !isolating)
+                && (entry = wal.read(next)) != null) {
+            if (head == null) {
+                head = entry;
+            }
+            try {
+                events.addAll(EventBatchCodec.decode(entry.payload()));
+            } catch (RuntimeException e) {
+                log.error("Dead-lettering undecodable WAL record {} to {}: {}", entry.lsn(), wal.deadLetter(entry), e.getMessage());
+                deadLetters.increment();
+            }
+            lsn = entry.lsn();
+            next = entry.next();
+        }
+        if (lsn < 0) {
+            return 0;
+        }
+        try {
+            if (!events.isEmpty()) {
+                // The drainer is a single thread, so it takes the ingest pool without queueing for a slot
+                LaneDataSource.enter(Lane.INGEST);
+                try {
+                    eventService.processEvents(events);
+                } finally {
+                    LaneDataSource.exit();
+                }
+            }
+        } catch (RuntimeException e) {
+            if (!databaseReachable()) {
+                // Database down: not the records' fault, so no attempt is counted
+                log.warn("Applying WAL records up to {} failed; will retry: {}", lsn, e.getMessage());
+                return 0;
+            }
+            if (!isolating) {
+                log.warn("Applying WAL records up to {} failed; retrying record {} alone: {}", lsn, head.lsn(), e.getMessage());
+                isolating = true;
+                return 0;
+            }
+            if (++attempts < properties.getDrainMaxAttempts()) {
+                log.warn("Applying WAL record {} failed (attempt {}); will retry: {}", lsn, attempts, e.getMessage());
+                return 0;
+            }
+            log.error("Dead-lettering WAL record {} to {} after {} attempts", lsn, wal.deadLetter(head), attempts, e);
+            deadLetters.increment();
+        }
+        isolating = false;
+        attempts = 0;
+        wal.checkpoint(lsn);
+        position = next;
+        return Math.max(events.size(), 1);
+    }
+
+    private boolean databaseReachable() {
+        LaneDataSource.enter(Lane.INGEST);
+        try {
+            return Boolean.TRUE.equals(jdbcTemplate.execute((ConnectionCallback<Boolean>) connection -> connection.isValid(1)));
+        } catch (RuntimeException e) {
+            return false;
+        } finally {
+            LaneDataSource.exit();
+        }
+    }
+}
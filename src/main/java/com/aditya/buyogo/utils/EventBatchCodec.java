@@ -0,0 +1,89 @@
+package com.aditya.buyogo.utils;
+
+import com.aditya.buyogo.dto.EventDTO;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+// Binary form of an ingested batch as stored in the write-ahead log. payloadHash is not stored;
+// it is recomputed when the batch is applied.
+public class EventBatchCodec {
+    private static final byte VERSION = 1;
+
+    public static byte[] encode(List<EventDTO> events) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 + events.size() * 96);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(VERSION);
+            out.writeInt(events.size());
+            for (EventDTO event : events) {
+                writeString(out, event.getEventId());
+                writeInstant(out, event.getEventTime());
+                writeInstant(out, event.getReceivedTime());
+                writeString(out, event.getMachineId());
+                writeString(out, event.getFactoryId());
+                writeString(out, event.getLineId());
+                out.writeLong(event.getDurationMs());
+                out.writeInt(event.getDefectCount());
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    public static List<EventDTO> decode(byte[] payload) {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload))) {
+            byte version = in.readByte();
+            if (version != VERSION) {
+                throw new IllegalArgumentException("Unsupported event batch version " + version);
+            }
+            int count = in.readInt();
+            List<EventDTO> events = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                EventDTO event = new EventDTO();
+                event.setEventId(readString(in));
+                event.setEventTime(readInstant(in));
+                event.setReceivedTime(readInstant(in));
+                event.setMachineId(readString(in));
+                event.setFactoryId(readString(in));
+                event.setLineId(readString(in));
+                event.setDurationMs(in.readLong());
+                event.setDefectCount(in.readInt());
+                events.add(event);
+            }
+            return events;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    private static void writeInstant(DataOutputStream out, Instant value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeLong(value.getEpochSecond());
+            out.writeInt(value.getNano());
+        }
+    }
+
+    private static Instant readInstant(DataInputStream in) throws IOException {
+        return in.readBoolean() ? Instant.ofEpochSecond(in.readLong(), in.readInt()) : null;
+    }
+}
@@ -0,0 +1,42 @@
+package com.aditya.buyogo.utils;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.nio.charset.StandardCharsets;
+import java.time.DateTimeException;
+import java.time.Instant;
+import java.util.Base64;
+
+// Opaque keyset position: the (eventTime, eventId) of the last row a client has seen.
+@Data
+@AllArgsConstructor
+public class EventCursor {
+    private static final char SEPARATOR = '|';
+
+    private Instant eventTime;
+    private String eventId;
+
+    public String encode() {
+        String raw = eventTime.getEpochSecond() + ":" + eventTime.getNano() + SEPARATOR + eventId;
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static EventCursor decode(String token) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            int sep = raw.indexOf(SEPARATOR);
+            int colon = raw.indexOf(':');
+            if (sep < 0 || colon < 0 || colon > sep) {
+                throw new IllegalArgumentException("Malformed cursor");
+            }
+            long seconds = Long.parseLong(raw.substring(0, colon));
+            int nanos = Integer.parseInt(raw.substring(colon + 1, sep));
+            return new EventCursor(Instant.ofEpochSecond(seconds, nanos), raw.substring(sep + 1));
+        } catch (IllegalArgumentException | DateTimeException e) {
+            // DateTimeException: well-formed, but the seconds are outside Instant's range
+            throw new IllegalArgumentException("Invalid cursor: " + token, e);
+        }
+    }
+}
@@ -4,13 +4,19 @@ import com.aditya.buyogo.dto.EventDTO;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 
-import java.nio.charset.StandardCharsets;
-import java.security.MessageDigest;
+import java.util.HexFormat;
 
 public class PayloadHashUtil {
     private static final ObjectMapper mapper = new ObjectMapper();
 
     public static String generatePayloadHash(EventDTO event) {
+        byte[] hash = new byte[PayloadHasher.HASH_LENGTH];
+        new PayloadHasher().hash(event, hash, 0);
+        return HexFormat.of().formatHex(hash);
+    }
+
+    // The hashed form of an event; PayloadHasher writes the same bytes without Jackson where it can
+    public static String canonicalJson(EventDTO event) {
         try {
             ObjectNode node = mapper.createObjectNode();
 
@@ -22,27 +28,10 @@ public class PayloadHashUtil {
             node.put("factoryId", event.getFactoryId());
             node.put("lineId", event.getLineId());
 
-            String canonicalPayload = mapper.writeValueAsString(node);
-            return sha256(canonicalPayload);
+            return mapper.writeValueAsString(node);
 
         } catch (Exception e) {
             throw new RuntimeException("Failed to generate payload hash", e);
         }
     }
-
-    private static String sha256(String input) {
-        try {
-            MessageDigest digest = MessageDigest.getInstance("SHA-256");
-            byte[] hashBytes = digest.digest(input.getBytes(StandardCharsets.UTF_8));
-
-            StringBuilder hex = new StringBuilder();
-            for (byte b : hashBytes) {
-                hex.append(String.format("%02x", b));
-            }
-            return hex.toString();
-
-        } catch (Exception e) {
-            throw new RuntimeException("SHA-256 hashing failed", e);
-        }
-    }
 }
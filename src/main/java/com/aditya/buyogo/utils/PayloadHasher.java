@@ -0,0 +1,189 @@
+package com.aditya.buyogo.utils;
+
+import com.aditya.buyogo.dto.EventDTO;
+
+import java.nio.charset.StandardCharsets;
+import java.security.DigestException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.Arrays;
+
+// Writes the same canonical JSON as PayloadHashUtil.canonicalJson byte for byte, straight into a
+// reused buffer, and digests it into the caller's array. Values that JSON would escape or encode
+// (nulls, quotes, control characters, non-ASCII, years outside 0000-9999) go through Jackson instead.
+// Not thread-safe: make one per batch.
+public class PayloadHasher {
+    public static final int HASH_LENGTH = 32;
+
+    private static final byte[] EVENT_ID = ascii("{\"eventId\":\"");
+    private static final byte[] EVENT_TIME = ascii("\",\"eventTime\":\"");
+    private static final byte[] MACHINE_ID = ascii("\",\"machineId\":\"");
+    private static final byte[] DURATION_MS = ascii("\",\"durationMs\":");
+    private static final byte[] DEFECT_COUNT = ascii(",\"defectCount\":");
+    private static final byte[] FACTORY_ID = ascii(",\"factoryId\":\"");
+    private static final byte[] LINE_ID = ascii("\",\"lineId\":\"");
+    private static final byte[] END = ascii("\"}");
+
+    // 0000-01-01T00:00:00Z and 10000-01-01T00:00:00Z
+    private static final long MIN_SECOND = -62167219200L;
+    private static final long MAX_SECOND = 253402300800L;
+
+    private final MessageDigest digest;
+    private byte[] buffer = new byte[256];
+    private int length;
+
+    public PayloadHasher() {
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 hashing failed", e);
+        }
+    }
+
+    public void hash(EventDTO event, byte[] out, int offset) {
+        length = 0;
+        if (!writeCanonical(event)) {
+            length = 0;
+            write(PayloadHashUtil.canonicalJson(event).getBytes(StandardCharsets.UTF_8));
+        }
+        digest.update(buffer, 0, length);
+        try {
+            digest.digest(out, offset, HASH_LENGTH);
+        } catch (DigestException e) {
+            throw new IllegalStateException("SHA-256 hashing failed", e);
+        }
+    }
+
+    // False when some value needs Jackson's escaping or formatting
+    private boolean writeCanonical(EventDTO event) {
+        Instant eventTime = event.getEventTime();
+        if (eventTime == null || eventTime.getEpochSecond() < MIN_SECOND || eventTime.getEpochSecond() >= MAX_SECOND
+                || event.getDurationMs() == Long.MIN_VALUE) {
+            return false;
+        }
+        write(EVENT_ID);
+        if (!writePlain(event.getEventId())) {
+            return false;
+        }
+        write(EVENT_TIME);
+        writeInstant(eventTime);
+        write(MACHINE_ID);
+        if (!writePlain(event.getMachineId())) {
+            return false;
+        }
+        write(DURATION_MS);
+        writeNumber(event.getDurationMs());
+        write(DEFECT_COUNT);
+        writeNumber(event.getDefectCount());
+        write(FACTORY_ID);
+        if (!writePlain(event.getFactoryId())) {
+            return false;
+        }
+        write(LINE_ID);
+        if (!writePlain(event.getLineId())) {
+            return false;
+        }
+        write(END);
+        return true;
+    }
+
+    private boolean writePlain(String value) {
+        if (value == null) {
+            return false;
+        }
+        ensure(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c < 0x20 || c >= 0x7f || c == '"' || c == '\\') {
+                return false;
+            }
+            buffer[length++] = (byte) c;
+        }
+        return true;
+    }
+
+    // Instant.toString: yyyy-MM-ddTHH:mm:ss, then 3, 6 or 9 fraction digits when there is a fraction
+    private void writeInstant(Instant instant) {
+        ensure(30);
+        long seconds = instant.getEpochSecond();
+        long epochDay = Math.floorDiv(seconds, 86400);
+        int secondOfDay = (int) Math.floorMod(seconds, 86400);
+
+        // Days to civil date, proleptic Gregorian with March-based years
+        long z = epochDay + 719468;
+        long era = Math.floorDiv(z, 146097);
+        long dayOfEra = z - era * 146097;
+        long yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+        long dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        long monthIndex = (5 * dayOfYear + 2) / 153;
+        int day = (int) (dayOfYear - (153 * monthIndex + 2) / 5 + 1);
+        int month = (int) (monthIndex < 10 ? monthIndex + 3 : monthIndex - 9);
+        int year = (int) (yearOfEra + era * 400 + (month <= 2 ? 1 : 0));
+
+        writeDigits(year, 4);
+        buffer[length++] = '-';
+        writeDigits(month, 2);
+        buffer[length++] = '-';
+        writeDigits(day, 2);
+        buffer[length++] = 'T';
+        writeDigits(secondOfDay / 3600, 2);
+        buffer[length++] = ':';
+        writeDigits(secondOfDay / 60 % 60, 2);
+        buffer[length++] = ':';
+        writeDigits(secondOfDay % 60, 2);
+        int nanos = instant.getNano();
+        if (nanos > 0) {
+            buffer[length++] = '.';
+            if (nanos % 1_000_000 == 0) {
+                writeDigits(nanos / 1_000_000, 3);
+            } else if (nanos % 1000 == 0) {
+                writeDigits(nanos / 1000, 6);
+            } else {
+                writeDigits(nanos, 9);
+            }
+        }
+        buffer[length++] = 'Z';
+    }
+
+    private void writeDigits(int value, int width) {
+        for (int i = length + width - 1; i >= length; i--) {
+            buffer[i] = (byte) ('0' + value % 10);
+            value /= 10;
+        }
+        length += width;
+    }
+
+    private void writeNumber(long value) {
+        ensure(20);
+        if (value < 0) {
+            buffer[length++] = '-';
+            value = -value;
+        }
+        int digits = 1;
+        for (long rest = value / 10; rest > 0; rest /= 10) {
+            digits++;
+        }
+        for (int i = length + digits - 1; i >= length; i--) {
+            buffer[i] = (byte) ('0' + value % 10);
+            value /= 10;
+        }
+        length += digits;
+    }
+
+    private void write(byte[] bytes) {
+        ensure(bytes.length);
+        System.arraycopy(bytes, 0, buffer, length, bytes.length);
+        length += bytes.length;
+    }
+
+    private void ensure(int extra) {
+        if (length + extra > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, length + extra));
+        }
+    }
+
+    private static byte[] ascii(String value) {
+        return value.getBytes(StandardCharsets.US_ASCII);
+    }
+}
@@ -0,0 +1,20 @@
+package com.aditya.buyogo.utils;
+
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+// Reduces a SQL statement to its shape: literals become ?, IN lists of any length become in (?),
+// whitespace is collapsed. Statements that differ only in their values share a fingerprint.
+public class SqlFingerprint {
+    private static final Pattern STRING_LITERAL = Pattern.compile("'(?:[^']|'')*'");
+    private static final Pattern NUMBER_LITERAL = Pattern.compile("\\b\\d+(?:\\.\\d+)?\\b");
+    private static final Pattern IN_LIST = Pattern.compile("\\bin\\s*\\(\\s*\\?(?:\\s*,\\s*\\?)*\\s*\\)");
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    public static String of(String sql) {
+        String shape = WHITESPACE.matcher(sql.trim()).replaceAll(" ").toLowerCase(Locale.ROOT);
+        shape = STRING_LITERAL.matcher(shape).replaceAll("?");
+        shape = NUMBER_LITERAL.matcher(shape).replaceAll("?");
+        return IN_LIST.matcher(shape).replaceAll("in (?)");
+    }
+}
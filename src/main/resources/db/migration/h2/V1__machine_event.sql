@@ -0,0 +1,18 @@
+-- H2 (tests and local runs) mirrors the Postgres layout without partitioning.
+CREATE TABLE machine_event (
+    event_id      VARCHAR(255)                NOT NULL PRIMARY KEY,
+    machine_id    VARCHAR(255)                NOT NULL,
+    factory_id    VARCHAR(255)                NOT NULL,
+    line_id       VARCHAR(255)                NOT NULL,
+    event_time    TIMESTAMP(6) WITH TIME ZONE NOT NULL,
+    received_time TIMESTAMP(6) WITH TIME ZONE NOT NULL,
+    duration_ms   BIGINT                      NOT NULL,
+    defect_count  INTEGER                     NOT NULL,
+    payload_hash  VARCHAR(64)                 NOT NULL,
+    created_at    TIMESTAMP(6) WITH TIME ZONE NOT NULL,
+    updated_at    TIMESTAMP(6) WITH TIME ZONE NOT NULL
+);
+
+CREATE INDEX idx_machine_event_time_id ON machine_event (event_time, event_id);
+CREATE INDEX idx_machine_event_machine_time_id ON machine_event (machine_id, event_time, event_id);
+CREATE INDEX idx_machine_event_factory_time_id ON machine_event (factory_id, event_time, event_id);
@@ -0,0 +1,2 @@
+-- H2 has neither INCLUDE columns nor BRIN; defect_count becomes a trailing key column instead.
+CREATE INDEX idx_machine_event_factory_time_line ON machine_event (factory_id, event_time, line_id, defect_count);
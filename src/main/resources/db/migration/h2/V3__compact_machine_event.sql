@@ -0,0 +1,33 @@
+-- Compact row layout (see the postgresql V3 migration for the rationale). H2 only backs tests and
+-- throwaway local runs, so the table is recreated instead of rewritten.
+CREATE TABLE identifier_dictionary (
+    id    INTEGER GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    kind  SMALLINT     NOT NULL,
+    external_id VARCHAR(255) NOT NULL,
+    CONSTRAINT uk_identifier_dictionary_kind_external_id UNIQUE (kind, external_id)
+);
+
+DROP TABLE machine_event;
+
+CREATE SEQUENCE machine_event_seq INCREMENT BY 50;
+
+CREATE TABLE machine_event (
+    id            BIGINT                      NOT NULL PRIMARY KEY,
+    event_time    TIMESTAMP(6) WITH TIME ZONE NOT NULL,
+    received_time TIMESTAMP(6) WITH TIME ZONE NOT NULL,
+    created_at    TIMESTAMP(6) WITH TIME ZONE NOT NULL,
+    updated_at    TIMESTAMP(6) WITH TIME ZONE NOT NULL,
+    machine_key   INTEGER                     NOT NULL,
+    factory_key   INTEGER                     NOT NULL,
+    line_key      INTEGER                     NOT NULL,
+    duration_ms   INTEGER                     NOT NULL,
+    defect_count  INTEGER                     NOT NULL,
+    event_id      VARCHAR(255)                NOT NULL,
+    payload_hash  VARBINARY(32)               NOT NULL,
+    CONSTRAINT uk_machine_event_event_id UNIQUE (event_id)
+);
+
+CREATE INDEX idx_machine_event_time_id ON machine_event (event_time, event_id);
+CREATE INDEX idx_machine_event_machine_time_id ON machine_event (machine_key, event_time, event_id);
+CREATE INDEX idx_machine_event_factory_time_id ON machine_event (factory_key, event_time, event_id);
+CREATE INDEX idx_machine_event_factory_time_line ON machine_event (factory_key, event_time, line_key, defect_count);
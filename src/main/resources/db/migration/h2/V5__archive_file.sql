@@ -0,0 +1,8 @@
+-- Catalog of columnar archive files (see the postgresql V5 migration).
+CREATE TABLE archive_file (
+    name           VARCHAR(255)                NOT NULL PRIMARY KEY,
+    row_count      INTEGER                     NOT NULL,
+    min_event_time TIMESTAMP(6) WITH TIME ZONE NOT NULL,
+    max_event_time TIMESTAMP(6) WITH TIME ZONE NOT NULL,
+    archived_at    TIMESTAMP(6) WITH TIME ZONE NOT NULL
+);
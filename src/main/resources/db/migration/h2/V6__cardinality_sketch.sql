@@ -0,0 +1,10 @@
+-- HyperLogLog sketches per hour (see the postgresql V6 migration).
+CREATE TABLE cardinality_sketch (
+    metric       SMALLINT                    NOT NULL,
+    scope_key    INTEGER                     NOT NULL,
+    bucket_start TIMESTAMP(6) WITH TIME ZONE NOT NULL,
+    node         VARCHAR(64)                 NOT NULL,
+    registers    VARBINARY(65538)            NOT NULL,
+    updated_at   TIMESTAMP(6) WITH TIME ZONE NOT NULL,
+    PRIMARY KEY (metric, scope_key, bucket_start, node)
+);
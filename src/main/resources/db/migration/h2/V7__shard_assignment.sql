@@ -0,0 +1,6 @@
+-- Factories moved to another shard (see the postgresql V7 migration).
+CREATE TABLE shard_assignment (
+    factory_id VARCHAR(255)                NOT NULL PRIMARY KEY,
+    shard      VARCHAR(64)                 NOT NULL,
+    moved_at   TIMESTAMP(6) WITH TIME ZONE NOT NULL
+);
@@ -0,0 +1,16 @@
+-- Hourly line summary (see the postgresql V8 migration). H2 has no materialized views, so this is a
+-- table that DefectSummaryService rebuilds in one transaction.
+CREATE TABLE line_defects_hourly (
+    factory_key   INTEGER                     NOT NULL,
+    line_key      INTEGER                     NOT NULL,
+    bucket_start  TIMESTAMP(6) WITH TIME ZONE NOT NULL,
+    total_defects BIGINT                      NOT NULL,
+    event_count   BIGINT                      NOT NULL,
+    PRIMARY KEY (factory_key, bucket_start, line_key)
+);
+
+CREATE TABLE summary_refresh (
+    name         VARCHAR(64)                 NOT NULL PRIMARY KEY,
+    as_of        TIMESTAMP(6) WITH TIME ZONE NOT NULL,
+    refreshed_at TIMESTAMP(6) WITH TIME ZONE NOT NULL
+);
@@ -0,0 +1,57 @@
+-- machine_event is range-partitioned on event_time. Partitions are created ahead of time (and
+-- dropped after retention) by PartitionMaintenanceService; this migration creates the parent,
+-- the default partition for late backfill, and the indexes every partition inherits.
+--
+-- Postgres requires the partition key in every unique constraint, so the primary key is
+-- (event_id, event_time). Exact retries carry the same event_time and still collide on it;
+-- dedup lookups by event_id alone go through idx_machine_event_event_id, which is itself
+-- partitioned and costs one index probe per live partition.
+--
+-- That key alone would let two writers store one event id with different event times, so
+-- machine_event_key holds one row per stored event id outside the partitioned table. Its primary
+-- key refuses the second insert whatever its event_time (23505, the same as any other duplicate).
+-- A row trigger keeps it in step: an update that moves a row to another partition fires DELETE
+-- and then INSERT. Dropped partitions fire nothing, so PartitionMaintenanceService deletes their
+-- keys before dropping them.
+--
+-- Databases created before migrations existed are baselined at version 1 and skip this file.
+
+CREATE TABLE IF NOT EXISTS machine_event (
+    event_id      VARCHAR(255)                NOT NULL,
+    machine_id    VARCHAR(255)                NOT NULL,
+    factory_id    VARCHAR(255)                NOT NULL,
+    line_id       VARCHAR(255)                NOT NULL,
+    event_time    TIMESTAMP(6) WITH TIME ZONE NOT NULL,
+    received_time TIMESTAMP(6) WITH TIME ZONE NOT NULL,
+    duration_ms   BIGINT                      NOT NULL,
+    defect_count  INTEGER                     NOT NULL,
+    payload_hash  VARCHAR(64)                 NOT NULL,
+    created_at    TIMESTAMP(6) WITH TIME ZONE NOT NULL,
+    updated_at    TIMESTAMP(6) WITH TIME ZONE NOT NULL,
+    PRIMARY KEY (event_id, event_time)
+) PARTITION BY RANGE (event_time);
+
+CREATE TABLE IF NOT EXISTS machine_event_default PARTITION OF machine_event DEFAULT;
+
+CREATE INDEX IF NOT EXISTS idx_machine_event_event_id ON machine_event (event_id);
+CREATE INDEX IF NOT EXISTS idx_machine_event_time_id ON machine_event (event_time, event_id);
+CREATE INDEX IF NOT EXISTS idx_machine_event_machine_time_id ON machine_event (machine_id, event_time, event_id);
+CREATE INDEX IF NOT EXISTS idx_machine_event_factory_time_id ON machine_event (factory_id, event_time, event_id);
+
+CREATE TABLE IF NOT EXISTS machine_event_key (
+    event_id VARCHAR(255) NOT NULL PRIMARY KEY
+);
+
+CREATE OR REPLACE FUNCTION machine_event_key_sync() RETURNS trigger LANGUAGE plpgsql AS $$
+BEGIN
+    IF TG_OP = 'INSERT' THEN
+        INSERT INTO machine_event_key (event_id) VALUES (NEW.event_id);
+    ELSE
+        DELETE FROM machine_event_key WHERE event_id = OLD.event_id;
+    END IF;
+    RETURN NULL;
+END $$;
+
+CREATE TRIGGER trg_machine_event_key
+    AFTER INSERT OR DELETE ON machine_event
+    FOR EACH ROW EXECUTE FUNCTION machine_event_key_sync();
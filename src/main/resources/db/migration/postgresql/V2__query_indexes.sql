@@ -0,0 +1,14 @@
+-- Index set designed around the hot queries:
+--   /states                   machine_id = ? AND event_time BETWEEN ? AND ?  -> idx_machine_event_machine_time_id (V1)
+--   GET /events               keyset on (event_time, event_id) per filter    -> idx_machine_event_*_time_id (V1)
+--   dedup lookup              event_id = ?                                   -> idx_machine_event_event_id (V1)
+--   findTopDefectLines        factory_id = ? AND event_time range, GROUP BY line_id, SUM(defect_count)
+--                                                                            -> idx_machine_event_factory_time_line
+-- The INCLUDE column lets the top-defect-lines aggregate run as an index-only scan.
+CREATE INDEX IF NOT EXISTS idx_machine_event_factory_time_line
+    ON machine_event (factory_id, event_time, line_id) INCLUDE (defect_count);
+
+-- event_time correlates with physical insert order, so a BRIN index answers wide unfiltered time
+-- ranges (exports, retention checks) for a few kilobytes per partition instead of a full B-tree.
+CREATE INDEX IF NOT EXISTS brin_machine_event_event_time
+    ON machine_event USING brin (event_time) WITH (pages_per_range = 32);
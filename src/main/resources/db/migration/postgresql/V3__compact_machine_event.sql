@@ -0,0 +1,130 @@
+-- Compact row layout for machine_event:
+--   * bigint surrogate key from a sequence instead of the random-string event_id
+--   * machine/factory/line ids stored as int keys into identifier_dictionary
+--   * payload_hash stored as its 32 raw bytes instead of 64 hex chars
+--   * duration_ms as int4 (validated to at most one hour)
+--   * fixed-width 8-byte columns first, then 4-byte, then variable length, so no alignment padding
+-- timestamptz is already an 8-byte epoch offset (microseconds since 2000-01-01), so timestamps are
+-- kept as they are.
+--
+-- The table is rewritten once, partition by partition bounds. Plan a maintenance window for
+-- large tables.
+
+CREATE TABLE identifier_dictionary (
+    id    INTEGER GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    kind  SMALLINT     NOT NULL,
+    external_id VARCHAR(255) NOT NULL,
+    CONSTRAINT uk_identifier_dictionary_kind_external_id UNIQUE (kind, external_id)
+);
+
+-- kind: 0 = machine, 1 = factory, 2 = line (IdentifierDictionary.Kind ordinals)
+INSERT INTO identifier_dictionary (kind, external_id) SELECT DISTINCT 0, machine_id FROM machine_event;
+INSERT INTO identifier_dictionary (kind, external_id) SELECT DISTINCT 1, factory_id FROM machine_event;
+INSERT INTO identifier_dictionary (kind, external_id) SELECT DISTINCT 2, line_id FROM machine_event;
+
+-- Must match allocationSize on MachineEvent.id
+CREATE SEQUENCE machine_event_seq INCREMENT BY 50;
+
+CREATE TABLE machine_event_compact (
+    id            BIGINT                      NOT NULL,
+    event_time    TIMESTAMP(6) WITH TIME ZONE NOT NULL,
+    received_time TIMESTAMP(6) WITH TIME ZONE NOT NULL,
+    created_at    TIMESTAMP(6) WITH TIME ZONE NOT NULL,
+    updated_at    TIMESTAMP(6) WITH TIME ZONE NOT NULL,
+    machine_key   INTEGER                     NOT NULL,
+    factory_key   INTEGER                     NOT NULL,
+    line_key      INTEGER                     NOT NULL,
+    duration_ms   INTEGER                     NOT NULL,
+    defect_count  INTEGER                     NOT NULL,
+    event_id      VARCHAR(255)                NOT NULL,
+    payload_hash  BYTEA                       NOT NULL,
+    CONSTRAINT machine_event_compact_pkey PRIMARY KEY (id, event_time),
+    -- Unique constraints must contain the partition key; exact retries still collide here.
+    CONSTRAINT uk_machine_event_compact_event_id UNIQUE (event_id, event_time)
+) PARTITION BY RANGE (event_time);
+
+-- Recreate the existing partitions (including the default one) under the new parent.
+DO $$
+DECLARE
+    part RECORD;
+BEGIN
+    FOR part IN
+        SELECT child.relname AS name, pg_get_expr(child.relpartbound, child.oid) AS bound
+        FROM pg_inherits i
+        JOIN pg_class child ON child.oid = i.inhrelid
+        JOIN pg_class parent ON parent.oid = i.inhparent
+        WHERE parent.relname = 'machine_event' AND child.relkind = 'r'
+    LOOP
+        EXECUTE format('CREATE TABLE %I PARTITION OF machine_event_compact %s', part.name || '_compact', part.bound);
+    END LOOP;
+END $$;
+CREATE TABLE IF NOT EXISTS machine_event_default_compact PARTITION OF machine_event_compact DEFAULT;
+
+INSERT INTO machine_event_compact (id, event_time, received_time, created_at, updated_at,
+                                   machine_key, factory_key, line_key, duration_ms, defect_count,
+                                   event_id, payload_hash)
+SELECT row_number() OVER (ORDER BY e.event_time, e.event_id),
+       e.event_time, e.received_time, e.created_at, e.updated_at,
+       m.id, f.id, l.id, e.duration_ms::INTEGER, e.defect_count,
+       e.event_id, decode(e.payload_hash, 'hex')
+FROM machine_event e
+JOIN identifier_dictionary m ON m.kind = 0 AND m.external_id = e.machine_id
+JOIN identifier_dictionary f ON f.kind = 1 AND f.external_id = e.factory_id
+JOIN identifier_dictionary l ON l.kind = 2 AND l.external_id = e.line_id;
+
+-- Hibernate's pooled optimizer hands out (nextval - 50, nextval], so start above the copied ids.
+SELECT setval('machine_event_seq', max(id)) FROM machine_event_compact HAVING max(id) IS NOT NULL;
+
+DROP TABLE machine_event CASCADE;
+ALTER TABLE machine_event_compact RENAME TO machine_event;
+ALTER TABLE machine_event RENAME CONSTRAINT machine_event_compact_pkey TO machine_event_pkey;
+ALTER TABLE machine_event RENAME CONSTRAINT uk_machine_event_compact_event_id TO uk_machine_event_event_id;
+
+DO $$
+DECLARE
+    part RECORD;
+BEGIN
+    FOR part IN
+        SELECT child.relname AS name
+        FROM pg_inherits i
+        JOIN pg_class child ON child.oid = i.inhrelid
+        JOIN pg_class parent ON parent.oid = i.inhparent
+        WHERE parent.relname = 'machine_event' AND child.relkind = 'r' AND child.relname LIKE '%\_compact'
+    LOOP
+        EXECUTE format('ALTER TABLE %I RENAME TO %I', part.name, left(part.name, length(part.name) - length('_compact')));
+    END LOOP;
+END $$;
+
+-- The trigger keeping machine_event_key in step went with the old table. Databases baselined at V1
+-- never ran V1, so the key table and its function are created here when missing.
+CREATE TABLE IF NOT EXISTS machine_event_key (
+    event_id VARCHAR(255) NOT NULL PRIMARY KEY
+);
+
+CREATE OR REPLACE FUNCTION machine_event_key_sync() RETURNS trigger LANGUAGE plpgsql AS $$
+BEGIN
+    IF TG_OP = 'INSERT' THEN
+        INSERT INTO machine_event_key (event_id) VALUES (NEW.event_id);
+    ELSE
+        DELETE FROM machine_event_key WHERE event_id = OLD.event_id;
+    END IF;
+    RETURN NULL;
+END $$;
+
+INSERT INTO machine_event_key (event_id)
+SELECT DISTINCT event_id FROM machine_event
+ON CONFLICT (event_id) DO NOTHING;
+
+CREATE TRIGGER trg_machine_event_key
+    AFTER INSERT OR DELETE ON machine_event
+    FOR EACH ROW EXECUTE FUNCTION machine_event_key_sync();
+
+-- Same index set as V1/V2, keyed on the int columns. Dedup lookups by event_id use the leading
+-- column of uk_machine_event_event_id, so the separate event_id index is gone.
+CREATE INDEX idx_machine_event_time_id ON machine_event (event_time, event_id);
+CREATE INDEX idx_machine_event_machine_time_id ON machine_event (machine_key, event_time, event_id);
+CREATE INDEX idx_machine_event_factory_time_id ON machine_event (factory_key, event_time, event_id);
+CREATE INDEX idx_machine_event_factory_time_line
+    ON machine_event (factory_key, event_time, line_key) INCLUDE (defect_count);
+CREATE INDEX brin_machine_event_event_time
+    ON machine_event USING brin (event_time) WITH (pages_per_range = 32);
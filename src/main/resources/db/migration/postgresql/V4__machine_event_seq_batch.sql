@@ -0,0 +1,4 @@
+-- One sequence round trip hands out ids for a whole batch: allocationSize on MachineEvent.id and
+-- hibernate.jdbc.batch_size are both 1000, so ingesting up to 1000 events costs a constant number of
+-- statements.
+ALTER SEQUENCE machine_event_seq INCREMENT BY 1000;
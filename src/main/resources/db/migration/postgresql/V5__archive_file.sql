@@ -0,0 +1,10 @@
+-- Catalog of columnar archive files (ColumnarArchive). A file's name is inserted in the same
+-- transaction that deletes its rows from machine_event, so a file left as .tmp by a crash is kept
+-- only if its name is here.
+CREATE TABLE archive_file (
+    name           VARCHAR(255)                NOT NULL PRIMARY KEY,
+    row_count      INTEGER                     NOT NULL,
+    min_event_time TIMESTAMP(6) WITH TIME ZONE NOT NULL,
+    max_event_time TIMESTAMP(6) WITH TIME ZONE NOT NULL,
+    archived_at    TIMESTAMP(6) WITH TIME ZONE NOT NULL
+);
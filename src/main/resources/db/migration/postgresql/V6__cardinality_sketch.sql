@@ -0,0 +1,12 @@
+-- HyperLogLog sketches per hour (CardinalityService). Each node writes its own rows and readers
+-- merge them, so nodes never contend for a row. scope_key is 0 for all factories, otherwise the
+-- identifier_dictionary id of a factory or line. Rows outlive archiving of the events they counted.
+CREATE TABLE cardinality_sketch (
+    metric       SMALLINT                    NOT NULL,
+    scope_key    INTEGER                     NOT NULL,
+    bucket_start TIMESTAMP(6) WITH TIME ZONE NOT NULL,
+    node         VARCHAR(64)                 NOT NULL,
+    registers    BYTEA                       NOT NULL,
+    updated_at   TIMESTAMP(6) WITH TIME ZONE NOT NULL,
+    PRIMARY KEY (metric, scope_key, bucket_start, node)
+);
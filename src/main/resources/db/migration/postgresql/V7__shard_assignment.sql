@@ -0,0 +1,7 @@
+-- Factories a move (ShardMover) put on another shard than buyogo.sharding.shards.*.factories says.
+-- Only the home shard's copy is read; nodes reload it every buyogo.sharding.assignment-refresh.
+CREATE TABLE shard_assignment (
+    factory_id VARCHAR(255)                NOT NULL PRIMARY KEY,
+    shard      VARCHAR(64)                 NOT NULL,
+    moved_at   TIMESTAMP(6) WITH TIME ZONE NOT NULL
+);
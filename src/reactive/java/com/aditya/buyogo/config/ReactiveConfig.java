@@ -0,0 +1,46 @@
+package com.aditya.buyogo.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.r2dbc.spi.ConnectionFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.web.embedded.netty.NettyReactiveWebServerFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.r2dbc.connection.R2dbcTransactionManager;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.transaction.reactive.TransactionalOperator;
+
+@Configuration
+@Profile("reactive")
+public class ReactiveConfig {
+
+    // Tomcat is still on the classpath for the MVC mode and Boot would prefer it; the point here is an event loop
+    @Bean
+    public NettyReactiveWebServerFactory nettyReactiveWebServerFactory() {
+        return new NettyReactiveWebServerFactory();
+    }
+
+    @Bean
+    public DatabaseClient databaseClient(ConnectionFactory connectionFactory) {
+        return DatabaseClient.create(connectionFactory);
+    }
+
+    // The R2DBC transaction manager is deliberately not a bean: JPA's would back off in its favour
+    // (see application-reactive.properties), and @Transactional must keep meaning JPA everywhere else
+    @Bean
+    public TransactionalOperator reactiveTransactions(ConnectionFactory connectionFactory) {
+        return TransactionalOperator.create(new R2dbcTransactionManager(connectionFactory));
+    }
+
+    // Boot drops the JDBC DataSource once an R2DBC ConnectionFactory exists, but Flyway, JPA and the
+    // identifier dictionary still need it, so it is declared here the way the auto-configuration would
+    @Bean
+    @ConditionalOnProperty(prefix = "buyogo.datasource.routing", name = "enabled", havingValue = "false", matchIfMissing = true)
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource dataSource(DataSourceProperties properties) {
+        return properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+    }
+}
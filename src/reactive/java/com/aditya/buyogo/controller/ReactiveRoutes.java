@@ -0,0 +1,77 @@
+package com.aditya.buyogo.controller;
+
+import com.aditya.buyogo.dto.ApiResponse;
+import com.aditya.buyogo.dto.EventDTO;
+import com.aditya.buyogo.services.ReactiveEventService;
+import com.aditya.buyogo.services.ReactiveStateService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.web.reactive.function.server.RouterFunction;
+import org.springframework.web.reactive.function.server.RouterFunctions;
+import org.springframework.web.reactive.function.server.ServerRequest;
+import org.springframework.web.reactive.function.server.ServerResponse;
+import org.springframework.web.server.ServerWebInputException;
+import reactor.core.publisher.Mono;
+
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+
+// Same paths, parameters and ApiResponse bodies as EventIngestionController and StatesController.
+// Router functions are consulted before annotated controllers, so these win in the reactive profile.
+@Configuration
+@Profile("reactive")
+public class ReactiveRoutes {
+    @Autowired
+    private ReactiveEventService eventService;
+
+    @Autowired
+    private ReactiveStateService stateService;
+
+    @Bean
+    public RouterFunction<ServerResponse> reactiveApi() {
+        return RouterFunctions.route()
+                .POST("/events/batch", this::storeEvents)
+                .GET("/states", this::getEventByMachineId)
+                .GET("/states/top-defect-lines", this::getTopDefectLines)
+                .build();
+    }
+
+    // The array is decoded element by element and handed on in chunks, never held whole
+    private Mono<ServerResponse> storeEvents(ServerRequest request) {
+        return eventService.processEvents(request.bodyToFlux(EventDTO.class))
+                .flatMap(response -> ServerResponse.ok().bodyValue(new ApiResponse(response)));
+    }
+
+    private Mono<ServerResponse> getEventByMachineId(ServerRequest request) {
+        return stateService.getEventByMachineIdAndDateBetween(param(request, "machineId"),
+                        instant(request, "start"), instant(request, "end"))
+                .flatMap(response -> ServerResponse.ok().bodyValue(new ApiResponse(response)));
+    }
+
+    private Mono<ServerResponse> getTopDefectLines(ServerRequest request) {
+        int limit;
+        try {
+            limit = Integer.parseInt(param(request, "limit"));
+        } catch (NumberFormatException e) {
+            throw new ServerWebInputException("Invalid limit");
+        }
+        return stateService.getTopDefectLines(param(request, "factoryId"),
+                        instant(request, "from"), instant(request, "to"), limit)
+                .flatMap(response -> ServerResponse.ok().bodyValue(new ApiResponse(response)));
+    }
+
+    private static String param(ServerRequest request, String name) {
+        return request.queryParam(name)
+                .orElseThrow(() -> new ServerWebInputException("Required parameter '" + name + "' is not present"));
+    }
+
+    private static Instant instant(ServerRequest request, String name) {
+        try {
+            return Instant.parse(param(request, name));
+        } catch (DateTimeParseException e) {
+            throw new ServerWebInputException("Invalid " + name);
+        }
+    }
+}
@@ -0,0 +1,167 @@
+package com.aditya.buyogo.repo;
+
+import io.r2dbc.spi.ConnectionFactory;
+import io.r2dbc.spi.Readable;
+import io.r2dbc.spi.Result;
+import io.r2dbc.spi.Statement;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.BiConsumer;
+
+// machine_event over R2DBC, column for column the layout the JPA entity maps (dictionary keys,
+// raw 32-byte payload hash, ids from machine_event_seq in blocks of 1000). Statements run on the
+// connection of the surrounding reactive transaction.
+@Repository
+@Profile("reactive")
+public class ReactiveEventStore {
+    public record EventRow(long id, String eventId, Instant eventTime, Instant receivedTime, int machineKey,
+                           int factoryKey, int lineKey, int durationMs, int defectCount, byte[] payloadHash) {
+    }
+
+    public record Update(EventRow row, Instant storedEventTime) {
+    }
+
+    public record LineTotals(int lineKey, long totalDefects, long eventCount) {
+    }
+
+    // Matches allocationSize on MachineEvent.id: one nextval hands out the 1000 ids below it
+    public static final int ID_BLOCK = 1000;
+
+    private static final String SELECT_BY_EVENT_ID = """
+            SELECT id, event_id, event_time, received_time, machine_key, factory_key, line_key,
+                   duration_ms, defect_count, payload_hash
+            FROM machine_event WHERE event_id IN (:eventIds)""";
+    private static final String INSERT = """
+            INSERT INTO machine_event (id, event_time, received_time, created_at, updated_at, machine_key,
+                                       factory_key, line_key, duration_ms, defect_count, event_id, payload_hash)
+            VALUES ($1, $2, $3, $4, $4, $5, $6, $7, $8, $9, $10, $11)""";
+    private static final String UPDATE = """
+            UPDATE machine_event SET event_time = $1, received_time = $2, updated_at = $3, machine_key = $4,
+                   factory_key = $5, line_key = $6, duration_ms = $7, defect_count = $8, payload_hash = $9
+            WHERE id = $10 AND event_time = $11""";
+    private static final String MACHINE_TOTALS = """
+            SELECT COUNT(*) AS events, COALESCE(SUM(CASE WHEN defect_count >= 0 THEN defect_count ELSE 0 END), 0) AS defects
+            FROM machine_event WHERE machine_key = :machineKey AND event_time BETWEEN :start AND :end""";
+    private static final String TOP_DEFECT_LINES = """
+            SELECT line_key, SUM(defect_count) AS total_defects, COUNT(*) AS event_count
+            FROM machine_event
+            WHERE factory_key = :factoryKey AND event_time >= :from AND event_time < :to AND defect_count >= 0
+            GROUP BY line_key ORDER BY SUM(defect_count) DESC LIMIT :limit""";
+
+    @Autowired
+    private DatabaseClient client;
+
+    @Autowired
+    private ConnectionFactory connectionFactory;
+
+    public Flux<EventRow> findByEventIds(Collection<String> eventIds) {
+        return client.sql(SELECT_BY_EVENT_ID)
+                .bind("eventIds", eventIds)
+                .map(ReactiveEventStore::eventRow)
+                .all();
+    }
+
+    // Highest id of a fresh block; the block is (value - ID_BLOCK, value]
+    public Mono<Long> nextIdBlock() {
+        boolean postgres = connectionFactory.getMetadata().getName().toLowerCase().contains("postgres");
+        String sql = postgres ? "SELECT nextval('machine_event_seq')" : "SELECT NEXT VALUE FOR machine_event_seq";
+        return client.sql(sql).map(row -> ((Number) row.get(0)).longValue()).one();
+    }
+
+    public Mono<Long> insert(List<EventRow> rows) {
+        Instant now = Instant.now();
+        return batch(INSERT, rows, (statement, row) -> statement
+                .bind(0, row.id())
+                .bind(1, row.eventTime())
+                .bind(2, row.receivedTime())
+                .bind(3, now)
+                .bind(4, row.machineKey())
+                .bind(5, row.factoryKey())
+                .bind(6, row.lineKey())
+                .bind(7, row.durationMs())
+                .bind(8, row.defectCount())
+                .bind(9, row.eventId())
+                .bind(10, row.payloadHash()));
+    }
+
+    public Mono<Long> update(List<Update> updates) {
+        Instant now = Instant.now();
+        return batch(UPDATE, updates, (statement, update) -> statement
+                .bind(0, update.row().eventTime())
+                .bind(1, update.row().receivedTime())
+                .bind(2, now)
+                .bind(3, update.row().machineKey())
+                .bind(4, update.row().factoryKey())
+                .bind(5, update.row().lineKey())
+                .bind(6, update.row().durationMs())
+                .bind(7, update.row().defectCount())
+                .bind(8, update.row().payloadHash())
+                .bind(9, update.row().id())
+                .bind(10, update.storedEventTime()));
+    }
+
+    // One statement with a binding per row: the driver pipelines them instead of a round trip each
+    private <T> Mono<Long> batch(String sql, List<T> items, BiConsumer<Statement, T> binder) {
+        if (items.isEmpty()) {
+            return Mono.just(0L);
+        }
+        return client.inConnectionMany(connection -> {
+            Statement statement = connection.createStatement(sql);
+            for (int i = 0; i < items.size(); i++) {
+                if (i > 0) {
+                    statement.add();
+                }
+                binder.accept(statement, items.get(i));
+            }
+            return Flux.from(statement.execute()).flatMap(Result::getRowsUpdated);
+        }).reduce(0L, Long::sum);
+    }
+
+    // {events, defects}; the sum is done by the database instead of shipping every row
+    public Mono<long[]> machineTotals(int machineKey, Instant start, Instant end) {
+        return client.sql(MACHINE_TOTALS)
+                .bind("machineKey", machineKey)
+                .bind("start", start)
+                .bind("end", end)
+                .map(row -> new long[]{number(row, "events"), number(row, "defects")})
+                .one();
+    }
+
+    public Flux<LineTotals> topDefectLines(int factoryKey, Instant from, Instant to, int limit) {
+        return client.sql(TOP_DEFECT_LINES)
+                .bind("factoryKey", factoryKey)
+                .bind("from", from)
+                .bind("to", to)
+                .bind("limit", limit)
+                .map(row -> new LineTotals(((Number) row.get("line_key")).intValue(),
+                        number(row, "total_defects"), number(row, "event_count")))
+                .all();
+    }
+
+    private static EventRow eventRow(Readable row) {
+        return new EventRow(
+                number(row, "id"),
+                row.get("event_id", String.class),
+                row.get("event_time", Instant.class),
+                row.get("received_time", Instant.class),
+                ((Number) row.get("machine_key")).intValue(),
+                ((Number) row.get("factory_key")).intValue(),
+                ((Number) row.get("line_key")).intValue(),
+                ((Number) row.get("duration_ms")).intValue(),
+                ((Number) row.get("defect_count")).intValue(),
+                row.get("payload_hash", byte[].class));
+    }
+
+    private static long number(Readable row, String column) {
+        Object value = row.get(column);
+        return value == null ? 0 : ((Number) value).longValue();
+    }
+}
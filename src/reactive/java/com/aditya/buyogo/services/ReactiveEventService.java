@@ -0,0 +1,264 @@
+package com.aditya.buyogo.services;
+
+import com.aditya.buyogo.dto.BatchResponseDTO;
+import com.aditya.buyogo.dto.EventDTO;
+import com.aditya.buyogo.dto.RejectionDTO;
+import com.aditya.buyogo.models.MachineEvent;
+import com.aditya.buyogo.repo.IdentifierDictionary;
+import com.aditya.buyogo.repo.IdentifierDictionary.Kind;
+import com.aditya.buyogo.repo.ReactiveEventStore;
+import com.aditya.buyogo.repo.ReactiveEventStore.EventRow;
+import com.aditya.buyogo.repo.ReactiveEventStore.Update;
+import com.aditya.buyogo.utils.PayloadHashUtil;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+// EventService over R2DBC: the same validation, dedup and update rules, but the request body is
+// consumed in chunks as it is decoded and no thread waits on the database. A chunk is looked up,
+// classified and written before the next one is requested, all in one transaction per request.
+@Slf4j
+@Service
+@Profile("reactive")
+public class ReactiveEventService {
+    // Rows per lookup and per batched statement; one id block from the sequence covers a chunk
+    private static final int CHUNK_SIZE = ReactiveEventStore.ID_BLOCK;
+    private static final HexFormat HEX = HexFormat.of();
+
+    @Autowired
+    private ReactiveEventStore store;
+
+    @Autowired
+    private IdentifierDictionary dictionary;
+
+    @Autowired
+    private TransactionalOperator transactions;
+
+    @Autowired
+    private ServiceMetrics metrics;
+
+    @Autowired(required = false)
+    private List<IngestionListener> listeners = List.of();
+
+    // Per-request counters and changes; chunks of one request run one after another, never concurrently
+    private static final class Batch {
+        int size;
+        int accepted;
+        int deduped;
+        int updated;
+        int ignored;
+        final List<RejectionDTO> rejections = new ArrayList<>();
+        final List<EventChange> changes = new ArrayList<>();
+    }
+
+    // A row this chunk will write: the event it ends up holding and the stored row it replaces, if any
+    private record Pending(EventDTO event, EventRow stored) {
+    }
+
+    public Mono<BatchResponseDTO> processEvents(Flux<EventDTO> events) {
+        return Mono.defer(() -> {
+            Batch batch = new Batch();
+            return events.buffer(CHUNK_SIZE)
+                    .concatMap(chunk -> processChunk(chunk, batch), 0)
+                    .then(Mono.fromSupplier(() -> batch))
+                    .as(transactions::transactional);
+        }).map(batch -> {
+            notifyListeners(batch.changes);
+            metrics.recordBatch(batch.size, batch.accepted, batch.deduped, batch.updated, batch.ignored, batch.rejections);
+            BatchResponseDTO response = new BatchResponseDTO();
+            response.setAccepted(batch.accepted);
+            response.setRejected(batch.rejections.size());
+            response.setUpdated(batch.updated);
+            response.setDeduped(batch.deduped);
+            response.setRejections(batch.rejections);
+            return response;
+        });
+    }
+
+    private Mono<Void> processChunk(List<EventDTO> chunk, Batch batch) {
+        batch.size += chunk.size();
+        long hashStart = System.nanoTime();
+        List<EventDTO> valid = new ArrayList<>(chunk.size());
+        long latestEventTime = EventColumns.latestEventTime();
+        for (EventDTO event : chunk) {
+            event.setPayloadHash(PayloadHashUtil.generatePayloadHash(event));
+            String reason = EventColumns.rejectionReason(event, latestEventTime);
+            if (reason != null) {
+                batch.rejections.add(new RejectionDTO(event.getEventId(), reason));
+            } else {
+                valid.add(event);
+            }
+        }
+        metrics.recordStage(ServiceMetrics.Stage.HASH, System.nanoTime() - hashStart);
+        if (valid.isEmpty()) {
+            return Mono.empty();
+        }
+        List<String> eventIds = valid.stream().map(EventDTO::getEventId).distinct().toList();
+        return register(valid)
+                .then(timed(ServiceMetrics.Stage.LOOKUP, store.findByEventIds(eventIds)
+                        .collectMap(EventRow::eventId, Function.identity())))
+                .flatMap(stored -> resolveStored(stored.values()).thenReturn(stored))
+                .flatMap(stored -> write(classify(valid, stored, batch), batch));
+    }
+
+    // Same decisions as EventService, in arrival order; later copies of an id compare against the earlier one
+    private Map<String, Pending> classify(List<EventDTO> valid, Map<String, EventRow> stored, Batch batch) {
+        Map<String, Pending> pending = new LinkedHashMap<>();
+        for (EventDTO event : valid) {
+            Pending queued = pending.get(event.getEventId());
+            EventRow storedRow = queued != null ? queued.stored() : stored.get(event.getEventId());
+            if (queued == null && storedRow == null) {
+                batch.accepted++;
+                pending.put(event.getEventId(), new Pending(event, null));
+                continue;
+            }
+            String existingHash = queued != null ? queued.event().getPayloadHash() : HEX.formatHex(storedRow.payloadHash());
+            if (existingHash.equals(event.getPayloadHash())) {
+                batch.deduped++;
+            } else if (event.getReceivedTime().isAfter(queued != null ? queued.event().getReceivedTime() : storedRow.receivedTime())) {
+                batch.updated++;
+                pending.put(event.getEventId(), new Pending(event, storedRow));
+            } else {
+                // Older event, ignore
+                batch.ignored++;
+            }
+        }
+        return pending;
+    }
+
+    private Mono<Void> write(Map<String, Pending> pending, Batch batch) {
+        if (pending.isEmpty()) {
+            return Mono.empty();
+        }
+        long inserts = pending.values().stream().filter(p -> p.stored() == null).count();
+        Mono<Long> idBlock = inserts == 0 ? Mono.just(0L) : nextIdBlock();
+        return timed(ServiceMetrics.Stage.SAVE, idBlock.flatMap(highestId -> {
+            List<EventRow> toInsert = new ArrayList<>();
+            List<Update> toUpdate = new ArrayList<>();
+            long nextId = highestId - ReactiveEventStore.ID_BLOCK + 1;
+            for (Pending row : pending.values()) {
+                if (row.stored() == null) {
+                    toInsert.add(row(nextId++, row.event()));
+                } else {
+                    toUpdate.add(new Update(row(row.stored().id(), row.event()), row.stored().eventTime()));
+                }
+                if (!listeners.isEmpty()) {
+                    batch.changes.add(new EventChange(row.stored() == null ? null : event(row.stored()), event(row.event())));
+                }
+            }
+            return store.insert(toInsert).then(store.update(toUpdate));
+        })).then();
+    }
+
+    // Hibernate's pooled optimizer keeps the very first value of the sequence to itself (its block
+    // would start below 1), so that block is skipped here instead of colliding with JPA inserts
+    private Mono<Long> nextIdBlock() {
+        return store.nextIdBlock()
+                .flatMap(highest -> highest < ReactiveEventStore.ID_BLOCK ? store.nextIdBlock() : Mono.just(highest));
+    }
+
+    // New ids are registered over JDBC, which blocks, so only a chunk with an unseen id leaves the event loop
+    private Mono<Void> register(List<EventDTO> events) {
+        List<EventDTO> unseen = events.stream()
+                .filter(event -> dictionary.cachedKeyOf(Kind.MACHINE, event.getMachineId()) == null
+                        || dictionary.cachedKeyOf(Kind.FACTORY, event.getFactoryId()) == null
+                        || dictionary.cachedKeyOf(Kind.LINE, event.getLineId()) == null)
+                .toList();
+        if (unseen.isEmpty()) {
+            return Mono.empty();
+        }
+        return Mono.fromRunnable(() -> unseen.forEach(dictionary::registerAll))
+                .subscribeOn(Schedulers.boundedElastic())
+                .then();
+    }
+
+    // Stored rows only need their ids spelled out for listeners; keys another node registered are looked up off the event loop
+    private Mono<Void> resolveStored(Iterable<EventRow> rows) {
+        if (listeners.isEmpty()) {
+            return Mono.empty();
+        }
+        List<Integer> missing = new ArrayList<>();
+        for (EventRow row : rows) {
+            for (int key : new int[]{row.machineKey(), row.factoryKey(), row.lineKey()}) {
+                if (dictionary.cachedValueOf(key) == null) {
+                    missing.add(key);
+                }
+            }
+        }
+        if (missing.isEmpty()) {
+            return Mono.empty();
+        }
+        return Mono.fromRunnable(() -> missing.forEach(dictionary::valueOf))
+                .subscribeOn(Schedulers.boundedElastic())
+                .then();
+    }
+
+    private <T> Mono<T> timed(ServiceMetrics.Stage stage, Mono<T> work) {
+        return Mono.defer(() -> {
+            long start = System.nanoTime();
+            return work.doOnSuccess(result -> metrics.recordStage(stage, System.nanoTime() - start));
+        });
+    }
+
+    private EventRow row(long id, EventDTO event) {
+        return new EventRow(id, event.getEventId(), event.getEventTime(), event.getReceivedTime(),
+                dictionary.cachedKeyOf(Kind.MACHINE, event.getMachineId()),
+                dictionary.cachedKeyOf(Kind.FACTORY, event.getFactoryId()),
+                dictionary.cachedKeyOf(Kind.LINE, event.getLineId()),
+                Math.toIntExact(event.getDurationMs()), event.getDefectCount(), HEX.parseHex(event.getPayloadHash()));
+    }
+
+    private static MachineEvent event(EventDTO event) {
+        MachineEvent entity = new MachineEvent();
+        entity.setEventId(event.getEventId());
+        entity.setEventTime(event.getEventTime());
+        entity.setReceivedTime(event.getReceivedTime());
+        entity.setMachineId(event.getMachineId());
+        entity.setFactoryId(event.getFactoryId());
+        entity.setLineId(event.getLineId());
+        entity.setDurationMs(event.getDurationMs());
+        entity.setDefectCount(event.getDefectCount());
+        entity.setPayloadHash(event.getPayloadHash());
+        return entity;
+    }
+
+    private MachineEvent event(EventRow row) {
+        MachineEvent entity = new MachineEvent();
+        entity.setId(row.id());
+        entity.setEventId(row.eventId());
+        entity.setEventTime(row.eventTime());
+        entity.setReceivedTime(row.receivedTime());
+        entity.setMachineId(dictionary.cachedValueOf(row.machineKey()));
+        entity.setFactoryId(dictionary.cachedValueOf(row.factoryKey()));
+        entity.setLineId(dictionary.cachedValueOf(row.lineKey()));
+        entity.setDurationMs(row.durationMs());
+        entity.setDefectCount(row.defectCount());
+        entity.setPayloadHash(HEX.formatHex(row.payloadHash()));
+        return entity;
+    }
+
+    private void notifyListeners(List<EventChange> changes) {
+        if (changes.isEmpty()) {
+            return;
+        }
+        for (IngestionListener listener : listeners) {
+            try {
+                listener.afterCommit(changes);
+            } catch (RuntimeException e) {
+                log.warn("Ingestion listener {} failed: {}", listener.getClass().getSimpleName(), e.getMessage(), e);
+            }
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package com.aditya.buyogo.services;
+
+import com.aditya.buyogo.dto.StatesResponseDTO;
+import com.aditya.buyogo.dto.TopDefectLineDTO;
+import com.aditya.buyogo.models.Status;
+import com.aditya.buyogo.repo.IdentifierDictionary;
+import com.aditya.buyogo.repo.IdentifierDictionary.Kind;
+import com.aditya.buyogo.repo.ReactiveEventStore;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+// StateService over R2DBC. Counts and sums are aggregated in the database, so a wide window costs
+// one row over the wire instead of every event in it.
+@Service
+@Profile("reactive")
+public class ReactiveStateService {
+    @Autowired
+    private ReactiveEventStore store;
+
+    @Autowired
+    private IdentifierDictionary dictionary;
+
+    @Autowired
+    private ServiceMetrics metrics;
+
+    public Mono<StatesResponseDTO> getEventByMachineIdAndDateBetween(String machineId, Instant start, Instant end) {
+        return key(Kind.MACHINE, machineId)
+                .flatMap(machineKey -> timed(ServiceMetrics.Query.MACHINE_STATES, store.machineTotals(machineKey, start, end)))
+                .map(totals -> {
+                    double avgDefectRate = StateService.defectRate(totals[1], Duration.between(start, end));
+                    Status status = StateService.statusFor(avgDefectRate);
+                    StatesResponseDTO response = new StatesResponseDTO();
+                    response.setMachineId(machineId);
+                    response.setEnd(end);
+                    response.setStart(start);
+                    response.setEventsCount(totals[0]);
+                    response.setStatus(status);
+                    response.setDefectsCount(totals[1]);
+                    response.setAvgDefectRate(avgDefectRate);
+                    return response;
+                });
+    }
+
+    public Mono<List<TopDefectLineDTO>> getTopDefectLines(String factoryId, Instant from, Instant to, Integer limit) {
+        return key(Kind.FACTORY, factoryId)
+                .flatMap(factoryKey -> timed(ServiceMetrics.Query.TOP_DEFECT_LINES,
+                        store.topDefectLines(factoryKey, from, to, limit).collectList()))
+                .flatMapIterable(lines -> lines)
+                .flatMapSequential(line -> value(line.lineKey()).map(lineId -> {
+                    TopDefectLineDTO dto = new TopDefectLineDTO();
+                    dto.setLineId(lineId);
+                    dto.setTotalDefects(line.totalDefects());
+                    dto.setEventCount(line.eventCount());
+                    double percent = line.eventCount() > 0 ? (line.totalDefects() * 100.0) / line.eventCount() : 0.0;
+                    dto.setDefectsPercent(Math.round(percent * 100.0) / 100.0);
+                    return dto;
+                }))
+                .collectList();
+    }
+
+    // Cached ids resolve in place; an id this node has not seen yet is looked up over JDBC off the event loop
+    private Mono<Integer> key(Kind kind, String value) {
+        Integer cached = dictionary.cachedKeyOf(kind, value);
+        if (cached != null) {
+            return Mono.just(cached);
+        }
+        return Mono.fromCallable(() -> dictionary.keyOf(kind, value)).subscribeOn(Schedulers.boundedElastic());
+    }
+
+    private Mono<String> value(int key) {
+        String cached = dictionary.cachedValueOf(key);
+        if (cached != null) {
+            return Mono.just(cached);
+        }
+        return Mono.fromCallable(() -> dictionary.valueOf(key)).subscribeOn(Schedulers.boundedElastic());
+    }
+
+    private <T> Mono<T> timed(ServiceMetrics.Query query, Mono<T> work) {
+        return Mono.defer(() -> {
+            long start = System.nanoTime();
+            return work.doOnSuccess(result -> metrics.recordQuery(query, System.nanoTime() - start));
+        });
+    }
+}
@@ -0,0 +1,108 @@
+package com.aditya.buyogo;
+
+import com.aditya.buyogo.models.MachineEvent;
+import com.aditya.buyogo.repo.MachineEventRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.reactive.server.WebTestClient;
+
+import java.time.Instant;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// JDBC (dictionary, Flyway, JPA checks) and R2DBC must see the same in-memory database
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "spring.datasource.url=jdbc:h2:mem:buyogo_reactive;DB_CLOSE_DELAY=-1",
+        "spring.r2dbc.url=r2dbc:h2:mem:///buyogo_reactive?options=DB_CLOSE_DELAY=-1",
+        "spring.r2dbc.username=sa",
+        "spring.r2dbc.password="})
+@ActiveProfiles("reactive")
+class ReactiveModeTest {
+
+    @Autowired
+    private WebTestClient client;
+
+    @Autowired
+    private MachineEventRepository repo;
+
+    @Test
+    void testBatchIsStoredWithSameOutcomesAsMvc() {
+        Instant eventTime = Instant.now().minusSeconds(120);
+        String body = "[" + event("RX-1", eventTime, 100, 2, Instant.now().minusSeconds(5)) + ","
+                + event("RX-2", eventTime, 100, 1, Instant.now()) + ","
+                + event("RX-3", eventTime, -1, 1, Instant.now()) + ","
+                + event("RX-1", eventTime, 100, 2, Instant.now().minusSeconds(5)) + ","
+                + event("RX-1", eventTime, 100, 5, Instant.now()) + "]";
+        post(body)
+                .jsonPath("$.data.accepted").isEqualTo(2)
+                .jsonPath("$.data.deduped").isEqualTo(1)
+                .jsonPath("$.data.updated").isEqualTo(1)
+                .jsonPath("$.data.rejected").isEqualTo(1)
+                .jsonPath("$.data.rejections[0].reason").isEqualTo("INVALID_DURATION");
+
+        List<MachineEvent> stored = repo.findByEventIdIn(List.of("RX-1", "RX-2", "RX-3"));
+        assertEquals(2, stored.size());
+        MachineEvent first = stored.stream().filter(e -> e.getEventId().equals("RX-1")).findFirst().orElseThrow();
+        assertEquals(5, first.getDefectCount());
+        assertEquals("RX-M", first.getMachineId());
+
+        // A second request updates in place and keeps the surrogate id
+        post("[" + event("RX-1", eventTime, 100, 7, Instant.now().plusSeconds(1)) + "]")
+                .jsonPath("$.data.updated").isEqualTo(1);
+        MachineEvent updated = repo.findByEventIdIn(List.of("RX-1")).get(0);
+        assertEquals(first.getId(), updated.getId());
+        assertEquals(7, updated.getDefectCount());
+    }
+
+    @Test
+    void testStatesAreAggregatedInTheDatabase() {
+        Instant eventTime = Instant.now().minusSeconds(600);
+        post("[" + event("RS-1", eventTime, 100, 3, Instant.now()) + ","
+                + event("RS-2", eventTime, 100, -1, Instant.now()) + ","
+                + event("RS-3", eventTime, 100, 4, Instant.now()) + "]")
+                .jsonPath("$.data.accepted").isEqualTo(3);
+
+        Instant end = Instant.now();
+        Instant start = end.minusSeconds(3600);
+        client.get().uri("/states?machineId=RS-M&start={start}&end={end}", start, end)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.data.eventsCount").isEqualTo(3)
+                .jsonPath("$.data.defectsCount").isEqualTo(7)
+                .jsonPath("$.data.status").isEqualTo("WARNING");
+
+        client.get().uri("/states/top-defect-lines?factoryId=RS-F&from={from}&to={to}&limit=5", start, end)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.data[0].lineId").isEqualTo("RS-L")
+                .jsonPath("$.data[0].totalDefects").isEqualTo(7)
+                .jsonPath("$.data[0].eventCount").isEqualTo(2);
+
+        client.get().uri("/states?machineId=RX-M&start={start}", start)
+                .exchange()
+                .expectStatus().isBadRequest();
+    }
+
+    private WebTestClient.BodyContentSpec post(String body) {
+        return client.post().uri("/events/batch")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(body)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody();
+    }
+
+    // Machine, factory and line ids share the event id prefix, so each test only sees its own rows
+    private static String event(String eventId, Instant eventTime, long durationMs, int defects, Instant receivedTime) {
+        String prefix = eventId.substring(0, 2);
+        return "{\"eventId\":\"" + eventId + "\",\"eventTime\":\"" + eventTime + "\",\"receivedTime\":\""
+                + receivedTime + "\",\"machineId\":\"" + prefix + "-M\",\"factoryId\":\"" + prefix + "-F\","
+                + "\"lineId\":\"" + prefix + "-L\",\"durationMs\":" + durationMs + ",\"defectCount\":" + defects + "}";
+    }
+}
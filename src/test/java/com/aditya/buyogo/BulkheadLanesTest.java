@@ -0,0 +1,153 @@
+package com.aditya.buyogo;
+
+import com.aditya.buyogo.config.Lane;
+import com.aditya.buyogo.services.Bulkheads;
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpStatus;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.web.server.ResponseStatusException;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(properties = {
+    "spring.datasource.url=jdbc:h2:mem:lanes;DB_CLOSE_DELAY=-1",
+    "buyogo.lanes.enabled=true",
+    "buyogo.lanes.scan.concurrency=1",
+    "buyogo.lanes.scan.queue-capacity=1",
+    "buyogo.lanes.scan.timeout=300ms",
+    "buyogo.lanes.scan.pool-size=1"
+})
+@AutoConfigureMockMvc
+class BulkheadLanesTest {
+
+    @Autowired
+    private Bulkheads bulkheads;
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    @Qualifier("scanDataSource")
+    private HikariDataSource scanPool;
+
+    @Autowired
+    @Qualifier("pointDataSource")
+    private HikariDataSource pointPool;
+
+    @Autowired
+    private MeterRegistry registry;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        executor.shutdown();
+    }
+
+    // Occupies the scan lane's only slot until the test ends
+    private void holdScanSlot() throws InterruptedException {
+        CountDownLatch held = new CountDownLatch(1);
+        executor.submit(() -> bulkheads.call(Lane.SCAN, () -> {
+            held.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return null;
+        }));
+        assertTrue(held.await(5, TimeUnit.SECONDS));
+    }
+
+    // Lane pools start on their first connection
+    private static int active(HikariDataSource pool) {
+        return pool.getHikariPoolMXBean() == null ? 0 : pool.getHikariPoolMXBean().getActiveConnections();
+    }
+
+    private double rejected(String reason) {
+        return registry.get("buyogo.lane.rejected").tag("lane", "scan").tag("reason", reason).counter().count();
+    }
+
+    @Test
+    void testSaturatedScanLaneRefusesWithoutBlockingPointLane() throws Exception {
+        holdScanSlot();
+        CompletableFuture<Object> queued = CompletableFuture.supplyAsync(() -> bulkheads.call(Lane.SCAN, () -> "late"), executor);
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (registry.get("buyogo.lane.queued").tag("lane", "scan").gauge().value() < 1 && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+
+        double before = rejected("queue-full");
+        ResponseStatusException full = assertThrows(ResponseStatusException.class,
+                () -> bulkheads.call(Lane.SCAN, () -> "refused"));
+        assertEquals(HttpStatus.SERVICE_UNAVAILABLE, full.getStatusCode());
+        assertEquals(before + 1, rejected("queue-full"));
+
+        assertEquals("point", bulkheads.call(Lane.POINT, () -> "point"));
+        Instant now = Instant.now();
+        mockMvc.perform(get("/states")
+                        .param("machineId", "M-LANE")
+                        .param("start", now.minusSeconds(3600).toString())
+                        .param("end", now.toString()))
+                .andExpect(status().isOk());
+
+        // The queued scan gives up after the lane timeout
+        ExecutionException late = assertThrows(ExecutionException.class, () -> queued.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(ResponseStatusException.class, late.getCause());
+    }
+
+    @Test
+    void testSlotWaitTimesOut() throws Exception {
+        holdScanSlot();
+        double before = rejected("timeout");
+        long start = System.nanoTime();
+        ResponseStatusException timedOut = assertThrows(ResponseStatusException.class,
+                () -> bulkheads.call(Lane.SCAN, () -> "late"));
+        assertEquals(HttpStatus.SERVICE_UNAVAILABLE, timedOut.getStatusCode());
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(250));
+        assertEquals(before + 1, rejected("timeout"));
+    }
+
+    @Test
+    void testLaneConnectionsComeFromTheLanePool() throws SQLException {
+        int scanActive = bulkheads.call(Lane.SCAN, () -> {
+            try (Connection ignored = dataSource.getConnection()) {
+                return active(scanPool);
+            } catch (SQLException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        assertEquals(1, scanActive);
+        assertEquals(0, active(pointPool));
+
+        // Outside any lane the shared pool is used
+        try (Connection ignored = dataSource.getConnection()) {
+            assertEquals(0, active(scanPool));
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package com.aditya.buyogo;
+
+import com.aditya.buyogo.dto.CardinalityDTO;
+import com.aditya.buyogo.dto.EventDTO;
+import com.aditya.buyogo.services.CardinalityService;
+import com.aditya.buyogo.services.CardinalityService.Metric;
+import com.aditya.buyogo.services.EventService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+// Own database, so the event-id counts see only this class's batches
+@SpringBootTest(properties = {
+    "spring.datasource.url=jdbc:h2:mem:cardinality;DB_CLOSE_DELAY=-1",
+    "buyogo.cardinality.node=node-a",
+    "buyogo.cardinality.flush-interval=PT1H"
+})
+@AutoConfigureMockMvc
+class CardinalityTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private EventService eventService;
+
+    @Autowired
+    private CardinalityService cardinalityService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void testCountsTrackExactDistinctCounts() throws Exception {
+        Instant now = Instant.now();
+        Instant hourStart = now.truncatedTo(ChronoUnit.HOURS);
+        Instant to = now.plusSeconds(1);
+        // Ids are counted by arrival hour, which the other test's batches share
+        long received = cardinalityService.count(Metric.RECEIVED, null, null, hourStart, to).getEstimate();
+        long stored = cardinalityService.count(Metric.STORED, null, null, hourStart, to).getEstimate();
+        // 300 machines over three lines of one factory, two events each; then the same batch again
+        List<EventDTO> events = new ArrayList<>();
+        for (int i = 0; i < 600; i++) {
+            events.add(TestData.eventDTO("CARD-E" + i, "CARD-M" + (i % 300), "CARD-F1", "CARD-L" + (i % 3), 0,
+                    hourStart.plusMillis(i)));
+        }
+        eventService.processEvents(events);
+        eventService.processEvents(events);
+        // 50 more ids that are received but rejected
+        List<EventDTO> rejected = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            EventDTO event = TestData.eventDTO("CARD-X" + i, "CARD-M0", "CARD-F1", "CARD-L0", 0, hourStart);
+            event.setDurationMs(-1L);
+            rejected.add(event);
+        }
+        eventService.processEvents(rejected);
+
+        assertWithin(exactMachines("factory_key", "CARD-F1", hourStart, to),
+                cardinalityService.count(Metric.MACHINES, "CARD-F1", null, hourStart, to));
+        assertWithin(exactMachines("line_key", "CARD-L1", hourStart, to),
+                cardinalityService.count(Metric.MACHINES, null, "CARD-L1", hourStart, to));
+        assertWithin(received + 650, cardinalityService.count(Metric.RECEIVED, null, null, hourStart, to));
+        assertWithin(stored + 600, cardinalityService.count(Metric.STORED, null, null, hourStart, to));
+        assertEquals(0, cardinalityService.count(Metric.MACHINES, "CARD-NOPE", null, hourStart, to).getEstimate());
+
+        // Flushed rows answer the same
+        cardinalityService.flush();
+        assertTrue(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM cardinality_sketch WHERE node = 'node-a'", Integer.class) > 0);
+        assertWithin(300, cardinalityService.count(Metric.MACHINES, "CARD-F1", null, hourStart, to));
+
+        mockMvc.perform(get("/states/cardinality").param("metric", "stored")
+                        .param("from", hourStart.toString()).param("to", to.toString()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.data.relativeStandardError").value(1.04 / 64));
+        mockMvc.perform(get("/states/cardinality").param("metric", "received").param("factoryId", "CARD-F1")
+                        .param("from", hourStart.toString()).param("to", to.toString()))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void testSketchesFromOtherNodesMerge() {
+        // An hour that is no longer current, so this node drops it from memory once flushed
+        Instant hour = Instant.now().truncatedTo(ChronoUnit.HOURS).minus(2, ChronoUnit.HOURS);
+        List<EventDTO> first = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            first.add(TestData.eventDTO("MERGE-A" + i, "MERGE-M" + i, "MERGE-F", "MERGE-L", 0, hour.plusSeconds(i)));
+        }
+        eventService.processEvents(first);
+        cardinalityService.flush();
+        // Hand those rows to another node
+        jdbcTemplate.update("UPDATE cardinality_sketch SET node = 'node-b' WHERE node = 'node-a' AND bucket_start = ?",
+                Timestamp.from(hour));
+
+        // Half overlapping machines, half new ones, counted by this node
+        List<EventDTO> second = new ArrayList<>();
+        for (int i = 50; i < 150; i++) {
+            second.add(TestData.eventDTO("MERGE-B" + i, "MERGE-M" + i, "MERGE-F", "MERGE-L", 0, hour.plusSeconds(i)));
+        }
+        eventService.processEvents(second);
+        Instant to = hour.plus(1, ChronoUnit.HOURS);
+        assertWithin(150, cardinalityService.count(Metric.MACHINES, "MERGE-F", null, hour, to));
+        cardinalityService.flush();
+        assertWithin(150, cardinalityService.count(Metric.MACHINES, "MERGE-F", null, hour, to));
+        assertEquals(0, cardinalityService.count(Metric.MACHINES, "MERGE-F", null, hour.minusSeconds(3600), hour.minusSeconds(1)).getEstimate());
+    }
+
+    private long exactMachines(String scopeColumn, String scopeId, Instant from, Instant to) {
+        return jdbcTemplate.queryForObject("""
+                SELECT COUNT(DISTINCT m.machine_key) FROM machine_event m
+                JOIN identifier_dictionary d ON d.id = m.%s
+                WHERE d.external_id = ? AND m.event_time >= ? AND m.event_time < ?""".formatted(scopeColumn),
+                Long.class, scopeId, Timestamp.from(from), Timestamp.from(to));
+    }
+
+    private static void assertWithin(long exact, CardinalityDTO counted) {
+        // Four standard errors
+        assertEquals(exact, counted.getEstimate(), Math.max(1, exact * 4 * counted.getRelativeStandardError()), counted.toString());
+    }
+}
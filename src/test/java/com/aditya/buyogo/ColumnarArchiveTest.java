@@ -0,0 +1,138 @@
+package com.aditya.buyogo;
+
+import com.aditya.buyogo.dto.StatesResponseDTO;
+import com.aditya.buyogo.dto.TopDefectLineDTO;
+import com.aditya.buyogo.repo.ColumnarArchive;
+import com.aditya.buyogo.services.ArchiveService;
+import com.aditya.buyogo.services.EventExportService;
+import com.aditya.buyogo.services.EventService;
+import com.aditya.buyogo.services.StateService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = {
+    "spring.datasource.url=jdbc:h2:mem:archive;DB_CLOSE_DELAY=-1",
+    "buyogo.archive.enabled=true",
+    "buyogo.archive.max-rows-per-file=3"
+})
+class ColumnarArchiveTest {
+    private static final Path DIRECTORY = createDirectory();
+
+    @DynamicPropertySource
+    static void archiveDirectory(DynamicPropertyRegistry registry) {
+        registry.add("buyogo.archive.directory", DIRECTORY::toString);
+    }
+
+    private static Path createDirectory() {
+        try {
+            return Files.createTempDirectory("buyogo-archive");
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Autowired
+    private EventService eventService;
+
+    @Autowired
+    private StateService stateService;
+
+    @Autowired
+    private EventExportService exportService;
+
+    @Autowired
+    private ArchiveService archiveService;
+
+    @Autowired
+    private ColumnarArchive archive;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private String export(Instant from, Instant to) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        exportService.export("F-ARC", from, to, out);
+        String[] lines = out.toString(StandardCharsets.UTF_8).split("\n");
+        Arrays.sort(lines);
+        return String.join("\n", lines);
+    }
+
+    private static String describe(List<TopDefectLineDTO> lines) {
+        List<String> described = new ArrayList<>();
+        for (TopDefectLineDTO line : lines) {
+            described.add(line.getLineId() + ":" + line.getTotalDefects() + "/" + line.getEventCount());
+        }
+        return String.join(",", described);
+    }
+
+    @Test
+    void testArchivedDaysStillAnswerStatesTopLinesAndExport() {
+        LocalDate today = Instant.now().atZone(ZoneOffset.UTC).toLocalDate();
+        Instant day1 = today.minusDays(40).atStartOfDay(ZoneOffset.UTC).toInstant().plusSeconds(3600);
+        Instant day2 = day1.plusSeconds(86_400);
+        Instant recent = Instant.now().minusSeconds(3600);
+        eventService.processEvents(List.of(
+                TestData.eventDTO("ARC-1", "ARC-M1", "F-ARC", "ARC-L1", 2, day1),
+                TestData.eventDTO("ARC-2", "ARC-M1", "F-ARC", "ARC-L1", -1, day1.plusMillis(250)),
+                TestData.eventDTO("ARC-3", "ARC-M2", "F-ARC", "ARC-L2", 5, day1.plusSeconds(60)),
+                TestData.eventDTO("ARC-4", "ARC-M1", "F-ARC", "ARC-L2", 1, day1.plusSeconds(120)),
+                TestData.eventDTO("ARC-5", "ARC-M1", "F-ARC", "ARC-L1", 3, day2),
+                TestData.eventDTO("ARC-6", "ARC-M1", "F-ARC", "ARC-L1", 4, recent)));
+
+        Instant from = day1.minusSeconds(86_400);
+        Instant to = Instant.now();
+        StatesResponseDTO statesBefore = stateService.getEventByMachineIdAndDateBetween("ARC-M1", from, to);
+        String linesBefore = describe(stateService.getTopDefectLines("F-ARC", from, to, 10));
+        String exportBefore = export(from, to);
+        assertEquals(6, exportBefore.split("\n").length);
+
+        long moved = archiveService.archiveBefore(today.minusDays(30));
+
+        assertEquals(5, moved);
+        assertEquals(1, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM machine_event WHERE event_id LIKE 'ARC-%'", Integer.class));
+        // Day 1 holds four rows and files hold at most three
+        assertEquals(3, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM archive_file", Integer.class));
+        assertEquals(3, archive.fileCount());
+
+        StatesResponseDTO statesAfter = stateService.getEventByMachineIdAndDateBetween("ARC-M1", from, to);
+        assertEquals(statesBefore.getEventsCount(), statesAfter.getEventsCount());
+        assertEquals(statesBefore.getDefectsCount(), statesAfter.getDefectsCount());
+        assertEquals(5, statesAfter.getEventsCount());
+        assertEquals(10, statesAfter.getDefectsCount());
+        assertEquals(linesBefore, describe(stateService.getTopDefectLines("F-ARC", from, to, 10)));
+        assertEquals(exportBefore, export(from, to));
+
+        // A window that only touches day 2 skips the day 1 files and counts just its own row
+        StatesResponseDTO day2Only = stateService.getEventByMachineIdAndDateBetween("ARC-M1", day2.minusSeconds(1), day2);
+        assertEquals(1, day2Only.getEventsCount());
+        assertEquals(3, day2Only.getDefectsCount());
+    }
+
+    @Test
+    void testStartupKeepsOnlyCommittedTempFiles() throws IOException {
+        Path orphan = DIRECTORY.resolve("events-20200101-0001.col.tmp");
+        Files.write(orphan, new byte[]{1, 2, 3});
+
+        archive.open();
+
+        assertFalse(Files.exists(orphan));
+    }
+}
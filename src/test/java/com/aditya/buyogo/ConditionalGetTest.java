@@ -0,0 +1,137 @@
+package com.aditya.buyogo;
+
+import com.aditya.buyogo.config.LaneProperties;
+import com.aditya.buyogo.config.RoutingProperties;
+import com.aditya.buyogo.config.ShardingProperties;
+import com.aditya.buyogo.dto.EventDTO;
+import com.aditya.buyogo.services.DataVersions;
+import com.aditya.buyogo.services.EventService;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(properties = "buyogo.etags.enabled=true")
+@AutoConfigureMockMvc
+class ConditionalGetTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private EventService eventService;
+
+    @Autowired
+    private DataVersions dataVersions;
+
+    @Autowired
+    private MeterRegistry registry;
+
+    private final Instant now = Instant.now().truncatedTo(ChronoUnit.SECONDS);
+
+    @Test
+    void testMachineStatesAnswer304UntilTheMachineIsWritten() throws Exception {
+        eventService.processEvents(List.of(
+                TestData.eventDTO("ETAG-1", "ETAG-M1", "ETAG-F1", "ETAG-F1-L", 2, now.minusSeconds(60))));
+        String etag = etagOf(states("ETAG-M1"));
+        double queries = queries("machine-states");
+
+        // Nothing written for the machine: no query runs
+        mockMvc.perform(states("ETAG-M1").header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isNotModified())
+                .andExpect(content().string(""));
+        assertEquals(queries, queries("machine-states"));
+
+        // Another machine's batch leaves the tag current; a tag for another window never matches
+        eventService.processEvents(List.of(
+                TestData.eventDTO("ETAG-2", "ETAG-M2", "ETAG-F1", "ETAG-F1-L", 1, now.minusSeconds(60))));
+        mockMvc.perform(states("ETAG-M1").header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isNotModified());
+        mockMvc.perform(get("/states").param("machineId", "ETAG-M1")
+                        .param("start", now.minusSeconds(7200).toString()).param("end", now.toString())
+                        .header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isOk());
+
+        eventService.processEvents(List.of(
+                TestData.eventDTO("ETAG-3", "ETAG-M1", "ETAG-F1", "ETAG-F1-L", 3, now.minusSeconds(60))));
+        String changed = mockMvc.perform(states("ETAG-M1").header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.data.eventsCount").value(2))
+                .andExpect(jsonPath("$.data.defectsCount").value(5))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        assertNotEquals(etag, changed);
+
+        // Rows leaving without a batch change every tag
+        dataVersions.invalidateAll();
+        mockMvc.perform(states("ETAG-M1").header(HttpHeaders.IF_NONE_MATCH, changed))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    void testTopDefectLinesFollowTheFactoryOnBothSidesOfAnUpdate() throws Exception {
+        EventDTO original = TestData.eventDTO("ETAG-MOVE", "ETAG-M3", "ETAG-F2", "ETAG-F2-L", 4, now.minusSeconds(60));
+        eventService.processEvents(List.of(original));
+        String before = etagOf(topLines("ETAG-F2"));
+        String other = etagOf(topLines("ETAG-F3"));
+
+        // A newer payload moves the event to another factory: both factories change
+        EventDTO moved = TestData.eventDTO("ETAG-MOVE", "ETAG-M3", "ETAG-F3", "ETAG-F3-L", 4, now.minusSeconds(60));
+        moved.setReceivedTime(original.getReceivedTime().plusSeconds(1));
+        assertEquals(1, eventService.processEvents(List.of(moved)).getUpdated());
+        mockMvc.perform(topLines("ETAG-F2").header(HttpHeaders.IF_NONE_MATCH, before))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.data").isEmpty());
+        mockMvc.perform(topLines("ETAG-F3").header(HttpHeaders.IF_NONE_MATCH, other))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.data[0].totalDefects").value(4));
+    }
+
+    @Test
+    void testRefusedWhereOtherWritersOrReplicasGoUnseen() {
+        RoutingProperties routing = new RoutingProperties();
+        routing.setEnabled(true);
+        ShardingProperties sharding = new ShardingProperties();
+        sharding.setEnabled(true);
+        LaneProperties lanes = new LaneProperties();
+        lanes.setEnabled(true);
+        assertThrows(IllegalStateException.class, () -> new DataVersions(routing, new ShardingProperties(), new LaneProperties()));
+        assertThrows(IllegalStateException.class, () -> new DataVersions(new RoutingProperties(), sharding, new LaneProperties()));
+        assertThrows(IllegalStateException.class, () -> new DataVersions(new RoutingProperties(), new ShardingProperties(), lanes));
+    }
+
+    private String etagOf(MockHttpServletRequestBuilder request) throws Exception {
+        String etag = mockMvc.perform(request)
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        assertNotNull(etag);
+        return etag;
+    }
+
+    private MockHttpServletRequestBuilder states(String machineId) {
+        return get("/states").param("machineId", machineId)
+                .param("start", now.minusSeconds(3600).toString()).param("end", now.toString());
+    }
+
+    private MockHttpServletRequestBuilder topLines(String factoryId) {
+        return get("/states/top-defect-lines").param("factoryId", factoryId)
+                .param("from", now.minusSeconds(3600).toString()).param("to", now.toString()).param("limit", "10");
+    }
+
+    private double queries(String endpoint) {
+        return registry.get("buyogo.state.query").tag("endpoint", endpoint).timer().count();
+    }
+}
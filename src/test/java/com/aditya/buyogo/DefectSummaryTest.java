@@ -0,0 +1,98 @@
+package com.aditya.buyogo;
+
+import com.aditya.buyogo.services.DefectSummaryService;
+import com.aditya.buyogo.services.EventService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+// Refreshed only when the test says so: the interval is long and ingestion never triggers it
+@SpringBootTest(properties = {
+    "buyogo.summaries.enabled=true",
+    "buyogo.etags.enabled=true",
+    "buyogo.summaries.refresh-interval=PT1H",
+    "buyogo.summaries.refresh-after-events=0"
+})
+@AutoConfigureMockMvc
+class DefectSummaryTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private EventService eventService;
+
+    @Autowired
+    private DefectSummaryService summaries;
+
+    private final Instant hour = Instant.now().truncatedTo(ChronoUnit.HOURS);
+
+    @Test
+    void testWholeHoursComeFromTheSummaryAndTheEdgesLive() throws Exception {
+        eventService.processEvents(List.of(
+                // Before the first whole hour of the window, so read live
+                TestData.eventDTO("SUM-1", "SUM-M1", "SUM-F", "SUM-L1", 2, hour.minusSeconds(3 * 3600 - 1800)),
+                // Two whole hours, from the summary
+                TestData.eventDTO("SUM-2", "SUM-M1", "SUM-F", "SUM-L1", 3, hour.minusSeconds(2 * 3600 - 300)),
+                TestData.eventDTO("SUM-3", "SUM-M1", "SUM-F", "SUM-L2", 4, hour.minusSeconds(3600 - 300)),
+                // The current hour, read live
+                TestData.eventDTO("SUM-4", "SUM-M1", "SUM-F", "SUM-L2", 2, hour),
+                // Negative counts are left out, as by the base query
+                TestData.eventDTO("SUM-5", "SUM-M1", "SUM-F", "SUM-L2", -1, hour.minusSeconds(3600 - 600))));
+        summaries.refresh();
+
+        // A late event in a summarized hour is only counted after the next refresh
+        eventService.processEvents(List.of(
+                TestData.eventDTO("SUM-6", "SUM-M1", "SUM-F", "SUM-L1", 5, hour.minusSeconds(3600 - 1800))));
+        String etag = mockMvc.perform(topLines())
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.data[0].lineId").value("SUM-L2"))
+                .andExpect(jsonPath("$.data[0].totalDefects").value(6))
+                .andExpect(jsonPath("$.data[0].eventCount").value(2))
+                .andExpect(jsonPath("$.data[1].lineId").value("SUM-L1"))
+                .andExpect(jsonPath("$.data[1].totalDefects").value(5))
+                .andExpect(jsonPath("$.dataAsOf").exists())
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        Instant firstAsOf = summaries.asOf();
+        assertFalse(firstAsOf.isBefore(hour));
+
+        summaries.refresh();
+        assertTrue(summaries.asOf().isAfter(firstAsOf));
+        // The refresh changes the answer without a write, so the old ETag no longer matches
+        mockMvc.perform(topLines().header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.data[0].lineId").value("SUM-L1"))
+                .andExpect(jsonPath("$.data[0].totalDefects").value(10))
+                .andExpect(jsonPath("$.data[0].eventCount").value(3))
+                .andExpect(jsonPath("$.data[1].totalDefects").value(6));
+
+        // No whole hour in the window: read live, so no dataAsOf
+        mockMvc.perform(get("/states/top-defect-lines").param("factoryId", "SUM-F")
+                        .param("from", hour.minusSeconds(3600 - 60).toString())
+                        .param("to", hour.minusSeconds(3600 - 3000).toString())
+                        .param("limit", "10"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.data[0].totalDefects").value(5))
+                .andExpect(jsonPath("$.dataAsOf").doesNotExist());
+    }
+
+    private MockHttpServletRequestBuilder topLines() {
+        return get("/states/top-defect-lines").param("factoryId", "SUM-F")
+                .param("from", hour.minusSeconds(3 * 3600 - 600).toString())
+                .param("to", hour.plusSeconds(3600).toString())
+                .param("limit", "10");
+    }
+}
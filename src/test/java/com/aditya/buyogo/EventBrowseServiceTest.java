@@ -0,0 +1,122 @@
+package com.aditya.buyogo;
+
+import com.aditya.buyogo.dto.EventDTO;
+import com.aditya.buyogo.dto.EventPageDTO;
+import com.aditya.buyogo.models.MachineEvent;
+import com.aditya.buyogo.repo.EventFilter;
+import com.aditya.buyogo.repo.IdentifierDictionary;
+import com.aditya.buyogo.repo.MachineEventRepository;
+import com.aditya.buyogo.services.EventBrowseService;
+import com.aditya.buyogo.utils.EventCursor;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest
+@Import({EventBrowseService.class, IdentifierDictionary.class})
+@TestPropertySource(properties = {
+    "spring.jpa.hibernate.ddl-auto=create-drop",
+    "spring.datasource.url=jdbc:h2:mem:testdb"
+})
+class EventBrowseServiceTest {
+
+    @Autowired
+    private MachineEventRepository repository;
+
+    @Autowired
+    private EventBrowseService eventBrowseService;
+
+    private Instant baseTime;
+
+    @BeforeEach
+    void setUp() {
+        baseTime = Instant.parse("2024-01-14T10:00:00Z");
+        List<MachineEvent> events = new ArrayList<>();
+        for (int i = 0; i < 250; i++) {
+            // Pairs of events share an eventTime so the eventId tie-breaker is exercised
+            MachineEvent event = TestData.eventAt(String.format("EVT_%04d", i), baseTime.plusSeconds(i / 2));
+            event.setMachineId(i % 5 == 0 ? "M2" : "M1");
+            events.add(event);
+        }
+        repository.saveAll(events);
+    }
+
+    @Test
+    void testPagesCoverRangeInKeysetOrderWithoutDuplicates() {
+        EventFilter filter = filter("M1", baseTime, baseTime.plusSeconds(3600));
+
+        List<EventDTO> seen = new ArrayList<>();
+        String cursor = null;
+        int pages = 0;
+        do {
+            EventPageDTO page = eventBrowseService.getEvents(filter, cursor, 60);
+            assertTrue(page.getEvents().size() <= 60);
+            seen.addAll(page.getEvents());
+            cursor = page.getNextCursor();
+            assertEquals(page.isHasMore(), cursor != null);
+            pages++;
+        } while (cursor != null);
+
+        assertEquals(200, seen.size());
+        assertEquals(4, pages);
+        Set<String> ids = new HashSet<>();
+        for (int i = 0; i < seen.size(); i++) {
+            EventDTO current = seen.get(i);
+            assertEquals("M1", current.getMachineId());
+            assertTrue(ids.add(current.getEventId()));
+            if (i > 0) {
+                EventDTO previous = seen.get(i - 1);
+                int byTime = previous.getEventTime().compareTo(current.getEventTime());
+                assertTrue(byTime < 0 || (byTime == 0 && previous.getEventId().compareTo(current.getEventId()) < 0));
+            }
+        }
+    }
+
+    @Test
+    void testTimeRangeIsInclusiveExclusive() {
+        EventPageDTO page = eventBrowseService.getEvents(
+                filter("M2", baseTime.plusSeconds(10), baseTime.plusSeconds(20)), null, 1000);
+
+        // M2 owns every fifth event; seconds 10..19 cover events 20..39
+        assertEquals(4, page.getEvents().size());
+        assertFalse(page.isHasMore());
+        assertNull(page.getNextCursor());
+    }
+
+    @Test
+    void testCursorRoundTrip() {
+        EventCursor cursor = new EventCursor(baseTime.plusNanos(123), "EVT|0001");
+        assertEquals(cursor, EventCursor.decode(cursor.encode()));
+    }
+
+    @Test
+    void testInvalidCursorRejected() {
+        EventFilter filter = filter("M1", baseTime, baseTime.plusSeconds(3600));
+        assertThrows(ResponseStatusException.class, () -> eventBrowseService.getEvents(filter, "not-a-cursor", 10));
+        String outOfRange = Base64.getUrlEncoder().withoutPadding()
+                .encodeToString((Long.MAX_VALUE + ":0|EVT001").getBytes(StandardCharsets.UTF_8));
+        assertThrows(ResponseStatusException.class, () -> eventBrowseService.getEvents(filter, outOfRange, 10));
+    }
+
+    private EventFilter filter(String machineId, Instant from, Instant to) {
+        EventFilter filter = new EventFilter();
+        filter.setMachineId(machineId);
+        filter.setFrom(from);
+        filter.setTo(to);
+        return filter;
+    }
+}
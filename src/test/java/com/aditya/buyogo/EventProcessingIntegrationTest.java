@@ -4,6 +4,7 @@ import com.aditya.buyogo.dto.BatchResponseDTO;
 import com.aditya.buyogo.dto.EventDTO;
 import com.aditya.buyogo.dto.StatesResponseDTO;
 import com.aditya.buyogo.models.MachineEvent;
+import com.aditya.buyogo.repo.IdentifierDictionary;
 import com.aditya.buyogo.repo.MachineEventRepository;
 import com.aditya.buyogo.services.EventService;
 import com.aditya.buyogo.services.StateService;
@@ -11,6 +12,7 @@ import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Import;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
 import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
 import org.springframework.test.context.TestPropertySource;
@@ -25,6 +27,7 @@ import java.util.concurrent.atomic.AtomicInteger;
 import static org.junit.jupiter.api.Assertions.*;
 
 @DataJpaTest
+@Import(IdentifierDictionary.class)
 @TestPropertySource(properties = {
     "spring.jpa.hibernate.ddl-auto=create-drop",
     "spring.datasource.url=jdbc:h2:mem:testdb"
@@ -37,6 +40,9 @@ class EventProcessingIntegrationTest {
     @Autowired
     private MachineEventRepository repository;
 
+    @Autowired
+    private IdentifierDictionary dictionary;
+
     private EventService eventService;
     private StateService stateService;
 
@@ -50,6 +56,9 @@ class EventProcessingIntegrationTest {
             java.lang.reflect.Field repoField = EventService.class.getDeclaredField("repo");
             repoField.setAccessible(true);
             repoField.set(eventService, repository);
+            java.lang.reflect.Field dictionaryField = EventService.class.getDeclaredField("dictionary");
+            dictionaryField.setAccessible(true);
+            dictionaryField.set(eventService, dictionary);
         } catch (Exception e) {
             throw new RuntimeException(e);
         }
@@ -4,6 +4,7 @@ import com.aditya.buyogo.dto.BatchResponseDTO;
 import com.aditya.buyogo.dto.EventDTO;
 import com.aditya.buyogo.dto.RejectionDTO;
 import com.aditya.buyogo.models.MachineEvent;
+import com.aditya.buyogo.repo.IdentifierDictionary;
 import com.aditya.buyogo.repo.MachineEventRepository;
 import com.aditya.buyogo.services.EventService;
 import org.junit.jupiter.api.BeforeEach;
@@ -16,12 +17,11 @@ import org.mockito.junit.jupiter.MockitoExtension;
 import java.time.Instant;
 import java.util.Arrays;
 import java.util.List;
-import java.util.Optional;
 import java.util.concurrent.*;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
-import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.anyCollection;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -30,6 +30,9 @@ class EventServiceTest {
     @Mock
     private MachineEventRepository repository;
 
+    @Mock
+    private IdentifierDictionary dictionary;
+
     @InjectMocks
     private EventService eventService;
 
@@ -53,7 +56,7 @@ class EventServiceTest {
         MachineEvent existingEvent = TestData.event(eventId, 5, baseTime);
         existingEvent.setPayloadHash(event.getPayloadHash()); // Use same hash
         
-        when(repository.findByEventId(eventId)).thenReturn(Optional.of(existingEvent));
+        when(repository.findByEventIdIn(List.of(eventId))).thenReturn(List.of(existingEvent));
 
         // Act
         BatchResponseDTO response = eventService.processEvents(List.of(event));
@@ -81,7 +84,7 @@ class EventServiceTest {
         existingEvent.setReceivedTime(oldReceivedTime);
         existingEvent.setPayloadHash("oldHash123");
         
-        when(repository.findByEventId(eventId)).thenReturn(Optional.of(existingEvent));
+        when(repository.findByEventIdIn(List.of(eventId))).thenReturn(List.of(existingEvent));
         when(repository.saveAll(any())).thenReturn(List.of());
 
         // Act
@@ -110,7 +113,7 @@ class EventServiceTest {
         existingEvent.setReceivedTime(newReceivedTime);
         existingEvent.setPayloadHash("newHash456");
         
-        when(repository.findByEventId(eventId)).thenReturn(Optional.of(existingEvent));
+        when(repository.findByEventIdIn(List.of(eventId))).thenReturn(List.of(existingEvent));
 
         // Act
         BatchResponseDTO response = eventService.processEvents(List.of(olderEvent));
@@ -179,8 +182,7 @@ class EventServiceTest {
         EventDTO eventWithNegativeDefect = TestData.eventDTO(eventId1, -1, baseTime);
         EventDTO eventWithPositiveDefect = TestData.eventDTO(eventId2, 5, baseTime);
         
-        when(repository.findByEventId(eventId1)).thenReturn(Optional.empty());
-        when(repository.findByEventId(eventId2)).thenReturn(Optional.empty());
+        when(repository.findByEventIdIn(anyCollection())).thenReturn(List.of());
         when(repository.saveAll(any())).thenReturn(List.of());
 
         // Act
@@ -214,7 +216,7 @@ class EventServiceTest {
         // Event just after end
         EventDTO eventAfterEnd = TestData.eventDTO("EVT012", 1, end.plusMillis(1));
         
-        when(repository.findByEventId(anyString())).thenReturn(Optional.empty());
+        when(repository.findByEventIdIn(anyCollection())).thenReturn(List.of());
         when(repository.saveAll(any())).thenReturn(List.of());
 
         // Act
@@ -234,7 +236,7 @@ class EventServiceTest {
         int eventsPerThread = 5;
         ExecutorService executor = Executors.newFixedThreadPool(threadCount);
         
-        when(repository.findByEventId(anyString())).thenReturn(Optional.empty());
+        when(repository.findByEventIdIn(anyCollection())).thenReturn(List.of());
         when(repository.saveAll(any())).thenReturn(List.of());
 
         // Act - Process events concurrently
@@ -288,8 +290,7 @@ class EventServiceTest {
         duplicateEvent.setPayloadHash(existingEvent.getPayloadHash());
         
         // Setup mocks - general first, then specific overrides
-        when(repository.findByEventId(anyString())).thenReturn(Optional.empty());
-        when(repository.findByEventId("EVT017")).thenReturn(Optional.of(existingEvent));
+        when(repository.findByEventIdIn(anyCollection())).thenReturn(List.of(existingEvent));
         when(repository.saveAll(any())).thenReturn(List.of());
 
         // Act
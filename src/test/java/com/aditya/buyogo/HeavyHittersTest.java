@@ -0,0 +1,129 @@
+package com.aditya.buyogo;
+
+import com.aditya.buyogo.dto.EventDTO;
+import com.aditya.buyogo.dto.HeavyHitterDTO;
+import com.aditya.buyogo.dto.HeavyHittersDTO;
+import com.aditya.buyogo.repo.IdentifierDictionary.Kind;
+import com.aditya.buyogo.services.EventService;
+import com.aditya.buyogo.services.HeavyHittersService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+// A small capacity, so the 40 machines below overflow the summaries and the bounds matter
+@SpringBootTest(properties = "buyogo.heavy-hitters.capacity=8")
+@AutoConfigureMockMvc
+class HeavyHittersTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private EventService eventService;
+
+    @Autowired
+    private HeavyHittersService heavyHitters;
+
+    @Test
+    void testSketchBoundsTheExactTotalsAndFollowsUpdates() throws Exception {
+        awaitSeeded();
+        Instant now = Instant.now();
+        Instant from = now.minusSeconds(3 * 3600);
+        // Three heavy machines over two hours, then 37 light ones
+        List<EventDTO> events = new ArrayList<>();
+        for (int i = 0; i < 30; i++) {
+            Instant time = now.minusSeconds(7200 - i * 200L);
+            events.add(TestData.eventDTO("HH-A-" + i, "HH-M0", "HH-F", "HH-L0", 5, time));
+            events.add(TestData.eventDTO("HH-B-" + i, "HH-M1", "HH-F", "HH-L1", 4, time));
+            events.add(TestData.eventDTO("HH-C-" + i, "HH-M2", "HH-F", "HH-L1", 3, time));
+        }
+        for (int m = 3; m < 40; m++) {
+            events.add(TestData.eventDTO("HH-D-" + m, "HH-M" + m, "HH-F", "HH-L" + (m % 5), 1 + m % 3, now.minusSeconds(60L * m)));
+        }
+        eventService.processEvents(events);
+
+        HeavyHittersDTO sketch = heavyHitters.approximate(Kind.MACHINE, "HH-F", from, now, 3);
+        HeavyHittersDTO exact = heavyHitters.exact(Kind.MACHINE, "HH-F", from, now, 40);
+        assertEquals("sketch", sketch.getSource());
+        assertEquals(List.of("HH-M0", "HH-M1", "HH-M2"), ids(sketch));
+        assertTrue(sketch.getEntries().stream().allMatch(HeavyHitterDTO::isGuaranteed), sketch.toString());
+        assertEquals(List.of("HH-M0", "HH-M1", "HH-M2"), ids(exact).subList(0, 3));
+        assertEquals(40, exact.getEntries().size());
+
+        // Every id's exact total sits within the sketch's bounds for it
+        Map<String, HeavyHitterDTO> estimates = heavyHitters.approximate(Kind.MACHINE, "HH-F", from, now, 40)
+                .getEntries().stream().collect(Collectors.toMap(HeavyHitterDTO::getId, entry -> entry));
+        for (HeavyHitterDTO actual : exact.getEntries()) {
+            HeavyHitterDTO estimate = estimates.get(actual.getId());
+            if (estimate == null) {
+                assertTrue(actual.getTotalDefects() <= sketch.getUnlistedMaxDefects(), actual.toString());
+            } else {
+                assertTrue(estimate.getMinDefects() <= actual.getTotalDefects(), estimate + " vs " + actual);
+                assertTrue(estimate.getTotalDefects() >= actual.getTotalDefects(), estimate + " vs " + actual);
+            }
+        }
+
+        // Corrections clear the worst machine; its defects come back out of the summaries
+        Thread.sleep(5);
+        List<EventDTO> corrections = new ArrayList<>();
+        for (int i = 0; i < 30; i++) {
+            corrections.add(TestData.eventDTO("HH-A-" + i, "HH-M0", "HH-F", "HH-L0", 0, now.minusSeconds(7200 - i * 200L)));
+        }
+        eventService.processEvents(corrections);
+        assertEquals(List.of("HH-M1", "HH-M2"), ids(heavyHitters.approximate(Kind.MACHINE, "HH-F", from, now, 2)));
+        assertEquals(List.of("HH-L1"), ids(heavyHitters.approximate(Kind.LINE, "HH-F", from, now, 1)));
+        assertEquals(List.of("HH-L1"), ids(heavyHitters.exact(Kind.LINE, "HH-F", from, now, 1)));
+    }
+
+    @Test
+    void testEndpointFallsBackToTheDatabase() throws Exception {
+        awaitSeeded();
+        Instant now = Instant.now();
+        eventService.processEvents(List.of(
+                TestData.eventDTO("HH-E-1", "HH-EM1", "HH-F", "HH-EL1", 7, now.minusSeconds(600))));
+
+        mockMvc.perform(get("/states/heavy-hitters").param("dimension", "line").param("factoryId", "HH-F")
+                        .param("from", now.minusSeconds(3600).toString()).param("to", now.toString()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.data.source").value("sketch"));
+        // Past retention, or asked for
+        mockMvc.perform(get("/states/heavy-hitters").param("factoryId", "HH-F")
+                        .param("from", now.minusSeconds(48 * 3600).toString()).param("to", now.toString()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.data.source").value("exact"));
+        mockMvc.perform(get("/states/heavy-hitters").param("exact", "true")
+                        .param("from", now.minusSeconds(3600).toString()).param("to", now.toString()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.data.source").value("exact"));
+        mockMvc.perform(get("/states/heavy-hitters").param("dimension", "factory")
+                        .param("from", now.minusSeconds(3600).toString()).param("to", now.toString()))
+                .andExpect(status().isBadRequest());
+    }
+
+    private void awaitSeeded() throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (!heavyHitters.isSeeded()) {
+            if (System.currentTimeMillis() > deadline) {
+                fail("Heavy-hitter summaries were not seeded");
+            }
+            Thread.sleep(20);
+        }
+    }
+
+    private static List<String> ids(HeavyHittersDTO response) {
+        return response.getEntries().stream().map(HeavyHitterDTO::getId).toList();
+    }
+}
@@ -0,0 +1,80 @@
+package com.aditya.buyogo;
+
+import com.aditya.buyogo.models.MachineEvent;
+import com.aditya.buyogo.repo.IdentifierDictionary;
+import com.aditya.buyogo.repo.IdentifierDictionary.Kind;
+import com.aditya.buyogo.repo.MachineEventRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.Instant;
+import java.util.HexFormat;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest
+@Import(IdentifierDictionary.class)
+class IdentifierDictionaryTest {
+
+    @Autowired
+    private IdentifierDictionary dictionary;
+
+    @Autowired
+    private MachineEventRepository repository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void testRegisterIsIdempotentAndRoundTrips() {
+        int key = dictionary.register(Kind.MACHINE, "DICT-M-1");
+
+        assertEquals(key, dictionary.register(Kind.MACHINE, "DICT-M-1"));
+        assertEquals(key, dictionary.keyOf(Kind.MACHINE, "DICT-M-1"));
+        assertEquals("DICT-M-1", dictionary.valueOf(key));
+    }
+
+    @Test
+    void testSameValueGetsSeparateKeysPerKind() {
+        int machineKey = dictionary.register(Kind.MACHINE, "DICT-SHARED");
+        int lineKey = dictionary.register(Kind.LINE, "DICT-SHARED");
+
+        assertNotEquals(machineKey, lineKey);
+        assertEquals("DICT-SHARED", dictionary.valueOf(lineKey));
+    }
+
+    @Test
+    void testQueryingUnknownIdDoesNotGrowDictionary() {
+        int before = dictionarySize();
+
+        assertEquals(IdentifierDictionary.UNKNOWN_KEY, dictionary.keyOf(Kind.MACHINE, "DICT-NEVER-SEEN"));
+        assertTrue(repository.findByMachineIdAndEventTimeBetween("DICT-NEVER-SEEN",
+                Instant.EPOCH, Instant.now()).isEmpty());
+
+        assertEquals(before, dictionarySize());
+    }
+
+    @Test
+    void testSavingEventStoresKeysAndRawHash() {
+        MachineEvent event = TestData.event("DICT-EVT-1", 2);
+        event.setMachineId("DICT-M-SAVE");
+        repository.saveAndFlush(event);
+
+        Map<String, Object> row = jdbcTemplate.queryForMap(
+                "SELECT machine_key, payload_hash FROM machine_event WHERE event_id = 'DICT-EVT-1'");
+        assertEquals(dictionary.keyOf(Kind.MACHINE, "DICT-M-SAVE"), ((Number) row.get("MACHINE_KEY")).intValue());
+        assertArrayEquals(HexFormat.of().parseHex(event.getPayloadHash()), (byte[]) row.get("PAYLOAD_HASH"));
+
+        MachineEvent stored = repository.findByEventId("DICT-EVT-1").orElseThrow();
+        assertEquals("DICT-M-SAVE", stored.getMachineId());
+        assertEquals(event.getPayloadHash(), stored.getPayloadHash());
+    }
+
+    private int dictionarySize() {
+        return jdbcTemplate.queryForObject("SELECT count(*) FROM identifier_dictionary", Integer.class);
+    }
+}
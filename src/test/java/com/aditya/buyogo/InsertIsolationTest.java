@@ -0,0 +1,140 @@
+package com.aditya.buyogo;
+
+import com.aditya.buyogo.dto.BatchResponseDTO;
+import com.aditya.buyogo.dto.EventDTO;
+import com.aditya.buyogo.dto.RejectionDTO;
+import com.aditya.buyogo.models.MachineEvent;
+import com.aditya.buyogo.repo.IdentifierDictionary;
+import com.aditya.buyogo.repo.MachineEventRepository;
+import com.aditya.buyogo.services.EventService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+
+// Uses in-memory H2 by default, where event_id is unique on its own. Point it at a local Postgres with
+// -Dbuyogo.insert-test.url=jdbc:postgresql://localhost:5432/buyogo_insert_test (plus .username/.password)
+// to check the partitioned table, whose unique key also holds event_time.
+@SpringBootTest
+class InsertIsolationTest {
+
+    @DynamicPropertySource
+    static void postgresOverride(DynamicPropertyRegistry registry) {
+        String url = System.getProperty("buyogo.insert-test.url");
+        if (url != null) {
+            registry.add("spring.datasource.url", () -> url);
+            registry.add("spring.datasource.driver-class-name", () -> "org.postgresql.Driver");
+            registry.add("spring.datasource.username", () -> System.getProperty("buyogo.insert-test.username", "postgres"));
+            registry.add("spring.datasource.password", () -> System.getProperty("buyogo.insert-test.password", ""));
+        }
+    }
+
+    @Autowired
+    private EventService eventService;
+
+    @Autowired
+    private MachineEventRepository repository;
+
+    @SpyBean
+    private IdentifierDictionary dictionary;
+
+    @Test
+    void testRefusedRowsAreRejectedAloneAndTheRestCommits() {
+        Instant eventTime = Instant.now().minusSeconds(60);
+        String prefix = "ISO-BAD-" + System.nanoTime() + "-";
+        List<EventDTO> batch = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            batch.add(TestData.eventDTO(prefix + i, 1, eventTime));
+        }
+        // Passes validation, but event_id is VARCHAR(255)
+        batch.get(3).setEventId(prefix + "x".repeat(300));
+        batch.get(8).setEventId(prefix + "y".repeat(300));
+
+        BatchResponseDTO response = eventService.processEvents(batch);
+
+        assertEquals(8, response.getAccepted());
+        assertEquals(2, response.getRejected());
+        assertEquals(List.of("INVALID_VALUE", "INVALID_VALUE"),
+                response.getRejections().stream().map(RejectionDTO::getReason).toList());
+        assertEquals(8, repository.findByEventIdIn(batch.stream().map(EventDTO::getEventId).toList()).size());
+    }
+
+    @Test
+    void testRowsStoredConcurrentlyAreDecidedAgainWithoutFailingTheBatch() throws Exception {
+        Instant eventTime = Instant.now().minusSeconds(60);
+        String prefix = "ISO-RACE-" + System.nanoTime() + "-";
+        EventDTO same = TestData.eventDTO(prefix + "same", 2, eventTime);
+        EventDTO newer = TestData.eventDTO(prefix + "newer", 7, eventTime);
+        EventDTO fresh = TestData.eventDTO(prefix + "fresh", 1, eventTime);
+        // Another node stores the same event, and an older version of another, right after our lookup
+        EventDTO sameElsewhere = TestData.eventDTO(same.getEventId(), 2, eventTime);
+        sameElsewhere.setReceivedTime(same.getReceivedTime());
+        EventDTO olderElsewhere = TestData.eventDTO(newer.getEventId(), 3, eventTime);
+        olderElsewhere.setReceivedTime(newer.getReceivedTime().minusSeconds(5));
+        // insertNew registers each row's ids just before the insert batch, after the dedup lookup
+        AtomicReference<BatchResponseDTO> elsewhere = new AtomicReference<>();
+        doAnswer(invocation -> {
+            if (elsewhere.get() == null && fresh.getEventId().equals(((MachineEvent) invocation.getArgument(0)).getEventId())) {
+                elsewhere.set(CompletableFuture.supplyAsync(() -> eventService.processEvents(List.of(sameElsewhere, olderElsewhere)))
+                        .get(10, TimeUnit.SECONDS));
+            }
+            return invocation.callRealMethod();
+        }).when(dictionary).registerAll(any(MachineEvent.class));
+
+        BatchResponseDTO response = eventService.processEvents(List.of(same, newer, fresh));
+
+        assertEquals(2, elsewhere.get().getAccepted());
+        assertEquals(1, response.getAccepted());
+        assertEquals(1, response.getDeduped());
+        assertEquals(1, response.getUpdated());
+        assertEquals(0, response.getRejected());
+        List<MachineEvent> stored = repository.findByEventIdIn(List.of(same.getEventId(), newer.getEventId(), fresh.getEventId()));
+        assertEquals(3, stored.size());
+        assertEquals(7, stored.stream().filter(e -> e.getEventId().equals(newer.getEventId())).findFirst().orElseThrow().getDefectCount());
+    }
+
+    @Test
+    void testSameEventIdWithAnotherEventTimeStoredConcurrentlyIsDecidedAgain() throws Exception {
+        Instant eventTime = Instant.now().minusSeconds(60).truncatedTo(ChronoUnit.MICROS);
+        EventDTO ours = TestData.eventDTO("ISO-TIME-" + System.nanoTime(), 4, eventTime);
+        // Another node stores an older copy of the same event a day earlier (another partition on
+        // Postgres), between our dedup lookup and our insert
+        EventDTO elsewhereCopy = TestData.eventDTO(ours.getEventId(), 9, eventTime.minus(1, ChronoUnit.DAYS));
+        elsewhereCopy.setReceivedTime(ours.getReceivedTime().minusSeconds(5));
+        AtomicBoolean started = new AtomicBoolean();
+        AtomicReference<BatchResponseDTO> elsewhere = new AtomicReference<>();
+        doAnswer(invocation -> {
+            if (ours.getEventId().equals(((MachineEvent) invocation.getArgument(0)).getEventId())
+                    && started.compareAndSet(false, true)) {
+                elsewhere.set(CompletableFuture.supplyAsync(() -> eventService.processEvents(List.of(elsewhereCopy)))
+                        .get(10, TimeUnit.SECONDS));
+            }
+            return invocation.callRealMethod();
+        }).when(dictionary).registerAll(any(MachineEvent.class));
+
+        BatchResponseDTO response = eventService.processEvents(List.of(ours));
+
+        assertEquals(1, elsewhere.get().getAccepted());
+        assertEquals(0, response.getAccepted());
+        assertEquals(1, response.getUpdated());
+        List<MachineEvent> stored = repository.findByEventIdIn(List.of(ours.getEventId()));
+        assertEquals(1, stored.size());
+        assertEquals(eventTime, stored.get(0).getEventTime());
+        assertEquals(4, stored.get(0).getDefectCount());
+    }
+}
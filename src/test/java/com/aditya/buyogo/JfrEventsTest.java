@@ -0,0 +1,116 @@
+package com.aditya.buyogo;
+
+import com.aditya.buyogo.dto.EventDTO;
+import com.aditya.buyogo.services.BatchIngestEvent;
+import com.aditya.buyogo.services.DedupLookupEvent;
+import com.aditya.buyogo.services.EventService;
+import com.aditya.buyogo.services.PersistChunkEvent;
+import com.aditya.buyogo.services.StateQueryEvent;
+import com.aditya.buyogo.services.StateService;
+import jdk.jfr.Event;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = "buyogo.jfr.enabled=true")
+class JfrEventsTest {
+
+    private static final List<Class<? extends Event>> EVENT_TYPES = List.of(
+            BatchIngestEvent.class, DedupLookupEvent.class, PersistChunkEvent.class, StateQueryEvent.class);
+
+    @Autowired
+    private EventService eventService;
+
+    @Autowired
+    private StateService stateService;
+
+    @TempDir
+    private Path tempDir;
+
+    @AfterEach
+    void restoreRegistration() {
+        EVENT_TYPES.forEach(FlightRecorder::register);
+    }
+
+    @Test
+    void testIngestAndQueryEmitEventsWithCountsAndStageTimes() throws Exception {
+        Instant eventTime = Instant.now().minusSeconds(60);
+        String prefix = "JFR-" + System.nanoTime();
+        List<RecordedEvent> recorded = record(() -> {
+            List<EventDTO> batch = new ArrayList<>();
+            batch.add(TestData.eventDTO(prefix + "-1", 1, eventTime));
+            batch.add(TestData.eventDTO(prefix + "-2", 2, eventTime));
+            EventDTO invalid = TestData.eventDTO(prefix + "-3", 1, eventTime);
+            invalid.setDurationMs(-1);
+            batch.add(invalid);
+            eventService.processEvents(batch);
+            stateService.getEventByMachineIdAndDateBetween("M1", eventTime.minusSeconds(3600), eventTime.plusSeconds(1));
+            return null;
+        });
+
+        RecordedEvent ingest = only(recorded, "buyogo.BatchIngest");
+        assertEquals(3, ingest.getInt("batchSize"));
+        assertEquals(2, ingest.getInt("accepted"));
+        assertEquals(1, ingest.getInt("rejected"));
+        assertTrue(ingest.getDuration("hashTime").toNanos() > 0);
+        assertTrue(ingest.getDuration("saveTime").toNanos() > 0);
+
+        RecordedEvent lookup = only(recorded, "buyogo.DedupLookup");
+        assertEquals(2, lookup.getInt("idsRequested"));
+        assertEquals(0, lookup.getInt("rowsFound"));
+
+        RecordedEvent chunk = only(recorded, "buyogo.PersistChunk");
+        assertEquals(2, chunk.getInt("inserts"));
+        assertEquals(0, chunk.getInt("updates"));
+
+        RecordedEvent query = only(recorded, "buyogo.StateQuery");
+        assertEquals("machine-states", query.getString("endpoint"));
+        assertEquals("M1", query.getString("machineId"));
+        assertEquals(3601, query.getDuration("window").toSeconds());
+        assertTrue(query.getInt("rowsScanned") >= 2);
+    }
+
+    @Test
+    void testUnregisteredEventsAreNotRecorded() throws Exception {
+        EVENT_TYPES.forEach(FlightRecorder::unregister);
+        Instant eventTime = Instant.now().minusSeconds(60);
+        List<RecordedEvent> recorded = record(() ->
+                eventService.processEvents(List.of(TestData.eventDTO("JFR-OFF-" + System.nanoTime(), 1, eventTime))));
+
+        assertTrue(recorded.stream().noneMatch(e -> e.getEventType().getName().startsWith("buyogo.")));
+    }
+
+    private List<RecordedEvent> record(Supplier<?> work) throws Exception {
+        Path file = tempDir.resolve("test.jfr");
+        try (Recording recording = new Recording()) {
+            for (String name : List.of("buyogo.BatchIngest", "buyogo.DedupLookup", "buyogo.PersistChunk", "buyogo.StateQuery")) {
+                recording.enable(name);
+            }
+            recording.start();
+            work.get();
+            recording.stop();
+            recording.dump(file);
+        }
+        return RecordingFile.readAllEvents(file);
+    }
+
+    private static RecordedEvent only(List<RecordedEvent> events, String name) {
+        List<RecordedEvent> matching = events.stream().filter(e -> e.getEventType().getName().equals(name)).toList();
+        assertEquals(1, matching.size(), name + " events: " + matching);
+        return matching.get(0);
+    }
+}
@@ -0,0 +1,153 @@
+package com.aditya.buyogo;
+
+import com.aditya.buyogo.dto.EventDTO;
+import com.aditya.buyogo.services.EventService;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.boot.web.embedded.tomcat.TomcatServletWebServerFactory;
+import org.springframework.boot.web.server.WebServerFactoryCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+// Served on a real port with small socket buffers, so a client that stops reading blocks the server's writes
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = {"buyogo.live.publish-interval=100ms", "buyogo.live.write-timeout=500ms"})
+@AutoConfigureMockMvc
+class LiveStatesTest {
+
+    @TestConfiguration
+    static class SmallSendBuffers {
+        @Bean
+        WebServerFactoryCustomizer<TomcatServletWebServerFactory> smallSendBuffer() {
+            return factory -> factory.addConnectorCustomizers(connector -> connector.setProperty("socket.txBufSize", "4096"));
+        }
+    }
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private EventService eventService;
+
+    @Autowired
+    private MeterRegistry registry;
+
+    @LocalServerPort
+    private int port;
+
+    @Test
+    void testSubscriberReceivesSeedThenIncrementalStatesAndTransitions() throws Exception {
+        Instant eventTime = Instant.now().minusSeconds(120);
+        eventService.processEvents(List.of(TestData.eventDTO("LIVE-SEED", "LIVE-M1", "F1", "L1", 0, eventTime)));
+
+        MvcResult stream = mockMvc.perform(get("/states/stream").param("machineId", "LIVE-M1").param("window", "PT1H"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        MockHttpServletResponse response = stream.getResponse();
+        awaitContent(response, "\"eventsCount\":1,");
+        assertTrue(response.getContentAsString().contains("\"status\":\"HEALTH\""));
+
+        eventService.processEvents(List.of(
+                TestData.eventDTO("LIVE-1", "LIVE-M1", "F1", "L1", 5, eventTime),
+                TestData.eventDTO("LIVE-OTHER", "LIVE-M2", "F1", "L1", 9, eventTime)));
+        awaitContent(response, "event:status");
+        String content = response.getContentAsString();
+        assertTrue(content.contains("\"eventsCount\":2,\"defectsCount\":5"), content);
+        assertTrue(content.contains("\"previous\":\"HEALTH\",\"status\":\"WARNING\""), content);
+        assertFalse(content.contains("LIVE-M2"), content);
+    }
+
+    @Test
+    void testClientThatStopsReadingIsDroppedWithoutHoldingUpOthers() throws Exception {
+        Instant eventTime = Instant.now().minusSeconds(120);
+        List<EventDTO> stalledFactory = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            stalledFactory.add(TestData.eventDTO("LIVE-STALL-" + i, "LIVE-STALL-M" + i, "LIVE-STALL-F", "L1", 1, eventTime));
+        }
+        eventService.processEvents(stalledFactory);
+        eventService.processEvents(List.of(TestData.eventDTO("LIVE-OK-1", "LIVE-OK-M", "F1", "L1", 0, eventTime)));
+
+        // Never reads, while its 500 machines keep changing
+        try (Socket stalled = new Socket()) {
+            stalled.setReceiveBufferSize(1024);
+            stalled.connect(new InetSocketAddress("localhost", port));
+            stalled.getOutputStream().write(("GET /states/stream?factoryId=LIVE-STALL-F&window=PT1H HTTP/1.1\r\n"
+                    + "Host: localhost\r\nAccept: text/event-stream\r\n\r\n").getBytes(StandardCharsets.US_ASCII));
+            StringBuffer received = new StringBuffer();
+            HttpClient.newHttpClient().sendAsync(HttpRequest.newBuilder(
+                            URI.create("http://localhost:" + port + "/states/stream?machineId=LIVE-OK-M&window=PT1H")).build(),
+                    HttpResponse.BodyHandlers.ofLines())
+                    .thenAccept(response -> response.body().forEach(line -> received.append(line).append('\n')));
+            await(() -> received.toString().contains("\"eventsCount\":1,"), received);
+
+            // Keep the stalled client's machines changing until its writes back up past the timeout
+            for (int round = 1; registry.get("buyogo.live.dropped").counter().count() == 0; round++) {
+                assertTrue(round <= 50, "stalled subscriber not dropped");
+                for (EventDTO event : stalledFactory) {
+                    event.setDefectCount(round + 1);
+                    event.setReceivedTime(Instant.now());
+                }
+                eventService.processEvents(stalledFactory);
+                Thread.sleep(200);
+            }
+            assertEquals(1, registry.get("buyogo.live.subscribers").gauge().value());
+
+            eventService.processEvents(List.of(TestData.eventDTO("LIVE-OK-2", "LIVE-OK-M", "F1", "L1", 0, eventTime)));
+            await(() -> received.toString().contains("\"eventsCount\":2,"), received);
+        }
+    }
+
+    @Test
+    void testSubscriptionNeedsExactlyOneScope() throws Exception {
+        mockMvc.perform(get("/states/stream"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/states/stream").param("machineId", "M1").param("factoryId", "F1"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/states/stream").param("machineId", "M1").param("window", "PT48H"))
+                .andExpect(status().isBadRequest());
+    }
+
+    private static void await(BooleanSupplier condition, Object state) throws Exception {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!condition.getAsBoolean()) {
+            if (System.currentTimeMillis() > deadline) {
+                fail(String.valueOf(state));
+            }
+            Thread.sleep(20);
+        }
+    }
+
+    private static void awaitContent(MockHttpServletResponse response, String expected) throws Exception {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!response.getContentAsString().contains(expected)) {
+            if (System.currentTimeMillis() > deadline) {
+                fail("No \"" + expected + "\" in stream: " + response.getContentAsString());
+            }
+            Thread.sleep(20);
+        }
+    }
+}
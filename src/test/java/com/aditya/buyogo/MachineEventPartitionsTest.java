@@ -0,0 +1,37 @@
+package com.aditya.buyogo;
+
+import com.aditya.buyogo.config.PartitioningProperties.Interval;
+import com.aditya.buyogo.repo.MachineEventPartitions;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MachineEventPartitionsTest {
+
+    @Test
+    void testDailyPeriodUsesUtcDay() {
+        Instant lateEvening = Instant.parse("2024-01-14T23:59:59.999Z");
+        assertEquals(LocalDate.of(2024, 1, 14), MachineEventPartitions.periodStart(lateEvening, Interval.DAILY));
+        assertEquals(LocalDate.of(2024, 1, 15), MachineEventPartitions.nextPeriod(LocalDate.of(2024, 1, 14), Interval.DAILY));
+    }
+
+    @Test
+    void testWeeklyPeriodStartsOnMonday() {
+        // 2024-01-14 is a Sunday
+        Instant sunday = Instant.parse("2024-01-14T10:00:00Z");
+        assertEquals(LocalDate.of(2024, 1, 8), MachineEventPartitions.periodStart(sunday, Interval.WEEKLY));
+        assertEquals(LocalDate.of(2024, 1, 15), MachineEventPartitions.nextPeriod(LocalDate.of(2024, 1, 8), Interval.WEEKLY));
+    }
+
+    @Test
+    void testPartitionNameRoundTrip() {
+        LocalDate start = LocalDate.of(2024, 1, 8);
+        String name = MachineEventPartitions.partitionName(start);
+        assertEquals("machine_event_p20240108", name);
+        assertEquals(start, MachineEventPartitions.parsePartitionStart(name));
+        assertNull(MachineEventPartitions.parsePartitionStart(MachineEventPartitions.DEFAULT_PARTITION));
+    }
+}
@@ -0,0 +1,59 @@
+package com.aditya.buyogo;
+
+import com.aditya.buyogo.dto.EventDTO;
+import com.aditya.buyogo.utils.PayloadHashUtil;
+import com.aditya.buyogo.utils.PayloadHasher;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.time.Instant;
+import java.util.HexFormat;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PayloadHasherTest {
+
+    // Stored rows carry these hashes, so they must never change
+    @Test
+    void testHashesMatchPreviouslyStoredValues() {
+        EventDTO event = TestData.eventDTO("EVT-00004242", "M-FAC002-MACH0042", "FAC-002", "FAC-002-LINE-06", -1,
+                Instant.parse("2026-01-05T08:00:42.120Z"));
+        event.setDurationMs(2554);
+        assertEquals("6d78c57ff881abddddf466da40bf17967289753f1a91a98e7839772257406a9a",
+                PayloadHashUtil.generatePayloadHash(event));
+
+        event.setMachineId("Maschine \"ü\"\t");
+        event.setEventTime(Instant.parse("2026-01-05T08:00:42.000123456Z"));
+        assertEquals("97b570ffd5f240741c15952f1f5e0872e8489dbf30da7989d98809e56fbbfad4",
+                PayloadHashUtil.generatePayloadHash(event));
+    }
+
+    @Test
+    void testWritesSameBytesAsJackson() throws Exception {
+        Random random = new Random(42);
+        String[] ids = {"EVT-1", "", "back\\slash", "événement", "tab\there", null};
+        long[] seconds = {0, -1, -62167219200L, 253402300799L, 253402300800L, 951782400, 1_800_000_000};
+        int[] nanos = {0, 1, 1_000, 120_000_000, 999_999_999, 500_000};
+        long[] durations = {0, -1, 3_600_000, Long.MAX_VALUE, Long.MIN_VALUE};
+        PayloadHasher hasher = new PayloadHasher();
+        byte[] hashes = new byte[2 * PayloadHasher.HASH_LENGTH];
+        for (int i = 0; i < 2000; i++) {
+            long second = i < seconds.length ? seconds[i] : random.nextLong(-62167219200L, 253402300800L);
+            EventDTO event = TestData.eventDTO(ids[i % ids.length], "M-" + random.nextInt(1000), "FAC-002",
+                    "FAC-002-LINE-06", 2, Instant.ofEpochSecond(second, nanos[i % nanos.length]));
+            event.setDurationMs(i < durations.length ? durations[i] : random.nextLong(-10, 4_000_000));
+            event.setDefectCount(random.nextInt(-5, 50));
+            event.setFactoryId(i % 7 == 0 ? null : "F-" + random.nextInt(20));
+
+            // The second slot checks the offset is honoured
+            hasher.hash(event, hashes, PayloadHasher.HASH_LENGTH);
+            byte[] expected = MessageDigest.getInstance("SHA-256")
+                    .digest(PayloadHashUtil.canonicalJson(event).getBytes(StandardCharsets.UTF_8));
+            assertEquals(HexFormat.of().formatHex(expected),
+                    HexFormat.of().formatHex(hashes, PayloadHasher.HASH_LENGTH, hashes.length),
+                    PayloadHashUtil.canonicalJson(event));
+        }
+    }
+}
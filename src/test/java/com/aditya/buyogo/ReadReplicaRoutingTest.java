@@ -0,0 +1,164 @@
+package com.aditya.buyogo;
+
+import com.aditya.buyogo.dto.EventDTO;
+import com.aditya.buyogo.dto.StatesResponseDTO;
+import com.aditya.buyogo.services.StateService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.zaxxer.hikari.HikariDataSource;
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.ResultActions;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+// A second in-memory H2 database stands in for the replica. Nothing replicates into it, so a read
+// that sees primary-only data proves it was routed to the primary, and vice versa.
+@SpringBootTest(properties = {
+    "spring.datasource.url=" + ReadReplicaRoutingTest.PRIMARY_URL,
+    "spring.datasource.hikari.maximum-pool-size=4",
+    "buyogo.datasource.routing.enabled=true",
+    "buyogo.datasource.routing.read-your-writes-window=30s",
+    "buyogo.datasource.replica.url=" + ReadReplicaRoutingTest.REPLICA_URL,
+    "buyogo.datasource.replica.username=sa",
+    "buyogo.datasource.replica.password=",
+    "buyogo.datasource.replica.driver-class-name=org.h2.Driver",
+    "buyogo.datasource.replica.hikari.maximum-pool-size=2"
+})
+@AutoConfigureMockMvc
+class ReadReplicaRoutingTest {
+    static final String PRIMARY_URL = "jdbc:h2:mem:routing_primary;DB_CLOSE_DELAY=-1";
+    static final String REPLICA_URL = "jdbc:h2:mem:routing_replica;DB_CLOSE_DELAY=-1";
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private StateService stateService;
+
+    @Autowired
+    @Qualifier("primaryDataSource")
+    private HikariDataSource primaryDataSource;
+
+    @Autowired
+    @Qualifier("replicaDataSource")
+    private HikariDataSource replicaDataSource;
+
+    private JdbcTemplate primary;
+    private JdbcTemplate replica;
+
+    private final Instant now = Instant.now().truncatedTo(ChronoUnit.SECONDS);
+
+    @BeforeAll
+    static void migrateReplica() {
+        Flyway.configure()
+                .dataSource(REPLICA_URL, "sa", "")
+                .locations("classpath:db/migration/h2")
+                .load()
+                .migrate();
+    }
+
+    @BeforeEach
+    void setUp() {
+        primary = new JdbcTemplate(primaryDataSource);
+        replica = new JdbcTemplate(replicaDataSource);
+    }
+
+    @Test
+    void testIngestionWritesToPrimaryOnly() throws Exception {
+        postBatch("writer", TestData.eventDTO("RR-EVT-1", "RR-M1", "F1", "L1", 1, now.minusSeconds(60)));
+
+        assertEquals(1, countEvents(primary, "RR-EVT-1"));
+        assertEquals(0, countEvents(replica, "RR-EVT-1"));
+    }
+
+    @Test
+    void testIngestionDedupLookupReadsPrimary() throws Exception {
+        EventDTO event = TestData.eventDTO("RR-EVT-2", "RR-M2", "F1", "L1", 1, now.minusSeconds(60));
+        postBatch("writer", event);
+        // Resolved against the replica, this lookup would miss and the insert would hit the unique key
+        postBatch("writer", event);
+
+        assertEquals(1, countEvents(primary, "RR-EVT-2"));
+    }
+
+    @Test
+    void testReadOnlyServiceReadsReplica() {
+        replica.update("INSERT INTO identifier_dictionary (kind, external_id) VALUES (0, 'RR-REPLICA-M'), (1, 'RR-F'), (2, 'RR-L')");
+        int machineKey = dictionaryKey(replica, 0, "RR-REPLICA-M");
+        replica.update("INSERT INTO machine_event (id, event_time, received_time, created_at, updated_at, machine_key, "
+                        + "factory_key, line_key, duration_ms, defect_count, payload_hash, event_id) "
+                        + "VALUES (NEXT VALUE FOR machine_event_seq, ?, ?, ?, ?, ?, ?, ?, 1000, 3, ?, 'RR-REPLICA-EVT')",
+                Timestamp.from(now.minusSeconds(60)), Timestamp.from(now), Timestamp.from(now), Timestamp.from(now),
+                machineKey, dictionaryKey(replica, 1, "RR-F"), dictionaryKey(replica, 2, "RR-L"), new byte[32]);
+
+        StatesResponseDTO states = stateService.getEventByMachineIdAndDateBetween(
+                "RR-REPLICA-M", now.minusSeconds(3600), now);
+
+        assertEquals(1, states.getEventsCount());
+        assertEquals(0, countEvents(primary, "RR-REPLICA-EVT"));
+    }
+
+    @Test
+    void testReadYourWritesKeepsWriterOnPrimary() throws Exception {
+        postBatch("client-a", TestData.eventDTO("RR-EVT-3", "RR-M3", "F1", "L1", 1, now.minusSeconds(60)));
+
+        // The writer sees its own event; another client is served by the (lagging) replica
+        getStates("client-a", "RR-M3").andExpect(jsonPath("$.data.eventsCount").value(1));
+        getStates("client-b", "RR-M3").andExpect(jsonPath("$.data.eventsCount").value(0));
+    }
+
+    @Test
+    void testEachRouteHasItsOwnPool() {
+        assertEquals(4, primaryDataSource.getMaximumPoolSize());
+        assertEquals(2, replicaDataSource.getMaximumPoolSize());
+        assertTrue(replicaDataSource.isReadOnly());
+        assertFalse(primaryDataSource.isReadOnly());
+    }
+
+    private void postBatch(String clientId, EventDTO... events) throws Exception {
+        mockMvc.perform(post("/events/batch")
+                        .header("X-Client-Id", clientId)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(List.of(events))))
+                .andExpect(status().isOk());
+    }
+
+    private ResultActions getStates(String clientId, String machineId) throws Exception {
+        return mockMvc.perform(get("/states")
+                        .header("X-Client-Id", clientId)
+                        .param("machineId", machineId)
+                        .param("start", now.minusSeconds(3600).toString())
+                        .param("end", now.toString()))
+                .andExpect(status().isOk());
+    }
+
+    private int countEvents(JdbcTemplate jdbc, String eventId) {
+        return jdbc.queryForObject("SELECT count(*) FROM machine_event WHERE event_id = ?", Integer.class, eventId);
+    }
+
+    private int dictionaryKey(JdbcTemplate jdbc, int kind, String externalId) {
+        return jdbc.queryForObject("SELECT id FROM identifier_dictionary WHERE kind = ? AND external_id = ?",
+                Integer.class, kind, externalId);
+    }
+}
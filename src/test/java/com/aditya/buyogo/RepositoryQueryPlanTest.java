@@ -0,0 +1,164 @@
+package com.aditya.buyogo;
+
+import com.aditya.buyogo.repo.EventFilter;
+import com.aditya.buyogo.repo.IdentifierDictionary;
+import com.aditya.buyogo.repo.MachineEventRepository;
+import com.aditya.buyogo.utils.EventCursor;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Import;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs every MachineEventRepository query against the Flyway-managed schema and checks its
+ * EXPLAIN plan uses the index designed for it. Uses in-memory H2 by default; point it at a local
+ * Postgres with -Dbuyogo.plan-test.url=jdbc:postgresql://localhost:5432/buyogo_plan_test
+ * (plus .username/.password) to check the real planner.
+ */
+@DataJpaTest(properties = {
+    "spring.jpa.properties.hibernate.session_factory.statement_inspector=com.aditya.buyogo.SqlCapture"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import(IdentifierDictionary.class)
+class RepositoryQueryPlanTest {
+
+    @DynamicPropertySource
+    static void postgresOverride(DynamicPropertyRegistry registry) {
+        String url = System.getProperty("buyogo.plan-test.url");
+        if (url != null) {
+            registry.add("spring.datasource.url", () -> url);
+            registry.add("spring.datasource.driver-class-name", () -> "org.postgresql.Driver");
+            registry.add("spring.datasource.username", () -> System.getProperty("buyogo.plan-test.username", "postgres"));
+            registry.add("spring.datasource.password", () -> System.getProperty("buyogo.plan-test.password", ""));
+        }
+    }
+
+    @Autowired
+    private MachineEventRepository repository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    // Ids that were never ingested are bound as this dictionary key
+    private static final int UNREGISTERED = IdentifierDictionary.UNKNOWN_KEY;
+
+    private final Instant from = Instant.parse("2024-01-14T00:00:00Z");
+    private final Instant to = Instant.parse("2024-01-15T00:00:00Z");
+
+    private boolean postgres;
+
+    @BeforeEach
+    void setUp() {
+        postgres = System.getProperty("buyogo.plan-test.url") != null;
+        if (postgres) {
+            // Tiny test tables always favour a seq scan; this asks "is the intended index usable?"
+            jdbcTemplate.execute("SET enable_seqscan = off");
+        }
+        SqlCapture.clear();
+    }
+
+    @Test
+    void testFindByMachineIdAndEventTimeBetweenUsesMachineTimeIndex() {
+        repository.findByMachineIdAndEventTimeBetween("M1", from, to);
+        assertPlanUses(List.of(UNREGISTERED, from, to), "idx_machine_event_machine_time_id");
+    }
+
+    @Test
+    void testFindTopDefectLinesUsesFactoryTimeLineIndex() {
+        repository.findTopDefectLines("F1", from, to);
+        if (postgres) {
+            assertPlanUses(List.of(UNREGISTERED, from, to), "idx_machine_event_factory_time_line");
+        } else {
+            // H2 costs both factory-leading indexes the same; only Postgres benefits from the INCLUDE column
+            assertPlanUses(List.of(UNREGISTERED, from, to),
+                    "idx_machine_event_factory_time_line", "idx_machine_event_factory_time_id");
+        }
+    }
+
+    @Test
+    void testFindByEventIdUsesEventIdIndex() {
+        repository.findByEventId("EVT001");
+        assertPlanUses(List.of("EVT001"), "uk_machine_event_event_id");
+    }
+
+    @Test
+    void testFindByEventIdInUsesEventIdIndex() {
+        repository.findByEventIdIn(List.of("EVT001", "EVT002"));
+        assertPlanUses(List.of("EVT001", "EVT002"), "uk_machine_event_event_id");
+    }
+
+    @Test
+    void testKeysetPageByMachineUsesMachineTimeIndex() {
+        EventFilter filter = new EventFilter();
+        filter.setMachineId("M1");
+        filter.setFrom(from);
+        filter.setTo(to);
+        EventCursor after = new EventCursor(from.plusSeconds(60), "EVT001");
+        repository.findPage(filter, after, 101);
+        assertPlanUses(List.of(UNREGISTERED, from, to, after.getEventTime(), after.getEventTime(), after.getEventTime(),
+                after.getEventId(), 101), "idx_machine_event_machine_time_id");
+    }
+
+    @Test
+    void testKeysetPageByFactoryUsesFactoryIndex() {
+        EventFilter filter = new EventFilter();
+        filter.setFactoryId("F1");
+        filter.setFrom(from);
+        filter.setTo(to);
+        repository.findPage(filter, null, 101);
+        assertPlanUses(List.of(UNREGISTERED, from, to, 101),
+                "idx_machine_event_factory_time_id", "idx_machine_event_factory_time_line");
+    }
+
+    @Test
+    void testUnfilteredKeysetPageUsesTimeIndex() {
+        EventFilter filter = new EventFilter();
+        filter.setFrom(from);
+        filter.setTo(to);
+        repository.findPage(filter, null, 101);
+        assertPlanUses(List.of(from, to, 101), "idx_machine_event_time_id", "brin_machine_event_event_time");
+    }
+
+    private void assertPlanUses(List<Object> parameters, String... acceptableIndexes) {
+        String sql = SqlCapture.last();
+        Object[] args = parameters.stream()
+                .map(p -> p instanceof Instant instant ? Timestamp.from(instant) : p)
+                .toArray();
+        String plan = String.join("\n", jdbcTemplate.queryForList("EXPLAIN " + sql, String.class, args))
+                .toLowerCase(Locale.ROOT);
+
+        assertFalse(plan.contains("seq scan") || plan.contains("tablescan"), "Sequential scan in plan:\n" + plan);
+        assertTrue(Set.of(acceptableIndexes).stream().flatMap(i -> withPartitionIndexes(i).stream()).anyMatch(plan::contains),
+                "Expected one of " + Set.of(acceptableIndexes) + " in plan:\n" + plan);
+    }
+
+    // On a partitioned table the plan names each partition's own index, which Postgres derives
+    // from the column list; map the parent index to those children.
+    private List<String> withPartitionIndexes(String parentIndex) {
+        if (!postgres) {
+            return List.of(parentIndex);
+        }
+        List<String> names = new ArrayList<>(jdbcTemplate.queryForList("""
+                SELECT child.relname FROM pg_inherits i
+                JOIN pg_class child ON child.oid = i.inhrelid
+                JOIN pg_class parent ON parent.oid = i.inhparent
+                WHERE parent.relname = ?
+                """, String.class, parentIndex));
+        names.add(parentIndex);
+        return names;
+    }
+}
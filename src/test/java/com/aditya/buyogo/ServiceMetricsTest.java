@@ -0,0 +1,56 @@
+package com.aditya.buyogo;
+
+import com.aditya.buyogo.dto.EventDTO;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.observability.AutoConfigureObservability;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.time.Instant;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@AutoConfigureObservability
+class ServiceMetricsTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Test
+    void testIngestionAndQueryMetricsAreScraped() throws Exception {
+        Instant eventTime = Instant.now().minusSeconds(60);
+        EventDTO invalid = TestData.eventDTO("METRICS-2", "METRICS-M", "METRICS-F", "METRICS-L", 1, eventTime);
+        invalid.setDurationMs(-1);
+        String body = TestData.json(List.of(
+                TestData.eventDTO("METRICS-1", "METRICS-M", "METRICS-F", "METRICS-L", 1, eventTime), invalid));
+        mockMvc.perform(post("/events/batch").contentType(MediaType.APPLICATION_JSON).content(body))
+                .andExpect(status().isOk());
+        mockMvc.perform(get("/states")
+                        .param("machineId", "METRICS-M")
+                        .param("start", eventTime.minusSeconds(60).toString())
+                        .param("end", eventTime.plusSeconds(60).toString()))
+                .andExpect(status().isOk());
+
+        String scrape = mockMvc.perform(get("/actuator/prometheus"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+
+        for (String stage : new String[]{"bind", "hash", "lookup", "register", "save"}) {
+            assertTrue(scrape.contains("buyogo_ingest_stage_seconds_count{stage=\"" + stage + "\""), stage);
+        }
+        assertTrue(scrape.contains("buyogo_ingest_stage_seconds_bucket{stage=\"hash\""));
+        assertTrue(scrape.contains("buyogo_ingest_events_total{outcome=\"accepted\",reason=\"none\""));
+        assertTrue(scrape.contains("buyogo_ingest_events_total{outcome=\"rejected\",reason=\"INVALID_DURATION\""));
+        assertTrue(scrape.contains("buyogo_ingest_batch_size_events_bucket{le=\"10.0\""));
+        assertTrue(scrape.contains("buyogo_state_query_seconds_count{endpoint=\"machine-states\""));
+    }
+}
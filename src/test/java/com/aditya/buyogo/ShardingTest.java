@@ -0,0 +1,225 @@
+package com.aditya.buyogo;
+
+import com.aditya.buyogo.config.ShardDataSource;
+import com.aditya.buyogo.config.SqlRequestStats;
+import com.aditya.buyogo.dto.BatchResponseDTO;
+import com.aditya.buyogo.dto.EventDTO;
+import com.aditya.buyogo.dto.EventPageDTO;
+import com.aditya.buyogo.dto.ShardMoveDTO;
+import com.aditya.buyogo.dto.StatesResponseDTO;
+import com.aditya.buyogo.dto.TopDefectLineDTO;
+import com.aditya.buyogo.repo.EventFilter;
+import com.aditya.buyogo.services.EventBrowseService;
+import com.aditya.buyogo.services.EventService;
+import com.aditya.buyogo.services.ShardMover;
+import com.aditya.buyogo.services.Shards;
+import com.aditya.buyogo.services.StateService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.sql.Connection;
+import java.sql.Statement;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+// Three in-memory H2 databases: home (spring.datasource) and two more shards, each migrated by ShardingConfig
+@SpringBootTest(properties = {
+    "spring.datasource.url=jdbc:h2:mem:shard_home;DB_CLOSE_DELAY=-1;LOCK_TIMEOUT=30000",
+    "buyogo.sharding.enabled=true",
+    "buyogo.sharding.shards.east.url=jdbc:h2:mem:shard_east;DB_CLOSE_DELAY=-1",
+    "buyogo.sharding.shards.east.username=sa",
+    "buyogo.sharding.shards.east.password=",
+    "buyogo.sharding.shards.east.id-range=1",
+    "buyogo.sharding.shards.east.factories=SH-F2,SH-F3",
+    "buyogo.sharding.shards.west.url=jdbc:h2:mem:shard_west;DB_CLOSE_DELAY=-1",
+    "buyogo.sharding.shards.west.username=sa",
+    "buyogo.sharding.shards.west.password=",
+    "buyogo.sharding.shards.west.id-range=2",
+    "buyogo.sharding.shards.west.factories=SH-F4"
+})
+@AutoConfigureMockMvc
+class ShardingTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private EventService eventService;
+
+    @Autowired
+    private StateService stateService;
+
+    @Autowired
+    private EventBrowseService eventBrowseService;
+
+    @Autowired
+    private ShardDataSource shardDataSource;
+
+    @Autowired
+    private ShardMover shardMover;
+
+    @Autowired
+    private Shards shards;
+
+    private final Instant now = Instant.now().truncatedTo(ChronoUnit.SECONDS);
+
+    @Test
+    void testBatchesSplitByFactoryAndQueriesFollow() {
+        // Three events in each of a home, an east and a west factory, all from one machine
+        List<EventDTO> batch = new ArrayList<>();
+        for (String factory : List.of("SH-F1", "SH-F2", "SH-F4")) {
+            for (int i = 0; i < 3; i++) {
+                batch.add(TestData.eventDTO("SPLIT-" + factory + "-" + i, "SH-M1", factory, factory + "-L", i + 1,
+                        now.minusSeconds(60 - 5L * batch.size())));
+            }
+        }
+
+        BatchResponseDTO response = eventService.processEvents(batch);
+        assertEquals(9, response.getAccepted());
+        assertEquals(3, count("home", "SPLIT-%"));
+        assertEquals(3, count("east", "SPLIT-SH-F2-%"));
+        assertEquals(3, count("west", "SPLIT-SH-F4-%"));
+        // Each shard's sequence hands out ids from its own range, so ids are unique across shards
+        assertTrue(shard("east").queryForObject("SELECT NEXT VALUE FOR machine_event_seq", Long.class) >= 1L << 48);
+        assertTrue(shard("west").queryForObject("SELECT NEXT VALUE FOR machine_event_seq", Long.class) >= 2L << 48);
+        List<Long> ids = new ArrayList<>();
+        for (String shard : List.of("home", "east", "west")) {
+            ids.addAll(shard(shard).queryForList("SELECT id FROM machine_event WHERE event_id LIKE 'SPLIT-%'", Long.class));
+        }
+        assertEquals(9, ids.stream().distinct().count());
+        // Each shard deduplicates its own part
+        assertEquals(9, eventService.processEvents(batch).getDeduped());
+
+        StatesResponseDTO states = stateService.getEventByMachineIdAndDateBetween("SH-M1", now.minusSeconds(3600), now);
+        assertEquals(9, states.getEventsCount());
+        assertEquals(18, states.getDefectsCount());
+
+        List<TopDefectLineDTO> lines = stateService.getTopDefectLines("SH-F2", now.minusSeconds(3600), now, 10);
+        assertEquals(1, lines.size());
+        assertEquals("SH-F2-L", lines.get(0).getLineId());
+        assertEquals(6, lines.get(0).getTotalDefects());
+
+        // Pages merge all shards in (eventTime, eventId) order
+        EventFilter filter = new EventFilter();
+        filter.setMachineId("SH-M1");
+        filter.setFrom(now.minusSeconds(3600));
+        filter.setTo(now);
+        List<String> browsed = new ArrayList<>();
+        String cursor = null;
+        do {
+            EventPageDTO page = eventBrowseService.getEvents(filter, cursor, 4);
+            page.getEvents().forEach(event -> browsed.add(event.getEventId()));
+            cursor = page.getNextCursor();
+        } while (cursor != null);
+        assertEquals(batch.stream().map(EventDTO::getEventId).toList(), browsed);
+    }
+
+    @Test
+    void testMoveCopiesFactoryAndCutsOver() throws Exception {
+        List<EventDTO> batch = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            batch.add(TestData.eventDTO("MOVE-" + i, "SH-M2", "SH-F5", "SH-F5-L", 2, now.minusSeconds(30 + i)));
+        }
+        eventService.processEvents(batch);
+        List<Long> ids = shard("home").queryForList("SELECT id FROM machine_event WHERE event_id LIKE 'MOVE-%' ORDER BY id", Long.class);
+        assertEquals(5, ids.size());
+
+        mockMvc.perform(post("/shards/moves").param("factoryId", "SH-F5").param("to", "west"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.data.from").value("home"))
+                .andExpect(jsonPath("$.data.copiedRows").value(5))
+                .andExpect(jsonPath("$.data.deletedRows").value(5));
+
+        assertEquals(0, count("home", "MOVE-%"));
+        assertEquals(ids, shard("west").queryForList("SELECT id FROM machine_event WHERE event_id LIKE 'MOVE-%' ORDER BY id", Long.class));
+        mockMvc.perform(get("/shards"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.data.factories.SH-F5").value("west"));
+        // Later batches land on, and deduplicate against, the new shard
+        assertEquals(5, eventService.processEvents(batch).getDeduped());
+        EventDTO later = TestData.eventDTO("MOVE-LATER", "SH-M2", "SH-F5", "SH-F5-L", 1, now.minusSeconds(5));
+        assertEquals(1, eventService.processEvents(List.of(later)).getAccepted());
+        assertEquals(6, count("west", "MOVE-%"));
+        assertEquals(11, stateService.getTopDefectLines("SH-F5", now.minusSeconds(3600), now, 10).get(0).getTotalDefects());
+
+        mockMvc.perform(post("/shards/moves").param("factoryId", "SH-F5").param("to", "nowhere"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void testOldShardIsClearedWithIngestionRunningAndGatheredReadsCountTwiceUntilThen() throws Exception {
+        List<EventDTO> batch = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            batch.add(TestData.eventDTO("DRAIN-" + i, "SH-M7", "SH-F7", "SH-F7-L", 1, now.minusSeconds(30 + i)));
+        }
+        eventService.processEvents(batch);
+        Instant from = now.minusSeconds(3600);
+
+        // Holding the first row keeps the move's delete of the old shard waiting
+        try (Connection locker = shardDataSource.pool("home").getConnection()) {
+            locker.setAutoCommit(false);
+            try (Statement statement = locker.createStatement()) {
+                statement.executeQuery("SELECT id FROM machine_event WHERE event_id = 'DRAIN-4' FOR UPDATE").close();
+            }
+            CompletableFuture<ShardMoveDTO> move = CompletableFuture.supplyAsync(() -> shardMover.move("SH-F7", "west"));
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+            while (!"west".equals(shards.shardOf("SH-F7"))) {
+                assertTrue(System.nanoTime() < deadline, "The move never cut over");
+                Thread.sleep(20);
+            }
+
+            // The cutover has released the fence, so ingestion carries on
+            EventDTO during = TestData.eventDTO("DRAIN-DURING", "SH-M8", "SH-F2", "SH-F2-L", 1, now.minusSeconds(5));
+            assertEquals(1, CompletableFuture.supplyAsync(() -> eventService.processEvents(List.of(during)))
+                    .get(5, TimeUnit.SECONDS).getAccepted());
+            // Both shards hold the factory's rows: factory reads follow the assignment, gathered reads count them twice
+            assertEquals(5, stateService.getTopDefectLines("SH-F7", from, now, 10).get(0).getTotalDefects());
+            assertEquals(10, stateService.getEventByMachineIdAndDateBetween("SH-M7", from, now).getEventsCount());
+            assertFalse(move.isDone());
+
+            locker.rollback();
+            assertEquals(5, move.get(10, TimeUnit.SECONDS).getDeletedRows());
+        }
+        assertEquals(0, count("home", "DRAIN-%"));
+        assertEquals(5, stateService.getEventByMachineIdAndDateBetween("SH-M7", from, now).getEventsCount());
+    }
+
+    private JdbcTemplate shard(String name) {
+        return new JdbcTemplate(shardDataSource.pool(name));
+    }
+
+    @Test
+    void testStatementsOnEveryShardCountAgainstTheCaller() {
+        List<EventDTO> batch = new ArrayList<>();
+        // Two hours back, out of the windows the other tests read
+        for (String factory : List.of("SH-F6", "SH-F3", "SH-F4")) {
+            batch.add(TestData.eventDTO("BUDGET-" + factory, "SH-M9", factory, factory + "-L", 1, now.minusSeconds(7200)));
+        }
+
+        // Two shards are written on worker threads, the last on the caller's
+        SqlRequestStats stats = SqlStatements.during(() -> assertEquals(3, eventService.processEvents(batch).getAccepted()));
+        int lookups = stats.getFingerprints().entrySet().stream()
+                .filter(e -> e.getKey().startsWith("select") && e.getKey().contains("event_id in (?)"))
+                .mapToInt(e -> e.getValue())
+                .sum();
+        assertEquals(3, lookups, stats.getFingerprints().toString());
+    }
+
+    private int count(String shard, String eventIdPattern) {
+        return shard(shard).queryForObject("SELECT COUNT(*) FROM machine_event WHERE event_id LIKE ?", Integer.class, eventIdPattern);
+    }
+}
@@ -0,0 +1,153 @@
+package com.aditya.buyogo;
+
+import com.aditya.buyogo.config.SpikeProperties;
+import com.aditya.buyogo.dto.DefectSpikeDTO;
+import com.aditya.buyogo.models.MachineEvent;
+import com.aditya.buyogo.repo.IdentifierDictionary;
+import com.aditya.buyogo.repo.IdentifierDictionary.Kind;
+import com.aditya.buyogo.services.EventChange;
+import com.aditya.buyogo.services.SpikeDetector;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SpikeDetectorTest {
+
+    // Keys handed out on first sight, the way registration leaves them cached
+    private final Map<String, Integer> keys = new HashMap<>();
+    private final IdentifierDictionary dictionary = new IdentifierDictionary() {
+        @Override
+        public Integer cachedKeyOf(Kind kind, String value) {
+            return keys.computeIfAbsent(value, v -> keys.size() + 1);
+        }
+
+        @Override
+        public String valueOf(int key) {
+            return keys.entrySet().stream().filter(e -> e.getValue() == key).findFirst().orElseThrow().getKey();
+        }
+    };
+
+    private SimpleMeterRegistry registry;
+    private Instant base;
+
+    @BeforeEach
+    void setUp() {
+        registry = new SimpleMeterRegistry();
+        // The burst below ends a minute before now, inside the five-minute fast half-life
+        base = Instant.now().minusSeconds(234 * 60);
+    }
+
+    @Test
+    void testSpikeIsFlaggedAndClearedWhenItsEventsAreReplaced() {
+        SpikeDetector detector = new SpikeDetector(dictionary, new SpikeProperties(), registry);
+        // Four quiet hours for both machines: a defect on every fourth event
+        List<EventChange> quiet = new ArrayList<>();
+        for (int minute = 0; minute < 230; minute++) {
+            quiet.add(inserted(event("Q-" + minute, "SPIKE-M1", minute * 60, minute % 4 == 0 ? 1 : 0)));
+            quiet.add(inserted(event("R-" + minute, "SPIKE-M2", minute * 60, minute % 4 == 0 ? 1 : 0)));
+        }
+        detector.afterCommit(quiet);
+        assertTrue(detector.currentSpikes(10).isEmpty());
+
+        List<MachineEvent> burst = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            burst.add(event("S-" + i, "SPIKE-M1", 230 * 60 + i * 20, 6));
+        }
+        detector.afterCommit(burst.stream().map(SpikeDetectorTest::inserted).toList());
+
+        List<DefectSpikeDTO> spikes = detector.currentSpikes(10);
+        assertEquals(1, spikes.size());
+        DefectSpikeDTO spike = spikes.get(0);
+        assertEquals("SPIKE-M1", spike.getMachineId());
+        assertTrue(spike.getScore() >= 4.0, spike.toString());
+        assertTrue(spike.getRecentDefectsPerEvent() > 3, spike.toString());
+        assertTrue(spike.getBaselineDefectsPerEvent() < 1, spike.toString());
+        assertEquals(1.0, registry.get("buyogo.spikes.detected").counter().count());
+        assertEquals(1.0, registry.get("buyogo.spikes.active").gauge().value());
+
+        // Corrections overwrite the burst with clean readings; the spike's contribution is taken back out
+        List<EventChange> corrections = new ArrayList<>();
+        for (MachineEvent previous : burst) {
+            MachineEvent corrected = event(previous.getEventId(), "SPIKE-M1",
+                    previous.getEventTime().getEpochSecond() - base.getEpochSecond(), 0);
+            corrections.add(new EventChange(previous, corrected));
+        }
+        detector.afterCommit(corrections);
+        assertTrue(detector.currentSpikes(10).isEmpty());
+        assertEquals(0.0, registry.get("buyogo.spikes.active").gauge().value());
+    }
+
+    @Test
+    void testTableIsBoundedByMaxMachines() {
+        SpikeProperties properties = new SpikeProperties();
+        properties.setMaxMachines(2);
+        SpikeDetector detector = new SpikeDetector(dictionary, properties, registry);
+        long dayAgo = -25 * 3600;
+
+        // Both idle machines are swept to make room for the third
+        detector.afterCommit(List.of(
+                inserted(event("B-1", "BOUND-M1", dayAgo, 1)),
+                inserted(event("B-2", "BOUND-M2", dayAgo, 1)),
+                inserted(event("B-3", "BOUND-M3", 0, 1))));
+        assertEquals(1.0, registry.get("buyogo.spikes.machines").gauge().value());
+
+        // Nothing is idle any more, so the last machine is turned away
+        detector.afterCommit(List.of(
+                inserted(event("B-4", "BOUND-M4", 0, 1)),
+                inserted(event("B-5", "BOUND-M3", 60, 1)),
+                inserted(event("B-6", "BOUND-M5", 0, 1))));
+        assertEquals(2.0, registry.get("buyogo.spikes.machines").gauge().value());
+        assertEquals(1.0, registry.get("buyogo.spikes.untracked").counter().count());
+    }
+
+    @Test
+    void testUncachedMachinesAreLookedUpOutsideTheDetectorLock() {
+        SpikeDetector[] holder = new SpikeDetector[1];
+        List<Boolean> lockedDuringLookup = new ArrayList<>();
+        IdentifierDictionary uncached = new IdentifierDictionary() {
+            @Override
+            public Integer cachedKeyOf(Kind kind, String value) {
+                return null;
+            }
+
+            @Override
+            public int keyOf(Kind kind, String value) {
+                lockedDuringLookup.add(Thread.holdsLock(holder[0]));
+                return keys.computeIfAbsent(value, v -> keys.size() + 1);
+            }
+        };
+        holder[0] = new SpikeDetector(uncached, new SpikeProperties(), registry);
+
+        holder[0].afterCommit(List.of(
+                inserted(event("U-1", "UNCACHED-M1", 0, 1)),
+                new EventChange(event("U-1", "UNCACHED-M1", 0, 1), event("U-1", "UNCACHED-M2", 0, 2))));
+
+        assertEquals(List.of(false, false, false), lockedDuringLookup);
+        assertEquals(2.0, registry.get("buyogo.spikes.machines").gauge().value());
+    }
+
+    private static EventChange inserted(MachineEvent event) {
+        return new EventChange(null, event);
+    }
+
+    private MachineEvent event(String eventId, String machineId, long secondsAfterBase, int defects) {
+        MachineEvent event = new MachineEvent();
+        event.setEventId(eventId);
+        event.setMachineId(machineId);
+        event.setFactoryId("SPIKE-F");
+        event.setLineId("SPIKE-L");
+        event.setEventTime(base.plusSeconds(secondsAfterBase));
+        event.setReceivedTime(base.plusSeconds(secondsAfterBase));
+        event.setDurationMs(1000);
+        event.setDefectCount(defects);
+        return event;
+    }
+}
@@ -0,0 +1,30 @@
+package com.aditya.buyogo;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Hibernate StatementInspector that remembers the SQL it was asked to prepare, so tests can
+// EXPLAIN exactly what a repository method sends to the database.
+public class SqlCapture implements StatementInspector {
+    private static final ThreadLocal<List<String>> CAPTURED = ThreadLocal.withInitial(ArrayList::new);
+
+    @Override
+    public String inspect(String sql) {
+        CAPTURED.get().add(sql);
+        return sql;
+    }
+
+    static void clear() {
+        CAPTURED.get().clear();
+    }
+
+    static String last() {
+        List<String> statements = CAPTURED.get();
+        if (statements.isEmpty()) {
+            throw new IllegalStateException("No SQL captured");
+        }
+        return statements.get(statements.size() - 1);
+    }
+}
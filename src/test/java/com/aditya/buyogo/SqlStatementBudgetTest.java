@@ -0,0 +1,122 @@
+package com.aditya.buyogo;
+
+import com.aditya.buyogo.config.SqlRequestStats;
+import com.aditya.buyogo.dto.BatchResponseDTO;
+import com.aditya.buyogo.dto.EventDTO;
+import com.aditya.buyogo.services.EventService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.system.CapturedOutput;
+import org.springframework.boot.test.system.OutputCaptureExtension;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(properties = "buyogo.sql-budget.max-statements=3")
+@AutoConfigureMockMvc
+@ExtendWith(OutputCaptureExtension.class)
+class SqlStatementBudgetTest {
+
+    private static final AtomicInteger RUN = new AtomicInteger();
+
+    @Autowired
+    private EventService eventService;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    private Instant eventTime;
+
+    @BeforeEach
+    void setUp() {
+        eventTime = Instant.now().minusSeconds(60);
+        // Registers M1/F1/L1 so dictionary inserts do not count against the first measured batch
+        eventService.processEvents(events("BUDGET-WARMUP-" + RUN.incrementAndGet(), 1, 0));
+    }
+
+    @Test
+    void testNewEventsCostConstantStatementsForAnyBatchSize() {
+        SqlStatements.assertConstantStatements(
+                n -> () -> assertEquals(n, eventService.processEvents(events(prefix(n), n, 0)).getAccepted()),
+                1, 10, 100, 1000);
+    }
+
+    @Test
+    void testUpdatesAndDuplicatesCostConstantStatementsForAnyBatchSize() {
+        int[] sizes = {1, 10, 100, 1000};
+        String[] prefixes = new String[sizes.length];
+        for (int i = 0; i < sizes.length; i++) {
+            prefixes[i] = prefix(sizes[i]);
+            eventService.processEvents(events(prefixes[i], sizes[i], 0));
+        }
+        AtomicInteger round = new AtomicInteger();
+        SqlStatements.assertConstantStatements(n -> () -> {
+            String prefix = prefixes[round.getAndIncrement()];
+            // Half the batch is re-sent unchanged, half with a newer payload
+            List<EventDTO> batch = new ArrayList<>(events(prefix, n, 1));
+            batch.replaceAll(e -> Integer.parseInt(e.getEventId().substring(prefix.length() + 1)) % 2 == 0
+                    ? TestData.eventDTO(e.getEventId(), 1, eventTime) : e);
+            BatchResponseDTO response = eventService.processEvents(batch);
+            assertEquals(n, response.getUpdated() + response.getDeduped());
+        }, sizes);
+    }
+
+    @Test
+    void testBulkLookupIsOneStatement() {
+        SqlRequestStats stats = SqlStatements.during(() -> eventService.processEvents(events(prefix(500), 500, 0)));
+        long lookups = stats.getFingerprints().entrySet().stream()
+                .filter(e -> e.getKey().startsWith("select") && e.getKey().contains("event_id in (?)"))
+                .mapToInt(e -> e.getValue())
+                .sum();
+        assertEquals(1, lookups, stats.getFingerprints().toString());
+        assertEquals(0, stats.getFingerprints().keySet().stream().filter(f -> f.contains("event_id=?")).count(),
+                stats.getFingerprints().toString());
+    }
+
+    @Test
+    void testOverBudgetRequestIsLoggedWithFingerprints(CapturedOutput output) throws Exception {
+        mockMvc.perform(post("/events/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(TestData.json(events(prefix(3), 3, 0))))
+                .andExpect(status().isOk());
+
+        // Warm-up ids are registered, so the batch is a lookup, a sequence fetch and an insert batch
+        assertFalse(output.getOut().contains("POST /events/batch over SQL budget"));
+
+        mockMvc.perform(post("/events/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(TestData.json(events(prefix(3), 3, 0, "BUDGET-NEW-MACHINE-" + RUN.get()))))
+                .andExpect(status().isOk());
+
+        assertTrue(output.getOut().contains("POST /events/batch over SQL budget"), output.getOut());
+        assertTrue(output.getOut().contains("x [insert into identifier_dictionary"), output.getOut());
+    }
+
+    private String prefix(int n) {
+        return "BUDGET-" + RUN.get() + "-" + n + "-" + System.nanoTime();
+    }
+
+    private List<EventDTO> events(String prefix, int n, int defectCount) {
+        return events(prefix, n, defectCount, "M1");
+    }
+
+    private List<EventDTO> events(String prefix, int n, int defectCount, String machineId) {
+        List<EventDTO> events = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            events.add(TestData.eventDTO(prefix + "-" + i, machineId, "F1", "L1", defectCount, eventTime));
+        }
+        return events;
+    }
+}
@@ -0,0 +1,45 @@
+package com.aditya.buyogo;
+
+import com.aditya.buyogo.config.SqlRequestStats;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.IntFunction;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Counts the SQL a block of code sends through the application DataSource, for N+1 regression tests.
+class SqlStatements {
+
+    static SqlRequestStats during(Runnable work) {
+        SqlRequestStats stats = SqlRequestStats.start();
+        try {
+            work.run();
+        } finally {
+            SqlRequestStats.stop();
+        }
+        return stats;
+    }
+
+    // Fails unless work.apply(n) runs the same statements for every n, i.e. costs O(1) statements in n.
+    // Sequence fetches are checked separately: each covers allocationSize ids, so a run may straddle two.
+    static void assertConstantStatements(IntFunction<Runnable> work, int... sizes) {
+        Map<String, Integer> expected = null;
+        for (int n : sizes) {
+            SqlRequestStats stats = during(work.apply(n));
+            Map<String, Integer> statements = new LinkedHashMap<>(stats.getFingerprints());
+            int sequenceFetches = 0;
+            for (String fingerprint : stats.getFingerprints().keySet()) {
+                if (fingerprint.contains("nextval") || fingerprint.contains("next value for")) {
+                    sequenceFetches += statements.remove(fingerprint);
+                }
+            }
+            assertTrue(sequenceFetches <= 2, "n=" + n + " fetched the id sequence " + sequenceFetches + " times");
+            if (expected == null) {
+                expected = statements;
+            } else {
+                assertEquals(expected, statements, "Statements for n=" + n + " differ from n=" + sizes[0]);
+            }
+        }
+    }
+}
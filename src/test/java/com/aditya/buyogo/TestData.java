@@ -4,6 +4,7 @@ import com.aditya.buyogo.dto.EventDTO;
 import com.aditya.buyogo.models.MachineEvent;
 
 import java.time.Instant;
+import java.util.List;
 
 class TestData {
 
@@ -53,17 +54,40 @@ class TestData {
     }
 
     static EventDTO eventDTO(String id, int defect, Instant eventTime) {
+        return eventDTO(id, "M1", "F1", "L1", defect, eventTime);
+    }
+
+    static EventDTO eventDTO(String id, String machineId, String factoryId, String lineId, int defect, Instant eventTime) {
         EventDTO dto = new EventDTO();
         dto.setEventId(id);
         dto.setDefectCount(defect);
         dto.setEventTime(eventTime);
         dto.setReceivedTime(Instant.now());
-        dto.setMachineId("M1");
-        dto.setFactoryId("F1");
-        dto.setLineId("L1");
+        dto.setMachineId(machineId);
+        dto.setFactoryId(factoryId);
+        dto.setLineId(lineId);
         dto.setDurationMs(1000L);
         // Generate payload hash
         dto.setPayloadHash(com.aditya.buyogo.utils.PayloadHashUtil.generatePayloadHash(dto));
         return dto;
     }
+
+    // Request body for POST /events/batch
+    static String json(List<EventDTO> events) {
+        StringBuilder body = new StringBuilder("[");
+        for (EventDTO e : events) {
+            if (body.length() > 1) {
+                body.append(',');
+            }
+            body.append("{\"eventId\":\"").append(e.getEventId())
+                    .append("\",\"eventTime\":\"").append(e.getEventTime())
+                    .append("\",\"receivedTime\":\"").append(e.getReceivedTime())
+                    .append("\",\"machineId\":\"").append(e.getMachineId())
+                    .append("\",\"factoryId\":\"").append(e.getFactoryId())
+                    .append("\",\"lineId\":\"").append(e.getLineId())
+                    .append("\",\"durationMs\":").append(e.getDurationMs())
+                    .append(",\"defectCount\":").append(e.getDefectCount()).append('}');
+        }
+        return body.append(']').toString();
+    }
 }
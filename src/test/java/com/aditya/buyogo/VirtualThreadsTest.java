@@ -0,0 +1,56 @@
+package com.aditya.buyogo;
+
+import com.aditya.buyogo.services.IngestionListener;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.context.annotation.Bean;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// A real Tomcat, since MockMvc would run the request on the test thread
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = "spring.threads.virtual.enabled=true")
+class VirtualThreadsTest {
+
+    @TestConfiguration
+    static class ThreadRecorder {
+        final List<Thread> ingestThreads = new CopyOnWriteArrayList<>();
+
+        @Bean
+        IngestionListener threadRecordingListener() {
+            return changes -> ingestThreads.add(Thread.currentThread());
+        }
+    }
+
+    @Autowired
+    private TestRestTemplate rest;
+
+    @Autowired
+    private ThreadRecorder recorder;
+
+    @Test
+    void testIngestionRunsOnVirtualRequestThread() {
+        Instant now = Instant.now();
+        String body = TestData.json(List.of(TestData.eventDTO("VT-1", "VT-M", "VT-F", "VT-L", 1, now.minusSeconds(60))));
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        ResponseEntity<String> response = rest.postForEntity("/events/batch", new HttpEntity<>(body, headers), String.class);
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertTrue(response.getBody().contains("\"accepted\":1"), response.getBody());
+        assertEquals(1, recorder.ingestThreads.size());
+        assertTrue(recorder.ingestThreads.get(0).isVirtual(), recorder.ingestThreads.get(0).toString());
+    }
+}
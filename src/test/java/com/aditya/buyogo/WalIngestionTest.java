@@ -0,0 +1,107 @@
+package com.aditya.buyogo;
+
+import com.aditya.buyogo.config.WalProperties;
+import com.aditya.buyogo.dto.EventDTO;
+import com.aditya.buyogo.repo.MachineEventRepository;
+import com.aditya.buyogo.repo.WriteAheadLog;
+import com.aditya.buyogo.services.EventService;
+import com.aditya.buyogo.services.WalIngestionService;
+import com.aditya.buyogo.utils.EventBatchCodec;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.nio.file.Files;
+import java.time.Instant;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.doThrow;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+// The scheduled drain is pushed out of the way so the test decides when the log is applied
+@SpringBootTest(properties = {"buyogo.wal.enabled=true", "buyogo.wal.drain-interval=PT1H", "buyogo.wal.drain-max-attempts=2"})
+@AutoConfigureMockMvc
+class WalIngestionTest {
+
+    @DynamicPropertySource
+    static void walDirectory(DynamicPropertyRegistry registry) throws Exception {
+        registry.add("buyogo.wal.directory", Files.createTempDirectory("buyogo-wal")::toString);
+    }
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private WalIngestionService walIngestionService;
+
+    @Autowired
+    private WriteAheadLog wal;
+
+    @Autowired
+    private MachineEventRepository repo;
+
+    @Autowired
+    private WalProperties properties;
+
+    @SpyBean
+    private EventService eventService;
+
+    @Test
+    void testBatchIsAcknowledgedFromLogAndAppliedByDrain() throws Exception {
+        Instant eventTime = Instant.now().minusSeconds(60);
+        EventDTO first = TestData.eventDTO("WAL-1", "WAL-M", "WAL-F", "WAL-L", 1, eventTime);
+        EventDTO invalid = TestData.eventDTO("WAL-3", "WAL-M", "WAL-F", "WAL-L", 1, eventTime);
+        invalid.setDurationMs(-1);
+        String body = TestData.json(List.of(first,
+                TestData.eventDTO("WAL-2", "WAL-M", "WAL-F", "WAL-L", 1, eventTime), invalid, first));
+        mockMvc.perform(post("/events/batch").contentType(MediaType.APPLICATION_JSON).content(body))
+                .andExpect(status().isAccepted())
+                .andExpect(jsonPath("$.data.accepted").value(3))
+                .andExpect(jsonPath("$.data.rejected").value(1))
+                .andExpect(jsonPath("$.data.rejections[0].reason").value("INVALID_DURATION"));
+        assertTrue(repo.findByEventIdIn(List.of("WAL-1", "WAL-2")).isEmpty());
+        assertTrue(wal.lastLsn() > wal.checkpointLsn());
+
+        walIngestionService.drain();
+
+        assertEquals(2, repo.findByEventIdIn(List.of("WAL-1", "WAL-2", "WAL-3")).size());
+        assertEquals(wal.lastLsn(), wal.checkpointLsn());
+
+        // Re-applying the same events is a no-op
+        mockMvc.perform(post("/events/batch").contentType(MediaType.APPLICATION_JSON).content(body))
+                .andExpect(status().isAccepted());
+        walIngestionService.drain();
+        assertEquals(2, repo.findByEventIdIn(List.of("WAL-1", "WAL-2")).size());
+    }
+
+    @Test
+    void testRecordThatKeepsFailingIsDeadLetteredAndTheRestApplied() throws Exception {
+        Instant eventTime = Instant.now().minusSeconds(60);
+        doThrow(new IllegalStateException("cannot apply")).when(eventService).processEvents(
+                argThat(events -> events.stream().anyMatch(e -> "WAL-BAD".equals(e.getEventId()))));
+        wal.append(EventBatchCodec.encode(List.of(TestData.eventDTO("WAL-OK-1", 1, eventTime))));
+        long bad = wal.append(EventBatchCodec.encode(List.of(TestData.eventDTO("WAL-BAD", 1, eventTime))));
+        wal.append(EventBatchCodec.encode(List.of(TestData.eventDTO("WAL-OK-2", 1, eventTime))));
+
+        // Merged, then the head alone, then the bad record alone until it runs out of attempts
+        for (int i = 0; i < 4 && wal.checkpointLsn() < wal.lastLsn(); i++) {
+            walIngestionService.drain();
+        }
+
+        assertEquals(wal.lastLsn(), wal.checkpointLsn());
+        assertEquals(2, repo.findByEventIdIn(List.of("WAL-OK-1", "WAL-BAD", "WAL-OK-2")).size());
+        List<EventDTO> deadLettered = EventBatchCodec.decode(Files.readAllBytes(
+                properties.getDirectory().resolve("dead-letter").resolve(String.format("%020d.batch", bad))));
+        assertEquals("WAL-BAD", deadLettered.get(0).getEventId());
+    }
+}
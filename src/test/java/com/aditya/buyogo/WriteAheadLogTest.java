@@ -0,0 +1,215 @@
+package com.aditya.buyogo;
+
+import com.aditya.buyogo.config.WalProperties;
+import com.aditya.buyogo.repo.WriteAheadLog;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WriteAheadLogTest {
+
+    @TempDir
+    private Path directory;
+
+    private WriteAheadLog open(int segmentBytes) {
+        WalProperties properties = new WalProperties();
+        properties.setDirectory(directory);
+        properties.setSegmentSize(DataSize.ofBytes(segmentBytes));
+        properties.setMaxSize(DataSize.ofKilobytes(64));
+        return new WriteAheadLog(properties);
+    }
+
+    private static byte[] record(int i) {
+        return ("batch-" + i).getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static List<String> readAll(WriteAheadLog wal) {
+        List<String> records = new ArrayList<>();
+        WriteAheadLog.Position position = wal.start();
+        WriteAheadLog.Entry entry;
+        while ((entry = wal.read(position)) != null) {
+            records.add(entry.lsn() + ":" + new String(entry.payload(), StandardCharsets.UTF_8));
+            position = entry.next();
+        }
+        return records;
+    }
+
+    private List<Path> segments() throws Exception {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(file -> file.toString().endsWith(".wal")).sorted().toList();
+        }
+    }
+
+    private long ignoredCount() throws Exception {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(file -> file.toString().endsWith(".wal.ignored")).count();
+        }
+    }
+
+    private long segmentCount() throws Exception {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(file -> file.toString().endsWith(".wal")).count();
+        }
+    }
+
+    @Test
+    void testRecordsSurviveReopenAcrossSegments() throws Exception {
+        WriteAheadLog wal = open(256);
+        for (int i = 1; i <= 40; i++) {
+            assertEquals(i, wal.append(record(i)));
+        }
+        wal.close();
+        assertTrue(segmentCount() > 1);
+
+        WriteAheadLog reopened = open(256);
+        List<String> records = readAll(reopened);
+        assertEquals(40, records.size());
+        assertEquals("1:batch-1", records.get(0));
+        assertEquals("40:batch-40", records.get(39));
+        assertEquals(41, reopened.append(record(41)));
+        reopened.close();
+    }
+
+    @Test
+    void testTornTailIsDroppedOnRecovery() throws Exception {
+        WriteAheadLog wal = open(4096);
+        for (int i = 1; i <= 3; i++) {
+            wal.append(record(i));
+        }
+        wal.close();
+        // Flip a payload byte of the third frame: each frame is 16 header bytes plus "batch-N"
+        Path segment;
+        try (Stream<Path> files = Files.list(directory)) {
+            segment = files.filter(file -> file.toString().endsWith(".wal")).findFirst().orElseThrow();
+        }
+        try (RandomAccessFile file = new RandomAccessFile(segment.toFile(), "rw")) {
+            file.seek(2 * (16 + 7) + 16);
+            file.write('X');
+        }
+
+        WriteAheadLog reopened = open(4096);
+        assertEquals(List.of("1:batch-1", "2:batch-2"), readAll(reopened));
+        assertEquals(3, reopened.append(record(30)));
+        assertEquals("3:batch-30", readAll(reopened).get(2));
+        reopened.close();
+    }
+
+    @Test
+    void testFramesPastTheTornPointAreNotReplayed() throws Exception {
+        WriteAheadLog wal = open(4096);
+        for (int i = 1; i <= 5; i++) {
+            wal.append(record(i));
+        }
+        wal.close();
+        try (RandomAccessFile file = new RandomAccessFile(segments().get(0).toFile(), "rw")) {
+            file.seek(2 * (16 + 7) + 16);
+            file.write('X');
+        }
+
+        // The new third frame is as long as the old one, so the old fourth and fifth would line up behind it
+        WriteAheadLog reopened = open(4096);
+        assertEquals(3, reopened.append("fresh-3".getBytes(StandardCharsets.UTF_8)));
+        reopened.close();
+        WriteAheadLog again = open(4096);
+        assertEquals(List.of("1:batch-1", "2:batch-2", "3:fresh-3"), readAll(again));
+        again.close();
+    }
+
+    @Test
+    void testSegmentsAfterAGapAreSetAsideAndNotReused() throws Exception {
+        WriteAheadLog wal = open(256);
+        for (int i = 1; i <= 40; i++) {
+            wal.append(record(i));
+        }
+        wal.close();
+        List<Path> segments = segments();
+        assertTrue(segments.size() > 2);
+        Files.delete(segments.get(1));
+
+        WriteAheadLog reopened = open(256);
+        List<String> records = readAll(reopened);
+        int kept = records.size();
+        assertEquals(kept + ":batch-" + kept, records.get(kept - 1));
+        assertEquals(segments.size() - 2, ignoredCount());
+        // Same sizes as before, so rotation comes back to the names of the set-aside segments
+        for (int i = kept + 1; i <= 40; i++) {
+            assertEquals(i, reopened.append(("fresh-" + i).getBytes(StandardCharsets.UTF_8)));
+        }
+        reopened.close();
+
+        WriteAheadLog again = open(256);
+        records = readAll(again);
+        assertEquals(40, records.size());
+        assertEquals((kept + 1) + ":fresh-" + (kept + 1), records.get(kept));
+        assertEquals("40:fresh-40", records.get(39));
+        again.close();
+    }
+
+    @Test
+    void testCheckpointSkipsAppliedRecordsAndDeletesSegments() throws Exception {
+        WriteAheadLog wal = open(256);
+        for (int i = 1; i <= 40; i++) {
+            wal.append(record(i));
+        }
+        long before = segmentCount();
+        wal.checkpoint(35);
+        assertTrue(segmentCount() < before);
+        wal.close();
+
+        WriteAheadLog reopened = open(256);
+        assertEquals(35, reopened.checkpointLsn());
+        assertEquals(List.of("36:batch-36", "37:batch-37", "38:batch-38", "39:batch-39", "40:batch-40"),
+                readAll(reopened));
+        reopened.close();
+    }
+
+    @Test
+    void testAppendFailsOnceLogIsFull() {
+        WriteAheadLog wal = open(16 * 1024);
+        byte[] payload = new byte[15 * 1024];
+        for (int i = 0; i < 4; i++) {
+            wal.append(payload);
+        }
+        ResponseStatusException e = assertThrows(ResponseStatusException.class, () -> wal.append(payload));
+        assertEquals(503, e.getStatusCode().value());
+        wal.checkpoint(3);
+        wal.append(payload);
+        wal.close();
+    }
+
+    @Test
+    void testConcurrentAppendsGetDistinctContiguousLsns() throws Exception {
+        WriteAheadLog wal = open(4096);
+        Set<Long> lsns = ConcurrentHashMap.newKeySet();
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        for (int t = 0; t < 8; t++) {
+            pool.submit(() -> {
+                for (int i = 0; i < 100; i++) {
+                    lsns.add(wal.append(record(i)));
+                }
+            });
+        }
+        pool.shutdown();
+        assertTrue(pool.awaitTermination(30, TimeUnit.SECONDS));
+        assertEquals(800, lsns.size());
+        assertEquals(800, readAll(wal).size());
+        assertEquals(800L, lsns.stream().mapToLong(Long::longValue).max().orElse(0));
+        wal.close();
+    }
+}